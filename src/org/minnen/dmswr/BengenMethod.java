@@ -4,8 +4,10 @@ import java.io.IOException;
 import java.time.Month;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.IntStream;
 
 import org.minnen.dmswr.utils.FeatureVec;
+import org.minnen.dmswr.utils.Metrics;
 import org.minnen.dmswr.utils.Sequence;
 import org.minnen.dmswr.utils.SwrLib;
 import org.minnen.dmswr.data.BengenEntry;
@@ -75,7 +77,73 @@ public class BengenMethod
   public static MonthlyInfo run(int iStart, int iEnd, double withdrawalRate, int percentStock, double nestEgg,
       List<MonthlyInfo> trajectory)
   {
-    // TODO change withdrawalRate arg to int (basis points) instead of double.
+    assert percentStock >= 0 && percentStock <= 100;
+    final double[] growth = SwrLib.getMonthlyGrowth(percentStock);
+    return run(iStart, iEnd, withdrawalRate, nestEgg, growth, Integer.MAX_VALUE, null, 0, trajectory);
+  }
+
+  /**
+   * Simulate a Bengen-style retirement with a glide path.
+   * 
+   * @param iStart index of retirement month (first withdrawal)
+   * @param iEnd last index of simulation period (exclusive)
+   * @param withdrawalRate annual withdrawal rate as a percent (3.5 = 3.5%) *
+   * @param glidePath asset allocation for each month of retirement
+   * @param nestEgg portfolio balance at start of retirement
+   * @param trajectory if non-null, will be filled with monthly info objects (optional)
+   * @return info for the final month: either the last month of retirement or the failure month
+   */
+  public static MonthlyInfo run(int iStart, int iEnd, double withdrawalRate, GlidePath glidePath, double nestEgg,
+      List<MonthlyInfo> trajectory)
+  {
+    final int delay = glidePath.delayMonths;
+    final double[] prefix = SwrLib.getMonthlyGrowth(glidePath.getInitialPercentStock());
+    final double[] mul = glidePath.getMultipliers(iEnd - iStart - delay);
+    final int horizon = mul.length / SwrLib.length();
+    final int mulBase = (iStart + delay) * horizon - delay;
+    return run(iStart, iEnd, withdrawalRate, nestEgg, prefix, delay, mul, mulBase, trajectory);
+  }
+
+  /**
+   * Simulate a Bengen-style retirement with an N-asset portfolio.
+   * 
+   * @param iStart index of retirement month (first withdrawal)
+   * @param iEnd last index of simulation period (exclusive)
+   * @param withdrawalRate annual withdrawal rate as a percent (3.5 = 3.5%) *
+   * @param portfolio assets and weights (must have data for [iStart, iEnd))
+   * @param nestEgg portfolio balance at start of retirement
+   * @param trajectory if non-null, will be filled with monthly info objects (optional)
+   * @return info for the final month: either the last month of retirement or the failure month
+   */
+  public static MonthlyInfo run(int iStart, int iEnd, double withdrawalRate, Portfolio portfolio, double nestEgg,
+      List<MonthlyInfo> trajectory)
+  {
+    assert iStart >= portfolio.assets.iFirst && iEnd <= portfolio.assets.iEnd;
+    final double[] growth = portfolio.getMonthlyGrowth();
+    return run(iStart, iEnd, withdrawalRate, nestEgg, growth, Integer.MAX_VALUE, null, 0, trajectory);
+  }
+
+  /**
+   * Simulate a Bengen-style retirement with a rebalancing policy.
+   * 
+   * Monthly rebalancing uses the precomputed portfolio growth. Other policies track the stock and bond balances
+   * separately so the allocation can drift between rebalancing events. Withdrawals are taken proportionally from both.
+   * 
+   * @param iStart index of retirement month (first withdrawal)
+   * @param iEnd last index of simulation period (exclusive)
+   * @param withdrawalRate annual withdrawal rate as a percent (3.5 = 3.5%) *
+   * @param percentStock target percent stock (vs. bonds) held in brokerage account
+   * @param rebalance rebalancing policy
+   * @param nestEgg portfolio balance at start of retirement
+   * @param trajectory if non-null, will be filled with monthly info objects (optional)
+   * @return info for the final month: either the last month of retirement or the failure month
+   */
+  public static MonthlyInfo run(int iStart, int iEnd, double withdrawalRate, int percentStock, Rebalance rebalance,
+      double nestEgg, List<MonthlyInfo> trajectory)
+  {
+    if (rebalance.isMonthly()) {
+      return run(iStart, iEnd, withdrawalRate, percentStock, nestEgg, trajectory);
+    }
     assert iStart >= 0 && iStart < SwrLib.length();
     assert iEnd > iStart && iEnd <= SwrLib.length();
     assert withdrawalRate > 0.0 : withdrawalRate;
@@ -83,6 +151,11 @@ public class BengenMethod
 
     final long retireTime = SwrLib.time(iStart);
     final int swrBasisPoints = SwrLib.percentToBasisPoints(withdrawalRate);
+    final double[] stockGrowth = SwrLib.getMonthlyGrowth(100);
+    final double[] bondsGrowth = SwrLib.getMonthlyGrowth(0);
+    final double target = percentStock / 100.0;
+    double stock = nestEgg * target;
+    double bonds = nestEgg - stock;
     double balance = nestEgg;
     double monthlyWithdrawal = balance * withdrawalRate / 1200.0;
     final Inflation inflation = SwrLib.getInflationAdjustment();
@@ -95,14 +168,83 @@ public class BengenMethod
 
       balance -= monthlyWithdrawal; // make withdrawal at the beginning of the month.
       if (balance > 0) {
-        balance *= SwrLib.growth(i, percentStock); // remaining balance grows during the rest of month.
+        if (rebalance.shouldRebalance(i - iStart, stock, bonds, target)) {
+          stock = balance * target;
+          bonds = balance - stock;
+        } else {
+          final double k = balance / startBalance; // withdraw proportionally from stocks and bonds
+          stock *= k;
+          bonds *= k;
+        }
+        stock *= stockGrowth[i]; // remaining balance grows during the rest of month.
+        bonds *= bondsGrowth[i];
+        balance = stock + bonds;
       }
 
       final double annualSalary = monthlyWithdrawal * 12;
       info = new MonthlyInfo(retireTime, SwrLib.time(i), swrBasisPoints, i - iStart + 1, monthlyWithdrawal,
           startBalance, balance, annualSalary);
       if (trajectory != null) trajectory.add(info);
-      if (info.failed()) return info;
+      if (info.failed()) {
+        Metrics.simulated(i - iStart + 1);
+        return info;
+      }
+
+      assert balance > -1e-5; // TODO avoid floating point issues
+      if (inflation == Inflation.Nominal) {
+        monthlyWithdrawal *= SwrLib.inflation(i);
+      }
+    }
+
+    if (trajectory != null) {
+      MonthlyInfo.setFinalBalance(balance, trajectory);
+    } else {
+      info.finalBalance = balance;
+    }
+    Metrics.simulated(iEnd - iStart);
+    return info;
+  }
+
+  /**
+   * Simulate a Bengen-style retirement with precomputed growth multipliers.
+   * 
+   * Growth for month `m` of retirement (index `i = iStart + m`) is `prefix[i]` for the first `nPrefix` months and
+   * `mul[mulBase + m]` afterwards.
+   */
+  private static MonthlyInfo run(int iStart, int iEnd, double withdrawalRate, double nestEgg, double[] prefix,
+      int nPrefix, double[] mul, int mulBase, List<MonthlyInfo> trajectory)
+  {
+    // TODO change withdrawalRate arg to int (basis points) instead of double.
+    assert iStart >= 0 && iStart < SwrLib.length();
+    assert iEnd > iStart && iEnd <= SwrLib.length();
+    assert withdrawalRate > 0.0 : withdrawalRate;
+
+    final long retireTime = SwrLib.time(iStart);
+    final int swrBasisPoints = SwrLib.percentToBasisPoints(withdrawalRate);
+    double balance = nestEgg;
+    double monthlyWithdrawal = balance * withdrawalRate / 1200.0;
+    final Inflation inflation = SwrLib.getInflationAdjustment();
+
+    if (trajectory != null) trajectory.clear();
+
+    MonthlyInfo info = null;
+    for (int i = iStart; i < iEnd; ++i) {
+      final double startBalance = balance;
+
+      balance -= monthlyWithdrawal; // make withdrawal at the beginning of the month.
+      if (balance > 0) {
+        final int m = i - iStart;
+        balance *= (m < nPrefix ? prefix[i] : mul[mulBase + m]); // remaining balance grows during the rest of month.
+      }
+
+      final double annualSalary = monthlyWithdrawal * 12;
+      info = new MonthlyInfo(retireTime, SwrLib.time(i), swrBasisPoints, i - iStart + 1, monthlyWithdrawal,
+          startBalance, balance, annualSalary);
+      if (trajectory != null) trajectory.add(info);
+      if (info.failed()) {
+        Metrics.simulated(i - iStart + 1);
+        return info;
+      }
 
       assert balance > -1e-5; // TODO avoid floating point issues
       if (inflation == Inflation.Nominal) {
@@ -116,16 +258,24 @@ public class BengenMethod
       info.finalBalance = balance;
     }
     assert info.finalBalance == balance;
+    Metrics.simulated(iEnd - iStart);
     return info;
   }
 
   /** @return true if the withdrawal rate works for all retirement starting times. */
   public static boolean isSafe(int withdrawalRate, int retirementYears, int percentStock)
+  {
+    return isSafe(withdrawalRate, retirementYears, percentStock, Rebalance.monthly);
+  }
+
+  /** @return true if the withdrawal rate works for all retirement starting times with the rebalancing policy. */
+  public static boolean isSafe(int withdrawalRate, int retirementYears, int percentStock, Rebalance rebalance)
   {
     final int lastIndex = SwrLib.lastIndex(retirementYears);
+    final int retirementMonths = retirementYears * 12;
     final double floatWR = withdrawalRate / 100.0;
     for (int i = 0; i <= lastIndex; ++i) {
-      MonthlyInfo info = BengenMethod.runForDuration(i, retirementYears, floatWR, percentStock, 1e6, null);
+      MonthlyInfo info = BengenMethod.run(i, i + retirementMonths, floatWR, percentStock, rebalance, 1e6, null);
       if (info.failed()) return false;
       assert info.endBalance > 0 && info.monthlyIncome > 0;
     }
@@ -149,22 +299,38 @@ public class BengenMethod
   }
 
   public static int findSwrForWindow(int iStart, int iEnd, int percentStock, int quantum)
+  {
+    return findSwrForWindow(iStart, iEnd, percentStock, Rebalance.monthly, quantum);
+  }
+
+  public static int findSwrForWindow(int iStart, int iEnd, int percentStock, Rebalance rebalance, int quantum)
   {
     assert quantum >= 1;
 
     int lowSWR = 0;
     int highSWR = 10001;
 
-    final int years = (iEnd - iStart) / 12;
-    BengenEntry entry = BengenTable.get(SwrLib.time(iStart), years - 1, percentStock);
-    if (entry != null) {
-      highSWR = entry.swr; // SWR for N years can't be larger than SWR for (N-1) years
+    // The loaded table assumes monthly rebalancing so it's only a valid bound for that policy.
+    if (rebalance.isMonthly()) {
+      final int years = (iEnd - iStart) / 12;
+      BengenEntry entry = BengenTable.get(SwrLib.time(iStart), years - 1, percentStock);
+      if (entry != null) {
+        // SWR for N years can't be larger than SWR for (N-1) years. The bound itself is tested so that the result
+        // doesn't depend on whether the shorter duration is loaded (e.g. when the table is generated in shards).
+        final int bound = entry.swr / quantum * quantum;
+        Metrics.searchSteps.inc();
+        if (BengenMethod.run(iStart, iEnd, bound / 100.0, percentStock, rebalance, 1e6, null).ok()) {
+          return bound;
+        }
+        highSWR = bound;
+      }
     }
 
     while (highSWR - lowSWR > quantum) {
       final int swr = (lowSWR + highSWR) / (2 * quantum) * quantum;
       assert swr >= lowSWR && swr <= highSWR && swr % quantum == 0 : swr;
-      MonthlyInfo info = BengenMethod.run(iStart, iEnd, swr / 100.0, percentStock, 1e6, null);
+      Metrics.searchSteps.inc();
+      MonthlyInfo info = BengenMethod.run(iStart, iEnd, swr / 100.0, percentStock, rebalance, 1e6, null);
       if (info.ok()) {
         lowSWR = swr;
       } else {
@@ -174,6 +340,134 @@ public class BengenMethod
     return lowSWR;
   }
 
+  /**
+   * Find the SWR for a retirement over [iStart, iEnd) that follows a glide path.
+   * 
+   * @param iStart index of retirement month (first withdrawal)
+   * @param iEnd last index of simulation period (exclusive)
+   * @param glidePath asset allocation for each month of retirement
+   * @param quantum withdrawalRate % quantum == 0
+   * @param highSWR upper bound on the SWR in basis points (e.g. SWR for a shorter retirement)
+   * @return safe withdrawal rate for the given retirement period
+   */
+  public static int findSwrForWindow(int iStart, int iEnd, GlidePath glidePath, int quantum, int highSWR)
+  {
+    assert quantum >= 1;
+    int lowSWR = 0;
+    while (highSWR - lowSWR > quantum) {
+      final int swr = (lowSWR + highSWR) / (2 * quantum) * quantum;
+      assert swr >= lowSWR && swr <= highSWR && swr % quantum == 0 : swr;
+      Metrics.searchSteps.inc();
+      MonthlyInfo info = BengenMethod.run(iStart, iEnd, swr / 100.0, glidePath, 1e6, null);
+      if (info.ok()) {
+        lowSWR = swr;
+      } else {
+        highSWR = swr;
+      }
+    }
+    return lowSWR;
+  }
+
+  /**
+   * Calculate the SWR for every start month with a glide path (342 => 3.42%).
+   * 
+   * @param retirementMonths duration of retirement in months
+   * @param glidePath asset allocation for each month of retirement
+   * @return SWR for each start month with a full retirement period (index = SwrLib index)
+   */
+  public static int[] calcSwrAcrossTime(int retirementMonths, GlidePath glidePath)
+  {
+    final int lastIndex = SwrLib.length() - retirementMonths;
+    glidePath.getMultipliers(retirementMonths - glidePath.delayMonths); // build once before running in parallel
+    int[] swrs = new int[Math.max(lastIndex + 1, 0)];
+    IntStream.range(0, swrs.length).parallel().forEach(i -> {
+      swrs[i] = findSwrForWindow(i, i + retirementMonths, glidePath, 1, 10001);
+    });
+    return swrs;
+  }
+
+  /** @return true if the withdrawal rate works for all retirement starting times with the glide path. */
+  public static boolean isSafe(int withdrawalRate, int retirementMonths, GlidePath glidePath)
+  {
+    final int lastIndex = SwrLib.length() - retirementMonths;
+    final double floatWR = withdrawalRate / 100.0;
+    return IntStream.rangeClosed(0, lastIndex).parallel()
+        .allMatch(i -> BengenMethod.run(i, i + retirementMonths, floatWR, glidePath, 1e6, null).ok());
+  }
+
+  /**
+   * Determine the Bengen SWR (MinSWR) for a retirement that follows a glide path.
+   * 
+   * @param retirementMonths length of retirement in months
+   * @param glidePath asset allocation for each month of retirement
+   * @param quantum require the SWR to have a multiple of this number of basis points
+   * @return the largest SWR that works for all start months in basis points (325 = 3.25%)
+   */
+  public static int findSWR(int retirementMonths, GlidePath glidePath, int quantum)
+  {
+    assert retirementMonths > 0 && quantum >= 1;
+    glidePath.getMultipliers(retirementMonths - glidePath.delayMonths);
+    int lowSWR = 10; // 0.1% will always works
+    int highSWR = 10000;
+    while (highSWR - lowSWR > quantum) {
+      final int swr = (lowSWR + highSWR) / (2 * quantum) * quantum;
+      assert swr >= lowSWR && swr <= highSWR && swr % quantum == 0 : swr;
+      Metrics.searchSteps.inc();
+      if (isSafe(swr, retirementMonths, glidePath)) {
+        lowSWR = swr;
+      } else {
+        highSWR = swr;
+      }
+    }
+    return lowSWR;
+  }
+
+  /** @return true if the withdrawal rate works for all retirement starting times covered by the portfolio data. */
+  public static boolean isSafe(int withdrawalRate, int retirementYears, Portfolio portfolio)
+  {
+    final int retirementMonths = retirementYears * 12;
+    final double floatWR = withdrawalRate / 100.0;
+    for (int i = portfolio.getFirstIndex(); i <= portfolio.lastIndex(retirementYears); ++i) {
+      MonthlyInfo info = BengenMethod.run(i, i + retirementMonths, floatWR, portfolio, 1e6, null);
+      if (info.failed()) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Determine the Bengen SWR (MinSWR) for an N-asset portfolio.
+   * 
+   * Only retirements that start and end within the months covered by all assets are considered.
+   * 
+   * @param retirementYears length of retirement, i.e. the account balance must be >= 0 for this many years
+   * @param portfolio assets and weights
+   * @param quantum require the SWR to have a multiple of this number of basis points
+   * @return the largest Bengen SWR as an annualized percent (325 = 3.25%)
+   */
+  public static int findSWR(int retirementYears, Portfolio portfolio, int quantum)
+  {
+    assert retirementYears > 0 && quantum >= 1;
+    if (portfolio.lastIndex(retirementYears) < portfolio.getFirstIndex()) {
+      throw new IllegalArgumentException(
+          String.format("Not enough data for a %d year retirement with %s", retirementYears, portfolio));
+    }
+
+    // Binary search for largest WR that is always safe.
+    int lowSWR = 10; // 0.1% will always works
+    int highSWR = 10000; // never go over 100%
+    while (highSWR - lowSWR > quantum) {
+      final int swr = (lowSWR + highSWR) / (2 * quantum) * quantum;
+      assert swr >= lowSWR && swr <= highSWR && swr % quantum == 0 : swr;
+      Metrics.searchSteps.inc();
+      if (BengenMethod.isSafe(swr, retirementYears, portfolio)) {
+        lowSWR = swr;
+      } else {
+        highSWR = swr;
+      }
+    }
+    return lowSWR;
+  }
+
   /**
    * Determine the Bengen SWR for a retirement of `years` with a `percentStock` held in stock.
    * 
@@ -197,6 +491,20 @@ public class BengenMethod
    * @return the largest Bengen SWR as an annualized percent (325 = 3.25%)
    */
   public static int findSWR(int retirementYears, int percentStock, int quantum)
+  {
+    return findSWR(retirementYears, percentStock, Rebalance.monthly, quantum);
+  }
+
+  /**
+   * Determine the Bengen SWR for a retirement of `years` with a `percentStock` held in stock.
+   * 
+   * @param retirementYears length of retirement, i.e. the account balance must be >= 0 for this many years
+   * @param percentStock the percent of stock (vs. bond) in the brokerage account
+   * @param rebalance rebalancing policy
+   * @param quantum require the SWR to have a multiple of this number of basis points
+   * @return the largest Bengen SWR as an annualized percent (325 = 3.25%)
+   */
+  public static int findSWR(int retirementYears, int percentStock, Rebalance rebalance, int quantum)
   {
     assert retirementYears > 0 && percentStock >= 0 && percentStock <= 100 && quantum >= 1;
 
@@ -206,7 +514,8 @@ public class BengenMethod
     while (highSWR - lowSWR > quantum) {
       final int swr = (lowSWR + highSWR) / (2 * quantum) * quantum;
       assert swr >= lowSWR && swr <= highSWR && swr % quantum == 0 : swr;
-      if (BengenMethod.isSafe(swr, retirementYears, percentStock)) {
+      Metrics.searchSteps.inc();
+      if (BengenMethod.isSafe(swr, retirementYears, percentStock, rebalance)) {
         lowSWR = swr;
       } else {
         highSWR = swr;
@@ -228,15 +537,37 @@ public class BengenMethod
    */
   public static Sequence calcSwrAcrossTime(int retirementYears, int percentStock, boolean includePartialWindows)
   {
-    Sequence seq = new Sequence(
-        String.format("%d year SWR (%d/%d)", retirementYears, percentStock, 100 - percentStock));
+    return calcSwrAcrossTime(retirementYears, percentStock, Rebalance.monthly, includePartialWindows);
+  }
 
+  /**
+   * Calculate SWR for all retirement periods (342 => 3.42%) with a rebalancing policy.
+   * 
+   * @param retirementYears length of retirement, i.e. the account balance must be >= 0 for this many years
+   * @param percentStock the percent of stock (vs. bond) in the brokerage account
+   * @param rebalance rebalancing policy
+   * @param includePartialWindows if True, include SWR for incomplete/ongoing retirements
+   * @return Sequence holding the SWR for each starting month.
+   */
+  public static Sequence calcSwrAcrossTime(int retirementYears, int percentStock, Rebalance rebalance,
+      boolean includePartialWindows)
+  {
+    String name = String.format("%d year SWR (%d/%d)", retirementYears, percentStock, 100 - percentStock);
+    if (!rebalance.isMonthly()) {
+      name += String.format(" [%s]", rebalance);
+    }
+    Sequence seq = new Sequence(name);
+
+    // Start months are independent so the searches run in parallel.
     final int retirementMonths = retirementYears * 12;
     final int lastIndex = includePartialWindows ? SwrLib.length() - 1 : SwrLib.lastIndex(retirementYears);
-    for (int i = 0; i <= lastIndex; ++i) {
+    final int[] swrs = new int[lastIndex + 1];
+    IntStream.rangeClosed(0, lastIndex).parallel().forEach(i -> {
       final int iEnd = Math.min(i + retirementMonths, SwrLib.length());
-      final int swr = findSwrForWindow(i, iEnd, percentStock, 1);
-      seq.addData(swr, SwrLib.time(i));
+      swrs[i] = findSwrForWindow(i, iEnd, percentStock, rebalance, 1);
+    });
+    for (int i = 0; i <= lastIndex; ++i) {
+      seq.addData(swrs[i], SwrLib.time(i));
     }
     return seq;
   }
@@ -0,0 +1,302 @@
+package org.minnen.dmswr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import org.minnen.dmswr.data.MonthlyInfo;
+import org.minnen.dmswr.utils.AssetMatrix;
+import org.minnen.dmswr.utils.DrawdownStats;
+import org.minnen.dmswr.utils.FinLib;
+import org.minnen.dmswr.utils.FinLib.Inflation;
+import org.minnen.dmswr.utils.Metrics;
+import org.minnen.dmswr.utils.SwrLib;
+
+/**
+ * Simulate a retirement that holds a cash bucket of T-bills next to a stock/bond portfolio.
+ *
+ * At the start of retirement, the bucket is filled with `bucketYears` of spending and the rest of the nest egg is
+ * invested in the portfolio. Withdrawals come from the bucket until it's empty and then from the portfolio. The bucket
+ * is refilled from the portfolio only when the stock market is within `refillDrawdown` percent of its peak so the
+ * retiree avoids selling stock during a deep drawdown. A zero-year bucket is identical to `BengenMethod`.
+ *
+ * The bucket earns 3-month T-bill returns so `SwrLib.addTBills()` must be called first. Start months are limited to the
+ * range covered by the T-bill data.
+ */
+public class BucketMethod
+{
+  /** Default drawdown (as a positive percent) beyond which the bucket is not refilled. */
+  public static final double defaultRefillDrawdown = 10.0;
+
+  /** Markets keyed by allocation and refill rule; see `getMarket()`. */
+  private static final Map<String, Market> markets = new ConcurrentHashMap<>();
+
+  /** Growth data for one portfolio allocation and refill rule, shared by all simulations in a sweep. */
+  private static class Market
+  {
+    /** T-bill data used to build this market (detects new data in SwrLib). */
+    final AssetMatrix bills;
+
+    /** Monthly growth of the stock/bond portfolio. */
+    final double[]    growth;
+
+    /** Monthly growth of T-bills. */
+    final double[]    cashGrowth;
+
+    /** True if the bucket can be refilled at the start of the month. */
+    final boolean[]   canRefill;
+
+    /** Range of months covered by the T-bill data. */
+    final int         iFirst, iEnd;
+
+    final Inflation   inflation;
+
+    Market(int percentStock, double refillDrawdown)
+    {
+      final int n = SwrLib.length();
+      this.bills = SwrLib.getAssetMatrix(SwrLib.ASSET_TBILLS);
+      this.growth = SwrLib.getMonthlyGrowth(percentStock);
+      this.cashGrowth = new double[n];
+      for (int i = 0; i < n; ++i) {
+        cashGrowth[i] = bills.get(i, 0);
+      }
+      this.iFirst = bills.iFirst;
+      this.iEnd = bills.iEnd;
+      this.inflation = SwrLib.getInflationAdjustment();
+
+      final double[] drawdown = FinLib.calcDrawdown(SwrLib.stock).extractDim(0);
+      this.canRefill = new boolean[n];
+      for (int i = 0; i < n; ++i) {
+        canRefill[i] = drawdown[i] > -refillDrawdown;
+      }
+    }
+
+    int lastIndex(int retirementYears)
+    {
+      return iEnd - retirementYears * 12;
+    }
+
+    /** @return true if this market was built from the current data in SwrLib. */
+    boolean isCurrent(int percentStock)
+    {
+      return bills == SwrLib.getAssetMatrix(SwrLib.ASSET_TBILLS) && growth == SwrLib.getMonthlyGrowth(percentStock)
+          && inflation == SwrLib.getInflationAdjustment();
+    }
+  }
+
+  /**
+   * Return the market for the given allocation and refill rule.
+   * 
+   * Building a market scans the whole history (drawdowns, T-bill growth), so markets are cached and only rebuilt after
+   * SwrLib loads new data or assets.
+   */
+  private static Market getMarket(int percentStock, double refillDrawdown)
+  {
+    final String key = percentStock + "|" + refillDrawdown;
+    Market market = markets.get(key);
+    if (market == null || !market.isCurrent(percentStock)) {
+      market = new Market(percentStock, refillDrawdown);
+      markets.put(key, market);
+    }
+    return market;
+  }
+
+  /**
+   * Simulate a retirement and return the number of months before it failed.
+   *
+   * @param market growth data for the portfolio and bucket
+   * @param iStart index of retirement month (first withdrawal)
+   * @param nMonths maximum number of months to simulate
+   * @param withdrawalRate annual withdrawal rate as a percent (3.5 = 3.5%)
+   * @param bucketYears years of spending held in the bucket
+   * @param nestEgg portfolio balance at start of retirement
+   * @param trajectory if non-null, will be filled with monthly info objects (optional)
+   * @param drawdown if non-null, will be filled with the total balance (optional, see `DrawdownAnalysis.analyze()`)
+   * @return number of successful months (`nMonths` if the retirement didn't fail)
+   */
+  private static int simulate(Market market, int iStart, int nMonths, double withdrawalRate, int bucketYears,
+      double nestEgg, List<MonthlyInfo> trajectory, DrawdownStats drawdown)
+  {
+    final long retireTime = (trajectory == null ? 0L : SwrLib.time(iStart));
+    final int swrBasisPoints = SwrLib.percentToBasisPoints(withdrawalRate);
+    double monthlyWithdrawal = nestEgg * withdrawalRate / 1200.0;
+    double bucket = Math.min(monthlyWithdrawal * 12 * bucketYears, nestEgg);
+    double balance = nestEgg - bucket;
+    if (drawdown != null) drawdown.add(nestEgg);
+
+    for (int m = 0; m < nMonths; ++m) {
+      final int i = iStart + m;
+      final double startBalance = bucket + balance;
+      final boolean failed = (monthlyWithdrawal >= startBalance);
+
+      // Spend from the bucket first and then from the portfolio.
+      if (bucket >= monthlyWithdrawal) {
+        bucket -= monthlyWithdrawal;
+      } else {
+        balance -= monthlyWithdrawal - bucket;
+        bucket = 0.0;
+      }
+
+      // Refill the bucket unless stocks are in a deep drawdown.
+      if (market.canRefill[i] && balance > 0.0) {
+        final double target = monthlyWithdrawal * 12 * bucketYears;
+        final double refill = Math.min(target - bucket, balance);
+        if (refill > 0.0) {
+          bucket += refill;
+          balance -= refill;
+        }
+      }
+
+      if (balance > 0.0) balance *= market.growth[i];
+      bucket *= market.cashGrowth[i];
+
+      if (trajectory != null) {
+        trajectory.add(new MonthlyInfo(retireTime, SwrLib.time(i), swrBasisPoints, m + 1, monthlyWithdrawal,
+            startBalance, bucket + balance, monthlyWithdrawal * 12));
+      }
+      if (drawdown != null) drawdown.add(Math.max(bucket + balance, 0.0));
+      if (failed) {
+        Metrics.simulated(m + 1);
+        return m;
+      }
+
+      if (market.inflation == Inflation.Nominal) {
+        monthlyWithdrawal *= SwrLib.inflation(i);
+      }
+    }
+    if (trajectory != null) {
+      MonthlyInfo.setFinalBalance(bucket + balance, trajectory);
+    }
+    Metrics.simulated(nMonths);
+    return nMonths;
+  }
+
+  /**
+   * Simulate a bucket retirement.
+   *
+   * @param iStart index of retirement month (first withdrawal)
+   * @param iEnd last index of simulation period (exclusive)
+   * @param withdrawalRate annual withdrawal rate as a percent (3.5 = 3.5%)
+   * @param percentStock percent stock (vs. bonds) held in the portfolio
+   * @param bucketYears years of spending held in the bucket
+   * @param refillDrawdown only refill the bucket when stocks are less than this percent below their peak
+   * @param nestEgg portfolio balance at start of retirement
+   * @param trajectory if non-null, will be filled with monthly info objects (optional)
+   * @return info for the final month: either the last month of retirement or the failure month
+   */
+  public static MonthlyInfo run(int iStart, int iEnd, double withdrawalRate, int percentStock, int bucketYears,
+      double refillDrawdown, double nestEgg, List<MonthlyInfo> trajectory)
+  {
+    final Market market = getMarket(percentStock, refillDrawdown);
+    assert iStart >= market.iFirst && iEnd > iStart && iEnd <= market.iEnd;
+    if (trajectory == null) trajectory = new ArrayList<>();
+    trajectory.clear();
+    simulate(market, iStart, iEnd - iStart, withdrawalRate, bucketYears, nestEgg, trajectory, null);
+    return trajectory.get(trajectory.size() - 1);
+  }
+
+  /**
+   * Calculate drawdown statistics of the total balance (bucket plus portfolio) without building a trajectory.
+   *
+   * @param iStart index of retirement month (first withdrawal)
+   * @param iEnd last index of simulation period (exclusive)
+   * @param withdrawalRate annual withdrawal rate as a percent (3.5 = 3.5%)
+   * @param percentStock percent stock (vs. bonds) held in the portfolio
+   * @param bucketYears years of spending held in the bucket
+   * @param refillDrawdown only refill the bucket when stocks are less than this percent below their peak
+   * @param nestEgg portfolio balance at start of retirement
+   * @param stats statistics object to reset and fill
+   * @return `stats`
+   */
+  public static DrawdownStats drawdown(int iStart, int iEnd, double withdrawalRate, int percentStock, int bucketYears,
+      double refillDrawdown, double nestEgg, DrawdownStats stats)
+  {
+    final Market market = getMarket(percentStock, refillDrawdown);
+    assert iStart >= market.iFirst && iEnd > iStart && iEnd <= market.iEnd;
+    stats.reset();
+    simulate(market, iStart, iEnd - iStart, withdrawalRate, bucketYears, nestEgg, null, stats);
+    return stats;
+  }
+
+  /**
+   * Calculate the SWR for every start month and retirement duration.
+   *
+   * @param maxYears calculate SWRs for retirements of [1, maxYears] years
+   * @param percentStock percent stock (vs. bonds) held in the portfolio
+   * @param bucketYears years of spending held in the bucket
+   * @param refillDrawdown only refill the bucket when stocks are less than this percent below their peak
+   * @return swrs[years - 1][iStart - getFirstIndex()] in basis points (0 for durations that don't fit in the data)
+   */
+  public static int[][] calcSwrAcrossTime(int maxYears, int percentStock, int bucketYears, double refillDrawdown)
+  {
+    return calcSwrAcrossTime(maxYears, percentStock, new int[] { bucketYears }, refillDrawdown)[0];
+  }
+
+  /**
+   * Calculate the SWR for every bucket size, start month, and retirement duration in one sweep.
+   *
+   * All bucket sizes share one market (portfolio growth, T-bill growth, refill months), and each start month runs the
+   * searches for every bucket size in the same task. The SWR for every duration is found with a single
+   * divide-and-conquer search over withdrawal rates: each simulation returns the month when the retirement fails,
+   * which splits the durations into those that succeed and those that fail at that rate. This needs far fewer
+   * simulations than a separate binary search per duration.
+   *
+   * @param maxYears calculate SWRs for retirements of [1, maxYears] years
+   * @param percentStock percent stock (vs. bonds) held in the portfolio
+   * @param bucketYearsList bucket sizes (years of spending held in the bucket)
+   * @param refillDrawdown only refill the bucket when stocks are less than this percent below their peak
+   * @return swrs[iBucket][years - 1][iStart - getFirstIndex()] in basis points (0 if the duration doesn't fit)
+   */
+  public static int[][][] calcSwrAcrossTime(int maxYears, int percentStock, int[] bucketYearsList,
+      double refillDrawdown)
+  {
+    final Market market = getMarket(percentStock, refillDrawdown);
+    final int nStarts = Math.max(market.lastIndex(1) - market.iFirst + 1, 0);
+    final int[][][] swrs = new int[bucketYearsList.length][maxYears][nStarts];
+    IntStream.range(0, nStarts).parallel().forEach(k -> {
+      final int iStart = market.iFirst + k;
+      final int nYears = Math.min(maxYears, (market.iEnd - iStart) / 12);
+      int[] result = new int[nYears];
+      for (int iBucket = 0; iBucket < bucketYearsList.length; ++iBucket) {
+        search(market, iStart, bucketYearsList[iBucket], 0, 10001, 1, nYears + 1, result);
+        for (int y = 0; y < nYears; ++y) {
+          swrs[iBucket][y][k] = result[y];
+        }
+      }
+    });
+    return swrs;
+  }
+
+  /**
+   * Find the SWR for retirements of [fromYears, toYears) years.
+   *
+   * Invariant: `lowSWR` works and `highSWR` fails for all durations in the range.
+   */
+  private static void search(Market market, int iStart, int bucketYears, int lowSWR, int highSWR, int fromYears,
+      int toYears, int[] result)
+  {
+    if (fromYears >= toYears) return;
+    if (highSWR - lowSWR <= 1) {
+      for (int years = fromYears; years < toYears; ++years) {
+        result[years - 1] = lowSWR;
+      }
+      return;
+    }
+
+    final int swr = (lowSWR + highSWR) / 2;
+    Metrics.searchSteps.inc();
+    final int nMonths = (toYears - 1) * 12;
+    final int survived = simulate(market, iStart, nMonths, swr / 100.0, bucketYears, 1e6, null, null);
+    final int splitYears = Math.max(Math.min(survived / 12 + 1, toYears), fromYears); // first duration that fails
+    search(market, iStart, bucketYears, swr, highSWR, fromYears, splitYears, result);
+    search(market, iStart, bucketYears, lowSWR, swr, splitYears, toYears, result);
+  }
+
+  /** @return first start month covered by the T-bill data. */
+  public static int getFirstIndex()
+  {
+    return SwrLib.getAssetMatrix(SwrLib.ASSET_TBILLS).iFirst;
+  }
+}
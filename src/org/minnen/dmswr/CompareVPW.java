@@ -4,14 +4,18 @@ import java.io.File;
 import java.io.IOException;
 import java.time.Month;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.minnen.dmswr.utils.DataIO;
 import org.minnen.dmswr.utils.Sequence;
 import org.minnen.dmswr.utils.SwrLib;
 import org.minnen.dmswr.data.BengenTable;
+import org.minnen.dmswr.data.DmswrCache;
 import org.minnen.dmswr.data.MonthlyInfo;
+import org.minnen.dmswr.data.VpwTable;
 import org.minnen.dmswr.utils.FinLib.Inflation;
+import org.minnen.dmswr.utils.Library;
 import org.minnen.dmswr.utils.TimeLib;
 import org.minnen.dmswr.viz.Chart;
 import org.minnen.dmswr.viz.ChartConfig;
@@ -20,25 +24,12 @@ import org.minnen.dmswr.viz.ChartConfig.ChartTiming;
 
 public class CompareVPW
 {
-  /**
-   * Rates based on the VPW calculator for a 75/25 stock/bond split retiring at age 65 with no SS or pension.
-   * 
-   * More information here: https://www.bogleheads.org/wiki/Variable_percentage_withdrawal
-   * 
-   * And the online spreadsheet is here: https://drive.google.com/open?id=1rzHAQxcAnfX9NVGLoCp9Kvv5W3OYCDdLbR6fGS-uAwE
-   */
-  public static final int[]   vpw_wr_stock75_age65;
-
   private static final int    retirementYears = 35;  // 65 through 99
   private static final int    lookbackYears   = 20;
   private static final int    percentStock    = 75;
   private static final double nestEgg         = 1e6; // retire with $1M
-  static {
-    vpw_wr_stock75_age65 = new int[] { 530, 540, 540, 550, 560, 570, 580, 590, 600, 620, 630, 640, 660, 680, 700, 720,
-        740, 770, 800, 840, 880, 920, 970, 1040, 1110, 1200, 1300, 1440, 1610, 1840, 2170, 2660, 3470, 5100, 10000 };
-  }
 
-  private static final int[]       vpwRates = vpw_wr_stock75_age65;
+  private static final int[]       vpwRates = VpwTable.get(percentStock, retirementYears);
 
   private static List<MonthlyInfo> bengenPath;
   private static List<MonthlyInfo> dmswrPath;
@@ -47,28 +38,8 @@ public class CompareVPW
   public static List<MonthlyInfo> runVPW(int retireYear, int percentStock, double nestEgg)
   {
     final int iRetire = SwrLib.indexForTime(Month.JANUARY, retireYear);
-    final long retireTime = SwrLib.time(iRetire);
-    final Inflation inflation = SwrLib.getInflationAdjustment();
-
     List<MonthlyInfo> trajectory = new ArrayList<>();
-    double balance = nestEgg;
-    for (int i = 0; i < vpwRates.length; ++i) {
-      final int iCurrent = SwrLib.indexForTime(Month.JANUARY, retireYear + i);
-      final int iNext = iCurrent + 12;
-
-      final double wr = vpwRates[i] / 10000.0;
-      final double income = balance * wr;
-      final double adjustedIncome = (inflation == Inflation.Real ? income
-          : income * SwrLib.inflation(iCurrent, iRetire));
-      final double startBalance = balance;
-      balance -= income;
-      balance *= SwrLib.growth(iCurrent, iNext, percentStock);
-
-      MonthlyInfo info = new MonthlyInfo(retireTime, SwrLib.time(iCurrent), vpwRates[i], i * 12 + 1,
-          adjustedIncome / 12.0, startBalance, balance, adjustedIncome);
-      trajectory.add(info);
-    }
-    MonthlyInfo.setFinalBalance(balance, trajectory);
+    VpwMethod.run(iRetire, percentStock, vpwRates, nestEgg, trajectory);
     return trajectory;
   }
 
@@ -207,6 +178,93 @@ public class CompareVPW
     Chart.saveChart(config);
   }
 
+  /**
+   * Compare VPW, DMSWR, and MinSWR (Bengen) for every retirement start month.
+   *
+   * Prints the distribution of income and final balance for each method and saves a graph of the (real) income across
+   * retirement start dates. VPW is summarized by its worst and average year; DMSWR and MinSWR have constant real income
+   * so their income is the initial salary.
+   */
+  public static void compareAcrossHistory() throws IOException
+  {
+    final double[] percentiles = new double[] { 0, 10, 50, 90, 100 };
+    final int iFirst = lookbackYears * 12; // first month with a DMSWR
+    final int iLast = SwrLib.lastIndex(retirementYears);
+
+    long startMS = System.currentTimeMillis();
+    VpwMethod.Results vpw = VpwMethod.evaluate(percentStock, vpwRates, nestEgg);
+    System.out.printf("VPW: %d retirements (%d ms)\n", vpw.size(), System.currentTimeMillis() - startMS);
+
+    final int bengenSWR = BengenTable.getSWR(retirementYears, percentStock);
+    List<MonthlyInfo> dmswrInfos = DmswrCache.findDMSWR(retirementYears, lookbackYears, percentStock,
+        NestEggCalculator.constant(nestEgg));
+
+    final int n = iLast - iFirst + 1;
+    double[] bengenIncome = new double[n];
+    double[] bengenBalance = new double[n];
+    double[] dmswrIncome = new double[n];
+    double[] dmswrBalance = new double[n];
+    Sequence seqVpwMin = new Sequence("VPW (worst year)");
+    Sequence seqVpwMean = new Sequence("VPW (average)");
+    Sequence seqDmswr = new Sequence("DMSWR");
+    Sequence seqBengen = new Sequence("MinSWR");
+    for (int i = iFirst; i <= iLast; ++i) {
+      final int j = i - iFirst;
+      final long time = SwrLib.time(i);
+      MonthlyInfo bengen = BengenMethod.runForDuration(i, retirementYears, bengenSWR / 100.0, percentStock, nestEgg,
+          null);
+      bengenIncome[j] = bengen.bengenSalary;
+      bengenBalance[j] = bengen.finalBalance;
+
+      MonthlyInfo dmswr = dmswrInfos.get(j);
+      assert dmswr.retireTime == time;
+      dmswrIncome[j] = dmswr.marwoodSalary;
+      dmswrBalance[j] = dmswr.finalBalance;
+
+      seqVpwMin.addData(vpw.minIncome[i], time);
+      seqVpwMean.addData(vpw.meanIncome[i], time);
+      seqDmswr.addData(dmswrIncome[j], time);
+      seqBengen.addData(bengenIncome[j], time);
+    }
+
+    double[] vpwMin = Arrays.copyOfRange(vpw.minIncome, iFirst, iLast + 1);
+    double[] vpwMean = Arrays.copyOfRange(vpw.meanIncome, iFirst, iLast + 1);
+    double[] vpwVolatility = Arrays.copyOfRange(vpw.incomeVolatility, iFirst, iLast + 1);
+    double[] vpwDrop = Arrays.copyOfRange(vpw.maxIncomeDrop, iFirst, iLast + 1);
+    double[] vpwBalance = Arrays.copyOfRange(vpw.finalBalance, iFirst, iLast + 1);
+
+    System.out.printf("Retirements: %d (%s -> %s), percentiles: %s\n", n, TimeLib.formatYM(SwrLib.time(iFirst)),
+        TimeLib.formatYM(SwrLib.time(iLast)), Arrays.toString(percentiles));
+    printPercentiles("VPW income (worst year)", vpwMin, percentiles);
+    printPercentiles("VPW income (average)", vpwMean, percentiles);
+    printPercentiles("VPW income volatility (%)", vpwVolatility, percentiles);
+    printPercentiles("VPW largest income drop (%)", vpwDrop, percentiles);
+    printPercentiles("VPW final balance", vpwBalance, percentiles);
+    printPercentiles("DMSWR income", dmswrIncome, percentiles);
+    printPercentiles("DMSWR final balance", dmswrBalance, percentiles);
+    printPercentiles("MinSWR income", bengenIncome, percentiles);
+    printPercentiles("MinSWR final balance", bengenBalance, percentiles);
+
+    String title = String.format("Income Comparison (%d years, %d/%d)", retirementYears, percentStock,
+        100 - percentStock);
+    ChartConfig config = Chart.saveLineChart(new File(DataIO.getOutputPath(), "compare-vpw-history.html"), title,
+        "100%", "800px", ChartScaling.LINEAR, ChartTiming.MONTHLY, seqVpwMean, seqVpwMin, seqDmswr, seqBengen);
+    config.setColors(new String[] { "#272", "#8c8", "#7cb5ec", "#434348" });
+    config.setAxisTitles("Retirement Date", "Annual Income");
+    config.setAnimation(false);
+    Chart.saveChart(config);
+  }
+
+  private static void printPercentiles(String name, double[] values, double[] percentiles)
+  {
+    double[] p = Library.percentiles(values, percentiles);
+    StringBuilder sb = new StringBuilder();
+    for (double x : p) {
+      sb.append(String.format(" %12.2f", x));
+    }
+    System.out.printf("%28s:%s\n", name, sb);
+  }
+
   public static void main(String[] args) throws IOException
   {
     SwrLib.setupWithDefaultFiles(Inflation.Real);
@@ -216,6 +274,8 @@ public class CompareVPW
     createComparisonGraphRate(retireYear);
     createComparisonGraphIncome(retireYear, Inflation.Real);
 
+    compareAcrossHistory();
+
     // for (int retireYear = 1900; retireYear <= 1985; retireYear += 5) {
     // System.out.printf("%d\n", retireYear);
     // calculatePaths(retireYear);
@@ -0,0 +1,292 @@
+package org.minnen.dmswr;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.minnen.dmswr.data.BengenTable;
+import org.minnen.dmswr.data.MonthlyInfo;
+import org.minnen.dmswr.strategy.BengenStrategy;
+import org.minnen.dmswr.strategy.SimulationDriver;
+import org.minnen.dmswr.strategy.WithdrawalStrategy;
+import org.minnen.dmswr.utils.AssetMatrix;
+import org.minnen.dmswr.utils.DataIO;
+import org.minnen.dmswr.utils.DrawdownStats;
+import org.minnen.dmswr.utils.Histogram;
+import org.minnen.dmswr.utils.SwrLib;
+import org.minnen.dmswr.utils.FinLib.Inflation;
+
+/**
+ * Drawdown risk of retirement strategies across all start months.
+ *
+ * Each retirement is reduced to drawdown statistics of the portfolio balance (see `DrawdownStats`) while it is
+ * simulated, so no trajectories are built. Start months run in parallel and the statistics for all start months are
+ * aggregated in histograms. Strategies with the same withdrawal rate can then be ranked by how deep and how long their
+ * balances fall below prior peaks.
+ */
+public class DrawdownAnalysis
+{
+  /**
+   * Runs one retirement and fills the drawdown statistics without building a trajectory (e.g.
+   * `BucketMethod.drawdown()`). Must be thread-safe since start months run in parallel.
+   */
+  public interface Simulator
+  {
+    void run(int iStart, int iEnd, DrawdownStats stats);
+  }
+
+  /** Statistics for each start month in primitive arrays so parallel tasks don't share histograms. */
+  private static class StartMonthStats
+  {
+    final double[] maxDrawdown;
+    final double[] ulcer;
+    final int[]    underwater;
+    final int[]    recovery;
+
+    StartMonthStats(int n)
+    {
+      maxDrawdown = new double[n];
+      ulcer = new double[n];
+      underwater = new int[n];
+      recovery = new int[n];
+    }
+
+    void set(DrawdownStats stats, int j)
+    {
+      maxDrawdown[j] = stats.maxDrawdown();
+      ulcer[j] = stats.ulcerIndex();
+      underwater[j] = stats.longestUnderwater();
+      recovery[j] = stats.recoveryMonths();
+    }
+
+    Summary summarize(String name, int retirementYears)
+    {
+      Summary summary = new Summary(name, retirementYears);
+      for (int j = 0; j < maxDrawdown.length; ++j) {
+        summary.add(maxDrawdown[j], underwater[j], recovery[j], ulcer[j]);
+      }
+      return summary;
+    }
+  }
+
+  /** Histograms of drawdown statistics across retirement start months. */
+  public static class Summary
+  {
+    public final String    name;
+    public final int       retirementYears;
+
+    /** Max drawdown (non-positive percent) of each retirement. */
+    public final Histogram maxDrawdown;
+
+    /** Longest underwater period in months. */
+    public final Histogram longestUnderwater;
+
+    /** Months to recover from the max drawdown (only for retirements that recovered). */
+    public final Histogram recoveryMonths;
+
+    /** Ulcer index (RMS drawdown in percent). */
+    public final Histogram ulcerIndex;
+
+    /** Number of retirements that never recovered from the max drawdown. */
+    public int             nUnrecovered;
+
+    public Summary(String name, int retirementYears)
+    {
+      final int nMonths = retirementYears * 12;
+      this.name = name;
+      this.retirementYears = retirementYears;
+      this.maxDrawdown = new Histogram(-100.0, 0.0, 200);
+      this.longestUnderwater = new Histogram(0, nMonths + 1, nMonths + 1);
+      this.recoveryMonths = new Histogram(0, nMonths + 1, nMonths + 1);
+      this.ulcerIndex = new Histogram(0.0, 100.0, 200);
+    }
+
+    public void add(DrawdownStats stats)
+    {
+      add(stats.maxDrawdown(), stats.longestUnderwater(), stats.recoveryMonths(), stats.ulcerIndex());
+    }
+
+    public void add(double maxDrawdown, int longestUnderwater, int recoveryMonths, double ulcerIndex)
+    {
+      this.maxDrawdown.add(maxDrawdown);
+      this.longestUnderwater.add(longestUnderwater);
+      this.ulcerIndex.add(ulcerIndex);
+      if (recoveryMonths >= 0) {
+        this.recoveryMonths.add(recoveryMonths);
+      } else if (maxDrawdown < 0.0) {
+        ++nUnrecovered;
+      }
+    }
+
+    /** @return number of retirements in this summary. */
+    public long size()
+    {
+      return maxDrawdown.count();
+    }
+
+    @Override
+    public String toString()
+    {
+      return String.format(
+          "%-24s n=%d  maxDD: mean=%.1f%% p5=%.1f%% worst=%.1f%%  underwater: mean=%.1f max=%.0f  "
+              + "recovery: mean=%.1f unrecovered=%d  ulcer: mean=%.2f p95=%.2f",
+          name, size(), maxDrawdown.mean(), maxDrawdown.percentile(5), maxDrawdown.min(), longestUnderwater.mean(),
+          longestUnderwater.max(), recoveryMonths.mean(), nUnrecovered, ulcerIndex.mean(), ulcerIndex.percentile(95));
+    }
+  }
+
+  /**
+   * Calculate drawdown statistics of the balance in a trajectory from any simulation engine.
+   *
+   * The series starts with the initial balance and then holds the balance at the end of each month (zero after a
+   * failure).
+   *
+   * @param trajectory monthly info for one retirement
+   * @param stats statistics object to reset and fill
+   * @return `stats`
+   */
+  public static DrawdownStats analyze(List<MonthlyInfo> trajectory, DrawdownStats stats)
+  {
+    stats.reset();
+    if (trajectory.isEmpty()) return stats;
+    stats.add(trajectory.get(0).startBalance);
+    for (int i = 0; i < trajectory.size(); ++i) {
+      stats.add(Math.max(trajectory.get(i).endBalance, 0.0));
+    }
+    return stats;
+  }
+
+  /**
+   * Calculate drawdown statistics for a Bengen retirement without building a trajectory.
+   *
+   * The balance follows `BengenMethod.run()` exactly.
+   *
+   * @param iStart index of retirement month (first withdrawal)
+   * @param iEnd last index of simulation period (exclusive)
+   * @param withdrawalRate annual withdrawal rate as a percent (3.5 = 3.5%)
+   * @param growth monthly growth multipliers (see `SwrLib.getMonthlyGrowth()`)
+   * @param stats statistics object to reset and fill
+   * @return `stats`
+   */
+  public static DrawdownStats analyzeBengen(int iStart, int iEnd, double withdrawalRate, double[] growth,
+      DrawdownStats stats)
+  {
+    final boolean nominal = (SwrLib.getInflationAdjustment() == Inflation.Nominal);
+    double balance = 1e6;
+    double monthlyWithdrawal = balance * withdrawalRate / 1200.0;
+    stats.reset();
+    stats.add(balance);
+    for (int i = iStart; i < iEnd; ++i) {
+      final boolean failed = (monthlyWithdrawal >= balance);
+      balance -= monthlyWithdrawal;
+      if (balance > 0) balance *= growth[i];
+      stats.add(Math.max(balance, 0.0));
+      if (failed) break;
+      if (nominal) monthlyWithdrawal *= SwrLib.inflation(i);
+    }
+    return stats;
+  }
+
+  /**
+   * Summarize drawdowns of Bengen retirements for every start month.
+   *
+   * @param retirementYears duration of each retirement
+   * @param withdrawalRate annual withdrawal rate as a percent (3.5 = 3.5%)
+   * @param percentStock percent stock (vs. bonds) held in the portfolio
+   * @return histograms across all start months with complete retirements
+   */
+  public static Summary summarizeBengen(int retirementYears, double withdrawalRate, int percentStock)
+  {
+    final double[] growth = SwrLib.getMonthlyGrowth(percentStock);
+    final int nMonths = retirementYears * 12;
+    final int nStarts = SwrLib.lastIndex(retirementYears) + 1;
+    final StartMonthStats all = new StartMonthStats(nStarts);
+    IntStream.range(0, nStarts).parallel().forEach(iStart -> {
+      all.set(analyzeBengen(iStart, iStart + nMonths, withdrawalRate, growth, new DrawdownStats()), iStart);
+    });
+    return all.summarize(String.format("Bengen (%d/%d)", percentStock, 100 - percentStock), retirementYears);
+  }
+
+  /**
+   * Summarize drawdowns for any simulation engine (in parallel over start months).
+   *
+   * @param name name of the strategy
+   * @param retirementYears duration of each retirement
+   * @param iFirst first start month (e.g. the start of the T-bill data for `BucketMethod`)
+   * @param iLast last start month (inclusive)
+   * @param simulator runs one retirement
+   * @return histograms across all start months in [iFirst, iLast]
+   */
+  public static Summary summarize(String name, int retirementYears, int iFirst, int iLast, Simulator simulator)
+  {
+    final int nMonths = retirementYears * 12;
+    final int n = Math.max(iLast - iFirst + 1, 0);
+    final StartMonthStats all = new StartMonthStats(n);
+    IntStream.range(0, n).parallel().forEach(j -> {
+      DrawdownStats stats = new DrawdownStats();
+      simulator.run(iFirst + j, iFirst + j + nMonths, stats);
+      all.set(stats, j);
+    });
+    return all.summarize(name, retirementYears);
+  }
+
+  /**
+   * Summarize drawdowns for a withdrawal strategy run by `SimulationDriver` (balances are in start-date dollars).
+   *
+   * @param name name of the strategy
+   * @param driver simulation driver (defines the asset allocation and retirement duration)
+   * @param strategy withdrawal strategy to simulate
+   * @param iFirst first start month
+   * @param iLast last start month (inclusive)
+   * @return histograms across all start months in [iFirst, iLast]
+   */
+  public static Summary summarize(String name, SimulationDriver driver, WithdrawalStrategy strategy, int iFirst,
+      int iLast)
+  {
+    final StartMonthStats all = new StartMonthStats(Math.max(iLast - iFirst + 1, 0));
+    driver.run(strategy, iFirst, iLast, all::set);
+    return all.summarize(name, driver.retirementYears);
+  }
+
+  /** Print summaries ranked by mean ulcer index (lowest risk first). */
+  public static void printRanking(List<Summary> summaries)
+  {
+    List<Summary> ranked = new ArrayList<>(summaries);
+    ranked.sort(Comparator.comparingDouble(s -> s.ulcerIndex.mean()));
+    for (int i = 0; i < ranked.size(); ++i) {
+      System.out.printf("%2d) %s\n", i + 1, ranked.get(i));
+    }
+  }
+
+  public static void main(String[] args) throws IOException
+  {
+    SwrLib.setup(SwrLib.getDefaultBengenFile(), null, Inflation.Real); // DMSWR data not needed
+    SwrLib.addTBills(new File(DataIO.getFinancePath(), "TB3MS.csv"));
+
+    final int retirementYears = 30;
+    final int percentStock = 75;
+    final double wr = BengenTable.getSWR(retirementYears, percentStock) / 100.0;
+    System.out.printf("Drawdowns for %d-year retirements, WR=%.2f%%\n", retirementYears, wr);
+
+    // Limit all strategies to the T-bill data so the histograms cover the same history.
+    final AssetMatrix bills = SwrLib.getAssetMatrix(SwrLib.ASSET_TBILLS);
+    final int iFirst = bills.iFirst;
+    final int iLast = Math.min(SwrLib.lastIndex(retirementYears), bills.iEnd - retirementYears * 12);
+    List<Summary> summaries = new ArrayList<>();
+    for (int pct : new int[] { 50, 60, 75, 90, 100 }) {
+      summaries.add(summarize(String.format("Bengen (%d/%d)", pct, 100 - pct),
+          new SimulationDriver(pct, retirementYears, 1e6), new BengenStrategy(wr), iFirst, iLast));
+    }
+    for (int bucketYears : new int[] { 2, 5 }) {
+      summaries.add(summarize(String.format("Bucket (%d years)", bucketYears), retirementYears, iFirst, iLast,
+          (iStart, iEnd, stats) -> BucketMethod.drawdown(iStart, iEnd, wr, percentStock, bucketYears,
+              BucketMethod.defaultRefillDrawdown, 1e6, stats)));
+    }
+    summaries.add(summarize("Ladder (TIPS)", retirementYears, iFirst, iLast,
+        (iStart, iEnd, stats) -> LadderMethod.drawdown(iStart, iEnd, wr, LadderMethod.Kind.TIPS, 1e6, stats)));
+    printRanking(summaries);
+  }
+}
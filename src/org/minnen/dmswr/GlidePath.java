@@ -0,0 +1,212 @@
+package org.minnen.dmswr;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import org.minnen.dmswr.utils.SwrLib;
+
+/**
+ * Asset allocation that changes over the course of a retirement (a "glide path").
+ *
+ * The schedule holds the percent stock for each month of retirement; months past the end of the schedule use the last
+ * value. A glide path can also be delayed, which holds the initial allocation for a number of months before the
+ * schedule starts. Delayed paths model DMSWR virtual retirees that follow the same calendar allocation as the real
+ * retiree.
+ *
+ * Growth multipliers for each (start month, month of retirement) pair are precomputed once per schedule and shared by
+ * all delayed copies, so simulation loops only need a single array read per month.
+ */
+public class GlidePath
+{
+  /** Short description used in reports and cache keys. */
+  public final String          name;
+
+  /** Months to hold the initial allocation before the schedule starts. */
+  public final int             delayMonths;
+
+  /** Percent stock for each month of the schedule (70 = 70%). */
+  private final int[]          schedule;
+
+  /** Precomputed growth multipliers shared by all copies of this schedule. */
+  private final GrowthMatrix   matrix;
+
+  /** Growth multipliers indexed by `iStart * horizon + month` for every start month. */
+  private static class GrowthMatrix
+  {
+    final int[]       schedule;
+    volatile double[] mul;
+    volatile double[] source; // data used to build `mul` (detects new data after SwrLib.setup())
+
+    GrowthMatrix(int[] schedule)
+    {
+      this.schedule = schedule;
+    }
+
+    /** @return multipliers covering at least `months` months of each retirement. */
+    double[] get(int months)
+    {
+      final double[] current = SwrLib.getMonthlyGrowth(schedule[0]);
+      final boolean isCurrent = (source == current); // read `source` first since it's written after `mul`
+      double[] result = mul;
+      if (isCurrent && result != null && result.length >= (long) months * SwrLib.length()) {
+        return result; // fast path without locking
+      }
+      synchronized (this) {
+        result = mul;
+        if (source != current || result == null || result.length < (long) months * SwrLib.length()) {
+          final int horizon = Math.max(schedule.length, (months + 11) / 12 * 12);
+          result = build(horizon);
+          mul = result;
+          source = current;
+        }
+        return result;
+      }
+    }
+
+    private double[] build(int horizon)
+    {
+      final int n = SwrLib.length();
+      final double[][] rows = new double[horizon][];
+      for (int m = 0; m < horizon; ++m) {
+        rows[m] = SwrLib.getMonthlyGrowth(schedule[Math.min(m, schedule.length - 1)]);
+      }
+      final double[] mul = new double[n * horizon];
+      IntStream.range(0, n).parallel().forEach(iStart -> {
+        final int base = iStart * horizon;
+        final int nMonths = Math.min(horizon, n - iStart);
+        for (int m = 0; m < nMonths; ++m) {
+          mul[base + m] = rows[m][iStart + m];
+        }
+      });
+      return mul;
+    }
+  }
+
+  private GlidePath(String name, int[] schedule, int delayMonths, GrowthMatrix matrix)
+  {
+    assert schedule.length > 0 && delayMonths >= 0;
+    this.name = name;
+    this.schedule = schedule;
+    this.delayMonths = delayMonths;
+    this.matrix = matrix;
+  }
+
+  /**
+   * Create a glide path from a yearly schedule.
+   *
+   * @param name short description of the glide path
+   * @param yearlyPercentStock percent stock for each year of retirement (70 = 70%)
+   */
+  public static GlidePath yearly(String name, int... yearlyPercentStock)
+  {
+    if (yearlyPercentStock.length == 0) {
+      throw new IllegalArgumentException("Glide path needs at least one year");
+    }
+    int[] schedule = new int[yearlyPercentStock.length * 12];
+    for (int year = 0; year < yearlyPercentStock.length; ++year) {
+      final int percentStock = yearlyPercentStock[year];
+      if (percentStock < 0 || percentStock > 100) {
+        throw new IllegalArgumentException(String.format("Invalid stock percent for year %d: %d", year, percentStock));
+      }
+      Arrays.fill(schedule, year * 12, (year + 1) * 12, percentStock);
+    }
+    return new GlidePath(name, schedule, 0, new GrowthMatrix(schedule));
+  }
+
+  /** @return glide path that holds the same allocation for the entire retirement. */
+  public static GlidePath constant(int percentStock)
+  {
+    return yearly(String.format("%d/%d", percentStock, 100 - percentStock), percentStock);
+  }
+
+  /**
+   * Create a glide path that changes linearly (once per year) from `startPercent` to `endPercent`.
+   *
+   * @param startPercent percent stock in the first year of retirement
+   * @param endPercent percent stock in year `years` and afterwards
+   * @param years number of years in the glide path
+   */
+  public static GlidePath linear(int startPercent, int endPercent, int years)
+  {
+    assert years > 0;
+    int[] yearly = new int[years];
+    for (int year = 0; year < years; ++year) {
+      final double alpha = (years == 1 ? 1.0 : (double) year / (years - 1));
+      yearly[year] = (int) Math.round(startPercent + alpha * (endPercent - startPercent));
+    }
+    return yearly(String.format("%d->%d (%d years)", startPercent, endPercent, years), yearly);
+  }
+
+  /** @return copy of this glide path that holds the initial allocation for `months` more months. */
+  public GlidePath delay(int months)
+  {
+    if (months == 0) return this;
+    return new GlidePath(name, schedule, delayMonths + months, matrix);
+  }
+
+  /** @return percent stock for the given month of retirement (0 = first month). */
+  public int percentStock(int month)
+  {
+    final int m = Math.max(month - delayMonths, 0);
+    return schedule[Math.min(m, schedule.length - 1)];
+  }
+
+  /** @return percent stock at the start of retirement. */
+  public int getInitialPercentStock()
+  {
+    return schedule[0];
+  }
+
+  /** @return number of months in the schedule (excluding any delay). */
+  public int getScheduleMonths()
+  {
+    return schedule.length;
+  }
+
+  /**
+   * Return growth multipliers for simulations with this schedule.
+   *
+   * The growth for month `m` of the schedule for a retirement whose schedule starts at index `s` is `mul[s * horizon +
+   * m]` where `horizon = mul.length / SwrLib.length()`. Callers must add the delay themselves (see `growth()`). The
+   * array is shared and must not be modified.
+   *
+   * @param months number of schedule months needed per retirement
+   */
+  public double[] getMultipliers(int months)
+  {
+    return matrix.get(months);
+  }
+
+  /** @return growth multiplier for the given retirement month of a retirement starting at index `iStart`. */
+  public double growth(int iStart, int month)
+  {
+    return SwrLib.getMonthlyGrowth(percentStock(month))[iStart + month];
+  }
+
+  /** @return key that identifies the schedule and delay of this glide path. */
+  public String getKey()
+  {
+    return String.format("%s|%d|%d", name, Arrays.hashCode(schedule), delayMonths);
+  }
+
+  @Override
+  public String toString()
+  {
+    return delayMonths == 0 ? name : String.format("%s [delay=%d]", name, delayMonths);
+  }
+
+  @Override
+  public boolean equals(Object obj)
+  {
+    if (this == obj) return true;
+    if (!(obj instanceof GlidePath)) return false;
+    GlidePath other = (GlidePath) obj;
+    return delayMonths == other.delayMonths && Arrays.equals(schedule, other.schedule);
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return Arrays.hashCode(schedule) * 31 + delayMonths;
+  }
+}
@@ -0,0 +1,352 @@
+package org.minnen.dmswr;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.minnen.dmswr.data.BengenTable;
+import org.minnen.dmswr.data.MonthlyInfo;
+import org.minnen.dmswr.utils.DrawdownStats;
+import org.minnen.dmswr.utils.FinLib.Inflation;
+import org.minnen.dmswr.utils.Metrics;
+import org.minnen.dmswr.utils.SwrLib;
+import org.minnen.dmswr.utils.TimeLib;
+
+/**
+ * Fund retirement withdrawals with a rolling bond ladder.
+ *
+ * A ladder holds one zero-coupon rung for each of the next (up to) ten years of monthly withdrawals. At the start of
+ * retirement, the retiree buys rungs for the first ten years and puts the rest of the nest egg in a reserve invested in
+ * 10-year notes (the SwrLib bond returns). Each month, the maturing rung pays the withdrawal and the reserve buys the
+ * rung that extends the ladder to ten years. The ladder is limited to ten years because GS10 is the only yield in the
+ * Shiller data; rungs are priced with a flat yield curve at the current GS10 yield.
+ *
+ * Two kinds of rungs are supported. TIPS rungs pay a fixed real amount. Real yields aren't available historically so
+ * they're approximated by the GS10 yield less trailing 12-month inflation. Treasury rungs pay a fixed nominal amount
+ * chosen so that the real payout matches the withdrawal if inflation stays at its trailing 12-month rate. Both cost the
+ * same when purchased so the sustainable withdrawal rate is the same; they differ in the realized real income when
+ * inflation surprises.
+ *
+ * All amounts are in real dollars relative to the start of retirement, independent of the SwrLib inflation mode.
+ */
+public class LadderMethod
+{
+  public enum Kind {
+    TIPS, Treasury
+  }
+
+  /** Maximum months until a rung matures (rungs are bought up to ten years ahead). */
+  public static final int maxRungMonths = 120;
+
+  /** Rung prices and inflation expectations derived from the market data loaded in SwrLib. */
+  private static class Tables
+  {
+    /** Real price of $1 paid `k` months later for a rung bought at index `i` is `discount[i * maxRungMonths + k]`. */
+    final double[] discount;
+
+    /** Expected annual inflation (as a multiplier) at each index, i.e. trailing 12-month inflation. */
+    final double[] expectedInflation;
+
+    /** Market data used to build the tables. */
+    final String   fingerprint;
+
+    Tables(String fingerprint)
+    {
+      final int n = SwrLib.length();
+      this.fingerprint = fingerprint;
+      this.expectedInflation = new double[n];
+      this.discount = new double[n * maxRungMonths];
+      for (int i = 0; i < n; ++i) {
+        final int nMonths = Math.min(i, 12);
+        expectedInflation[i] = nMonths == 0 ? 1.0 : Math.pow(SwrLib.inflation(i - nMonths, i), 12.0 / nMonths);
+      }
+      IntStream.range(0, n).parallel().forEach(i -> {
+        final double realMul = (1.0 + SwrLib.bondYield(i) / 100.0) / expectedInflation[i];
+        final int base = i * maxRungMonths;
+        for (int k = 0; k < maxRungMonths; ++k) {
+          discount[base + k] = Math.pow(realMul, -k / 12.0);
+        }
+      });
+    }
+  }
+
+  private static volatile Tables tables;
+
+  /** @return rung tables for the current market data (rebuilt after `SwrLib.setup()` loads different data). */
+  private static Tables getTables()
+  {
+    final String fingerprint = SwrLib.getDataFingerprint();
+    Tables result = tables;
+    if (result == null || !result.fingerprint.equals(fingerprint)) {
+      synchronized (LadderMethod.class) {
+        result = tables;
+        if (result == null || !result.fingerprint.equals(fingerprint)) {
+          result = new Tables(fingerprint);
+          tables = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /** @return real growth of the reserve (10-year notes) during month `i`. */
+  private static double reserveGrowth(int i, Inflation inflation)
+  {
+    final double growth = SwrLib.growth(i, 0);
+    return inflation == Inflation.Nominal ? growth / SwrLib.inflation(i) : growth;
+  }
+
+  /**
+   * Find the largest withdrawal rate that a ladder can fund over [iStart, iEnd).
+   *
+   * The reserve after each purchase is linear in the withdrawal amount so the maximum is found in closed form with a
+   * single pass over the retirement instead of a search.
+   *
+   * @param iStart index of retirement month (first withdrawal)
+   * @param iEnd last index of simulation period (exclusive)
+   * @return largest sustainable withdrawal rate in basis points (325 = 3.25%)
+   */
+  public static int findLadderRate(int iStart, int iEnd)
+  {
+    return SwrLib.percentToBasisPoints(findMonthlyIncome(iStart, iEnd, getTables()) * 1200.0);
+  }
+
+  /** @return largest real monthly income (per $1 of nest egg) that a ladder can fund over [iStart, iEnd). */
+  private static double findMonthlyIncome(int iStart, int iEnd, Tables tables)
+  {
+    assert iStart >= 0 && iEnd > iStart && iEnd <= SwrLib.length();
+    final int nMonths = iEnd - iStart;
+    final int nRungs = Math.min(maxRungMonths, nMonths);
+    final Inflation inflation = SwrLib.getInflationAdjustment();
+    final double[] discount = tables.discount;
+
+    // Reserve after the purchases in month m is a - w * b for monthly income w.
+    double a = 1.0;
+    double b = 0.0;
+    int base = iStart * maxRungMonths;
+    for (int k = 0; k < nRungs; ++k) {
+      b += discount[base + k];
+    }
+    double income = a / b;
+    for (int m = 1; m + nRungs <= nMonths; ++m) {
+      final double growth = reserveGrowth(iStart + m - 1, inflation);
+      a *= growth;
+      b *= growth;
+      base += maxRungMonths;
+      b += discount[base + nRungs - 1];
+      income = Math.min(income, a / b);
+    }
+    return income;
+  }
+
+  /**
+   * Calculate the ladder withdrawal rate for every start month (342 => 3.42%).
+   *
+   * @param retirementYears length of retirement in years
+   * @return rate for each start month with a full retirement period (index = SwrLib index)
+   */
+  public static int[] calcLadderRateAcrossTime(int retirementYears)
+  {
+    final int retirementMonths = retirementYears * 12;
+    final Tables tables = getTables();
+    int[] rates = new int[Math.max(SwrLib.lastIndex(retirementYears) + 1, 0)];
+    IntStream.range(0, rates.length).parallel().forEach(i -> {
+      rates[i] = SwrLib.percentToBasisPoints(findMonthlyIncome(i, i + retirementMonths, tables) * 1200.0);
+    });
+    return rates;
+  }
+
+  /**
+   * Simulate a retirement funded by a rolling bond ladder.
+   *
+   * Rungs are stored in primitive ring buffers indexed by maturity month so a simulation allocates a few arrays
+   * regardless of the number of rungs. The balance of each month is the reserve plus the market value of all rungs at
+   * the current real yield. If the reserve can't pay for a rung, it buys a partial rung and the retirement fails when
+   * that rung matures; the failing month reports the rung's payout as the starting balance.
+   *
+   * @param iStart index of retirement month (first withdrawal)
+   * @param iEnd last index of simulation period (exclusive)
+   * @param withdrawalRate annual withdrawal rate as a percent (3.5 = 3.5%)
+   * @param kind type of bonds in the ladder
+   * @param nestEgg portfolio balance at start of retirement
+   * @param trajectory if non-null, will be filled with monthly info objects (optional)
+   * @return info for the final month: either the last month of retirement or the failure month
+   */
+  public static MonthlyInfo run(int iStart, int iEnd, double withdrawalRate, Kind kind, double nestEgg,
+      List<MonthlyInfo> trajectory)
+  {
+    return simulate(iStart, iEnd, withdrawalRate, kind, nestEgg, trajectory, null);
+  }
+
+  /**
+   * Calculate drawdown statistics of the ladder balance without building a trajectory.
+   *
+   * @param iStart index of retirement month (first withdrawal)
+   * @param iEnd last index of simulation period (exclusive)
+   * @param withdrawalRate annual withdrawal rate as a percent (3.5 = 3.5%)
+   * @param kind type of bonds in the ladder
+   * @param nestEgg portfolio balance at start of retirement
+   * @param stats statistics object to reset and fill
+   * @return `stats`
+   */
+  public static DrawdownStats drawdown(int iStart, int iEnd, double withdrawalRate, Kind kind, double nestEgg,
+      DrawdownStats stats)
+  {
+    stats.reset();
+    simulate(iStart, iEnd, withdrawalRate, kind, nestEgg, null, stats);
+    return stats;
+  }
+
+  /**
+   * Simulate a retirement; see `run()`.
+   *
+   * Monthly info objects are only created for the trajectory and the final month so `drawdown` can be filled without
+   * allocating per month (the balances match `DrawdownAnalysis.analyze()` of the trajectory).
+   */
+  private static MonthlyInfo simulate(int iStart, int iEnd, double withdrawalRate, Kind kind, double nestEgg,
+      List<MonthlyInfo> trajectory, DrawdownStats drawdown)
+  {
+    assert iStart >= 0 && iStart < SwrLib.length();
+    assert iEnd > iStart && iEnd <= SwrLib.length();
+    assert withdrawalRate > 0.0 : withdrawalRate;
+
+    final Tables tables = getTables();
+    final double[] discount = tables.discount;
+    final Inflation inflation = SwrLib.getInflationAdjustment();
+    final long retireTime = SwrLib.time(iStart);
+    final int swrBasisPoints = SwrLib.percentToBasisPoints(withdrawalRate);
+    final double monthlyWithdrawal = nestEgg * withdrawalRate / 1200.0;
+    final int nMonths = iEnd - iStart;
+    final int nRungs = Math.min(maxRungMonths, nMonths);
+
+    // Ring buffers indexed by (retirement month of maturity) % nRungs.
+    final double[] payout = new double[nRungs]; // real payout at maturity
+    final int[] purchaseIndex = new int[nRungs]; // SwrLib index when the rung was bought
+
+    // Buy the initial ladder.
+    double reserve = nestEgg;
+    for (int k = 0; k < nRungs; ++k) {
+      final double cost = monthlyWithdrawal * discount[iStart * maxRungMonths + k];
+      final double spend = Math.min(cost, Math.max(reserve, 0.0));
+      payout[k] = monthlyWithdrawal * spend / cost;
+      purchaseIndex[k] = iStart;
+      reserve -= spend;
+    }
+
+    if (trajectory != null) trajectory.clear();
+
+    MonthlyInfo info = null;
+    for (int m = 0; m < nMonths; ++m) {
+      final int i = iStart + m;
+      final int base = i * maxRungMonths;
+
+      // Extend the ladder with a rung that matures `nRungs - 1` months from now.
+      final int mBuy = m + nRungs - 1;
+      if (m > 0 && mBuy < nMonths) {
+        final double cost = monthlyWithdrawal * discount[base + nRungs - 1];
+        final double spend = Math.min(cost, reserve);
+        payout[mBuy % nRungs] = monthlyWithdrawal * spend / cost;
+        purchaseIndex[mBuy % nRungs] = i;
+        reserve -= spend;
+      }
+
+      // Value the ladder at the current real yield.
+      double rungValue = 0.0;
+      for (int k = 1; k < nRungs && m + k < nMonths; ++k) {
+        rungValue += payout[(m + k) % nRungs] * discount[base + k];
+      }
+
+      // Collect income from the maturing rung.
+      final int slot = m % nRungs;
+      double income = payout[slot];
+      final boolean shortfall = income < monthlyWithdrawal * (1.0 - 1e-9);
+      if (kind == Kind.Treasury) {
+        final int iBuy = purchaseIndex[slot];
+        income *= Math.pow(tables.expectedInflation[iBuy], (i - iBuy) / 12.0) / SwrLib.inflation(iBuy, i);
+      }
+
+      final double startBalance = shortfall ? payout[slot] : reserve + rungValue + payout[slot];
+      reserve *= reserveGrowth(i, inflation); // reserve grows during the rest of the month
+      final double endBalance = reserve + rungValue;
+      final double monthlyIncome = shortfall ? monthlyWithdrawal : income;
+      if (drawdown != null) {
+        if (m == 0) drawdown.add(startBalance);
+        drawdown.add(Math.max(endBalance, 0.0));
+      }
+      if (trajectory != null || shortfall || m == nMonths - 1) {
+        info = new MonthlyInfo(retireTime, SwrLib.time(i), swrBasisPoints, m + 1, monthlyIncome, startBalance,
+            endBalance, monthlyIncome * 12);
+        if (trajectory != null) trajectory.add(info);
+      }
+      if (shortfall) {
+        assert info.failed();
+        Metrics.simulated(m + 1);
+        return info;
+      }
+    }
+
+    if (trajectory != null) {
+      MonthlyInfo.setFinalBalance(reserve, trajectory);
+    } else {
+      info.finalBalance = reserve;
+    }
+    Metrics.simulated(iEnd - iStart);
+    return info;
+  }
+
+  /**
+   * Compare ladder-funded income with the Bengen SWR for each start month.
+   *
+   * @param retirementYears length of retirement in years
+   * @param percentStock percent stock for the Bengen portfolio
+   */
+  public static void compareWithBengen(int retirementYears, int percentStock)
+  {
+    final int retirementMonths = retirementYears * 12;
+    final int[] ladderRates = calcLadderRateAcrossTime(retirementYears);
+    final int n = ladderRates.length;
+    if (n == 0) return;
+
+    // Realized income for Treasury ladders funded at the TIPS rate.
+    final double[] worstTreasury = new double[n];
+    IntStream.range(0, n).parallel().forEach(i -> {
+      List<MonthlyInfo> trajectory = new ArrayList<>();
+      run(i, i + retirementMonths, ladderRates[i] / 100.0, Kind.Treasury, 1.0, trajectory);
+      final double target = ladderRates[i] / 100.0 / 1200.0; // monthly income per $1
+      worstTreasury[i] = trajectory.stream().mapToDouble(x -> x.monthlyIncome).min().getAsDouble() / target;
+    });
+
+    int nBetter = 0;
+    int bengenMin = Integer.MAX_VALUE;
+    for (int i = 0; i < n; ++i) {
+      final int bengen = BengenTable.get(SwrLib.time(i), retirementYears, percentStock).swr;
+      bengenMin = Math.min(bengenMin, bengen);
+      if (ladderRates[i] > bengen) ++nBetter;
+    }
+    int[] sorted = ladderRates.clone();
+    Arrays.sort(sorted);
+    final int iWorst = IntStream.range(0, n).reduce((a, b) -> ladderRates[a] <= ladderRates[b] ? a : b).getAsInt();
+    final double worstReal = Arrays.stream(worstTreasury).min().getAsDouble();
+
+    System.out.printf("%d years, %d/%d Bengen MinSWR: %.2f%%\n", retirementYears, percentStock, 100 - percentStock,
+        bengenMin / 100.0);
+    System.out.printf(" Ladder rate: min=%.2f%% [%s] median=%.2f%% max=%.2f%%\n", sorted[0] / 100.0,
+        TimeLib.formatYM(SwrLib.time(iWorst)), sorted[n / 2] / 100.0, sorted[n - 1] / 100.0);
+    System.out.printf(" Ladder beats Bengen SWR for %d / %d start months (%.1f%%)\n", nBetter, n, 100.0 * nBetter / n);
+    System.out.printf(" Worst real income from a Treasury ladder: %.1f%% of target\n", worstReal * 100.0);
+  }
+
+  public static void main(String[] args) throws IOException
+  {
+    SwrLib.setup(SwrLib.getDefaultBengenFile(), null, Inflation.Real); // DMSWR data not needed
+
+    final int percentStock = 75;
+    for (int retirementYears : new int[] { 20, 30, 40 }) {
+      long start = TimeLib.getTime();
+      compareWithBengen(retirementYears, percentStock);
+      System.out.printf(" (%s)\n", TimeLib.formatDuration(TimeLib.getTime() - start));
+    }
+  }
+}
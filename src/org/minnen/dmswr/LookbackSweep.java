@@ -0,0 +1,228 @@
+package org.minnen.dmswr;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.stream.IntStream;
+
+import org.minnen.dmswr.data.BengenTable;
+import org.minnen.dmswr.utils.CsvWriter;
+import org.minnen.dmswr.utils.DataIO;
+import org.minnen.dmswr.utils.Events;
+import org.minnen.dmswr.utils.Metrics;
+import org.minnen.dmswr.utils.Sequence;
+import org.minnen.dmswr.utils.SwrLib;
+import org.minnen.dmswr.utils.FinLib.Inflation;
+
+/**
+ * DMSWR for every lookback window in a single pass.
+ *
+ * For a fixed retirement month, the DMSWR with a lookback of `L` years is the max SWR over virtual retirements that
+ * started 0..12L months earlier (see `MarwoodMethod.findDMSWR()`). The SWR of each virtual retiree doesn't depend on
+ * `L`, so all lookbacks can be computed from one set of virtual retirements by keeping a running max over the lookback
+ * offset. Virtual retirees that start in the same month and have the same duration (i.e. the same lookback year) also
+ * share a single simulation.
+ *
+ * The result is a (lookback x retirement month) matrix with the same DMSWRs as running `findDMSWR()` once per
+ * lookback.
+ */
+public class LookbackSweep
+{
+  public final int      retirementYears;
+  public final int      maxLookbackYears;
+  public final int      percentStock;
+
+  /** dmswr[L][iRetire] = DMSWR (basis points) with an L-year lookback (0 if there isn't enough history). */
+  private final int[][] dmswr;
+
+  /** Months between the best virtual retirement and the real retirement (-1 if there isn't enough history). */
+  private final int[][] virtualMonths;
+
+  /**
+   * Calculate DMSWRs for all lookbacks in [0, maxLookbackYears] and every retirement month.
+   *
+   * @param retirementYears duration of retirement in years
+   * @param maxLookbackYears longest lookback window (`retirementYears + maxLookbackYears` must be in the Bengen table)
+   * @param percentStock percent stock (vs. bonds) to hold (70 = 70%)
+   */
+  public LookbackSweep(int retirementYears, int maxLookbackYears, int percentStock)
+  {
+    assert maxLookbackYears >= 0;
+    assert retirementYears + maxLookbackYears <= BengenTable.maxYears;
+    Events.DmswrSearch event = new Events.DmswrSearch();
+    event.begin();
+    try {
+      this.retirementYears = retirementYears;
+      this.maxLookbackYears = maxLookbackYears;
+      this.percentStock = percentStock;
+
+      final int n = SwrLib.length();
+      final int maxLookbackMonths = maxLookbackYears * 12;
+      final int[][] virtualSWRs = calcVirtualSWRs(retirementYears, maxLookbackYears, percentStock);
+
+      // Running max over the lookback offset; every 12 months completes the DMSWR for the next lookback.
+      dmswr = new int[maxLookbackYears + 1][n];
+      virtualMonths = new int[maxLookbackYears + 1][n];
+      IntStream.range(0, n).parallel().forEach(iRetire -> {
+        int best = 0;
+        int bestLookback = -1;
+        for (int iLookback = 0; iLookback <= Math.min(iRetire, maxLookbackMonths); ++iLookback) {
+          final int swr = virtualSWRs[iRetire][iLookback];
+          if (swr > best) { // ties keep the shorter lookback, same as `findDMSWR()`
+            best = swr;
+            bestLookback = iLookback;
+          }
+          if (iLookback % 12 == 0) {
+            dmswr[iLookback / 12][iRetire] = best;
+            virtualMonths[iLookback / 12][iRetire] = bestLookback;
+          }
+        }
+        for (int lookbackYears = iRetire / 12 + 1; lookbackYears <= maxLookbackYears; ++lookbackYears) {
+          virtualMonths[lookbackYears][iRetire] = -1;
+        }
+      });
+      event.completed = true;
+    } finally {
+      event.end();
+      if (event.shouldCommit()) {
+        event.method = "sweep";
+        event.years = retirementYears;
+        event.lookback = maxLookbackYears;
+        event.stock = percentStock;
+        event.rows = SwrLib.length();
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * Calculate the current withdrawal rate of every virtual retiree.
+   *
+   * A virtual retiree that started `iLookback` months before `iRetire` uses the Bengen SWR for `retirementYears` plus
+   * the lookback rounded up to whole years. All virtual retirees with the same start month and the same lookback year
+   * follow the same trajectory, so one simulation fills up to 12 entries.
+   *
+   * @return swr[iRetire][iLookback] = withdrawal rate (basis points) of the virtual retiree at `iRetire`
+   */
+  private static int[][] calcVirtualSWRs(int retirementYears, int maxLookbackYears, int percentStock)
+  {
+    final int n = SwrLib.length();
+    final int[][] swrs = new int[n][maxLookbackYears * 12 + 1];
+    final double[] growth = SwrLib.getMonthlyGrowth(percentStock);
+    final boolean nominal = (SwrLib.getInflationAdjustment() == Inflation.Nominal);
+    final double[] virtualRates = new double[maxLookbackYears + 1];
+    for (int lookbackYears = 0; lookbackYears <= maxLookbackYears; ++lookbackYears) {
+      virtualRates[lookbackYears] = BengenTable.getSWR(retirementYears + lookbackYears, percentStock) / 100.0;
+    }
+
+    // Each (iRetire, iLookback) entry has a unique virtual start so the parallel loop never writes the same entry.
+    IntStream.range(0, n).parallel().forEach(iVirtualStart -> {
+      for (int lookbackYears = 0; lookbackYears <= maxLookbackYears; ++lookbackYears) {
+        final int firstLookback = (lookbackYears == 0 ? 0 : lookbackYears * 12 - 11);
+        final int lastLookback = Math.min(lookbackYears * 12, n - 1 - iVirtualStart);
+        if (firstLookback > lastLookback) break;
+
+        // Same arithmetic as `BengenMethod.run()` so the rates match `findDMSWR()` exactly.
+        double balance = 1e6;
+        double monthlyWithdrawal = balance * virtualRates[lookbackYears] / 1200.0;
+        for (int iLookback = 0; iLookback <= lastLookback; ++iLookback) {
+          final int i = iVirtualStart + iLookback;
+          if (iLookback >= firstLookback) {
+            assert balance > monthlyWithdrawal; // virtual retirees are safe by construction
+            swrs[i][iLookback] = SwrLib.percentToBasisPoints(monthlyWithdrawal * 12.0 / balance * 100.0);
+          }
+          if (iLookback == lastLookback) break;
+          balance -= monthlyWithdrawal;
+          if (balance > 0) balance *= growth[i];
+          if (nominal) monthlyWithdrawal *= SwrLib.inflation(i);
+        }
+        Metrics.simulated(lastLookback + 1);
+      }
+    });
+    return swrs;
+  }
+
+  /** @return first retirement month with a full history for the given lookback. */
+  public int firstIndex(int lookbackYears)
+  {
+    return lookbackYears * 12;
+  }
+
+  /** @return DMSWR (basis points) for the given lookback and retirement month. */
+  public int get(int lookbackYears, int iRetire)
+  {
+    assert iRetire >= firstIndex(lookbackYears);
+    return dmswr[lookbackYears][iRetire];
+  }
+
+  /** @return months between the best virtual retirement and the real retirement. */
+  public int getVirtualMonths(int lookbackYears, int iRetire)
+  {
+    assert iRetire >= firstIndex(lookbackYears);
+    return virtualMonths[lookbackYears][iRetire];
+  }
+
+  /** @return DMSWR (basis points) for each retirement month with a full history for the given lookback. */
+  public Sequence getAcrossTime(int lookbackYears)
+  {
+    Sequence seq = new Sequence(
+        String.format("Marwood (%d, %d, %d)", retirementYears, lookbackYears, percentStock));
+    for (int i = firstIndex(lookbackYears); i < SwrLib.length(); ++i) {
+      seq.addData(dmswr[lookbackYears][i], SwrLib.time(i));
+    }
+    return seq;
+  }
+
+  /** @return mean DMSWR (basis points) for the given lookback. */
+  public double mean(int lookbackYears)
+  {
+    final int iFirst = firstIndex(lookbackYears);
+    return IntStream.range(iFirst, SwrLib.length()).map(i -> dmswr[lookbackYears][i]).average().orElse(Double.NaN);
+  }
+
+  /** Write the matrix with one row per retirement month and one column per lookback (empty without full history). */
+  public void writeCSV(File file) throws IOException
+  {
+    try (CsvWriter writer = new CsvWriter(file)) {
+      writer.writeln(String.format("# DMSWR (basis points) for %d-year retirements, %d%% stock", retirementYears,
+          percentStock));
+      writer.add("Month");
+      for (int lookbackYears = 0; lookbackYears <= maxLookbackYears; ++lookbackYears) {
+        writer.add("Lookback" + lookbackYears);
+      }
+      writer.endRow();
+      for (int i = 0; i < SwrLib.length(); ++i) {
+        writer.addYM(SwrLib.time(i));
+        for (int lookbackYears = 0; lookbackYears <= maxLookbackYears; ++lookbackYears) {
+          if (i < firstIndex(lookbackYears)) {
+            writer.addEmpty();
+          } else {
+            writer.add(dmswr[lookbackYears][i]);
+          }
+        }
+        writer.endRow();
+      }
+    }
+  }
+
+  public static void main(String[] args) throws IOException
+  {
+    SwrLib.setup(SwrLib.getDefaultBengenFile(), null, Inflation.Real); // DMSWR data not needed
+
+    final int retirementYears = 30;
+    final int maxLookbackYears = 30;
+    final int percentStock = 75;
+    final long tStart = System.currentTimeMillis();
+    LookbackSweep sweep = new LookbackSweep(retirementYears, maxLookbackYears, percentStock);
+    System.out.printf("DMSWR for %d lookbacks (%d months): %dms\n", maxLookbackYears + 1, SwrLib.length(),
+        System.currentTimeMillis() - tStart);
+
+    final int bengenSWR = BengenTable.getSWR(retirementYears, percentStock);
+    for (int lookbackYears = 0; lookbackYears <= maxLookbackYears; ++lookbackYears) {
+      System.out.printf("Lookback %2d: mean DMSWR=%.2f%%  min=%.2f%%  (Bengen=%.2f%%)\n", lookbackYears,
+          sweep.mean(lookbackYears) / 100.0, sweep.getAcrossTime(lookbackYears).getMin().get(0) / 100.0,
+          bengenSWR / 100.0);
+    }
+    sweep.writeCSV(new File(DataIO.getOutputPath(), String.format("dmswr-lookbacks-stock%d-years%d.csv",
+        percentStock, retirementYears)));
+  }
+}
@@ -5,11 +5,13 @@ import java.time.Month;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.minnen.dmswr.utils.Events;
 import org.minnen.dmswr.utils.FeatureVec;
 import org.minnen.dmswr.utils.Sequence;
 import org.minnen.dmswr.utils.SwrLib;
 import org.minnen.dmswr.data.BengenEntry;
 import org.minnen.dmswr.data.BengenTable;
+import org.minnen.dmswr.data.GlidePathTable;
 import org.minnen.dmswr.data.MarwoodEntry;
 import org.minnen.dmswr.data.MarwoodTable;
 import org.minnen.dmswr.data.MonthlyInfo;
@@ -21,7 +23,7 @@ public class MarwoodMethod
 {
   // TODO Generate MinSWR for retirements for all monthly durations (not just yearly).
   // TODO Enforce 20% cap on DMSWR and Bengen SWR? If not enforced, salaries and final balance could be wrong.
-  // TODO allow for changing asset allocation over time? need to model taxes in this case?
+  // TODO model taxes for glide paths (changing asset allocation over time)?
   // TODO final balance with re-retire or without? Currently, retireTime==currentTime is without, others are with.
 
   /**
@@ -54,77 +56,203 @@ public class MarwoodMethod
   public static List<MonthlyInfo> findDMSWR(int iStartSim, int iEndSim, int retirementYears, int lookbackYears,
       int percentStock, NestEggCalculator nestEggCalculator) throws IOException
   {
-    final int bengenSWR = BengenTable.getSWR(retirementYears, percentStock);
+    final int[] virtualSWRs = new int[lookbackYears * 12 + 1];
+    for (int iLookback = 0; iLookback < virtualSWRs.length; ++iLookback) {
+      final int virtualYears = retirementYears + (int) Math.ceil(iLookback / 12.0 - 1e-5);
+      virtualSWRs[iLookback] = BengenTable.getSWR(virtualYears, percentStock);
+    }
+
+    Allocation allocation = new Allocation()
+    {
+      @Override
+      public MonthlyInfo run(int iLookback, int iStart, int iEnd, double withdrawalRate, double nestEgg,
+          List<MonthlyInfo> trajectory)
+      {
+        return BengenMethod.run(iStart, iEnd, withdrawalRate, percentStock, nestEgg, trajectory);
+      }
+
+      @Override
+      public int getCrystalSWR(int iRetire)
+      {
+        return BengenTable.get(SwrLib.time(iRetire), retirementYears, percentStock).swr;
+      }
+
+      @Override
+      public double growth(int iRetire)
+      {
+        return SwrLib.growth(iRetire, percentStock);
+      }
+    };
+    return findDMSWR(iStartSim, iEndSim, retirementYears, lookbackYears, percentStock, virtualSWRs, allocation,
+        nestEggCalculator);
+  }
+
+  /**
+   * Run a DMSWR simulation for retirees that follow a glide path.
+   * 
+   * Virtual retirees follow the same calendar allocation as the real retiree: they hold the initial allocation until
+   * the real retirement date and then follow the glide path. This keeps the DMSWR safe by construction since the
+   * virtual retiree's remaining years match the real retirement exactly. The SWR for each virtual retiree is the MinSWR
+   * of the delayed glide path (from GlidePathTable) for the full virtual retirement.
+   * 
+   * @param iStartSim first index of simulation
+   * @param iEndSim last index of simulation (inclusive)
+   * @param retirementYears duration of retirement in years
+   * @param lookbackYears number of previous years to check for a better "virtual retirement" time
+   * @param glidePath asset allocation for each month of retirement
+   * @return List of monthly info objects for each month that starts a retirement period
+   */
+  public static List<MonthlyInfo> findDMSWR(int iStartSim, int iEndSim, int retirementYears, int lookbackYears,
+      GlidePath glidePath, NestEggCalculator nestEggCalculator)
+  {
+    final int retirementMonths = retirementYears * 12;
     final int lookbackMonths = lookbackYears * 12;
-    final int iLastWithFullRetirement = SwrLib.lastIndex(retirementYears);
-    assert iStartSim >= lookbackMonths; // else not enough historical data for virtual retirees
 
+    // MinSWR for each virtual retiree depends only on the lookback so it's calculated once.
+    final GlidePath[] virtualPaths = new GlidePath[lookbackMonths + 1];
+    final int[] virtualSWRs = new int[lookbackMonths + 1];
+    for (int iLookback = 0; iLookback <= lookbackMonths; ++iLookback) {
+      virtualPaths[iLookback] = glidePath.delay(iLookback);
+      virtualSWRs[iLookback] = GlidePathTable.getSWR(virtualPaths[iLookback], retirementMonths + iLookback);
+    }
+    final int[] crystalSWRs = GlidePathTable.getAcrossTime(glidePath, retirementYears);
+
+    Allocation allocation = new Allocation()
+    {
+      @Override
+      public MonthlyInfo run(int iLookback, int iStart, int iEnd, double withdrawalRate, double nestEgg,
+          List<MonthlyInfo> trajectory)
+      {
+        return BengenMethod.run(iStart, iEnd, withdrawalRate, virtualPaths[iLookback], nestEgg, trajectory);
+      }
+
+      @Override
+      public int getCrystalSWR(int iRetire)
+      {
+        return crystalSWRs[iRetire];
+      }
+
+      @Override
+      public double growth(int iRetire)
+      {
+        return glidePath.growth(iRetire, 0);
+      }
+    };
+    return findDMSWR(iStartSim, iEndSim, retirementYears, lookbackYears, glidePath.getInitialPercentStock(),
+        virtualSWRs, allocation, nestEggCalculator);
+  }
+
+  /** Allocation-specific parts of a DMSWR search (fixed percent stock or glide path). */
+  private interface Allocation
+  {
+    /**
+     * Simulate a retirement over [iStart, iEnd).
+     * 
+     * @param iLookback months between the start of this (virtual) retirement and the real retirement
+     */
+    MonthlyInfo run(int iLookback, int iStart, int iEnd, double withdrawalRate, double nestEgg,
+        List<MonthlyInfo> trajectory);
+
+    /** @return CBSWR (basis points) for a full retirement that starts at the given index. */
+    int getCrystalSWR(int iRetire);
+
+    /** @return market growth for the first month of a retirement that starts at the given index. */
+    double growth(int iRetire);
+  }
+
+  /**
+   * Find the DMSWR for each retirement month using the given allocation.
+   * 
+   * @param percentStock initial percent stock (passed to the nest egg calculator)
+   * @param virtualSWRs SWR (basis points) of each virtual retiree indexed by lookback months (0 = Bengen SWR)
+   */
+  private static List<MonthlyInfo> findDMSWR(int iStartSim, int iEndSim, int retirementYears, int lookbackYears,
+      int percentStock, int[] virtualSWRs, Allocation allocation, NestEggCalculator nestEggCalculator)
+  {
+    Events.DmswrSearch event = new Events.DmswrSearch();
+    event.begin();
     List<MonthlyInfo> results = new ArrayList<>();
-    for (int iRetire = iStartSim; iRetire <= iEndSim; ++iRetire) {
-      final long retireTime = SwrLib.time(iRetire);
-      final double nestEgg = nestEggCalculator.getNestEgg(iRetire, iStartSim, lookbackYears, percentStock);
-
-      // Find best "virtual" retirement year within the lookback period.
-      int dmswr = 0;
-      int bestVirtualIndex = -1;
-      for (int iLookback = 0; iLookback <= lookbackMonths; ++iLookback) {
-        final int iVirtualStart = iRetire - iLookback; // index of start of virtual retirement
-        final int virtualYears = retirementYears + (int) Math.ceil(iLookback / 12.0 - 1e-5);
-        final double virtualSWR = BengenTable.getSWR(virtualYears, percentStock) / 100.0;
-
-        // Run simulation for virtual retirement period.
-        List<MonthlyInfo> virtualTrajectory = new ArrayList<MonthlyInfo>();
-        MonthlyInfo info = BengenMethod.run(iVirtualStart, iRetire + 1, virtualSWR, percentStock, 1e6,
-            virtualTrajectory);
-        assert info.ok();
-
-        assert iLookback + 1 == virtualTrajectory.size();
-        MonthlyInfo virtualNow = virtualTrajectory.get(iLookback);
-        assert virtualNow.index == iRetire;
-
-        final int swr = SwrLib.percentToBasisPoints(virtualNow.percent());
-        assert iLookback > 0 || swr == bengenSWR; // iLookback == 0 must match Bengen
-        if (swr > dmswr) {
-          dmswr = swr;
-          bestVirtualIndex = iVirtualStart;
+    try {
+      final int retirementMonths = retirementYears * 12;
+      final int lookbackMonths = lookbackYears * 12;
+      final int iLastWithFullRetirement = SwrLib.lastIndex(retirementYears);
+      final int bengenSWR = virtualSWRs[0];
+      assert iStartSim >= lookbackMonths; // else not enough historical data for virtual retirees
+      assert virtualSWRs.length == lookbackMonths + 1;
+
+      for (int iRetire = iStartSim; iRetire <= iEndSim; ++iRetire) {
+        final long retireTime = SwrLib.time(iRetire);
+        final double nestEgg = nestEggCalculator.getNestEgg(iRetire, iStartSim, lookbackYears, percentStock);
+
+        // Find best "virtual" retirement year within the lookback period.
+        int dmswr = 0;
+        int bestVirtualIndex = -1;
+        for (int iLookback = 0; iLookback <= lookbackMonths; ++iLookback) {
+          final int iVirtualStart = iRetire - iLookback; // index of start of virtual retirement
+          final double virtualSWR = virtualSWRs[iLookback] / 100.0;
+
+          // Run simulation for virtual retirement period.
+          List<MonthlyInfo> virtualTrajectory = new ArrayList<MonthlyInfo>();
+          MonthlyInfo info = allocation.run(iLookback, iVirtualStart, iRetire + 1, virtualSWR, 1e6, virtualTrajectory);
+          assert info.ok();
+
+          assert iLookback + 1 == virtualTrajectory.size();
+          MonthlyInfo virtualNow = virtualTrajectory.get(iLookback);
+          assert virtualNow.index == iRetire;
+
+          final int swr = SwrLib.percentToBasisPoints(virtualNow.percent());
+          assert iLookback > 0 || swr == bengenSWR; // iLookback == 0 must match Bengen
+          if (swr > dmswr) {
+            dmswr = swr;
+            bestVirtualIndex = iVirtualStart;
+          }
         }
+        assert dmswr > 0 && bestVirtualIndex >= 0; // must find something
+        assert dmswr >= bengenSWR; // Bengen is lower bound on DMSWR
+
+        List<MonthlyInfo> trajectory = new ArrayList<>();
+        final boolean isPartialRun = (iRetire > iLastWithFullRetirement);
+        final int iEnd = Math.min(iRetire + retirementMonths, SwrLib.length());
+        MonthlyInfo info = allocation.run(0, iRetire, iEnd, dmswr / 100.0, nestEgg, trajectory);
+        assert info.ok(); // safe by construction, but still verify
+        assert isPartialRun || info.retirementMonth == retirementMonths;
+        final double finalBalance = isPartialRun ? Double.NaN : info.finalBalance;
+
+        final double bengenSalary = nestEgg * bengenSWR / 10000.0;
+        final double marwoodSalary = nestEgg * dmswr / 10000.0;
+
+        double crystalSalary = Double.NaN; // may not exist if the retirement period extends into the future
+        if (iRetire <= iLastWithFullRetirement) {
+          crystalSalary = nestEgg * allocation.getCrystalSWR(iRetire) / 10000.0;
+        }
+
+        final MonthlyInfo firstMonth = trajectory.get(0);
+        assert Library.almostEqual(firstMonth.startBalance, nestEgg, 1e-6);
+        assert firstMonth.retireTime == retireTime;
+        assert firstMonth.currentTime == retireTime;
+        assert firstMonth.retirementMonth == 1;
+
+        final int virtualRetirementMonths = iRetire - bestVirtualIndex;
+        final double growth = allocation.growth(iRetire); // growth due to market
+        final double monthlyIncome = marwoodSalary / 12.0;
+        final double endBalance = (nestEgg - monthlyIncome) * growth;
+        info = new MonthlyInfo(retireTime, retireTime, 1, monthlyIncome, nestEgg, endBalance, dmswr,
+            virtualRetirementMonths, bengenSalary, marwoodSalary, crystalSalary);
+        info.finalBalance = finalBalance;
+        results.add(info);
       }
-      assert dmswr > 0 && bestVirtualIndex >= 0; // must find something
-      assert dmswr >= bengenSWR; // Bengen is lower bound on DMSWR
-
-      List<MonthlyInfo> trajectory = new ArrayList<>();
-      final boolean isPartialRun = (iRetire > iLastWithFullRetirement);
-      final int iEnd = Math.min(iRetire + 12 * retirementYears, SwrLib.length());
-      MonthlyInfo info = BengenMethod.run(iRetire, iEnd, dmswr / 100.0, percentStock, nestEgg, trajectory);
-      assert info.ok(); // safe by construction, but still verify
-      assert isPartialRun || info.retirementMonth == retirementYears * 12;
-      final double finalBalance = isPartialRun ? Double.NaN : info.finalBalance;
-
-      final double bengenSalary = nestEgg * bengenSWR / 10000.0;
-      final double marwoodSalary = nestEgg * dmswr / 10000.0;
-
-      double crystalSalary = Double.NaN; // may not exist if the retirement period extends into the future
-      if (iRetire <= iLastWithFullRetirement) {
-        final int cbswr = BengenTable.get(retireTime, retirementYears, percentStock).swr;
-        crystalSalary = nestEgg * cbswr / 10000.0;
+      event.completed = true;
+    } finally {
+      event.end();
+      if (event.shouldCommit()) {
+        event.method = "find";
+        event.years = retirementYears;
+        event.lookback = lookbackYears;
+        event.stock = percentStock;
+        event.rows = results.size();
+        event.commit();
       }
-
-      final MonthlyInfo firstMonth = trajectory.get(0);
-      assert Library.almostEqual(firstMonth.startBalance, nestEgg, 1e-6);
-      assert firstMonth.retireTime == retireTime;
-      assert firstMonth.currentTime == retireTime;
-      assert firstMonth.retirementMonth == 1;
-
-      final int virtualRetirementMonths = iRetire - bestVirtualIndex;
-      final double growth = SwrLib.growth(iRetire, percentStock); // growth due to market
-      final double monthlyIncome = marwoodSalary / 12.0;
-      final double endBalance = (nestEgg - monthlyIncome) * growth;
-      info = new MonthlyInfo(retireTime, retireTime, 1, monthlyIncome, nestEgg, endBalance, dmswr,
-          virtualRetirementMonths, bengenSalary, marwoodSalary, crystalSalary);
-      info.finalBalance = finalBalance;
-      results.add(info);
     }
-
     return results;
   }
 
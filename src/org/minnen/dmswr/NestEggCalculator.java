@@ -5,12 +5,37 @@ import org.minnen.dmswr.utils.SwrLib;
 /** Calculates the initial retirement portfolio value (a "nest egg"). */
 public abstract class NestEggCalculator
 {
+  /** Unique description of this calculator and its parameters (null if results shouldn't be cached). */
+  private final String cacheKey;
+
+  public NestEggCalculator()
+  {
+    this(null);
+  }
+
+  /** @param cacheKey unique description of the calculator and its parameters, or null if it's not cacheable */
+  public NestEggCalculator(String cacheKey)
+  {
+    this.cacheKey = cacheKey;
+  }
+
+  /**
+   * Return a description that identifies this calculator.
+   * 
+   * Two calculators with the same key must return the same nest egg for all arguments. Custom calculators return null
+   * unless they provide a key, which prevents incorrect reuse of cached results.
+   */
+  public String getCacheKey()
+  {
+    return cacheKey;
+  }
+
   public abstract double getNestEgg(int iCurrent, int iStartSim, int lookbackYears, int percentStock);
 
   /** Ignore arguments and always return the same value. */
   public static NestEggCalculator constant(double value)
   {
-    return new NestEggCalculator()
+    return new NestEggCalculator(String.format("constant(%s)", Double.toString(value)))
     {
       @Override
       public double getNestEgg(int iCurrent, int iStartSim, int lookbackYears, int percentStock)
@@ -28,7 +53,8 @@ public abstract class NestEggCalculator
    */
   public static NestEggCalculator inflationThenGrowth(double value, boolean removeInitialInflation)
   {
-    return new NestEggCalculator()
+    return new NestEggCalculator(
+        String.format("inflationThenGrowth(%s,%b)", Double.toString(value), removeInitialInflation))
     {
       @Override
       public double getNestEgg(int iCurrent, int iStartSim, int lookbackYears, int percentStock)
@@ -47,15 +73,19 @@ public abstract class NestEggCalculator
   }
 
   /**
-   * 
+   * Accumulate monthly savings while the portfolio moves with the market.
    *
    * The nest egg starts with `value`. Every month, `monthlySavings` is saved and the portfolio value moves up or down
    * with the market. If Inflation is set to `Real`, the value at `iCurrent` is adjusted to `iStartSim` dollars.
+   * 
+   * The result is computed in O(1) time using the precomputed cumulative growth and inverse growth prefix sums from
+   * SwrLib, so calling this for every month of a simulation doesn't cost O(N^2).
    */
   public static NestEggCalculator monthlySavings(double value, double monthlySavings, boolean removeInitialInflation,
       boolean inflationToStart, boolean inflationToToday)
   {
-    return new NestEggCalculator()
+    return new NestEggCalculator(String.format("monthlySavings(%s,%s,%b,%b,%b)", Double.toString(value),
+        Double.toString(monthlySavings), removeInitialInflation, inflationToStart, inflationToToday))
     {
       @Override
       public double getNestEgg(int iCurrent, int iStartSim, int lookbackYears, int percentStock)
@@ -69,10 +99,13 @@ public abstract class NestEggCalculator
         if (removeInitialInflation) {
           nestEgg *= SwrLib.inflation(-1, lookbackMonths); // adjusted for inflation to start of sim
         }
-        for (int i = iStartSim; i < iCurrent; ++i) {
-          nestEgg += monthlySavings;
-          nestEgg *= SwrLib.growth(i, percentStock); // update forward based on market growth
-        }
+
+        // Closed form of: for i in [iStartSim..iCurrent): nestEgg = (nestEgg + monthlySavings) * growth(i)
+        final double[] cumulative = SwrLib.getCumulativeGrowth(percentStock);
+        final double[] prefix = SwrLib.getInverseGrowthPrefix(percentStock);
+        nestEgg *= cumulative[iCurrent] / cumulative[iStartSim]; // update forward based on market growth
+        nestEgg += monthlySavings * cumulative[iCurrent] * (prefix[iCurrent] - prefix[iStartSim]);
+
         if (inflationToStart) {
           nestEgg *= SwrLib.inflation(iCurrent, iStartSim); // adjust for inflation to beginning of sim
         } else if (inflationToToday) {
@@ -0,0 +1,93 @@
+package org.minnen.dmswr;
+
+import java.util.Arrays;
+
+import org.minnen.dmswr.utils.AssetMatrix;
+import org.minnen.dmswr.utils.SwrLib;
+
+/**
+ * Portfolio with a fixed weight for each of N assets (rebalanced monthly).
+ *
+ * Monthly growth is computed once with the fused kernel in AssetMatrix so simulations only need a single array read
+ * per month regardless of the number of assets. A portfolio is tied to the data that was loaded when it was created
+ * and must be rebuilt after `SwrLib.setup()`.
+ */
+public class Portfolio
+{
+  public final String      name;
+  public final AssetMatrix assets;
+
+  /** Weight of each asset (sums to 1.0). */
+  private final double[]   weights;
+
+  /** Growth multiplier for each month (NaN outside of [assets.iFirst, assets.iEnd)). */
+  private final double[]   growth;
+
+  /**
+   * Create a portfolio.
+   *
+   * @param name short description of the portfolio
+   * @param assets growth multipliers for the assets
+   * @param weights weight of each asset (must sum to 1.0)
+   */
+  public Portfolio(String name, AssetMatrix assets, double... weights)
+  {
+    if (weights.length != assets.nAssets) {
+      throw new IllegalArgumentException(String.format("Expected %d weights, not %d", assets.nAssets, weights.length));
+    }
+    final double sum = Arrays.stream(weights).sum();
+    if (Math.abs(sum - 1.0) > 1e-6) {
+      throw new IllegalArgumentException(String.format("Weights must sum to 1.0, not %f", sum));
+    }
+    this.name = name;
+    this.assets = assets;
+    this.weights = weights.clone();
+    this.growth = assets.growth(this.weights);
+  }
+
+  /**
+   * Create a portfolio from assets registered with SwrLib.
+   *
+   * @param assetNames names of the assets (see `SwrLib.getAssetMatrix()`)
+   * @param weights weight of each asset (must sum to 1.0)
+   */
+  public static Portfolio of(String[] assetNames, double[] weights)
+  {
+    StringBuilder sb = new StringBuilder();
+    for (int a = 0; a < assetNames.length; ++a) {
+      if (a > 0) sb.append(" / ");
+      sb.append(String.format("%s=%.0f%%", assetNames[a], weights[a] * 100.0));
+    }
+    return new Portfolio(sb.toString(), SwrLib.getAssetMatrix(assetNames), weights);
+  }
+
+  /** @return weight of the given asset. */
+  public double getWeight(int a)
+  {
+    return weights[a];
+  }
+
+  /** @return growth multiplier for each month; the array is shared and must not be modified. */
+  public double[] getMonthlyGrowth()
+  {
+    return growth;
+  }
+
+  /** @return first index where a retirement can start. */
+  public int getFirstIndex()
+  {
+    return assets.iFirst;
+  }
+
+  /** @return index of the last month for which we can simulate a `years` retirement. */
+  public int lastIndex(int retirementYears)
+  {
+    return assets.iEnd - retirementYears * 12;
+  }
+
+  @Override
+  public String toString()
+  {
+    return name;
+  }
+}
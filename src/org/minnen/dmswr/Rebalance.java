@@ -0,0 +1,90 @@
+package org.minnen.dmswr;
+
+/**
+ * Rebalancing policy for a stock/bond portfolio.
+ *
+ * With monthly rebalancing, growth only depends on the month and asset allocation so it can use the precomputed growth
+ * in SwrLib. Other policies let the allocation drift, which makes growth path-dependent; simulations then track stock
+ * and bond balances separately and ask the policy when to restore the target allocation.
+ *
+ * Withdrawals are taken proportionally from stocks and bonds so they don't change the current allocation.
+ */
+public class Rebalance
+{
+  public enum Mode {
+    Monthly, Annual, Band, Never
+  }
+
+  public static final Rebalance monthly = new Rebalance(Mode.Monthly, 0.0);
+  public static final Rebalance annual  = new Rebalance(Mode.Annual, 0.0);
+  public static final Rebalance never   = new Rebalance(Mode.Never, 0.0);
+
+  public final Mode             mode;
+
+  /** For `Band` mode: rebalance when the stock fraction drifts more than this from the target (0.05 = 5%). */
+  public final double           bandWidth;
+
+  private Rebalance(Mode mode, double bandWidth)
+  {
+    this.mode = mode;
+    this.bandWidth = bandWidth;
+  }
+
+  /**
+   * Rebalance when the stock allocation drifts too far from the target.
+   *
+   * @param bandWidth absolute drift that triggers rebalancing (0.05 = rebalance a 60/40 portfolio below 55% or above
+   *          65% stock)
+   */
+  public static Rebalance band(double bandWidth)
+  {
+    if (bandWidth <= 0.0 || bandWidth >= 1.0) {
+      throw new IllegalArgumentException("Band width must be in (0, 1): " + bandWidth);
+    }
+    return new Rebalance(Mode.Band, bandWidth);
+  }
+
+  /** @return true if growth is path-independent (i.e. the allocation is restored every month). */
+  public boolean isMonthly()
+  {
+    return mode == Mode.Monthly;
+  }
+
+  /**
+   * Decide whether to rebalance at the start of a month (after the withdrawal).
+   *
+   * @param month months since retirement (0 = first month)
+   * @param stock current stock balance
+   * @param bonds current bond balance
+   * @param targetFraction target stock fraction (0.7 = 70% stock)
+   * @return true if the portfolio should be rebalanced to the target allocation
+   */
+  public boolean shouldRebalance(int month, double stock, double bonds, double targetFraction)
+  {
+    if (mode == Mode.Monthly) {
+      return true;
+    } else if (mode == Mode.Annual) {
+      return month % 12 == 0;
+    } else if (mode == Mode.Band) {
+      final double total = stock + bonds;
+      return total > 0.0 && Math.abs(stock / total - targetFraction) > bandWidth;
+    } else {
+      return false;
+    }
+  }
+
+  /** @return short name used in file names and reports. */
+  public String getName()
+  {
+    if (mode == Mode.Band) {
+      return String.format("band%d", Math.round(bandWidth * 100.0));
+    }
+    return mode.name().toLowerCase();
+  }
+
+  @Override
+  public String toString()
+  {
+    return getName();
+  }
+}
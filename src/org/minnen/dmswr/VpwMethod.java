@@ -0,0 +1,177 @@
+package org.minnen.dmswr;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.minnen.dmswr.data.MonthlyInfo;
+import org.minnen.dmswr.data.VpwTable;
+import org.minnen.dmswr.utils.SwrLib;
+import org.minnen.dmswr.utils.FinLib.Inflation;
+
+/**
+ * Variable Percentage Withdrawal (VPW): each year, withdraw a percentage of the current balance that depends on the
+ * number of years left in retirement (see VpwTable).
+ */
+public class VpwMethod
+{
+  /**
+   * Results of VPW simulations for every retirement start month.
+   *
+   * Entry `i` holds results for the retirement that starts at SwrLib index `i`. All values are in start-date dollars
+   * (same as real data) and income is annual.
+   */
+  public static class Results
+  {
+    public final int      percentStock;
+    public final int      retirementYears;
+    public final double   nestEgg;
+
+    /** Balance after the last year of retirement (zero if the last rate is 100%). */
+    public final double[] finalBalance;
+
+    /** Smallest annual income. */
+    public final double[] minIncome;
+
+    /** Average annual income. */
+    public final double[] meanIncome;
+
+    /** Largest annual income. */
+    public final double[] maxIncome;
+
+    /** Standard deviation of year-over-year income changes in percent (5.0 => 5%). */
+    public final double[] incomeVolatility;
+
+    /** Largest year-over-year income decrease in percent (10 => income dropped by 10%). */
+    public final double[] maxIncomeDrop;
+
+    public Results(int percentStock, int retirementYears, double nestEgg, int n)
+    {
+      this.percentStock = percentStock;
+      this.retirementYears = retirementYears;
+      this.nestEgg = nestEgg;
+      finalBalance = new double[n];
+      minIncome = new double[n];
+      meanIncome = new double[n];
+      maxIncome = new double[n];
+      incomeVolatility = new double[n];
+      maxIncomeDrop = new double[n];
+    }
+
+    /** @return number of retirement start months. */
+    public int size()
+    {
+      return finalBalance.length;
+    }
+  }
+
+  /**
+   * Simulate a VPW retirement with annual withdrawals.
+   *
+   * @param iStart index of retirement month (first withdrawal)
+   * @param percentStock percent stock (vs. bonds) to hold (70 = 70%)
+   * @param rates withdrawal rate for each year of retirement in basis points (530 = 5.3%)
+   * @param nestEgg portfolio balance at start of retirement
+   * @param trajectory if non-null, will be filled with one monthly info object per year
+   * @return final balance
+   */
+  public static double run(int iStart, int percentStock, int[] rates, double nestEgg, List<MonthlyInfo> trajectory)
+  {
+    assert iStart >= 0 && iStart + rates.length * 12 <= SwrLib.length();
+    final long retireTime = SwrLib.time(iStart);
+    final Inflation inflation = SwrLib.getInflationAdjustment();
+
+    if (trajectory != null) trajectory.clear();
+    double balance = nestEgg;
+    for (int i = 0; i < rates.length; ++i) {
+      final int iCurrent = iStart + i * 12;
+      final int iNext = iCurrent + 12;
+
+      final double wr = rates[i] / 10000.0;
+      final double income = balance * wr;
+      final double adjustedIncome = (inflation == Inflation.Real ? income
+          : income * SwrLib.inflation(iCurrent, iStart));
+      final double startBalance = balance;
+      balance -= income;
+      balance *= SwrLib.growth(iCurrent, iNext, percentStock);
+
+      if (trajectory != null) {
+        MonthlyInfo info = new MonthlyInfo(retireTime, SwrLib.time(iCurrent), rates[i], i * 12 + 1,
+            adjustedIncome / 12.0, startBalance, balance, adjustedIncome);
+        trajectory.add(info);
+      }
+    }
+    if (trajectory != null) MonthlyInfo.setFinalBalance(balance, trajectory);
+    return balance;
+  }
+
+  /**
+   * Simulate VPW retirements for every start month with a full retirement period (in parallel).
+   *
+   * @param percentStock percent stock (vs. bonds) to hold (70 = 70%)
+   * @param retirementYears duration of retirement in years
+   * @param nestEgg portfolio balance at start of retirement
+   * @return results for each start month
+   */
+  public static Results evaluate(int percentStock, int retirementYears, double nestEgg)
+  {
+    return evaluate(percentStock, VpwTable.get(percentStock, retirementYears), nestEgg);
+  }
+
+  /**
+   * Simulate VPW retirements for every start month with a full retirement period (in parallel).
+   *
+   * @param percentStock percent stock (vs. bonds) to hold (70 = 70%)
+   * @param rates withdrawal rate for each year of retirement in basis points (530 = 5.3%)
+   * @param nestEgg portfolio balance at start of retirement
+   * @return results for each start month
+   */
+  public static Results evaluate(int percentStock, int[] rates, double nestEgg)
+  {
+    final int retirementYears = rates.length;
+    final int n = SwrLib.lastIndex(retirementYears) + 1;
+    final Results results = new Results(percentStock, retirementYears, nestEgg, Math.max(n, 0));
+    if (n <= 0) return results;
+
+    final double[] cumulativeGrowth = SwrLib.getCumulativeGrowth(percentStock);
+    final boolean isNominal = (SwrLib.getInflationAdjustment() == Inflation.Nominal);
+    IntStream.range(0, n).parallel().forEach(iStart -> {
+      double balance = nestEgg;
+      double minIncome = Double.POSITIVE_INFINITY;
+      double maxIncome = 0.0;
+      double sumIncome = 0.0;
+      double prevIncome = Double.NaN;
+      double maxDrop = 0.0;
+      double mean = 0.0, m2 = 0.0; // running statistics for year-over-year changes (Welford)
+      int nChanges = 0;
+      for (int i = 0; i < retirementYears; ++i) {
+        final int iCurrent = iStart + i * 12;
+        final double income = balance * rates[i] / 10000.0;
+        balance -= income;
+        balance *= cumulativeGrowth[iCurrent + 12] / cumulativeGrowth[iCurrent];
+
+        final double realIncome = isNominal ? income * SwrLib.inflation(iCurrent, iStart) : income;
+        if (realIncome < minIncome) minIncome = realIncome;
+        if (realIncome > maxIncome) maxIncome = realIncome;
+        sumIncome += realIncome;
+        if (i > 0 && prevIncome > 0.0) {
+          final double change = (realIncome / prevIncome - 1.0) * 100.0;
+          ++nChanges;
+          final double delta = change - mean;
+          mean += delta / nChanges;
+          m2 += delta * (change - mean);
+          if (-change > maxDrop) maxDrop = -change;
+        }
+        prevIncome = realIncome;
+      }
+
+      final int iEnd = iStart + retirementYears * 12;
+      results.finalBalance[iStart] = isNominal ? balance * SwrLib.inflation(iEnd, iStart) : balance;
+      results.minIncome[iStart] = minIncome;
+      results.meanIncome[iStart] = sumIncome / retirementYears;
+      results.maxIncome[iStart] = maxIncome;
+      results.incomeVolatility[iStart] = nChanges > 1 ? Math.sqrt(m2 / (nChanges - 1)) : 0.0;
+      results.maxIncomeDrop[iStart] = maxDrop;
+    });
+    return results;
+  }
+}
@@ -1,5 +1,10 @@
 package org.minnen.dmswr.data;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.minnen.dmswr.utils.CsvWriter;
 import org.minnen.dmswr.utils.TimeLib;
 
 /**
@@ -60,6 +65,31 @@ public final class BengenEntry
     return String.format("%d,%d,%s,%d", retirementYears, percentStock, TimeLib.formatYM(time), swr);
   }
 
+  /** Write this entry as a CSV row (same format as `toCSV()`). */
+  public void writeCSV(CsvWriter csv) throws IOException
+  {
+    assert swr > 0;
+    csv.add(retirementYears).add(percentStock).addYM(time).add(swr).endRow();
+  }
+
+  /** Write this entry in binary form (see `readBinary()`). */
+  public void writeBinary(DataOutput out) throws IOException
+  {
+    out.writeLong(time);
+    out.writeInt(retirementYears);
+    out.writeInt(percentStock);
+    out.writeInt(swr);
+  }
+
+  public static BengenEntry readBinary(DataInput in) throws IOException
+  {
+    final long time = in.readLong();
+    final int retirementYears = in.readInt();
+    final int percentStock = in.readInt();
+    final int swr = in.readInt();
+    return new BengenEntry(time, retirementYears, percentStock, swr);
+  }
+
   @Override
   public String toString()
   {
@@ -1,23 +1,35 @@
 package org.minnen.dmswr.data;
 
 import java.io.BufferedReader;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
+import org.minnen.dmswr.utils.CsvWriter;
 import org.minnen.dmswr.utils.DataIO;
+import org.minnen.dmswr.utils.Events;
 import org.minnen.dmswr.utils.FeatureVec;
+import org.minnen.dmswr.utils.Fingerprint;
+import org.minnen.dmswr.utils.Metrics;
 import org.minnen.dmswr.utils.Sequence;
 import org.minnen.dmswr.utils.SwrLib;
 import org.minnen.dmswr.BengenMethod;
+import org.minnen.dmswr.Rebalance;
 import org.minnen.dmswr.utils.TimeLib;
-import org.minnen.dmswr.utils.Writer;
 import org.minnen.dmswr.utils.FinLib.Inflation;
 
 public class BengenTable
 {
+  /** Longest retirement duration in the table. */
+  public static final int                     maxYears        = 60;
+
   /** Holds SWR for a specific date; values have valid SWR fields, queries ignore SWR field. */
   public static Map<BengenEntry, BengenEntry> bengenMap       = new HashMap<>();
 
@@ -27,23 +39,32 @@ public class BengenTable
   /** Values are BaselineSWR for the given retirement duration and stock percentage (342 => 3.42%). */
   public static Map<BengenEntry, Integer>     bengenSWRs      = new HashMap<>();
 
+  /** Hash of the loaded table data (null if the table was generated or nothing is loaded). */
+  private static String                       fingerprint;
+
   public static BengenEntry get(long time, int retirementYears, int percentStock)
   {
     BengenEntry key = new BengenEntry(time, retirementYears, percentStock);
-    return bengenMap.getOrDefault(key, null);
+    return Metrics.lookup(bengenMap.get(key));
   }
 
-  /** @return Sequence holding CBSWR as basis points for each starting retirement (423 = 4.23%). */
+  /**
+   * @return Sequence holding CBSWR as basis points for each starting retirement (423 = 4.23%); each call returns a new
+   *         copy (two array copies since the stored sequence is compact) so the stored sequence stays compact even if
+   *         the caller iterates over it, and callers should look it up once instead of once per loop iteration
+   */
   public static Sequence getAcrossTime(int retirementYears, int percentStock)
   {
     BengenEntry key = new BengenEntry(retirementYears, percentStock);
-    return bengenSequences.getOrDefault(key, null);
+    Sequence seq = Metrics.lookup(bengenSequences.get(key));
+    return seq == null ? null : seq.dup();
   }
 
   public static int getSWR(int retirementYears, int percentStock)
   {
     BengenEntry key = new BengenEntry(retirementYears, percentStock);
-    return bengenSWRs.getOrDefault(key, -1);
+    Integer swr = Metrics.lookup(bengenSWRs.get(key));
+    return swr == null ? -1 : swr;
   }
 
   public static void clear()
@@ -51,6 +72,13 @@ public class BengenTable
     bengenMap.clear();
     bengenSequences.clear();
     bengenSWRs.clear();
+    fingerprint = null;
+  }
+
+  /** @return hash of the loaded table data or null if the table wasn't loaded from a file. */
+  public static String getFingerprint()
+  {
+    return fingerprint;
   }
 
   /**
@@ -60,44 +88,224 @@ public class BengenTable
    * representing basis points, i.e. 500 = 5.0%. This function fills in the `bengenMap` table, but not `bengenSWRs` or
    * `bengenSequences`.
    * 
+   * Each (duration, percent stock) cell is committed to a checkpoint as soon as it's done (see `TableCheckpoint`) and
+   * the final file is written once all cells are complete. If `resume` is true, cells committed by an earlier run with
+   * the same data are reloaded instead of recalculated.
+   * 
+   * The pending cells for one duration run in parallel. Durations run in order since the SWRs for N-1 years bound the
+   * search for N years, so `bengenMap` is only updated between durations.
+   * 
    * @param file write results to this file.
+   * @param rebalance rebalancing policy used for the simulations
+   * @param nYears generate retirement durations in [1, nYears] (`maxYears` for the full table)
+   * @param percentStocks stock percentages to generate (`SwrLib.percentStockList` for the full table)
+   * @param resume if true, continue from the checkpoint of an earlier run
    * @throws IOException
    */
-  private static void generateTable(File file) throws IOException
+  public static void generateTable(File file, Rebalance rebalance, int nYears, int[] percentStocks, boolean resume)
+      throws IOException
   {
-    clear();
+    final long tStart = Metrics.generateTimer.start();
+    Events.TableGenerate event = new Events.TableGenerate();
+    event.begin();
+    try {
+      clear();
 
-    try (Writer writer = new Writer(file)) {
-      writer.writeln("# Bengen safe withdrawal rates (SWR).");
-      writer.writeln("# Withdrawal rates are annual, implying that the monthly withdrawal rate is SWR/12.0.");
-      writer.writeln("# Fields:");
-      writer.writeln("# 1) retirement duration in years");
-      writer.writeln("# 2) percent stock");
-      writer.writeln("# 3) retirement month");
-      writer.writeln("# 4) safe withdrawal rate in basis points (500=5.0%)");
-
-      for (int retirementYears = 1; retirementYears <= 60; ++retirementYears) {
+      TableCheckpoint checkpoint = new TableCheckpoint(file, getParams(rebalance), resume);
+      List<String> cells = new ArrayList<>();
+      for (int retirementYears = 1; retirementYears <= nYears; ++retirementYears) {
         final long a = TimeLib.getTime();
-        for (int percentStock : SwrLib.percentStockList) {
-          // TODO include partial windows? perhaps add a field marking them as partial?
-          Sequence seq = BengenMethod.calcSwrAcrossTime(retirementYears, percentStock, false);
-          int minSWR = Integer.MAX_VALUE;
-          for (FeatureVec v : seq) {
-            final int swr = (int) Math.round(v.get(0));
-            minSWR = Math.min(minSWR, swr);
-            BengenEntry bengen = new BengenEntry(v.getTime(), retirementYears, percentStock, swr);
-            bengenMap.put(bengen, bengen);
-            writer.writeln(bengen.toCSV());
+        List<Integer> pending = new ArrayList<>();
+        for (int percentStock : percentStocks) {
+          final String cell = getCellName(retirementYears, percentStock);
+          cells.add(cell);
+
+          // Finished cells are still loaded since they bound the search for longer durations.
+          if (checkpoint.isDone(cell)) {
+            for (String line : checkpoint.readCell(cell)) {
+              BengenEntry bengen = BengenEntry.fromCSV(line);
+              bengenMap.put(bengen, bengen);
+            }
+          } else {
+            pending.add(percentStock);
           }
-          System.out.printf("%d, %3d [%s] -> %d\n", retirementYears, percentStock, TimeLib.formatYM(seq.getEndMS()),
-              minSWR);
+        }
+
+        final int years = retirementYears;
+        List<List<BengenEntry>> results;
+        try {
+          results = pending.parallelStream().map(percentStock -> {
+            List<BengenEntry> entries = calcCell(years, percentStock, rebalance);
+            try {
+              checkpoint.commit(getCellName(years, percentStock), writer -> {
+                for (BengenEntry bengen : entries) {
+                  bengen.writeCSV(writer);
+                }
+              });
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+            return entries;
+          }).collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+          throw e.getCause();
+        }
+        for (List<BengenEntry> entries : results) {
+          addToMap(entries);
         }
         final long b = TimeLib.getTime();
         System.out.printf("%d years -> %d ms\n", retirementYears, b - a);
       }
+
+      checkpoint.merge(cells, writer -> writeHeader(writer, rebalance));
+      event.completed = true;
+    } finally {
+      Metrics.generateTimer.stop(tStart);
+      event.end();
+      if (event.shouldCommit()) {
+        event.table = "bengen";
+        event.file = Events.path(file);
+        event.params = getParams(rebalance);
+        event.rows = bengenMap.size();
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * Generate one shard of a Bengen table (see `TableShards`).
+   * 
+   * Shards are independent so they can run as separate processes on one or more machines. Use `mergeShards()` to
+   * build the final table.
+   * 
+   * @param file final table file (the shard is written next to it)
+   * @param rebalance rebalancing policy used for the simulations
+   * @param nYears generate retirement durations in [1, nYears] (`maxYears` for the full table)
+   * @param percentStocks stock percentages to generate (`SwrLib.percentStockList` for the full table)
+   * @param shard index of this shard in [0, nShards)
+   * @param nShards total number of shards
+   */
+  public static void generateShard(File file, Rebalance rebalance, int nYears, int[] percentStocks, int shard,
+      int nShards) throws IOException
+  {
+    final long tStart = Metrics.generateTimer.start();
+    Events.TableGenerate event = new Events.TableGenerate();
+    event.begin();
+    try {
+      clear();
+
+      List<String> cells = getCellNames(nYears, percentStocks);
+      try (TableShards.ShardWriter shardWriter = new TableShards.ShardWriter(file, "bengen", getParams(rebalance),
+          shard, nShards)) {
+        int iCell = 0;
+        for (int retirementYears = 1; retirementYears <= nYears; ++retirementYears) {
+          for (int percentStock : percentStocks) {
+            if (TableShards.isAssigned(iCell, shard, nShards)) {
+              List<BengenEntry> entries = calcCell(retirementYears, percentStock, rebalance);
+              addToMap(entries);
+              DataOutputStream out = shardWriter.beginCell(cells.get(iCell), entries.size());
+              for (BengenEntry bengen : entries) {
+                bengen.writeBinary(out);
+              }
+            }
+            ++iCell;
+          }
+        }
+        shardWriter.finish();
+      }
+      event.completed = true;
+    } finally {
+      Metrics.generateTimer.stop(tStart);
+      event.end();
+      if (event.shouldCommit()) {
+        event.table = "bengen";
+        event.file = Events.path(file);
+        event.params = getParams(rebalance);
+        event.shard = shard;
+        event.shards = nShards;
+        event.rows = bengenMap.size();
+        event.commit();
+      }
+    }
+  }
+
+  /** Validate all shards and merge them into the final table (same grid as `generateShard()`). */
+  public static void mergeShards(File file, Rebalance rebalance, int nYears, int[] percentStocks, int nShards)
+      throws IOException
+  {
+    final long n = TableShards.merge(file, "bengen", getParams(rebalance), nShards,
+        getCellNames(nYears, percentStocks), writer -> writeHeader(writer, rebalance),
+        (in, writer) -> BengenEntry.readBinary(in).writeCSV(writer));
+    System.out.printf("Merged %d shards: %d entries -> [%s]\n", nShards, n, file);
+    TableShards.deleteShards(file, nShards);
+  }
+
+  /** @return parameters that identify the results of a generation run (data and rebalancing policy). */
+  private static String getParams(Rebalance rebalance)
+  {
+    return String.format("bengen rebalance=%s data=%s", rebalance, SwrLib.getDataFingerprint());
+  }
+
+  private static String getCellName(int retirementYears, int percentStock)
+  {
+    return String.format("years%02d-stock%03d", retirementYears, percentStock);
+  }
+
+  /** @return names of all cells in table order. */
+  private static List<String> getCellNames(int nYears, int[] percentStocks)
+  {
+    List<String> cells = new ArrayList<>();
+    for (int retirementYears = 1; retirementYears <= nYears; ++retirementYears) {
+      for (int percentStock : percentStocks) {
+        cells.add(getCellName(retirementYears, percentStock));
+      }
+    }
+    return cells;
+  }
+
+  /**
+   * Calculate the SWR for every start month of one (duration, percent stock) cell.
+   * 
+   * Only reads `bengenMap` (for the search bound) so cells for the same duration can run in parallel; use `addToMap()`
+   * to add the results.
+   */
+  private static List<BengenEntry> calcCell(int retirementYears, int percentStock, Rebalance rebalance)
+  {
+    // TODO include partial windows? perhaps add a field marking them as partial?
+    Sequence seq = BengenMethod.calcSwrAcrossTime(retirementYears, percentStock, rebalance, false);
+    List<BengenEntry> entries = new ArrayList<>(seq.length());
+    int minSWR = Integer.MAX_VALUE;
+    for (FeatureVec v : seq) {
+      final int swr = (int) Math.round(v.get(0));
+      minSWR = Math.min(minSWR, swr);
+      entries.add(new BengenEntry(v.getTime(), retirementYears, percentStock, swr));
+    }
+    System.out.printf("%d, %3d [%s] -> %d\n", retirementYears, percentStock, TimeLib.formatYM(seq.getEndMS()),
+        minSWR);
+    return entries;
+  }
+
+  private static void addToMap(List<BengenEntry> entries)
+  {
+    for (BengenEntry bengen : entries) {
+      bengenMap.put(bengen, bengen);
     }
   }
 
+  private static void writeHeader(CsvWriter writer, Rebalance rebalance) throws IOException
+  {
+    writer.writeln("# Bengen safe withdrawal rates (SWR).");
+    if (!rebalance.isMonthly()) {
+      writer.writeln(String.format("# Rebalancing: %s", rebalance));
+    }
+    writer.writeln("# Withdrawal rates are annual, implying that the monthly withdrawal rate is SWR/12.0.");
+    writer.writeln("# Fields:");
+    writer.writeln("# 1) retirement duration in years");
+    writer.writeln("# 2) percent stock");
+    writer.writeln("# 3) retirement month");
+    writer.writeln("# 4) safe withdrawal rate in basis points (500=5.0%)");
+  }
+
   /**
    * Calculate MinSWR and protected against duration inversions.
    * 
@@ -122,49 +330,70 @@ public class BengenTable
 
   public static void loadTable(File file) throws IOException
   {
-    try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-      BengenEntry key = null;
-      Sequence seq = null;
-      while (true) {
-        String line = reader.readLine();
-        if (line == null) break;
-
-        // Remove comments.
-        int i = line.indexOf("#");
-        if (i >= 0) {
-          line = line.substring(0, i);
-        }
+    final long tStart = Metrics.loadTimer.start();
+    Events.TableLoad event = new Events.TableLoad();
+    event.begin();
+    int nRows = 0;
+    try {
+      Fingerprint fp = new Fingerprint().add(fingerprint);
+      try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+        BengenEntry key = null;
+        Sequence seq = null;
+        while (true) {
+          String line = reader.readLine();
+          if (line == null) break;
 
-        // Remove whitespace and skip empty lines.
-        line = line.trim();
-        if (line.isEmpty()) continue;
+          // Remove comments.
+          int i = line.indexOf("#");
+          if (i >= 0) {
+            line = line.substring(0, i);
+          }
+
+          // Remove whitespace and skip empty lines.
+          line = line.trim();
+          if (line.isEmpty()) continue;
 
-        BengenEntry info = BengenEntry.fromCSV(line);
-        assert SwrLib.time(SwrLib.indexForTime(info.time)) == info.time;
+          BengenEntry info = BengenEntry.fromCSV(line);
+          assert SwrLib.time(SwrLib.indexForTime(info.time)) == info.time;
+          fp.add(line);
 
-        bengenMap.put(info, info);
+          bengenMap.put(info, info);
+          ++nRows;
 
-        // Create new sequence when retirement scenario changes.
-        if (key == null || info.retirementYears != key.retirementYears || info.percentStock != key.percentStock) {
-          if (seq != null) { // store previous sequence and SWR
-            assert key != null;
-            bengenSequences.put(key, seq);
-            storeSafeMinSWR(key);
+          // Create new sequence when retirement scenario changes.
+          if (key == null || info.retirementYears != key.retirementYears || info.percentStock != key.percentStock) {
+            if (seq != null) { // store previous sequence and SWR
+              assert key != null;
+              bengenSequences.put(key, seq.compact());
+              storeSafeMinSWR(key);
+            }
+
+            // Create new key and start new sequence.
+            key = new BengenEntry(info.retirementYears, info.percentStock);
+            seq = new Sequence(String.format("Bengen (%d, %d)", info.retirementYears, info.percentStock));
           }
 
-          // Create new key and start new sequence.
-          key = new BengenEntry(info.retirementYears, info.percentStock);
-          seq = new Sequence(String.format("Bengen (%d, %d)", info.retirementYears, info.percentStock));
+          // Add new month to sequence.
+          assert seq.isEmpty() || info.time > seq.getEndMS();
+          seq.addData(info.swr, info.time);
+        }
+        if (seq != null) { // store last sequence and final SWR
+          assert key != null;
+          bengenSequences.put(key, seq.compact());
+          storeSafeMinSWR(key);
         }
-
-        // Add new month to sequence.
-        assert seq.isEmpty() || info.time > seq.getEndMS();
-        seq.addData(info.swr, info.time);
       }
-      if (seq != null) { // store last sequence and final SWR
-        assert key != null;
-        bengenSequences.put(key, seq);
-        storeSafeMinSWR(key);
+      fingerprint = fp.toHex();
+      event.completed = true;
+    } finally {
+      Metrics.loadTimer.stop(tStart);
+      event.end();
+      if (event.shouldCommit()) {
+        event.table = "bengen";
+        event.file = Events.path(file);
+        event.rows = nRows;
+        event.sequences = bengenSequences.size();
+        event.commit();
       }
     }
   }
@@ -178,19 +407,43 @@ public class BengenTable
     System.out.printf("Verified entries: %d\n", bengenMap.size());
   }
 
+  /**
+   * Generate or verify the Bengen table.
+   * 
+   * Modes (first argument, default "generate"):
+   * <ul>
+   * <li>generate: generate the full table in this process
+   * <li>resume: same as generate but skip cells completed by an earlier run
+   * <li>shard &lt;id&gt; &lt;count&gt;: generate one shard of the table
+   * <li>merge &lt;count&gt;: validate the shards and merge them into the final table
+   * <li>verify: load and verify the existing table
+   * </ul>
+   */
   public static void main(String[] args) throws IOException
   {
-    final String mode = "generate";
+    final String mode = args.length > 0 ? args[0] : "generate";
+    final Rebalance rebalance = Rebalance.monthly;
 
-    if (mode.equals("generate")) {
-      SwrLib.setup(null, null, Inflation.Real); // don't load bengen or dmswr table
-      File file = new File(DataIO.getFinancePath(), "bengen-table.csv");
-      generateTable(file);
-    } else {
+    if (mode.equals("verify")) {
       SwrLib.setup(SwrLib.getDefaultBengenFile(), null, Inflation.Real); // only load bengen table
       System.out.printf("Bengen entries: %d\n", bengenMap.size());
       System.out.printf("Bengen sequences: %d\n", bengenSequences.size());
       verifyTable();
+    } else {
+      SwrLib.setup(null, null, Inflation.Real); // don't load bengen or dmswr table
+      String filename = rebalance.isMonthly() ? "bengen-table.csv" : String.format("bengen-table-%s.csv", rebalance);
+      File file = new File(DataIO.getFinancePath(), filename);
+      if (mode.equals("shard")) {
+        generateShard(file, rebalance, maxYears, SwrLib.percentStockList, Integer.parseInt(args[1]),
+            Integer.parseInt(args[2]));
+      } else if (mode.equals("merge")) {
+        mergeShards(file, rebalance, maxYears, SwrLib.percentStockList, Integer.parseInt(args[1]));
+      } else {
+        Metrics.registerMBean();
+        Metrics.startReporter(60000, System.out);
+        generateTable(file, rebalance, maxYears, SwrLib.percentStockList, mode.equals("resume"));
+        System.out.print(Metrics.dump());
+      }
     }
   }
 }
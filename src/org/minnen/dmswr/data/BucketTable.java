@@ -0,0 +1,112 @@
+package org.minnen.dmswr.data;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.minnen.dmswr.BucketMethod;
+import org.minnen.dmswr.utils.CsvWriter;
+import org.minnen.dmswr.utils.DataIO;
+import org.minnen.dmswr.utils.SwrLib;
+import org.minnen.dmswr.utils.TimeLib;
+import org.minnen.dmswr.utils.FinLib.Inflation;
+
+/**
+ * Generate SWR tables for the cash-bucket strategy (see `BucketMethod`).
+ *
+ * Each table covers one bucket size and uses the same format as the Bengen table so it can be loaded with
+ * `BengenTable.loadTable()`.
+ */
+public class BucketTable
+{
+  /** Maximum bucket size (in years of spending) for `main()`. */
+  public static final int maxBucketYears = 10;
+
+  /**
+   * Generate a file containing bucket SWR results.
+   *
+   * Each line in the CSV file has the form: retirement_years, percent_stock, yyyy-mm, swr. The SWR is an integer
+   * representing basis points, i.e. 500 = 5.0%.
+   *
+   * @param file write results to this file
+   * @param bucketYears years of spending held in the bucket
+   * @param refillDrawdown only refill the bucket when stocks are less than this percent below their peak
+   * @param maxYears include retirement durations of [1, maxYears] years
+   * @throws IOException
+   */
+  public static void generateTable(File file, int bucketYears, double refillDrawdown, int maxYears) throws IOException
+  {
+    generateTables(new File[] { file }, new int[] { bucketYears }, refillDrawdown, maxYears);
+  }
+
+  /**
+   * Generate bucket SWR tables for several bucket sizes with one sweep per stock percentage.
+   *
+   * @param files write results for `bucketYearsList[i]` to `files[i]` (see `generateTable()` for the format)
+   * @param bucketYearsList years of spending held in the bucket
+   * @param refillDrawdown only refill the bucket when stocks are less than this percent below their peak
+   * @param maxYears include retirement durations of [1, maxYears] years
+   * @throws IOException
+   */
+  public static void generateTables(File[] files, int[] bucketYearsList, double refillDrawdown, int maxYears)
+      throws IOException
+  {
+    assert files.length == bucketYearsList.length;
+    final int[] percentStockList = SwrLib.percentStockList;
+    final int[][][][] swrs = new int[percentStockList.length][][][];
+    for (int j = 0; j < percentStockList.length; ++j) {
+      final long a = TimeLib.getTime();
+      swrs[j] = BucketMethod.calcSwrAcrossTime(maxYears, percentStockList[j], bucketYearsList, refillDrawdown);
+      final long b = TimeLib.getTime();
+      System.out.printf("buckets=%d, %3d -> %d ms\n", bucketYearsList.length, percentStockList[j], b - a);
+    }
+
+    for (int iBucket = 0; iBucket < bucketYearsList.length; ++iBucket) {
+      writeTable(files[iBucket], bucketYearsList[iBucket], refillDrawdown, maxYears, swrs, iBucket);
+    }
+  }
+
+  private static void writeTable(File file, int bucketYears, double refillDrawdown, int maxYears, int[][][][] swrs,
+      int iBucket) throws IOException
+  {
+    final int iFirst = BucketMethod.getFirstIndex();
+    final int iEnd = SwrLib.getAssetMatrix(SwrLib.ASSET_TBILLS).iEnd;
+    final int[] percentStockList = SwrLib.percentStockList;
+    try (CsvWriter writer = new CsvWriter(file)) {
+      writer.writeln("# Cash bucket safe withdrawal rates (SWR).");
+      writer.writeln(String.format("# Bucket: %d years of spending in T-bills, refill above %.1f%% drawdown.",
+          bucketYears, -refillDrawdown));
+      writer.writeln("# Withdrawal rates are annual, implying that the monthly withdrawal rate is SWR/12.0.");
+      writer.writeln("# Fields:");
+      writer.writeln("# 1) retirement duration in years");
+      writer.writeln("# 2) percent stock");
+      writer.writeln("# 3) retirement month");
+      writer.writeln("# 4) safe withdrawal rate in basis points (500=5.0%)");
+
+      for (int retirementYears = 1; retirementYears <= maxYears; ++retirementYears) {
+        for (int j = 0; j < percentStockList.length; ++j) {
+          final int[] row = swrs[j][iBucket][retirementYears - 1];
+          final int nStarts = Math.min(row.length, iEnd - iFirst - retirementYears * 12 + 1);
+          for (int k = 0; k < nStarts; ++k) {
+            BengenEntry entry = new BengenEntry(SwrLib.time(iFirst + k), retirementYears, percentStockList[j],
+                row[k]);
+            entry.writeCSV(writer);
+          }
+        }
+      }
+    }
+  }
+
+  public static void main(String[] args) throws IOException
+  {
+    SwrLib.setup(null, null, Inflation.Real); // don't load bengen or dmswr table
+    SwrLib.addTBills(new File(DataIO.getFinancePath(), "TB3MS.csv"));
+
+    final int[] bucketYearsList = new int[maxBucketYears + 1];
+    final File[] files = new File[maxBucketYears + 1];
+    for (int bucketYears = 0; bucketYears <= maxBucketYears; ++bucketYears) {
+      bucketYearsList[bucketYears] = bucketYears;
+      files[bucketYears] = new File(DataIO.getFinancePath(), String.format("bucket%d-table.csv", bucketYears));
+    }
+    generateTables(files, bucketYearsList, BucketMethod.defaultRefillDrawdown, 60);
+  }
+}
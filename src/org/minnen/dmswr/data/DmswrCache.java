@@ -0,0 +1,235 @@
+package org.minnen.dmswr.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.minnen.dmswr.MarwoodMethod;
+import org.minnen.dmswr.NestEggCalculator;
+import org.minnen.dmswr.utils.DataIO;
+import org.minnen.dmswr.utils.Fingerprint;
+import org.minnen.dmswr.utils.SwrLib;
+
+/**
+ * Content-addressed cache for DMSWR simulation results.
+ *
+ * `MarwoodMethod.findDMSWR()` is expensive and many figures request exactly the same results. Results are keyed by a
+ * hash of everything that affects them: the market data (including the bond model and inflation mode), the Bengen
+ * table, the simulation parameters, and the nest egg calculator. There are two tiers: an in-memory LRU map and binary
+ * files in `DataIO.getOutputPath()/dmswr-cache` that survive across runs.
+ *
+ * If the inputs can't be identified (e.g. a custom nest egg calculator without a cache key or a Bengen table that was
+ * generated instead of loaded), the simulation is run without caching.
+ *
+ * Cached results are never handed out directly: each call returns an unmodifiable list of copies so a caller that
+ * changes an entry (e.g. `MonthlyInfo.finalBalance`) can't corrupt later hits.
+ */
+public class DmswrCache
+{
+  private static final int                             MAGIC            = 0x444d5357; // "DMSW"
+  private static final int                             VERSION          = 1;
+
+  /** Maximum number of result lists held in memory. */
+  public static int                                    maxMemoryEntries = 32;
+
+  /** Set to false to disable the on-disk tier. */
+  public static boolean                                useDisk          = true;
+
+  private static final Map<String, List<MonthlyInfo>> memory           = new LinkedHashMap<String, List<MonthlyInfo>>(
+      16, 0.75f, true)
+  {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, List<MonthlyInfo>> eldest)
+    {
+      return size() > maxMemoryEntries;
+    }
+  };
+
+  private static int                                   nMemoryHits, nDiskHits, nMisses;
+
+  /** @return directory that holds cached results. */
+  public static File getCacheDir()
+  {
+    return new File(DataIO.getOutputPath(), "dmswr-cache");
+  }
+
+  /** Same as `MarwoodMethod.findDMSWR()` but results are cached. */
+  public static List<MonthlyInfo> findDMSWR(int retirementYears, int lookbackYears, int percentStock,
+      NestEggCalculator nestEggCalculator) throws IOException
+  {
+    final int lookbackMonths = lookbackYears * 12;
+    final int iStartSim = lookbackMonths; // first data point with full lookback history
+    final int iEndSim = SwrLib.length() - 1;
+    return findDMSWR(iStartSim, iEndSim, retirementYears, lookbackYears, percentStock, nestEggCalculator);
+  }
+
+  /** Same as `MarwoodMethod.findDMSWR()` but results are cached. */
+  public static List<MonthlyInfo> findDMSWR(int iStartSim, int iEndSim, int retirementYears, int lookbackYears,
+      int percentStock, NestEggCalculator nestEggCalculator) throws IOException
+  {
+    final String key = buildKey(iStartSim, iEndSim, retirementYears, lookbackYears, percentStock, nestEggCalculator);
+    if (key == null) {
+      return MarwoodMethod.findDMSWR(iStartSim, iEndSim, retirementYears, lookbackYears, percentStock,
+          nestEggCalculator);
+    }
+
+    // Check the memory tier.
+    synchronized (memory) {
+      List<MonthlyInfo> infos = memory.get(key);
+      if (infos != null) {
+        ++nMemoryHits;
+        return copy(infos);
+      }
+    }
+
+    // Check the disk tier.
+    final File file = new File(getCacheDir(), key + ".bin");
+    List<MonthlyInfo> infos = null;
+    if (useDisk && file.canRead()) {
+      infos = load(file, iEndSim - iStartSim + 1);
+      if (infos != null) {
+        synchronized (memory) {
+          ++nDiskHits;
+        }
+      }
+    }
+
+    // Run the simulation if necessary.
+    if (infos == null) {
+      infos = MarwoodMethod.findDMSWR(iStartSim, iEndSim, retirementYears, lookbackYears, percentStock,
+          nestEggCalculator);
+      synchronized (memory) {
+        ++nMisses;
+      }
+      if (useDisk) {
+        save(file, infos);
+      }
+    }
+
+    synchronized (memory) {
+      memory.put(key, infos);
+    }
+    return copy(infos);
+  }
+
+  /** @return unmodifiable list holding copies of the given results. */
+  private static List<MonthlyInfo> copy(List<MonthlyInfo> infos)
+  {
+    List<MonthlyInfo> copies = new ArrayList<>(infos.size());
+    for (MonthlyInfo info : infos) {
+      copies.add(new MonthlyInfo(info));
+    }
+    return Collections.unmodifiableList(copies);
+  }
+
+  /** Remove all entries from the memory tier (files are not deleted). */
+  public static void clearMemory()
+  {
+    synchronized (memory) {
+      memory.clear();
+    }
+  }
+
+  /** @return summary of cache hits and misses. */
+  public static String getStats()
+  {
+    synchronized (memory) {
+      return String.format("DMSWR cache: memory=%d  disk=%d  miss=%d", nMemoryHits, nDiskHits, nMisses);
+    }
+  }
+
+  /** @return hash that identifies the simulation inputs, or null if the inputs can't be identified. */
+  private static String buildKey(int iStartSim, int iEndSim, int retirementYears, int lookbackYears, int percentStock,
+      NestEggCalculator nestEggCalculator)
+  {
+    final String nestEggKey = nestEggCalculator.getCacheKey();
+    final String bengenKey = BengenTable.getFingerprint();
+    if (nestEggKey == null || bengenKey == null) return null;
+
+    Fingerprint fp = new Fingerprint();
+    fp.add("dmswr").add(VERSION);
+    fp.add(SwrLib.getDataFingerprint()).add(bengenKey).add(nestEggKey);
+    fp.add(iStartSim).add(iEndSim).add(retirementYears).add(lookbackYears).add(percentStock);
+    return fp.toHex();
+  }
+
+  /** Save results to a binary file (written to a temp file and then moved into place). */
+  private static void save(File file, List<MonthlyInfo> infos) throws IOException
+  {
+    File dir = file.getParentFile();
+    if (!dir.exists()) dir.mkdirs();
+    File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(infos.size());
+      for (MonthlyInfo info : infos) {
+        out.writeLong(info.retireTime);
+        out.writeLong(info.currentTime);
+        out.writeInt(info.retirementMonth);
+        out.writeDouble(info.monthlyIncome);
+        out.writeDouble(info.startBalance);
+        out.writeDouble(info.endBalance);
+        out.writeInt(info.swr);
+        out.writeInt(info.virtualRetirementMonths);
+        out.writeDouble(info.bengenSalary);
+        out.writeDouble(info.marwoodSalary);
+        out.writeDouble(info.crystalSalary);
+        out.writeDouble(info.finalBalance);
+      }
+    }
+    try {
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /** @return results loaded from a binary file or null if the file is invalid. */
+  private static List<MonthlyInfo> load(File file, int expectedSize)
+  {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+      final int n = in.readInt();
+      if (n != expectedSize) return null;
+      List<MonthlyInfo> infos = new ArrayList<>(n);
+      for (int i = 0; i < n; ++i) {
+        final long retireTime = in.readLong();
+        final long currentTime = in.readLong();
+        final int retirementMonth = in.readInt();
+        final double monthlyIncome = in.readDouble();
+        final double startBalance = in.readDouble();
+        final double endBalance = in.readDouble();
+        final int swr = in.readInt();
+        final int virtualRetirementMonths = in.readInt();
+        final double bengenSalary = in.readDouble();
+        final double marwoodSalary = in.readDouble();
+        final double crystalSalary = in.readDouble();
+        final double finalBalance = in.readDouble();
+        MonthlyInfo info = new MonthlyInfo(retireTime, currentTime, retirementMonth, monthlyIncome, startBalance,
+            endBalance, swr, virtualRetirementMonths, bengenSalary, marwoodSalary, crystalSalary);
+        info.finalBalance = finalBalance;
+        infos.add(info);
+      }
+      return infos;
+    } catch (IOException e) {
+      System.err.printf("Failed to load cached DMSWR results (%s): %s\n", file.getPath(), e.getMessage());
+      return null;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package org.minnen.dmswr.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.minnen.dmswr.BengenMethod;
+import org.minnen.dmswr.GlidePath;
+import org.minnen.dmswr.utils.CsvWriter;
+import org.minnen.dmswr.utils.DataIO;
+import org.minnen.dmswr.utils.Metrics;
+import org.minnen.dmswr.utils.SwrLib;
+import org.minnen.dmswr.utils.TimeLib;
+import org.minnen.dmswr.utils.FinLib.Inflation;
+
+/**
+ * Safe withdrawal rates for retirements that follow a glide path.
+ *
+ * This is the glide path equivalent of BengenTable. Values are calculated on demand (using the precomputed multipliers
+ * in GlidePath) and cached for the current market data.
+ */
+public class GlidePathTable
+{
+  /** SWR (basis points) for every start month keyed by glide path, duration, and data fingerprint. */
+  private static final Map<String, int[]>   swrMap    = new ConcurrentHashMap<>();
+
+  /** MinSWR (basis points) keyed by glide path, duration, and data fingerprint. */
+  private static final Map<String, Integer> minSwrMap = new ConcurrentHashMap<>();
+
+  private static String getKey(GlidePath glidePath, int retirementMonths)
+  {
+    return String.format("%s|%d|%s", glidePath.getKey(), retirementMonths, SwrLib.getDataFingerprint());
+  }
+
+  /**
+   * @param glidePath asset allocation for each month of retirement
+   * @param retirementYears duration of retirement in years
+   * @return SWR in basis points for each start month with a full retirement (index = SwrLib index); do not modify
+   */
+  public static int[] getAcrossTime(GlidePath glidePath, int retirementYears)
+  {
+    final int retirementMonths = retirementYears * 12;
+    return Metrics.cached(swrMap, getKey(glidePath, retirementMonths),
+        key -> BengenMethod.calcSwrAcrossTime(retirementMonths, glidePath));
+  }
+
+  /**
+   * Get the MinSWR for a glide path, i.e. the largest withdrawal rate that works for every start month.
+   *
+   * @param glidePath asset allocation for each month of retirement
+   * @param retirementMonths duration of retirement in months
+   * @return MinSWR in basis points (325 = 3.25%)
+   */
+  public static int getSWR(GlidePath glidePath, int retirementMonths)
+  {
+    return Metrics.cached(minSwrMap, getKey(glidePath, retirementMonths), key -> {
+      int[] swrs = swrMap.get(key);
+      if (swrs != null) {
+        int minSWR = Integer.MAX_VALUE;
+        for (int swr : swrs) {
+          minSWR = Math.min(minSWR, swr);
+        }
+        return minSWR;
+      }
+      return BengenMethod.findSWR(retirementMonths, glidePath, 1);
+    });
+  }
+
+  public static void clear()
+  {
+    swrMap.clear();
+    minSwrMap.clear();
+  }
+
+  /**
+   * Generate a file containing SWRs for a glide path.
+   *
+   * Each line in the CSV file has the form: retirement_years, yyyy-mm, swr. The SWR is an integer representing basis
+   * points, i.e. 500 = 5.0%.
+   *
+   * @param glidePath asset allocation for each month of retirement
+   * @param maxYears generate SWRs for retirements of 1..maxYears years
+   * @param file write results to this file
+   */
+  public static void generateTable(GlidePath glidePath, int maxYears, File file) throws IOException
+  {
+    try (CsvWriter writer = new CsvWriter(file)) {
+      writer.writeln(String.format("# Safe withdrawal rates (SWR) for glide path: %s", glidePath));
+      writer.writeln("# Withdrawal rates are annual, implying that the monthly withdrawal rate is SWR/12.0.");
+      writer.writeln("# Fields:");
+      writer.writeln("# 1) retirement duration in years");
+      writer.writeln("# 2) retirement month");
+      writer.writeln("# 3) safe withdrawal rate in basis points (500=5.0%)");
+
+      for (int retirementYears = 1; retirementYears <= maxYears; ++retirementYears) {
+        final long a = TimeLib.getTime();
+        final int[] swrs = getAcrossTime(glidePath, retirementYears);
+        for (int i = 0; i < swrs.length; ++i) {
+          writer.add(retirementYears).addYM(SwrLib.time(i)).add(swrs[i]).endRow();
+        }
+        final int minSWR = getSWR(glidePath, retirementYears * 12);
+        final long b = TimeLib.getTime();
+        System.out.printf("%d years: MinSWR=%d, %d ms\n", retirementYears, minSWR, b - a);
+      }
+    }
+  }
+
+  public static void main(String[] args) throws IOException
+  {
+    SwrLib.setup(SwrLib.getDefaultBengenFile(), null, Inflation.Real); // only load bengen table
+
+    final int retirementYears = 30;
+    GlidePath[] glidePaths = new GlidePath[] { GlidePath.linear(30, 70, retirementYears),
+        GlidePath.linear(40, 80, retirementYears), GlidePath.linear(60, 100, retirementYears),
+        GlidePath.linear(80, 40, retirementYears) };
+    for (GlidePath glidePath : glidePaths) {
+      final int start = glidePath.getInitialPercentStock();
+      final int end = glidePath.percentStock(glidePath.getScheduleMonths() - 1);
+      File file = new File(DataIO.getFinancePath(), String.format("glide-%d-%d-table.csv", start, end));
+      System.out.printf("Glide path: %s -> [%s]\n", glidePath, file);
+      generateTable(glidePath, retirementYears, file);
+    }
+  }
+}
@@ -1,5 +1,10 @@
 package org.minnen.dmswr.data;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.minnen.dmswr.utils.CsvWriter;
 import org.minnen.dmswr.utils.TimeLib;
 
 /**
@@ -116,6 +121,48 @@ public final class MarwoodEntry
         bengenSalary, marwoodSalary, crystalSalary);
   }
 
+  /** Write this entry as a CSV row (same format as `toCSV()`). */
+  public void writeCSV(CsvWriter csv) throws IOException
+  {
+    assert swr > 0;
+    csv.add(retirementYears).add(lookbackYears).add(percentStock).addYM(retireTime).addYM(currentTime).add(swr)
+        .add(virtualRetirementMonths).addFixed(finalBalance, 2).addFixed(bengenSalary, 2).addFixed(marwoodSalary, 2)
+        .addFixed(crystalSalary, 2).endRow();
+  }
+
+  /** Write this entry in binary form (see `readBinary()`). */
+  public void writeBinary(DataOutput out) throws IOException
+  {
+    out.writeLong(retireTime);
+    out.writeLong(currentTime);
+    out.writeInt(retirementYears);
+    out.writeInt(lookbackYears);
+    out.writeInt(percentStock);
+    out.writeInt(swr);
+    out.writeInt(virtualRetirementMonths);
+    out.writeDouble(finalBalance);
+    out.writeDouble(bengenSalary);
+    out.writeDouble(marwoodSalary);
+    out.writeDouble(crystalSalary);
+  }
+
+  public static MarwoodEntry readBinary(DataInput in) throws IOException
+  {
+    final long retireTime = in.readLong();
+    final long currentTime = in.readLong();
+    final int retirementYears = in.readInt();
+    final int lookbackYears = in.readInt();
+    final int percentStock = in.readInt();
+    final int swr = in.readInt();
+    final int virtualRetirementMonths = in.readInt();
+    final double finalBalance = in.readDouble();
+    final double bengenSalary = in.readDouble();
+    final double marwoodSalary = in.readDouble();
+    final double crystalSalary = in.readDouble();
+    return new MarwoodEntry(retireTime, currentTime, retirementYears, lookbackYears, percentStock, swr,
+        virtualRetirementMonths, finalBalance, bengenSalary, marwoodSalary, crystalSalary);
+  }
+
   @Override
   public String toString()
   {
@@ -1,26 +1,35 @@
 package org.minnen.dmswr.data;
 
 import java.io.BufferedReader;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
+import org.minnen.dmswr.utils.CsvWriter;
 import org.minnen.dmswr.utils.DataIO;
+import org.minnen.dmswr.utils.Events;
 import org.minnen.dmswr.utils.Sequence;
 import org.minnen.dmswr.utils.SwrLib;
 import org.minnen.dmswr.BengenMethod;
 import org.minnen.dmswr.MarwoodMethod;
 import org.minnen.dmswr.NestEggCalculator;
 import org.minnen.dmswr.utils.Library;
+import org.minnen.dmswr.utils.Metrics;
 import org.minnen.dmswr.utils.TimeLib;
-import org.minnen.dmswr.utils.Writer;
 import org.minnen.dmswr.utils.FinLib.Inflation;
 
 public class MarwoodTable
 {
+  /** Longest retirement duration in the tables. */
+  public static final int                            maxYears            = 40;
+
   /** Values have valid SWR fields, queries ignore SWR field. */
   public static Map<MarwoodEntry, MarwoodEntry>      marwoodMap          = new HashMap<>();
 
@@ -36,20 +45,25 @@ public class MarwoodTable
   public static MarwoodEntry get(long retireTime, int retirementYears, int lookbackYears, int percentStock)
   {
     MarwoodEntry key = new MarwoodEntry(retireTime, retirementYears, lookbackYears, percentStock);
-    return marwoodMap.getOrDefault(key, null);
+    return Metrics.lookup(marwoodMap.get(key));
   }
 
-  /** @return Sequence of DMSWR info vectors for initial retirement months. */
+  /**
+   * @return Sequence holding the DMSWR as basis points for each starting retirement; each call returns a new copy (two
+   *         array copies since the stored sequence is compact) so the stored sequence stays compact even if the caller
+   *         iterates over it, and callers should look it up once instead of once per loop iteration
+   */
   public static Sequence getAcrossTime(int retirementYears, int lookbackYears, int percentStock)
   {
     MarwoodEntry key = new MarwoodEntry(retirementYears, lookbackYears, percentStock);
-    return marwoodSequences.getOrDefault(key, null);
+    Sequence seq = Metrics.lookup(marwoodSequences.get(key));
+    return seq == null ? null : seq.dup();
   }
 
   public static int getSWR(int retirementYears, int lookbackYears, int percentStock)
   {
     MarwoodEntry key = new MarwoodEntry(retirementYears, lookbackYears, percentStock);
-    return marwoodSWRs.get(key);
+    return Metrics.lookup(marwoodSWRs.get(key));
   }
 
   /** @return Sequence of DMSWR info vectors for initial retirement months. */
@@ -57,7 +71,7 @@ public class MarwoodTable
       int percentStock)
   {
     MarwoodEntry key = new MarwoodEntry(retireTime, retirementYears, lookbackYears, percentStock);
-    return marwoodTrajectories.getOrDefault(key, null);
+    return Metrics.lookup(marwoodTrajectories.get(key));
   }
 
   public static void clear()
@@ -68,128 +82,313 @@ public class MarwoodTable
     marwoodTrajectories.clear();
   }
 
-  private static void generateTable(File file, int percentStock, int lookbackYears, boolean reretire) throws IOException
+  /**
+   * Generate a DMSWR table for one stock percentage and lookback window.
+   * 
+   * Each retirement duration is committed to a checkpoint as soon as it's done (see `TableCheckpoint`) and the final
+   * file is written once all durations are complete. If `resume` is true, durations committed by an earlier run with
+   * the same data are reloaded instead of recalculated.
+   * 
+   * Pending durations run in parallel unless `reretire` is true, since re-retiring reads the results for shorter
+   * durations from `marwoodMap`.
+   */
+  private static void generateTable(File file, int percentStock, int lookbackYears, boolean reretire, boolean resume)
+      throws IOException
+  {
+    final long tStart = Metrics.generateTimer.start();
+    Events.TableGenerate event = new Events.TableGenerate();
+    event.begin();
+    try {
+      clear();
+
+      final String params = getParams(percentStock, lookbackYears, reretire);
+      TableCheckpoint checkpoint = new TableCheckpoint(file, params, resume);
+      List<String> cells = getCellNames();
+      List<Integer> pending = new ArrayList<>();
+      for (int retirementYears = 1; retirementYears <= maxYears; ++retirementYears) {
+        final String cell = cells.get(retirementYears - 1);
+        if (checkpoint.isDone(cell)) {
+          for (String line : checkpoint.readCell(cell)) {
+            MarwoodEntry entry = MarwoodEntry.fromCSV(line);
+            marwoodMap.put(entry, entry);
+          }
+        } else {
+          pending.add(retirementYears);
+        }
+      }
+
+      if (reretire) {
+        for (int retirementYears : pending) {
+          List<MarwoodEntry> entries = calcCell(retirementYears, lookbackYears, percentStock, true);
+          commitCell(checkpoint, cells.get(retirementYears - 1), entries);
+        }
+      } else {
+        List<List<MarwoodEntry>> results;
+        try {
+          results = pending.parallelStream().map(retirementYears -> {
+            try {
+              List<MarwoodEntry> entries = calcCell(retirementYears, lookbackYears, percentStock, false);
+              commitCell(checkpoint, cells.get(retirementYears - 1), entries);
+              return entries;
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          }).collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+          throw e.getCause();
+        }
+        for (List<MarwoodEntry> entries : results) {
+          addToMap(entries);
+        }
+      }
+
+      checkpoint.merge(cells, MarwoodTable::writeHeader);
+      event.completed = true;
+    } finally {
+      Metrics.generateTimer.stop(tStart);
+      event.end();
+      if (event.shouldCommit()) {
+        event.table = "dmswr";
+        event.file = Events.path(file);
+        event.params = getParams(percentStock, lookbackYears, reretire);
+        event.rows = marwoodMap.size();
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * Generate one shard of a DMSWR table (see `TableShards`).
+   * 
+   * Shards are independent so they can run as separate processes on one or more machines. Use `mergeShards()` to
+   * build the final table.
+   */
+  private static void generateShard(File file, int percentStock, int lookbackYears, boolean reretire, int shard,
+      int nShards) throws IOException
+  {
+    final long tStart = Metrics.generateTimer.start();
+    Events.TableGenerate event = new Events.TableGenerate();
+    event.begin();
+    try {
+      clear();
+
+      final String params = getParams(percentStock, lookbackYears, reretire);
+      List<String> cells = getCellNames();
+      try (TableShards.ShardWriter shardWriter = new TableShards.ShardWriter(file, "dmswr", params, shard, nShards)) {
+        for (int retirementYears = 1; retirementYears <= maxYears; ++retirementYears) {
+          final int iCell = retirementYears - 1;
+          if (!TableShards.isAssigned(iCell, shard, nShards)) continue;
+          List<MarwoodEntry> entries = calcCell(retirementYears, lookbackYears, percentStock, reretire);
+          addToMap(entries);
+          DataOutputStream out = shardWriter.beginCell(cells.get(iCell), entries.size());
+          for (MarwoodEntry entry : entries) {
+            entry.writeBinary(out);
+          }
+        }
+        shardWriter.finish();
+      }
+      event.completed = true;
+    } finally {
+      Metrics.generateTimer.stop(tStart);
+      event.end();
+      if (event.shouldCommit()) {
+        event.table = "dmswr";
+        event.file = Events.path(file);
+        event.params = getParams(percentStock, lookbackYears, reretire);
+        event.shard = shard;
+        event.shards = nShards;
+        event.rows = marwoodMap.size();
+        event.commit();
+      }
+    }
+  }
+
+  /** Validate all shards and merge them into the final table. */
+  private static void mergeShards(File file, int percentStock, int lookbackYears, boolean reretire, int nShards)
+      throws IOException
+  {
+    final long n = TableShards.merge(file, "dmswr", getParams(percentStock, lookbackYears, reretire), nShards,
+        getCellNames(), MarwoodTable::writeHeader, (in, writer) -> MarwoodEntry.readBinary(in).writeCSV(writer));
+    System.out.printf("Merged %d shards: %d entries -> [%s]\n", nShards, n, file);
+    TableShards.deleteShards(file, nShards);
+  }
+
+  /** @return parameters that identify the results of a generation run (data, Bengen table, and settings). */
+  private static String getParams(int percentStock, int lookbackYears, boolean reretire)
+  {
+    return String.format("dmswr stock=%d lookback=%d reretire=%b data=%s bengen=%s", percentStock, lookbackYears,
+        reretire, SwrLib.getDataFingerprint(), BengenTable.getFingerprint());
+  }
+
+  /** @return names of all cells (one per retirement duration) in table order. */
+  private static List<String> getCellNames()
+  {
+    List<String> cells = new ArrayList<>();
+    for (int retirementYears = 1; retirementYears <= maxYears; ++retirementYears) {
+      cells.add(String.format("years%02d", retirementYears));
+    }
+    return cells;
+  }
+
+  /**
+   * Calculate the DMSWR entries for one retirement duration.
+   * 
+   * Without re-retiring, `marwoodMap` isn't touched so durations can run in parallel; use `addToMap()` to add the
+   * results. Re-retiring adds all entries to `marwoodMap` since the re-retire trajectories read them.
+   */
+  private static List<MarwoodEntry> calcCell(int retirementYears, int lookbackYears, int percentStock,
+      boolean reretire) throws IOException
   {
     // TODO ok to have annualized withdrawal rates above 100%? Can be "sane" since withdrawals are monthly and growth
     // can be large enough to compensate on annual basis. Example: 1921-12 with 1 year retirement, 75/25 allocation.
-
-    clear();
     NestEggCalculator nestEggCalculator = NestEggCalculator.constant(1e6);
 
-    try (Writer writer = new Writer(file)) {
-      writer.writeln("# DMSWR (safe withdrawal rates).");
-      writer.writeln("# Withdrawal rates are annual, implying that the monthly withdrawal rate is SWR/12.0.");
-      writer.writeln("# Fields:");
-      writer.writeln("# 1) retirement duration in years");
-      writer.writeln("# 2) lookback window in years");
-      writer.writeln("# 3) percent stock");
-      writer.writeln("# 4) retirement month");
-      writer.writeln("# 5) current month");
-      writer.writeln("# 6) DMSWR in basis points (500=5.0%)");
-      writer.writeln("# 7) virtual retirement months - length of \"virtual retirement\" for best SWR");
-      writer.writeln("# 8) final balance - balance at the end of retirement");
-      writer.writeln("# 9) Bengen (MinSWR) income - annualized income using the Bengen SWR");
-      writer.writeln("# 10) DMSWR income - annualized income using the DMSWR method");
-      writer.writeln("# 11) CBSWR income - annualized income if we withdrew the maximum safe rate");
-      for (int retirementYears = 1; retirementYears <= 40; ++retirementYears) {
-        final long a = TimeLib.getTime();
-        List<MonthlyInfo> marwoodList = MarwoodMethod.findDMSWR(retirementYears, lookbackYears, percentStock,
-            nestEggCalculator);
-        final long b = TimeLib.getTime();
-        System.out.printf("%d  N=%d  (%d ms)\n", retirementYears, marwoodList.size(), b - a);
-
-        // First add all results to the table since they're needed for re-retiring.
-        for (MonthlyInfo info : marwoodList) {
-          MarwoodEntry entry = new MarwoodEntry(retirementYears, lookbackYears, percentStock, info);
-          assert entry.isRetirementStart();
+    final long a = TimeLib.getTime();
+    List<MonthlyInfo> marwoodList = MarwoodMethod.findDMSWR(retirementYears, lookbackYears, percentStock,
+        nestEggCalculator);
+    final long b = TimeLib.getTime();
+    System.out.printf("%d  N=%d  (%d ms)\n", retirementYears, marwoodList.size(), b - a);
+
+    List<MarwoodEntry> entries = new ArrayList<>();
+    for (MonthlyInfo info : marwoodList) {
+      MarwoodEntry entry = new MarwoodEntry(retirementYears, lookbackYears, percentStock, info);
+      assert entry.isRetirementStart();
+      entries.add(entry);
+    }
+    if (!reretire) return entries;
+
+    // Add all results to the table since they're needed for re-retiring, then generate data for re-retiring.
+    addToMap(entries);
+
+    for (MonthlyInfo startInfo : marwoodList) {
+      final double nestEgg = nestEggCalculator.getNestEgg(startInfo.index, lookbackYears, lookbackYears, percentStock);
+      List<MonthlyInfo> trajectory = MarwoodMethod.reretire(startInfo.currentTime, retirementYears, lookbackYears,
+          percentStock, nestEgg);
+
+      MarwoodEntry newEntry = new MarwoodEntry(retirementYears, lookbackYears, percentStock, trajectory.get(0));
+      MarwoodEntry oldEntry = MarwoodTable.marwoodMap.get(newEntry);
+      assert newEntry.equals(oldEntry); // only tests that the key fields match
+      assert newEntry.isRetirementStart();
+      assert newEntry.swr == oldEntry.swr || (newEntry.swr == 2000 && oldEntry.swr > 2000); // 20% cap
+      assert Library.almostEqual(newEntry.bengenSalary, oldEntry.bengenSalary, 1e-5);
+      assert Library.almostEqual(newEntry.crystalSalary, oldEntry.crystalSalary, 1e-5);
+      assert Library.almostEqual(newEntry.marwoodSalary, oldEntry.marwoodSalary, 1e-5);
+
+      for (MonthlyInfo info : trajectory) {
+        MarwoodEntry entry = new MarwoodEntry(retirementYears, lookbackYears, percentStock, info);
+        if (marwoodMap.containsKey(entry)) {
+          assert entry.isRetirementStart(); // data for retirement start dates are already in the table
+        } else {
+          // This entry is for a re-retire trajectory so add it to the table.
+          assert entry.currentTime > entry.retireTime;
           marwoodMap.put(entry, entry);
-          writer.writeln(entry.toCSV());
+          entries.add(entry);
         }
+      }
+    }
+    return entries;
+  }
 
-        // Now generate data for re-retiring.
-        if (!reretire) continue;
-
-        for (MonthlyInfo startInfo : marwoodList) {
-          final double nestEgg = nestEggCalculator.getNestEgg(startInfo.index, lookbackYears, lookbackYears,
-              percentStock);
-          List<MonthlyInfo> trajectory = MarwoodMethod.reretire(startInfo.currentTime, retirementYears, lookbackYears,
-              percentStock, nestEgg);
-
-          MarwoodEntry newEntry = new MarwoodEntry(retirementYears, lookbackYears, percentStock, trajectory.get(0));
-          MarwoodEntry oldEntry = MarwoodTable.marwoodMap.get(newEntry);
-          assert newEntry.equals(oldEntry); // only tests that the key fields match
-          assert newEntry.isRetirementStart();
-          assert newEntry.swr == oldEntry.swr || (newEntry.swr == 2000 && oldEntry.swr > 2000); // 20% cap
-          assert Library.almostEqual(newEntry.bengenSalary, oldEntry.bengenSalary, 1e-5);
-          assert Library.almostEqual(newEntry.crystalSalary, oldEntry.crystalSalary, 1e-5);
-          assert Library.almostEqual(newEntry.marwoodSalary, oldEntry.marwoodSalary, 1e-5);
-
-          for (MonthlyInfo info : trajectory) {
-            MarwoodEntry entry = new MarwoodEntry(retirementYears, lookbackYears, percentStock, info);
-            if (marwoodMap.containsKey(entry)) {
-              assert entry.isRetirementStart(); // data for retirement start dates are already in the table
-            } else {
-              // This entry is for a re-retire trajectory so add it to the table.
-              assert entry.currentTime > entry.retireTime;
-              marwoodMap.put(entry, entry);
-              writer.writeln(entry.toCSV());
-            }
-          }
+  private static void addToMap(List<MarwoodEntry> entries)
+  {
+    for (MarwoodEntry entry : entries) {
+      marwoodMap.put(entry, entry);
+    }
+  }
 
-        }
+  private static void commitCell(TableCheckpoint checkpoint, String cell, List<MarwoodEntry> entries)
+      throws IOException
+  {
+    checkpoint.commit(cell, writer -> {
+      for (MarwoodEntry entry : entries) {
+        entry.writeCSV(writer);
       }
-    }
+    });
+  }
+
+  private static void writeHeader(CsvWriter writer) throws IOException
+  {
+    writer.writeln("# DMSWR (safe withdrawal rates).");
+    writer.writeln("# Withdrawal rates are annual, implying that the monthly withdrawal rate is SWR/12.0.");
+    writer.writeln("# Fields:");
+    writer.writeln("# 1) retirement duration in years");
+    writer.writeln("# 2) lookback window in years");
+    writer.writeln("# 3) percent stock");
+    writer.writeln("# 4) retirement month");
+    writer.writeln("# 5) current month");
+    writer.writeln("# 6) DMSWR in basis points (500=5.0%)");
+    writer.writeln("# 7) virtual retirement months - length of \"virtual retirement\" for best SWR");
+    writer.writeln("# 8) final balance - balance at the end of retirement");
+    writer.writeln("# 9) Bengen (MinSWR) income - annualized income using the Bengen SWR");
+    writer.writeln("# 10) DMSWR income - annualized income using the DMSWR method");
+    writer.writeln("# 11) CBSWR income - annualized income if we withdrew the maximum safe rate");
   }
 
   public static void loadTable(File file) throws IOException
   {
-    clear();
-    try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-      MarwoodEntry marwoodKey = null;
-      Sequence seq = null;
-      while (true) {
-        String line = reader.readLine();
-        if (line == null) break;
-
-        // Remove comments.
-        int i = line.indexOf("#");
-        if (i >= 0) {
-          line = line.substring(0, i);
-        }
+    final long tStart = Metrics.loadTimer.start();
+    Events.TableLoad event = new Events.TableLoad();
+    event.begin();
+    try {
+      clear();
+      try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+        MarwoodEntry marwoodKey = null;
+        Sequence seq = null;
+        while (true) {
+          String line = reader.readLine();
+          if (line == null) break;
+
+          // Remove comments.
+          int i = line.indexOf("#");
+          if (i >= 0) {
+            line = line.substring(0, i);
+          }
+
+          // Remove whitespace and skip empty lines.
+          line = line.trim();
+          if (line.isEmpty()) continue;
 
-        // Remove whitespace and skip empty lines.
-        line = line.trim();
-        if (line.isEmpty()) continue;
+          MarwoodEntry info = MarwoodEntry.fromCSV(line);
+          assert SwrLib.time(SwrLib.indexForTime(info.retireTime)) == info.retireTime;
 
-        MarwoodEntry info = MarwoodEntry.fromCSV(line);
-        assert SwrLib.time(SwrLib.indexForTime(info.retireTime)) == info.retireTime;
+          marwoodMap.put(info, info);
 
-        marwoodMap.put(info, info);
+          if (info.isRetirementStart()) {
+            // Create new sequence when retirement scenario changes.
+            if (marwoodKey == null || info.retirementYears != marwoodKey.retirementYears
+                || info.lookbackYears != marwoodKey.lookbackYears || info.percentStock != marwoodKey.percentStock) {
+              if (seq != null) { // store previous sequence and SWR
+                marwoodSequences.put(marwoodKey, seq.compact());
+                final int swr = (int) Math.round(seq.getMin().get(0));
+                marwoodSWRs.put(marwoodKey, swr);
+              }
 
-        if (info.isRetirementStart()) {
-          // Create new sequence when retirement scenario changes.
-          if (marwoodKey == null || info.retirementYears != marwoodKey.retirementYears
-              || info.lookbackYears != marwoodKey.lookbackYears || info.percentStock != marwoodKey.percentStock) {
-            if (seq != null) { // store previous sequence and SWR
-              marwoodSequences.put(marwoodKey, seq);
-              final int swr = (int) Math.round(seq.getMin().get(0));
-              marwoodSWRs.put(marwoodKey, swr);
+              marwoodKey = new MarwoodEntry(info.retirementYears, info.lookbackYears, info.percentStock);
+              seq = new Sequence(
+                  String.format("Marwood (%d, %d, %d)", info.retirementYears, info.lookbackYears, info.percentStock));
             }
 
-            marwoodKey = new MarwoodEntry(info.retirementYears, info.lookbackYears, info.percentStock);
-            seq = new Sequence(
-                String.format("Marwood (%d, %d, %d)", info.retirementYears, info.lookbackYears, info.percentStock));
+            // Add new month to sequence.
+            assert seq.isEmpty() || info.retireTime > seq.getEndMS();
+            seq.addData(info.swr, info.retireTime);
           }
-
-          // Add new month to sequence.
-          assert seq.isEmpty() || info.retireTime > seq.getEndMS();
-          seq.addData(info.swr, info.retireTime);
+        }
+        if (seq != null) { // store last sequence and final SWR
+          marwoodSequences.put(marwoodKey, seq.compact());
+          final int swr = (int) Math.round(seq.getMin().get(0));
+          marwoodSWRs.put(marwoodKey, swr);
         }
       }
-      if (seq != null) { // store last sequence and final SWR
-        marwoodSequences.put(marwoodKey, seq);
-        final int swr = (int) Math.round(seq.getMin().get(0));
-        marwoodSWRs.put(marwoodKey, swr);
+      event.completed = true;
+    } finally {
+      Metrics.loadTimer.stop(tStart);
+      event.end();
+      if (event.shouldCommit()) {
+        event.table = "dmswr";
+        event.file = Events.path(file);
+        event.rows = marwoodMap.size();
+        event.sequences = marwoodSequences.size();
+        event.commit();
       }
     }
   }
@@ -220,34 +419,56 @@ public class MarwoodTable
     System.out.printf("Verified entries: %d\n", marwoodMap.size());
   }
 
+  /**
+   * Generate or verify DMSWR tables.
+   * 
+   * Modes (first argument, default "generate"):
+   * <ul>
+   * <li>generate: generate the tables in this process
+   * <li>resume: same as generate but skip durations completed by an earlier run
+   * <li>shard &lt;id&gt; &lt;count&gt;: generate one shard of each table
+   * <li>merge &lt;count&gt;: validate the shards and merge them into the final tables
+   * <li>verify: load and verify the existing tables
+   * </ul>
+   */
   public static void main(String[] args) throws IOException
   {
-    final String mode = "generate"; // generate or verify
+    final String mode = args.length > 0 ? args[0] : "generate";
     final int lookbackYears = 20;
     final boolean reretire = false;
     final int[] percentStockList = new int[] { 0, 10, 20, 25, 30, 40, 50, 60, 70, 75, 80, 90, 100 };
     // final int[] percentStockList = new int[] { 75 };
 
-    if (mode.equals("generate")) {
-      SwrLib.setup(SwrLib.getDefaultBengenFile(), null, Inflation.Real); // only load bengen table
+    if (mode.equals("verify")) {
       for (int percentStock : percentStockList) {
-        System.out.printf("Percent Stock: %d\n", percentStock);
-
         final String filename = String.format("dmswr-stock%d-lookback%d.csv", percentStock, lookbackYears);
         final File file = new File(DataIO.getFinancePath(), filename);
 
-        generateTable(file, percentStock, lookbackYears, reretire);
+        SwrLib.setup(SwrLib.getDefaultBengenFile(), file, Inflation.Real);
+        System.out.printf("DMSWR entries: %d\n", marwoodMap.size());
+        System.out.printf("DMSWR sequences: %d\n", marwoodSequences.size());
+        verifyTable();
       }
     } else {
+      SwrLib.setup(SwrLib.getDefaultBengenFile(), null, Inflation.Real); // only load bengen table
+      Metrics.registerMBean();
+      Metrics.startReporter(60000, System.out);
       for (int percentStock : percentStockList) {
+        System.out.printf("Percent Stock: %d\n", percentStock);
+
         final String filename = String.format("dmswr-stock%d-lookback%d.csv", percentStock, lookbackYears);
         final File file = new File(DataIO.getFinancePath(), filename);
 
-        SwrLib.setup(SwrLib.getDefaultBengenFile(), file, Inflation.Real);
-        System.out.printf("DMSWR entries: %d\n", marwoodMap.size());
-        System.out.printf("DMSWR sequences: %d\n", marwoodSequences.size());
-        verifyTable();
+        if (mode.equals("shard")) {
+          generateShard(file, percentStock, lookbackYears, reretire, Integer.parseInt(args[1]),
+              Integer.parseInt(args[2]));
+        } else if (mode.equals("merge")) {
+          mergeShards(file, percentStock, lookbackYears, reretire, Integer.parseInt(args[1]));
+        } else {
+          generateTable(file, percentStock, lookbackYears, reretire, mode.equals("resume"));
+        }
       }
+      System.out.print(Metrics.dump());
     }
   }
 }
@@ -93,6 +93,26 @@ public class MonthlyInfo
     this.finalBalance = Double.NaN; // must be filled in later
   }
 
+  /** Construct a copy of the given MonthlyInfo. */
+  public MonthlyInfo(MonthlyInfo info)
+  {
+    this.retireTime = info.retireTime;
+    this.currentTime = info.currentTime;
+    this.index = info.index;
+    this.retirementMonth = info.retirementMonth;
+    this.monthlyIncome = info.monthlyIncome;
+    this.startBalance = info.startBalance;
+    this.endBalance = info.endBalance;
+
+    this.swr = info.swr;
+    this.virtualRetirementMonths = info.virtualRetirementMonths;
+    this.bengenSalary = info.bengenSalary;
+    this.marwoodSalary = info.marwoodSalary;
+    this.crystalSalary = info.crystalSalary;
+
+    this.finalBalance = info.finalBalance;
+  }
+
   /** @return annualized withdrawal rate (salary / balance) as a percent (4.0 = 4.0% per year). */
   public double percent()
   {
@@ -0,0 +1,256 @@
+package org.minnen.dmswr.data;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.minnen.dmswr.utils.CsvWriter;
+import org.minnen.dmswr.utils.Fingerprint;
+import org.minnen.dmswr.utils.Writer;
+
+/**
+ * Checkpoints for long table generation runs.
+ *
+ * A table is generated as a list of independent cells (e.g. one retirement duration and stock percentage). Each
+ * completed cell is written to its own segment file in `<table>.parts/`, synced to disk, and committed by atomically
+ * moving it into place. The manifest lists the committed cells with a checksum for each segment and the parameters of
+ * the run. After a crash, a new checkpoint for the same table skips committed cells, and `merge()` concatenates the
+ * segments in order into the final table.
+ *
+ * A checkpoint is only reused if the parameters match (e.g. a fingerprint of the market data), since segments from a
+ * different configuration would silently corrupt the table.
+ */
+public class TableCheckpoint
+{
+  private static final String       MANIFEST  = "manifest.txt";
+  private static final String       PARAMS    = "# params: ";
+
+  /** Final table file. */
+  public final File                 tableFile;
+
+  /** Directory holding the segment files and manifest. */
+  public final File                 dir;
+
+  /** Parameters that identify the run (stored in the manifest). */
+  public final String               params;
+
+  /** Checksum of each committed segment (in commit order). */
+  private final Map<String, String> checksums = new LinkedHashMap<>();
+
+  /** Writes the rows of one segment (or the table header). */
+  public interface SegmentWriter
+  {
+    void write(CsvWriter writer) throws IOException;
+  }
+
+  /**
+   * Open a checkpoint for the given table.
+   *
+   * @param tableFile final table file
+   * @param params parameters of the run; an existing checkpoint with different parameters is discarded
+   * @param resume if true, keep committed cells from a previous run, else start over
+   */
+  public TableCheckpoint(File tableFile, String params, boolean resume) throws IOException
+  {
+    assert !params.contains("\n");
+    this.tableFile = tableFile;
+    this.dir = new File(tableFile.getPath() + ".parts");
+    this.params = params;
+
+    if (resume) {
+      load();
+      if (!checksums.isEmpty()) {
+        System.out.printf("Resuming [%s]: %d cells complete\n", tableFile.getName(), checksums.size());
+      }
+    } else {
+      delete();
+    }
+    if (!dir.exists() && !dir.mkdirs()) {
+      throw new IOException("Failed to create checkpoint directory: " + dir);
+    }
+  }
+
+  /** Load the manifest and keep cells whose segments exist and match their checksums. */
+  private void load() throws IOException
+  {
+    final File manifest = new File(dir, MANIFEST);
+    if (!manifest.canRead()) return;
+    try (BufferedReader reader = new BufferedReader(new FileReader(manifest))) {
+      final String header = reader.readLine();
+      if (header == null || !header.equals(PARAMS + params)) {
+        System.out.printf("Discarding checkpoint with different parameters: [%s]\n", dir);
+        delete();
+        return;
+      }
+      String line;
+      while ((line = reader.readLine()) != null) {
+        final String[] fields = line.trim().split("\\s+");
+        if (fields.length != 2) continue;
+        final File file = getSegmentFile(fields[0]);
+        if (file.canRead() && checksum(file).equals(fields[1])) {
+          checksums.put(fields[0], fields[1]);
+        } else {
+          System.out.printf("Ignoring invalid segment: [%s]\n", file);
+        }
+      }
+    }
+  }
+
+  /** @return true if the given cell has been committed. */
+  public synchronized boolean isDone(String cell)
+  {
+    return checksums.containsKey(cell);
+  }
+
+  /** @return number of committed cells. */
+  public synchronized int numDone()
+  {
+    return checksums.size();
+  }
+
+  /** @return segment file for the given cell. */
+  public File getSegmentFile(String cell)
+  {
+    return new File(dir, cell + ".csv");
+  }
+
+  /** @return rows of a committed cell (e.g. to reload results that later cells depend on). */
+  public List<String> readCell(String cell) throws IOException
+  {
+    assert isDone(cell) : cell;
+    List<String> lines = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(new FileReader(getSegmentFile(cell)))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (!line.isEmpty()) lines.add(line);
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * Write and commit the rows for one cell.
+   *
+   * The segment is written to a temp file, synced, and then moved into place before the manifest is updated, so a crash
+   * at any point leaves either a committed segment or no trace of the cell. Cells can be committed from parallel tasks
+   * since only the manifest update is synchronized.
+   */
+  public void commit(String cell, SegmentWriter segmentWriter) throws IOException
+  {
+    assert cell.matches("[\\w.-]+") : cell;
+    final File tmp = File.createTempFile(cell, ".tmp", dir);
+    try (CsvWriter writer = new CsvWriter(tmp)) {
+      segmentWriter.write(writer);
+    }
+    sync(tmp);
+    final String checksum = checksum(tmp);
+    moveAtomic(tmp, getSegmentFile(cell));
+    synchronized (this) {
+      checksums.put(cell, checksum);
+      writeManifest();
+    }
+  }
+
+  private void writeManifest() throws IOException
+  {
+    final File tmp = File.createTempFile(MANIFEST, ".tmp", dir);
+    try (Writer writer = new Writer(tmp)) {
+      writer.writeln(PARAMS + params);
+      for (Map.Entry<String, String> entry : checksums.entrySet()) {
+        writer.writef("%s %s\n", entry.getKey(), entry.getValue());
+      }
+    }
+    sync(tmp);
+    moveAtomic(tmp, new File(dir, MANIFEST));
+  }
+
+  /**
+   * Write the final table (header followed by the segments in the given order) and remove the checkpoint.
+   *
+   * @param cells all cells in table order (every cell must be committed)
+   * @param header writes comment lines at the top of the table
+   */
+  public synchronized void merge(List<String> cells, SegmentWriter header) throws IOException
+  {
+    for (String cell : cells) {
+      if (!isDone(cell)) throw new IOException(String.format("Can't merge [%s]: missing cell %s", tableFile, cell));
+    }
+    File parent = tableFile.getAbsoluteFile().getParentFile();
+    final File tmp = File.createTempFile(tableFile.getName(), ".tmp", parent);
+    try (CsvWriter writer = new CsvWriter(tmp)) {
+      header.write(writer);
+    }
+    try (OutputStream out = new FileOutputStream(tmp, true)) {
+      final byte[] buffer = new byte[1 << 16];
+      for (String cell : cells) {
+        try (InputStream in = new FileInputStream(getSegmentFile(cell))) {
+          int n;
+          while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+          }
+        }
+      }
+    }
+    sync(tmp);
+    moveAtomic(tmp, tableFile);
+    delete();
+  }
+
+  /** Remove all segments and the manifest. */
+  public synchronized void delete()
+  {
+    checksums.clear();
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    dir.delete();
+  }
+
+  /** @return SHA-256 checksum of the file contents. */
+  public static String checksum(File file) throws IOException
+  {
+    Fingerprint fp = new Fingerprint();
+    try (InputStream in = new FileInputStream(file)) {
+      final byte[] buffer = new byte[1 << 16];
+      int n;
+      while ((n = in.read(buffer)) > 0) {
+        fp.add(buffer, 0, n);
+      }
+    }
+    return fp.toHex();
+  }
+
+  /** Flush file contents to disk so a rename can't expose a partially written file after a crash. */
+  static void sync(File file) throws IOException
+  {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+      channel.force(true);
+    }
+  }
+
+  static void moveAtomic(File from, File to) throws IOException
+  {
+    try {
+      Files.move(from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+}
@@ -0,0 +1,272 @@
+package org.minnen.dmswr.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.minnen.dmswr.utils.CsvWriter;
+import org.minnen.dmswr.utils.Fingerprint;
+
+/**
+ * Sharded table generation across independent processes.
+ *
+ * A table is split into an ordered list of cells (e.g. one retirement duration and stock percentage). Shard `k` of `n`
+ * computes cells `k, k + n, k + 2n, ...` so every process gets a deterministic, interleaved slice with a similar mix of
+ * short and long durations. Each shard writes a partial binary table next to the final table:
+ *
+ * <pre>
+ * header:  magic, version, kind, params, shard, number of shards
+ * cells:   1, cell name, number of entries, entries (binary, see e.g. `BengenEntry.writeBinary()`)
+ * end:     0, number of cells
+ * trailer: SHA-256 of everything above (64 hex characters)
+ * </pre>
+ *
+ * `merge()` validates every shard (checksum, kind, parameters, shard id, and the expected cells) and writes the final
+ * CSV table in cell order, so the result is identical to a single-process run.
+ */
+public class TableShards
+{
+  private static final int MAGIC         = 0x53484152; // "SHAR"
+  private static final int VERSION       = 1;
+  private static final int CHECKSUM_SIZE = 64;
+
+  /** Copies one binary entry to a CSV row. */
+  public interface EntryCopier
+  {
+    void copy(DataInputStream in, CsvWriter writer) throws IOException;
+  }
+
+  /** @return true if the cell with the given index belongs to the given shard. */
+  public static boolean isAssigned(int iCell, int shard, int nShards)
+  {
+    return iCell % nShards == shard;
+  }
+
+  /** @return partial table file for the given shard. */
+  public static File getShardFile(File tableFile, int shard, int nShards)
+  {
+    return new File(String.format("%s.shard%02d-of-%02d.bin", tableFile.getPath(), shard, nShards));
+  }
+
+  /** Writes the cells computed by one shard. */
+  public static class ShardWriter implements Closeable
+  {
+    public final File              file;
+    private final File             tmp;
+    private final Fingerprint      fp = new Fingerprint();
+    private final DataOutputStream out;
+    private int                    nCells;
+    private boolean                finished;
+
+    /**
+     * Start a partial table (written to a temp file and moved into place by `close()`).
+     *
+     * @param tableFile final table file
+     * @param kind type of table (e.g. "bengen")
+     * @param params parameters of the run (must match when merging)
+     * @param shard index of this shard in [0, nShards)
+     * @param nShards total number of shards
+     */
+    public ShardWriter(File tableFile, String kind, String params, int shard, int nShards) throws IOException
+    {
+      if (shard < 0 || shard >= nShards) {
+        throw new IllegalArgumentException(String.format("Invalid shard: %d of %d", shard, nShards));
+      }
+      this.file = getShardFile(tableFile, shard, nShards);
+      this.tmp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+      OutputStream digestStream = new FilterOutputStream(new FileOutputStream(tmp))
+      {
+        @Override
+        public void write(int b) throws IOException
+        {
+          out.write(b);
+          fp.add(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+          out.write(b, off, len);
+          fp.add(b, off, len);
+        }
+      };
+      out = new DataOutputStream(new BufferedOutputStream(digestStream, 1 << 16));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(kind);
+      out.writeUTF(params);
+      out.writeInt(shard);
+      out.writeInt(nShards);
+    }
+
+    /** Start a new cell; the caller then writes exactly `nEntries` entries to the returned stream. */
+    public DataOutputStream beginCell(String cell, int nEntries) throws IOException
+    {
+      out.writeByte(1);
+      out.writeUTF(cell);
+      out.writeInt(nEntries);
+      ++nCells;
+      return out;
+    }
+
+    /** Mark the partial table as complete; a shard that isn't finished is discarded by `close()`. */
+    public void finish() throws IOException
+    {
+      out.writeByte(0);
+      out.writeInt(nCells);
+      out.flush();
+      finished = true;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+      out.close();
+      if (!finished) {
+        tmp.delete();
+        return;
+      }
+
+      // The checksum is appended directly to the file so it isn't included in the hash.
+      try (OutputStream trailer = new FileOutputStream(tmp, true)) {
+        trailer.write(fp.toHex().getBytes(StandardCharsets.US_ASCII));
+      }
+      TableCheckpoint.sync(tmp);
+      TableCheckpoint.moveAtomic(tmp, file);
+    }
+  }
+
+  /**
+   * Verify the checksum of a partial table.
+   *
+   * @throws IOException if the file is truncated or corrupt
+   */
+  public static void verify(File file) throws IOException
+  {
+    final long nBytes = file.length();
+    if (nBytes < CHECKSUM_SIZE) throw new IOException("Shard is truncated: " + file);
+    Fingerprint fp = new Fingerprint();
+    byte[] trailer = new byte[CHECKSUM_SIZE];
+    try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+      final byte[] buffer = new byte[1 << 16];
+      long remaining = nBytes - CHECKSUM_SIZE;
+      while (remaining > 0) {
+        final int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+        if (n < 0) throw new IOException("Unexpected end of shard: " + file);
+        fp.add(buffer, 0, n);
+        remaining -= n;
+      }
+      new DataInputStream(in).readFully(trailer);
+    }
+    if (!fp.toHex().equals(new String(trailer, StandardCharsets.US_ASCII))) {
+      throw new IOException("Shard checksum mismatch: " + file);
+    }
+  }
+
+  /**
+   * Merge partial tables into the final CSV table.
+   *
+   * All shards are validated before the table is written, and the table is written to a temp file and moved into
+   * place, so a failed merge never leaves a partial table.
+   *
+   * @param tableFile final table file
+   * @param kind type of table (must match the shards)
+   * @param params parameters of the run (must match the shards)
+   * @param nShards number of shards
+   * @param cells all cells in table order
+   * @param header writes comment lines at the top of the table
+   * @param copier copies one entry from a shard to the table
+   * @return number of entries in the merged table
+   */
+  public static long merge(File tableFile, String kind, String params, int nShards, List<String> cells,
+      TableCheckpoint.SegmentWriter header, EntryCopier copier) throws IOException
+  {
+    // Check all checksums and headers first.
+    DataInputStream[] shards = new DataInputStream[nShards];
+    try {
+      for (int shard = 0; shard < nShards; ++shard) {
+        final File file = getShardFile(tableFile, shard, nShards);
+        if (!file.canRead()) throw new IOException("Missing shard: " + file);
+        verify(file);
+        shards[shard] = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        readHeader(shards[shard], file, kind, params, shard, nShards);
+      }
+
+      // Cells are interleaved across shards so the next cell always comes from shard (iCell % nShards).
+      final File parent = tableFile.getAbsoluteFile().getParentFile();
+      final File tmp = File.createTempFile(tableFile.getName(), ".tmp", parent);
+      long nEntries = 0;
+      try (CsvWriter writer = new CsvWriter(tmp)) {
+        header.write(writer);
+        for (int iCell = 0; iCell < cells.size(); ++iCell) {
+          final int shard = iCell % nShards;
+          final DataInputStream in = shards[shard];
+          final String cell = cells.get(iCell);
+          if (in.readByte() != 1 || !in.readUTF().equals(cell)) {
+            throw new IOException(String.format("Shard %d doesn't contain cell %s", shard, cell));
+          }
+          final int n = in.readInt();
+          for (int i = 0; i < n; ++i) {
+            copier.copy(in, writer);
+          }
+          nEntries += n;
+        }
+      } catch (IOException e) {
+        tmp.delete();
+        throw e;
+      }
+
+      // Every shard must end after its last cell.
+      for (int shard = 0; shard < nShards; ++shard) {
+        final int nExpected = (cells.size() - shard + nShards - 1) / nShards;
+        if (shards[shard].readByte() != 0 || shards[shard].readInt() != nExpected) {
+          tmp.delete();
+          throw new IOException(String.format("Shard %d has unexpected cells", shard));
+        }
+      }
+      TableCheckpoint.sync(tmp);
+      TableCheckpoint.moveAtomic(tmp, tableFile);
+      return nEntries;
+    } finally {
+      for (DataInputStream in : shards) {
+        if (in != null) in.close();
+      }
+    }
+  }
+
+  private static void readHeader(DataInputStream in, File file, String kind, String params, int shard, int nShards)
+      throws IOException
+  {
+    if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+      throw new IOException("Invalid shard file: " + file);
+    }
+    final String shardKind = in.readUTF();
+    final String shardParams = in.readUTF();
+    if (!shardKind.equals(kind) || !shardParams.equals(params)) {
+      throw new IOException(String.format("Shard parameters don't match: %s\n  shard: %s %s\n  merge: %s %s", file,
+          shardKind, shardParams, kind, params));
+    }
+    if (in.readInt() != shard || in.readInt() != nShards) {
+      throw new IOException("Shard id doesn't match file name: " + file);
+    }
+  }
+
+  /** Delete the partial tables for the given table. */
+  public static void deleteShards(File tableFile, int nShards)
+  {
+    for (int shard = 0; shard < nShards; ++shard) {
+      getShardFile(tableFile, shard, nShards).delete();
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package org.minnen.dmswr.data;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.minnen.dmswr.utils.IntPair;
+import org.minnen.dmswr.utils.Metrics;
+
+/**
+ * Withdrawal rates for Variable Percentage Withdrawal (VPW).
+ *
+ * VPW withdraws a different percentage of the current balance each year. The rate for a given year is the payment of
+ * an annuity (paid at the start of each year) that exhausts the portfolio at the end of retirement, assuming a fixed
+ * expected return for stocks and bonds. The rate for the last year is always 100%.
+ *
+ * More information here: https://www.bogleheads.org/wiki/Variable_percentage_withdrawal
+ *
+ * And the online spreadsheet is here: https://drive.google.com/open?id=1rzHAQxcAnfX9NVGLoCp9Kvv5W3OYCDdLbR6fGS-uAwE
+ */
+public class VpwTable
+{
+  /** Expected annual real return for stocks used by the VPW spreadsheet (5.0 = 5.0%). */
+  public static final double               stockReturn = 5.0;
+
+  /** Expected annual real return for bonds used by the VPW spreadsheet (1.9 = 1.9%). */
+  public static final double               bondReturn  = 1.9;
+
+  /**
+   * Rates from the VPW calculator for a 75/25 stock/bond split retiring at age 65 with no SS or pension (35 years, 65
+   * through 99).
+   */
+  public static final int[]                vpw_wr_stock75_age65;
+
+  /** Maps (percentStock, retirementYears) to yearly withdrawal rates in basis points (530 = 5.3%). */
+  private static final Map<IntPair, int[]> rates       = new ConcurrentHashMap<>();
+
+  static {
+    vpw_wr_stock75_age65 = new int[] { 530, 540, 540, 550, 560, 570, 580, 590, 600, 620, 630, 640, 660, 680, 700, 720,
+        740, 770, 800, 840, 880, 920, 970, 1040, 1110, 1200, 1300, 1440, 1610, 1840, 2170, 2660, 3470, 5100, 10000 };
+    put(75, 35, vpw_wr_stock75_age65);
+  }
+
+  /**
+   * Get the VPW rates for the given asset allocation and retirement duration.
+   *
+   * Rates are calculated with `calcRates()` if they haven't been set with `put()`.
+   *
+   * @param percentStock percent stock (vs. bonds) to hold (70 = 70%)
+   * @param retirementYears duration of retirement in years
+   * @return withdrawal rate for each year of retirement in basis points (530 = 5.3%); do not modify
+   */
+  public static int[] get(int percentStock, int retirementYears)
+  {
+    return Metrics.cached(rates, new IntPair(percentStock, retirementYears),
+        key -> calcRates(key.first, key.second));
+  }
+
+  /** Set the VPW rates for the given asset allocation and retirement duration. */
+  public static void put(int percentStock, int retirementYears, int[] yearlyRates)
+  {
+    if (yearlyRates.length != retirementYears) {
+      throw new IllegalArgumentException(
+          String.format("Expected %d rates, not %d", retirementYears, yearlyRates.length));
+    }
+    rates.put(new IntPair(percentStock, retirementYears), yearlyRates);
+  }
+
+  /**
+   * Calculate VPW rates using the same method as the VPW spreadsheet.
+   *
+   * Rates are rounded to the nearest ten basis points (same as the spreadsheet's table).
+   *
+   * @param percentStock percent stock (vs. bonds) to hold (70 = 70%)
+   * @param retirementYears duration of retirement in years
+   * @return withdrawal rate for each year of retirement in basis points (530 = 5.3%)
+   */
+  public static int[] calcRates(int percentStock, int retirementYears)
+  {
+    assert percentStock >= 0 && percentStock <= 100;
+    assert retirementYears > 0;
+
+    final double r = (percentStock * stockReturn + (100 - percentStock) * bondReturn) / 10000.0;
+    int[] yearlyRates = new int[retirementYears];
+    for (int i = 0; i < retirementYears; ++i) {
+      final int yearsLeft = retirementYears - i;
+      final double wr = (r == 0.0 ? 1.0 / yearsLeft : r / ((1.0 + r) * (1.0 - Math.pow(1.0 + r, -yearsLeft))));
+      yearlyRates[i] = (int) Math.round(wr * 1000.0) * 10;
+    }
+    return yearlyRates;
+  }
+}
@@ -8,8 +8,8 @@ import java.util.List;
 import org.minnen.dmswr.utils.DataIO;
 import org.minnen.dmswr.utils.Sequence;
 import org.minnen.dmswr.utils.SwrLib;
-import org.minnen.dmswr.MarwoodMethod;
 import org.minnen.dmswr.NestEggCalculator;
+import org.minnen.dmswr.data.DmswrCache;
 import org.minnen.dmswr.data.MonthlyInfo;
 import org.minnen.dmswr.utils.FinLib.Inflation;
 import org.minnen.dmswr.viz.Chart;
@@ -19,13 +19,10 @@ import org.minnen.dmswr.viz.ChartConfig.ChartTiming;
 
 public class AssetAllocations
 {
-  public static void main(String[] args) throws IOException
+  /** Generate a graph comparing DMSWR values for different stock / bond allocations. */
+  public static void createAssetAllocationGraph(int retirementYears, int lookbackYears) throws IOException
   {
     // TODO Generate DMSWR tables for different allocations instead of computing them here.
-    SwrLib.setup(SwrLib.getDefaultBengenFile(), null, Inflation.Real);
-
-    final int retirementYears = 30;
-    final int lookbackYears = 20;
     final int lookbackMonths = lookbackYears * 12;
     final int iFirstWithHistory = lookbackMonths;
     final int iStartSim = iFirstWithHistory;
@@ -36,7 +33,7 @@ public class AssetAllocations
       Sequence seq = new Sequence(String.format("DMSWR (%d / %d)", percentStock, 100 - percentStock));
       System.out.println(seq.getName());
 
-      List<MonthlyInfo> infos = MarwoodMethod.findDMSWR(retirementYears, lookbackYears, percentStock,
+      List<MonthlyInfo> infos = DmswrCache.findDMSWR(retirementYears, lookbackYears, percentStock,
           nestEggCalculator);
       assert infos.size() == (SwrLib.length() - iStartSim);
 
@@ -71,4 +68,13 @@ public class AssetAllocations
     config.setAnimation(false);
     Chart.saveChart(config);
   }
+
+  public static void main(String[] args) throws IOException
+  {
+    SwrLib.setup(SwrLib.getDefaultBengenFile(), null, Inflation.Real);
+
+    final int retirementYears = 30;
+    final int lookbackYears = 20;
+    createAssetAllocationGraph(retirementYears, lookbackYears);
+  }
 }
@@ -19,7 +19,7 @@ import org.minnen.dmswr.viz.ChartConfig.ChartTiming;
 public class BengenSWRs
 {
   /** Save Bengen SWR (BaselineSWR) values in a CSV file. */
-  private static void saveBengenSwrAsCsv() throws IOException
+  public static void saveBengenSwrAsCsv() throws IOException
   {
     File file = new File(DataIO.getFinancePath(), "baseline-swr.csv");
     try (Writer writer = new Writer(file)) {
@@ -38,7 +38,7 @@ public class BengenSWRs
   }
 
   /** Generate a bar chart with Bengen SWR (BaselineSWR) values. */
-  private static void generateBengenSwrGraph() throws IOException
+  public static void generateBengenSwrGraph() throws IOException
   {
     // Bengen SWR for different retirement durations.
     final int percentStock = 75;
@@ -9,9 +9,9 @@ import org.minnen.dmswr.utils.FeatureVec;
 import org.minnen.dmswr.utils.Sequence;
 import org.minnen.dmswr.utils.SwrLib;
 import org.minnen.dmswr.BengenMethod;
-import org.minnen.dmswr.MarwoodMethod;
 import org.minnen.dmswr.NestEggCalculator;
 import org.minnen.dmswr.data.BengenTable;
+import org.minnen.dmswr.data.DmswrCache;
 import org.minnen.dmswr.data.MarwoodTable;
 import org.minnen.dmswr.data.MonthlyInfo;
 import org.minnen.dmswr.viz.Chart;
@@ -31,7 +31,7 @@ public class DmswrGraph
     Sequence seqMarwoodSWR = new Sequence(String.format("DMSWR (%d years)", retirementYears));
 
     NestEggCalculator nestEggCalculator = NestEggCalculator.constant(1e6);
-    List<MonthlyInfo> dmswrPath = MarwoodMethod.findDMSWR(retirementYears, lookbackYears, percentStock,
+    List<MonthlyInfo> dmswrPath = DmswrCache.findDMSWR(retirementYears, lookbackYears, percentStock,
         nestEggCalculator);
     assert dmswrPath.size() == (SwrLib.length() - iStartSim);
 
@@ -0,0 +1,355 @@
+package org.minnen.dmswr.paper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.minnen.dmswr.NestEggCalculator;
+import org.minnen.dmswr.data.DmswrCache;
+import org.minnen.dmswr.data.MarwoodTable;
+import org.minnen.dmswr.paper.WalkForwardAnalysis.Method;
+import org.minnen.dmswr.utils.DataIO;
+import org.minnen.dmswr.utils.SwrLib;
+import org.minnen.dmswr.utils.FinLib.Inflation;
+
+/**
+ * Generate the paper figures in parallel.
+ *
+ * Each figure (or shared intermediate result) is a task with a list of dependencies. Tasks that need the same market
+ * data (real vs. nominal) are grouped together and SwrLib is setup once per group. Within a group, each task runs as
+ * soon as its dependencies finish so that independent figures are generated concurrently.
+ *
+ * SwrLib holds global static data, so groups run one after another. Tasks that modify shared static tables (e.g.
+ * `MarwoodTable.genReRetireTable()`) are added as exclusive and never run at the same time as another task.
+ * Dependencies must be in the same group or an earlier one.
+ *
+ * Usage: FigureRunner [-j threads] [task ...] (default = all figures)
+ */
+public class FigureRunner
+{
+  /** Code that generates a figure or intermediate result. */
+  @FunctionalInterface
+  public interface Job
+  {
+    void run() throws IOException;
+  }
+
+  /** Named unit of work with dependencies. */
+  public static class Task
+  {
+    public final String    name;
+    public final Inflation inflation;
+    public final boolean   needsDmswr;
+
+    /** If true, the task modifies shared static data and must run alone. */
+    public final boolean   exclusive;
+    public final Job       job;
+    public final String[]  deps;
+
+    public Task(String name, Inflation inflation, boolean needsDmswr, Job job, String... deps)
+    {
+      this(name, inflation, needsDmswr, false, job, deps);
+    }
+
+    public Task(String name, Inflation inflation, boolean needsDmswr, boolean exclusive, Job job, String... deps)
+    {
+      this.name = name;
+      this.inflation = inflation;
+      this.needsDmswr = needsDmswr;
+      this.exclusive = exclusive;
+      this.job = job;
+      this.deps = deps;
+    }
+
+    @Override
+    public String toString()
+    {
+      return String.format("%s [%s%s%s]", name, inflation, needsDmswr ? ", dmswr" : "", exclusive ? ", exclusive" : "");
+    }
+  }
+
+  private final Map<String, Task> tasks    = new LinkedHashMap<>();
+  private final int               nThreads;
+
+  /** Regular tasks share the read lock; exclusive tasks take the write lock. */
+  private final ReadWriteLock     taskLock = new ReentrantReadWriteLock();
+
+  public FigureRunner(int nThreads)
+  {
+    this.nThreads = Math.max(1, nThreads);
+  }
+
+  /** Add a task that does not need the DMSWR table. */
+  public FigureRunner add(String name, Inflation inflation, Job job, String... deps)
+  {
+    return add(new Task(name, inflation, false, job, deps));
+  }
+
+  /** Add a task that needs the DMSWR table (`SwrLib.getDefaultDmswrFile()`). */
+  public FigureRunner addDmswr(String name, Inflation inflation, Job job, String... deps)
+  {
+    return add(new Task(name, inflation, true, job, deps));
+  }
+
+  /** Add a task that modifies shared static data (see `Task.exclusive`). */
+  public FigureRunner addExclusive(String name, Inflation inflation, boolean needsDmswr, Job job, String... deps)
+  {
+    return add(new Task(name, inflation, needsDmswr, true, job, deps));
+  }
+
+  public FigureRunner add(Task task)
+  {
+    if (tasks.containsKey(task.name)) {
+      throw new IllegalArgumentException("Duplicate task: " + task.name);
+    }
+    tasks.put(task.name, task);
+    return this;
+  }
+
+  /** @return names of all tasks in the order they were added. */
+  public List<String> getTaskNames()
+  {
+    return new ArrayList<>(tasks.keySet());
+  }
+
+  /** Run all tasks. */
+  public void run() throws IOException
+  {
+    run(getTaskNames());
+  }
+
+  /** Run the given tasks and everything they depend on. */
+  public void run(List<String> targets) throws IOException
+  {
+    List<Task> order = sort(targets);
+    if (order.isEmpty()) return;
+
+    // Make sure lazily-initialized paths are set before threads start.
+    DataIO.getOutputPath();
+    DataIO.getFinancePath();
+
+    // Group tasks by market data (order of first appearance).
+    Map<Inflation, List<Task>> groups = new LinkedHashMap<>();
+    for (Task task : order) {
+      groups.computeIfAbsent(task.inflation, k -> new ArrayList<>()).add(task);
+    }
+    checkGroupOrder(groups);
+
+    final long startMS = System.currentTimeMillis();
+    ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+    try {
+      for (Map.Entry<Inflation, List<Task>> entry : groups.entrySet()) {
+        runGroup(entry.getKey(), entry.getValue(), executor);
+      }
+    } finally {
+      executor.shutdown();
+    }
+    System.out.printf("Finished %d tasks (%d ms)\n", order.size(), System.currentTimeMillis() - startMS);
+    System.out.println(DmswrCache.getStats());
+  }
+
+  /** Setup SwrLib for one market data configuration and run the given (sorted) tasks. */
+  private void runGroup(Inflation inflation, List<Task> group, ExecutorService executor) throws IOException
+  {
+    boolean needsDmswr = false;
+    for (Task task : group) {
+      needsDmswr |= task.needsDmswr;
+    }
+    long startMS = System.currentTimeMillis();
+    File dmswrFile = needsDmswr ? SwrLib.getDefaultDmswrFile() : null;
+    SwrLib.setup(SwrLib.getDefaultBengenFile(), dmswrFile, inflation);
+    System.out.printf("Setup %s data (%d ms)\n", inflation, System.currentTimeMillis() - startMS);
+
+    // Tasks are sorted so dependencies in this group always have a future when a task is scheduled.
+    Map<String, CompletableFuture<Void>> futures = new HashMap<>();
+    for (Task task : group) {
+      List<CompletableFuture<Void>> depFutures = new ArrayList<>();
+      for (String dep : task.deps) {
+        CompletableFuture<Void> future = futures.get(dep);
+        if (future != null) depFutures.add(future); // deps in earlier groups are already done (see checkGroupOrder)
+      }
+      CompletableFuture<Void> ready = allOf(depFutures);
+      futures.put(task.name, ready.thenRunAsync(() -> runTask(task), executor));
+    }
+
+    try {
+      allOf(futures.values()).join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      while (cause instanceof CompletionException && cause.getCause() != null) {
+        cause = cause.getCause();
+      }
+      if (cause instanceof IOException) throw (IOException) cause;
+      throw new IOException("Task failed", cause);
+    }
+  }
+
+  private static CompletableFuture<Void> allOf(Collection<CompletableFuture<Void>> futures)
+  {
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+  }
+
+  /**
+   * Verify that no task depends on a task in a later group, since groups run one after another.
+   *
+   * @throws IllegalArgumentException if a dependency is in a later group
+   */
+  private static void checkGroupOrder(Map<Inflation, List<Task>> groups)
+  {
+    Set<String> scheduled = new HashSet<>();
+    for (List<Task> group : groups.values()) {
+      for (Task task : group) {
+        scheduled.add(task.name);
+      }
+      for (Task task : group) {
+        for (String dep : task.deps) {
+          if (!scheduled.contains(dep)) {
+            throw new IllegalArgumentException(
+                String.format("Task %s depends on %s, which runs in a later group", task, dep));
+          }
+        }
+      }
+    }
+  }
+
+  private void runTask(Task task)
+  {
+    final Lock lock = task.exclusive ? taskLock.writeLock() : taskLock.readLock();
+    lock.lock();
+    final long startMS = System.currentTimeMillis();
+    try {
+      task.job.run();
+    } catch (IOException e) {
+      System.err.printf("Task failed: %s (%s)\n", task.name, e.getMessage());
+      throw new CompletionException(e);
+    } finally {
+      lock.unlock();
+    }
+    System.out.printf("Task done: %s (%d ms)\n", task.name, System.currentTimeMillis() - startMS);
+  }
+
+  /**
+   * Find all tasks needed for the given targets.
+   *
+   * @return tasks sorted so that dependencies come first
+   * @throws IllegalArgumentException if a task is unknown or dependencies form a cycle
+   */
+  private List<Task> sort(List<String> targets)
+  {
+    List<Task> order = new ArrayList<>();
+    Set<String> done = new HashSet<>();
+    Set<String> active = new HashSet<>();
+    for (String name : targets) {
+      visit(name, done, active, order);
+    }
+    return order;
+  }
+
+  private void visit(String name, Set<String> done, Set<String> active, List<Task> order)
+  {
+    if (done.contains(name)) return;
+    Task task = tasks.get(name);
+    if (task == null) {
+      throw new IllegalArgumentException("Unknown task: " + name);
+    }
+    if (!active.add(name)) {
+      throw new IllegalArgumentException("Dependency cycle: " + name);
+    }
+    for (String dep : task.deps) {
+      visit(dep, done, active, order);
+    }
+    active.remove(name);
+    done.add(name);
+    order.add(task);
+  }
+
+  /** @return runner with a task for each figure in the paper. */
+  public static FigureRunner buildPaperFigures(int nThreads)
+  {
+    final int retirementYears = 30;
+    final int lookbackYears = 20;
+    final int percentStock = 75;
+    final NestEggCalculator nestEggCalculator = NestEggCalculator.constant(1e6);
+
+    FigureRunner runner = new FigureRunner(nThreads);
+
+    // Shared intermediate results.
+    runner.add("dmswr-30-20-75", Inflation.Real, () -> DmswrCache.findDMSWR(retirementYears, lookbackYears,
+        percentStock, nestEggCalculator));
+
+    // Real (inflation-adjusted) figures.
+    runner.add("bengen-swrs", Inflation.Real, () -> {
+      BengenSWRs.saveBengenSwrAsCsv();
+      BengenSWRs.generateBengenSwrGraph();
+    });
+    runner.add("bengen-success-chart", Inflation.Real, () -> {
+      File file = new File(DataIO.getOutputPath(), "bengen-success-chart.html");
+      int[] durations = new int[] { 30, 40, 50 };
+      int[] percentStockList = new int[] { 100, 75, 50, 25, 0 };
+      int[] withdrawalRates = new int[] { 300, 325, 350, 375, 400, 425, 450, 475, 500 };
+      BengenSuccessChart.createSuccessChart(file, durations, percentStockList, withdrawalRates);
+    });
+    runner.add("drawdown", Inflation.Real, () -> DrawdownGraph.createDrawdownGraph(percentStock));
+    runner.add("walk-forward", Inflation.Real, () -> WalkForwardAnalysis.runWalkForward(retirementYears,
+        percentStock, lookbackYears, Method.BaselineSWR, 20));
+    runner.add("portfolio-returns-real", Inflation.Real,
+        () -> PortfolioReturns.saveReturns("portfolio-returns-real.csv"));
+    runner.add("asset-allocations", Inflation.Real,
+        () -> AssetAllocations.createAssetAllocationGraph(retirementYears, lookbackYears), "dmswr-30-20-75");
+    runner.addDmswr("dmswr-graph", Inflation.Real,
+        () -> DmswrGraph.createDmswrGraph(retirementYears, lookbackYears, percentStock), "dmswr-30-20-75");
+    runner.addExclusive("reretire", Inflation.Real, true, () -> {
+      MarwoodTable.genReRetireTable(retirementYears, lookbackYears, percentStock);
+      ReretireGraph.createReRetireCharts(retirementYears, lookbackYears, percentStock);
+    });
+
+    // Nominal figures.
+    runner.add("portfolio-returns-nominal", Inflation.Nominal,
+        () -> PortfolioReturns.saveReturns("portfolio-returns-nominal.csv"));
+    runner.addDmswr("carols-table", Inflation.Nominal, () -> CarolsTable.createCarolTable(lookbackYears, percentStock));
+    runner.addDmswr("income-long", Inflation.Nominal,
+        () -> IncomeComparison.createLongIncomeGraph(retirementYears, lookbackYears, percentStock));
+    runner.addDmswr("income-short", Inflation.Nominal, () -> {
+      IncomeComparison.createShortIncomeGraph(1929, 10, retirementYears, lookbackYears, percentStock, true);
+      IncomeComparison.createShortIncomeGraph(1960, 10, retirementYears, lookbackYears, percentStock, false);
+      IncomeComparison.createShortIncomeGraph(2000, 10, retirementYears, lookbackYears, percentStock, false);
+    });
+
+    return runner;
+  }
+
+  public static void main(String[] args) throws IOException
+  {
+    int nThreads = Runtime.getRuntime().availableProcessors();
+    List<String> targets = new ArrayList<>();
+    for (int i = 0; i < args.length; ++i) {
+      if (args[i].equals("-j") && i + 1 < args.length) {
+        nThreads = Integer.parseInt(args[++i]);
+      } else {
+        targets.add(args[i]);
+      }
+    }
+
+    FigureRunner runner = buildPaperFigures(nThreads);
+    if (targets.isEmpty()) {
+      targets = runner.getTaskNames();
+    }
+    System.out.printf("Tasks: %s (threads=%d)\n", Arrays.toString(targets.toArray()), nThreads);
+    runner.run(targets);
+  }
+}
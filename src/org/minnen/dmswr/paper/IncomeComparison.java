@@ -8,8 +8,8 @@ import java.util.List;
 import org.minnen.dmswr.utils.DataIO;
 import org.minnen.dmswr.utils.Sequence;
 import org.minnen.dmswr.utils.SwrLib;
-import org.minnen.dmswr.MarwoodMethod;
 import org.minnen.dmswr.NestEggCalculator;
+import org.minnen.dmswr.data.DmswrCache;
 import org.minnen.dmswr.data.MarwoodTable;
 import org.minnen.dmswr.data.MonthlyInfo;
 import org.minnen.dmswr.utils.FinLib.Inflation;
@@ -35,7 +35,7 @@ public class IncomeComparison
     Sequence seqMarwoodSalary = new Sequence(String.format("DMSWR (rd, rd+%d years)", retirementYears));
 
     NestEggCalculator nestEggCalculator = NestEggCalculator.inflationThenGrowth(1000, false);
-    List<MonthlyInfo> infos = MarwoodMethod.findDMSWR(retirementYears, lookbackYears, percentStock, nestEggCalculator);
+    List<MonthlyInfo> infos = DmswrCache.findDMSWR(retirementYears, lookbackYears, percentStock, nestEggCalculator);
     assert infos.size() == (SwrLib.length() - iStartSim);
 
     for (int iRetire = iStartSim; iRetire < SwrLib.length(); ++iRetire) {
@@ -80,7 +80,7 @@ public class IncomeComparison
     Sequence seqMarwoodSalary = new Sequence(String.format("DMSWR(%d years)", retirementYears));
 
     NestEggCalculator nestEggCalculator = NestEggCalculator.monthlySavings(1e6, 500, false, true, false);
-    List<MonthlyInfo> infos = MarwoodMethod.findDMSWR(iStartSim, iEndSim, retirementYears, lookbackYears, percentStock,
+    List<MonthlyInfo> infos = DmswrCache.findDMSWR(iStartSim, iEndSim, retirementYears, lookbackYears, percentStock,
         nestEggCalculator);
     assert infos.size() == (iEndSim - iStartSim + 1);
 
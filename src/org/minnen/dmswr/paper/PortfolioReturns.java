@@ -16,10 +16,10 @@ import org.minnen.dmswr.utils.TimeLib;
  */
 public class PortfolioReturns
 {
-  private static void saveReturns(String filename, Inflation inflation) throws IOException
+  /** Save returns for the currently loaded data (real or nominal depending on how SwrLib was setup). */
+  public static void saveReturns(String filename) throws IOException
   {
-    SwrLib.setup(null, null, inflation);
-
+    final Inflation inflation = SwrLib.getInflationAdjustment();
     File file = new File(DataIO.getFinancePath(), filename);
     try (Writer writer = new Writer(file)) {
       writer.writef("# Monthly Total Returns (%s)\n", inflation == Inflation.Nominal ? "nominal" : "real");
@@ -41,7 +41,10 @@ public class PortfolioReturns
 
   public static void main(String[] args) throws IOException
   {
-    saveReturns("portfolio-returns-nominal.csv", Inflation.Nominal);
-    saveReturns("portfolio-returns-real.csv", Inflation.Real);
+    SwrLib.setup(null, null, Inflation.Nominal);
+    saveReturns("portfolio-returns-nominal.csv");
+
+    SwrLib.setup(null, null, Inflation.Real);
+    saveReturns("portfolio-returns-real.csv");
   }
 }
@@ -29,15 +29,18 @@ public class WalkForwardAnalysis
     BaselineSWR, DMSWR
   }
 
-  public static void main(String[] args) throws IOException
+  /**
+   * Run the walk-forward analysis and save a graph of the results.
+   * 
+   * @param retirementYears duration of retirement in years
+   * @param percentStock percent stock (vs. bonds) to hold (70 = 70%)
+   * @param lookbackYears number of previous years to check for a better "virtual retirement" time (DMSWR only)
+   * @param method use BaselineSWR or DMSWR
+   * @param partial_retirement_years if positive, graph partial retirements of at least this duration
+   */
+  public static void runWalkForward(int retirementYears, int percentStock, int lookbackYears, Method method,
+      int partial_retirement_years) throws IOException
   {
-    final int retirementYears = 30;
-    final int percentStock = 75;
-    final int lookbackYears = 20;
-    final Method method = Method.BaselineSWR;
-    int partial_retirement_years = 20; // if positive, graph partial retirements of at least this duration
-
-    SwrLib.setup(SwrLib.getDefaultBengenFile(), null, Inflation.Real);
 
     // Initialize map of retirement duration to minimum observed SWR.
     Map<Integer, Integer> minSwrMap = new TreeMap<>();
@@ -182,4 +185,16 @@ public class WalkForwardAnalysis
     // dashStyle: "ShortDash",
     // showInLegend: false,
   }
+
+  public static void main(String[] args) throws IOException
+  {
+    final int retirementYears = 30;
+    final int percentStock = 75;
+    final int lookbackYears = 20;
+    final Method method = Method.BaselineSWR;
+    final int partial_retirement_years = 20; // if positive, graph partial retirements of at least this duration
+
+    SwrLib.setup(SwrLib.getDefaultBengenFile(), null, Inflation.Real);
+    runWalkForward(retirementYears, percentStock, lookbackYears, method, partial_retirement_years);
+  }
 }
@@ -0,0 +1,38 @@
+package org.minnen.dmswr.strategy;
+
+/** Bengen / MinSWR: withdraw a fixed (real) amount based on the initial balance. */
+public class BengenStrategy implements WithdrawalStrategy
+{
+  /** Annual withdrawal rate as a percent (3.5 = 3.5%). */
+  public final double withdrawalRate;
+
+  public BengenStrategy(double withdrawalRate)
+  {
+    assert withdrawalRate > 0.0;
+    this.withdrawalRate = withdrawalRate;
+  }
+
+  @Override
+  public String getName()
+  {
+    return String.format("Bengen (%.2f%%)", withdrawalRate);
+  }
+
+  @Override
+  public int stateSize()
+  {
+    return 1;
+  }
+
+  @Override
+  public void init(double[] state, int iStart, int nMonths, double nestEgg)
+  {
+    state[0] = nestEgg * withdrawalRate / 1200.0; // monthly withdrawal
+  }
+
+  @Override
+  public double withdraw(double[] state, int iStart, int month, double balance)
+  {
+    return state[0];
+  }
+}
@@ -0,0 +1,81 @@
+package org.minnen.dmswr.strategy;
+
+import org.minnen.dmswr.data.BengenTable;
+import org.minnen.dmswr.data.MarwoodEntry;
+import org.minnen.dmswr.data.MarwoodTable;
+import org.minnen.dmswr.utils.SwrLib;
+
+/**
+ * DMSWR with re-retiring: each month, switch to a higher income if a new retiree with the current balance and the
+ * remaining retirement duration would have a larger DMSWR.
+ *
+ * Same rules as `MarwoodMethod.reretire()`, including the cap at 20% of the current balance. DMSWR values are read
+ * from MarwoodTable once (when the strategy is created) so the simulation doesn't need any map lookups. If the table
+ * doesn't have an entry, the MinSWR for the remaining duration is used instead.
+ */
+public class DmswrStrategy implements WithdrawalStrategy
+{
+  /** Maximum withdrawal as a fraction of the current balance. */
+  private static final double maxRate = 0.2;
+
+  public final int            retirementYears;
+  public final int            lookbackYears;
+  public final int            percentStock;
+
+  /** DMSWR (basis points) indexed by [years left][SwrLib index]. */
+  private final int[][]       dmswr;
+
+  public DmswrStrategy(int retirementYears, int lookbackYears, int percentStock)
+  {
+    this.retirementYears = retirementYears;
+    this.lookbackYears = lookbackYears;
+    this.percentStock = percentStock;
+
+    final int n = SwrLib.length();
+    dmswr = new int[retirementYears + 1][];
+    for (int yearsLeft = 1; yearsLeft <= retirementYears; ++yearsLeft) {
+      final int minSWR = Math.max(BengenTable.getSWR(yearsLeft, percentStock), 0);
+      int[] swrs = new int[n];
+      for (int i = 0; i < n; ++i) {
+        MarwoodEntry entry = MarwoodTable.get(SwrLib.time(i), yearsLeft, lookbackYears, percentStock);
+        swrs[i] = (entry == null ? minSWR : entry.swr);
+      }
+      dmswr[yearsLeft] = swrs;
+    }
+  }
+
+  @Override
+  public String getName()
+  {
+    return String.format("DMSWR (%d years, %d lookback)", retirementYears, lookbackYears);
+  }
+
+  @Override
+  public int stateSize()
+  {
+    return 2;
+  }
+
+  @Override
+  public void init(double[] state, int iStart, int nMonths, double nestEgg)
+  {
+    assert nMonths <= retirementYears * 12;
+    state[0] = 0.0; // annual salary
+    state[1] = nMonths;
+  }
+
+  @Override
+  public double withdraw(double[] state, int iStart, int month, double balance)
+  {
+    final int nMonths = (int) state[1];
+    final int yearsLeft = (int) Math.ceil((nMonths - month) / 12.0 - 1e-5);
+    final int swr = dmswr[yearsLeft][iStart + month];
+
+    // Jump to higher salary if re-retiring helps.
+    final double reSalary = Math.min(balance * swr / 10000.0, balance * maxRate);
+    if (reSalary > state[0]) {
+      state[0] = reSalary;
+    }
+    return state[0] / 12.0;
+  }
+}
@@ -0,0 +1,93 @@
+package org.minnen.dmswr.strategy;
+
+/**
+ * Guyton-Klinger guardrails: start with a fixed (real) income and adjust it when the current withdrawal rate drifts too
+ * far from the initial rate.
+ *
+ * At the start of each year (after the first), the current withdrawal rate is compared to the initial rate:
+ * <ul>
+ * <li>Capital preservation: if the rate is above the upper guardrail, income is cut (unless the retirement is near its
+ * end).
+ * <li>Prosperity: if the rate is below the lower guardrail, income is raised.
+ * </ul>
+ *
+ * More information: https://www.kitces.com/blog/why-guyton-klinger-guardrails-are-too-risky-for-most-retirees/
+ */
+public class GuardrailStrategy implements WithdrawalStrategy
+{
+  /** Index of the annual income in the state array. */
+  public static final int STATE_INCOME = 0;
+
+  /** Index of the number of income cuts in the state array. */
+  public static final int STATE_CUTS   = 1;
+
+  /** Index of the number of months in the retirement in the state array. */
+  public static final int STATE_MONTHS = 2;
+
+  /** Initial annual withdrawal rate as a percent (5.0 = 5.0%). */
+  public final double     withdrawalRate;
+
+  /** Distance from the initial rate to each guardrail as a fraction (0.2 = guardrails at 80% and 120%). */
+  public final double     bandWidth;
+
+  /** Size of each income adjustment as a fraction (0.1 = cut or raise income by 10%). */
+  public final double     adjustment;
+
+  /** Income is not cut during the last `noCutYears` years of retirement (Guyton-Klinger use 15). */
+  public final int        noCutYears;
+
+  public GuardrailStrategy(double withdrawalRate, double bandWidth)
+  {
+    this(withdrawalRate, bandWidth, 0.1, 15);
+  }
+
+  public GuardrailStrategy(double withdrawalRate, double bandWidth, double adjustment, int noCutYears)
+  {
+    assert withdrawalRate > 0.0;
+    assert bandWidth >= 0.0 && bandWidth < 1.0;
+    assert adjustment >= 0.0 && adjustment < 1.0;
+    assert noCutYears >= 0;
+    this.withdrawalRate = withdrawalRate;
+    this.bandWidth = bandWidth;
+    this.adjustment = adjustment;
+    this.noCutYears = noCutYears;
+  }
+
+  @Override
+  public String getName()
+  {
+    return String.format("Guardrails (%.2f%%, %.0f%% band)", withdrawalRate, bandWidth * 100.0);
+  }
+
+  @Override
+  public int stateSize()
+  {
+    return 3; // income, cuts, months
+  }
+
+  @Override
+  public void init(double[] state, int iStart, int nMonths, double nestEgg)
+  {
+    state[STATE_INCOME] = nestEgg * withdrawalRate / 100.0;
+    state[STATE_CUTS] = 0;
+    state[STATE_MONTHS] = nMonths;
+  }
+
+  @Override
+  public double withdraw(double[] state, int iStart, int month, double balance)
+  {
+    if (month > 0 && month % 12 == 0) {
+      final double rate = state[STATE_INCOME] * 100.0 / balance;
+      final int yearsLeft = ((int) state[STATE_MONTHS] - month) / 12;
+      if (rate > withdrawalRate * (1.0 + bandWidth)) {
+        if (yearsLeft > noCutYears) {
+          state[STATE_INCOME] *= 1.0 - adjustment;
+          ++state[STATE_CUTS];
+        }
+      } else if (rate < withdrawalRate * (1.0 - bandWidth)) {
+        state[STATE_INCOME] *= 1.0 + adjustment;
+      }
+    }
+    return state[STATE_INCOME] / 12.0;
+  }
+}
@@ -0,0 +1,157 @@
+package org.minnen.dmswr.strategy;
+
+import java.io.IOException;
+import java.util.stream.IntStream;
+
+import org.minnen.dmswr.utils.Library;
+import org.minnen.dmswr.utils.SwrLib;
+import org.minnen.dmswr.utils.TimeLib;
+import org.minnen.dmswr.utils.FinLib.Inflation;
+
+/**
+ * Evaluate guardrail strategies for a grid of initial withdrawal rates and band widths.
+ *
+ * Every (rate, band) cell is simulated for every start month with a full retirement. All cells share one
+ * SimulationDriver so market growth and inflation are combined once, and cells are evaluated in parallel (each cell
+ * also runs its start months in parallel).
+ */
+public class GuardrailSweep
+{
+  /** Summary statistics for each cell of the sweep, indexed by `iRate * bandWidths.length + iBand`. */
+  public static class Results
+  {
+    public final double[] withdrawalRates;
+    public final double[] bandWidths;
+
+    /** Number of retirements evaluated for each cell. */
+    public final int      nRetirements;
+
+    /** Fraction of retirements that failed (0.1 = 10%). */
+    public final double[] failureRate;
+
+    /** Smallest annual income across all retirements (start-date dollars). */
+    public final double[] worstIncome;
+
+    /** Median (across retirements) of the smallest annual income. */
+    public final double[] medianMinIncome;
+
+    /** Average number of income cuts per retirement. */
+    public final double[] cutsPerRetirement;
+
+    /** Fraction of retirements with at least one income cut. */
+    public final double[] cutFrequency;
+
+    public Results(double[] withdrawalRates, double[] bandWidths, int nRetirements)
+    {
+      this.withdrawalRates = withdrawalRates;
+      this.bandWidths = bandWidths;
+      this.nRetirements = nRetirements;
+      final int n = withdrawalRates.length * bandWidths.length;
+      failureRate = new double[n];
+      worstIncome = new double[n];
+      medianMinIncome = new double[n];
+      cutsPerRetirement = new double[n];
+      cutFrequency = new double[n];
+    }
+
+    public int index(int iRate, int iBand)
+    {
+      return iRate * bandWidths.length + iBand;
+    }
+  }
+
+  /**
+   * Run the sweep for all start months with a full retirement.
+   *
+   * @param driver simulation driver (defines asset allocation, retirement duration, and nest egg)
+   * @param withdrawalRates initial withdrawal rates as percents (5.0 = 5.0%)
+   * @param bandWidths guardrail widths as fractions (0.2 = 20%)
+   * @param adjustment size of each income adjustment (0.1 = 10%)
+   * @param noCutYears income is not cut during the last `noCutYears` years of retirement
+   * @return summary statistics for each (rate, band) cell
+   */
+  public static Results run(SimulationDriver driver, double[] withdrawalRates, double[] bandWidths,
+      double adjustment, int noCutYears)
+  {
+    final int nRetirements = SwrLib.lastIndex(driver.retirementYears) + 1;
+    final Results results = new Results(withdrawalRates, bandWidths, nRetirements);
+    final int nCells = withdrawalRates.length * bandWidths.length;
+    IntStream.range(0, nCells).parallel().forEach(cell -> {
+      final double rate = withdrawalRates[cell / bandWidths.length];
+      final double band = bandWidths[cell % bandWidths.length];
+      GuardrailStrategy strategy = new GuardrailStrategy(rate, band, adjustment, noCutYears);
+      SimulationResults sim = driver.run(strategy);
+      assert sim.size() == nRetirements;
+
+      double worst = Double.POSITIVE_INFINITY;
+      int nCuts = 0;
+      int nWithCut = 0;
+      for (int j = 0; j < nRetirements; ++j) {
+        worst = Math.min(worst, sim.minIncome[j]);
+        final int cuts = (int) sim.getFinalState(j, GuardrailStrategy.STATE_CUTS);
+        nCuts += cuts;
+        if (cuts > 0) ++nWithCut;
+      }
+      results.failureRate[cell] = sim.getFailureRate();
+      results.worstIncome[cell] = worst;
+      results.medianMinIncome[cell] = Library.percentiles(sim.minIncome, 50)[0];
+      results.cutsPerRetirement[cell] = (double) nCuts / nRetirements;
+      results.cutFrequency[cell] = (double) nWithCut / nRetirements;
+    });
+    return results;
+  }
+
+  /** Print one table (rows = withdrawal rates, columns = band widths) for the given statistic. */
+  public static void printTable(String title, Results results, double[] values, String format)
+  {
+    System.out.printf("%s\n", title);
+    System.out.printf("  Rate ");
+    for (double band : results.bandWidths) {
+      System.out.printf("  %6.0f%%", band * 100.0);
+    }
+    System.out.println();
+    for (int iRate = 0; iRate < results.withdrawalRates.length; ++iRate) {
+      System.out.printf("%5.2f%%", results.withdrawalRates[iRate]);
+      for (int iBand = 0; iBand < results.bandWidths.length; ++iBand) {
+        System.out.printf("  " + format, values[results.index(iRate, iBand)]);
+      }
+      System.out.println();
+    }
+  }
+
+  public static void main(String[] args) throws IOException
+  {
+    final int retirementYears = 30;
+    final int percentStock = 75;
+    final double nestEgg = 1e6;
+    final double[] withdrawalRates = new double[] { 4.0, 4.5, 5.0, 5.5, 6.0, 6.5 };
+    final double[] bandWidths = new double[] { 0.1, 0.15, 0.2, 0.25, 0.3 };
+
+    SwrLib.setup(SwrLib.getDefaultBengenFile(), null, Inflation.Real);
+    System.out.printf("Retirements: %d years, %d%% stock, %s -> %s\n", retirementYears, percentStock,
+        TimeLib.formatYM(SwrLib.time(0)), TimeLib.formatYM(SwrLib.time(SwrLib.lastIndex(retirementYears))));
+
+    long startMS = System.currentTimeMillis();
+    SimulationDriver driver = new SimulationDriver(percentStock, retirementYears, nestEgg);
+    Results results = run(driver, withdrawalRates, bandWidths, 0.1, 15);
+    System.out.printf("Evaluated %d x %d cells, %d retirements each (%d ms)\n", withdrawalRates.length,
+        bandWidths.length, results.nRetirements, System.currentTimeMillis() - startMS);
+
+    final int n = results.failureRate.length;
+    double[] failurePct = new double[n];
+    double[] worstPct = new double[n];
+    double[] medianPct = new double[n];
+    double[] cutPct = new double[n];
+    for (int i = 0; i < n; ++i) {
+      failurePct[i] = results.failureRate[i] * 100.0;
+      worstPct[i] = results.worstIncome[i] * 100.0 / nestEgg;
+      medianPct[i] = results.medianMinIncome[i] * 100.0 / nestEgg;
+      cutPct[i] = results.cutFrequency[i] * 100.0;
+    }
+    printTable("Failure rate (%)", results, failurePct, "%7.2f");
+    printTable("Worst annual income (% of nest egg)", results, worstPct, "%7.2f");
+    printTable("Median of minimum annual income (% of nest egg)", results, medianPct, "%7.2f");
+    printTable("Retirements with an income cut (%)", results, cutPct, "%7.1f");
+    printTable("Income cuts per retirement", results, results.cutsPerRetirement, "%7.2f");
+  }
+}
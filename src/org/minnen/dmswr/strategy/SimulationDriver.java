@@ -0,0 +1,277 @@
+package org.minnen.dmswr.strategy;
+
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
+
+import org.minnen.dmswr.GlidePath;
+import org.minnen.dmswr.Rebalance;
+import org.minnen.dmswr.utils.DrawdownStats;
+import org.minnen.dmswr.utils.SwrLib;
+import org.minnen.dmswr.utils.FinLib.Inflation;
+
+/**
+ * Runs withdrawal strategies over historical data.
+ *
+ * The driver handles everything that is common to all strategies: market growth, inflation, failure detection, income
+ * statistics, and (optionally) capturing trajectories. Balances are tracked in start-date dollars by combining market
+ * growth and inflation into a single real multiplier per month, which is computed once per driver. Retirements for
+ * different start months are independent and run in parallel.
+ */
+public class SimulationDriver
+{
+  public final int       percentStock;
+  public final int       retirementYears;
+  public final double    nestEgg;
+
+  /** Glide path followed by each retirement (null for a fixed asset allocation). */
+  public final GlidePath glidePath;
+
+  /** Rebalancing policy (glide paths always rebalance monthly). */
+  public final Rebalance rebalance;
+
+  /** Real (inflation-adjusted) growth multipliers; see `rowStride`. */
+  private final double[] realGrowth;
+
+  /**
+   * Growth for month `m` of a retirement starting at index `s` is `realGrowth[s * rowStride + m]`. The stride is 1 for
+   * a fixed allocation (one multiplier per month) or the glide path horizon (one row per start month).
+   */
+  private final int      rowStride;
+
+  /** Real growth for stocks and bonds when the allocation can drift (null for monthly rebalancing). */
+  private final double[] stockGrowth, bondsGrowth;
+
+  /**
+   * Create a driver for a fixed asset allocation that is rebalanced monthly.
+   *
+   * @param percentStock percent stock (vs. bonds) to hold (70 = 70%)
+   * @param retirementYears duration of retirement in years
+   * @param nestEgg portfolio balance at start of retirement
+   */
+  public SimulationDriver(int percentStock, int retirementYears, double nestEgg)
+  {
+    this(percentStock, Rebalance.monthly, retirementYears, nestEgg);
+  }
+
+  /**
+   * Create a driver for a fixed target asset allocation.
+   *
+   * @param percentStock percent stock (vs. bonds) to hold (70 = 70%)
+   * @param rebalance rebalancing policy
+   * @param retirementYears duration of retirement in years
+   * @param nestEgg portfolio balance at start of retirement
+   */
+  public SimulationDriver(int percentStock, Rebalance rebalance, int retirementYears, double nestEgg)
+  {
+    assert percentStock >= 0 && percentStock <= 100;
+    assert retirementYears > 0;
+    this.percentStock = percentStock;
+    this.retirementYears = retirementYears;
+    this.nestEgg = nestEgg;
+    this.glidePath = null;
+    this.rebalance = rebalance;
+
+    final int n = SwrLib.length();
+    final boolean isNominal = (SwrLib.getInflationAdjustment() == Inflation.Nominal);
+    realGrowth = new double[n];
+    for (int i = 0; i < n; ++i) {
+      realGrowth[i] = SwrLib.growth(i, percentStock);
+      if (isNominal) realGrowth[i] /= SwrLib.inflation(i);
+    }
+    rowStride = 1;
+
+    if (rebalance.isMonthly()) {
+      stockGrowth = null;
+      bondsGrowth = null;
+    } else {
+      stockGrowth = new double[n];
+      bondsGrowth = new double[n];
+      for (int i = 0; i < n; ++i) {
+        final double k = isNominal ? SwrLib.inflation(i) : 1.0;
+        stockGrowth[i] = SwrLib.growth(i, 100) / k;
+        bondsGrowth[i] = SwrLib.growth(i, 0) / k;
+      }
+    }
+  }
+
+  /**
+   * Create a driver for retirements that follow a glide path.
+   *
+   * @param glidePath asset allocation for each month of retirement
+   * @param retirementYears duration of retirement in years
+   * @param nestEgg portfolio balance at start of retirement
+   */
+  public SimulationDriver(GlidePath glidePath, int retirementYears, double nestEgg)
+  {
+    assert retirementYears > 0;
+    if (glidePath.delayMonths > 0) {
+      throw new IllegalArgumentException("SimulationDriver does not support delayed glide paths");
+    }
+    this.percentStock = glidePath.getInitialPercentStock();
+    this.retirementYears = retirementYears;
+    this.nestEgg = nestEgg;
+    this.glidePath = glidePath;
+    this.rebalance = Rebalance.monthly;
+    this.stockGrowth = null;
+    this.bondsGrowth = null;
+
+    final int n = SwrLib.length();
+    final int nMonths = getNumMonths();
+    final double[] mul = glidePath.getMultipliers(nMonths - glidePath.delayMonths);
+    final int horizon = mul.length / n;
+    if (SwrLib.getInflationAdjustment() == Inflation.Nominal) {
+      final double[] real = new double[mul.length];
+      IntStream.range(0, n).parallel().forEach(iStart -> {
+        final int base = iStart * horizon;
+        final int nValid = Math.min(horizon, n - iStart);
+        for (int m = 0; m < nValid; ++m) {
+          real[base + m] = mul[base + m] / SwrLib.inflation(iStart + m);
+        }
+      });
+      realGrowth = real;
+    } else {
+      realGrowth = mul; // shared, read-only
+    }
+    rowStride = horizon;
+  }
+
+  /** @return number of months in each retirement. */
+  public int getNumMonths()
+  {
+    return retirementYears * 12;
+  }
+
+  /** Run the strategy for every start month with a full retirement period. */
+  public SimulationResults run(WithdrawalStrategy strategy)
+  {
+    return run(strategy, 0, SwrLib.lastIndex(retirementYears), false);
+  }
+
+  /**
+   * Run the strategy for a range of start months (in parallel).
+   *
+   * @param strategy withdrawal strategy to simulate
+   * @param iFirst index of first retirement month
+   * @param iLast index of last retirement month (inclusive, must leave room for a full retirement)
+   * @param captureTrajectories if true, store monthly income and balance for every retirement
+   * @return results for each start month
+   */
+  public SimulationResults run(WithdrawalStrategy strategy, int iFirst, int iLast, boolean captureTrajectories)
+  {
+    return run(strategy, iFirst, iLast, captureTrajectories, null);
+  }
+
+  /**
+   * Run the strategy for a range of start months (in parallel) and reduce each balance series to drawdown statistics.
+   *
+   * The balances are fed to a `DrawdownStats` object as they are simulated so no trajectories are stored. Each series
+   * starts with the nest egg and then holds the balance at the end of each month (zero after a failure), which matches
+   * `DrawdownAnalysis.analyze()`.
+   *
+   * @param strategy withdrawal strategy to simulate
+   * @param iFirst index of first retirement month
+   * @param iLast index of last retirement month (inclusive, must leave room for a full retirement)
+   * @param drawdowns receives the statistics and entry `j` for each retirement (called from worker threads)
+   * @return results for each start month
+   */
+  public SimulationResults run(WithdrawalStrategy strategy, int iFirst, int iLast,
+      ObjIntConsumer<DrawdownStats> drawdowns)
+  {
+    return run(strategy, iFirst, iLast, false, drawdowns);
+  }
+
+  private SimulationResults run(WithdrawalStrategy strategy, int iFirst, int iLast, boolean captureTrajectories,
+      ObjIntConsumer<DrawdownStats> drawdowns)
+  {
+    final int nMonths = getNumMonths();
+    assert iFirst >= 0 && iLast + nMonths <= SwrLib.length();
+    final int n = Math.max(iLast - iFirst + 1, 0);
+    final int stateSize = strategy.stateSize();
+    final SimulationResults results = new SimulationResults(strategy.getName(), iFirst, n, nMonths, nestEgg,
+        stateSize, captureTrajectories);
+    IntStream.range(0, n).parallel().forEach(j -> {
+      double[] state = new double[stateSize];
+      DrawdownStats drawdown = (drawdowns == null ? null : new DrawdownStats());
+      simulate(strategy, iFirst + j, state, results, j, drawdown);
+      results.setFinalState(j, state);
+      if (drawdowns != null) drawdowns.accept(drawdown, j);
+    });
+    return results;
+  }
+
+  /** Simulate one retirement and store the results in entry `j` (and the balances in `drawdown` if non-null). */
+  private void simulate(WithdrawalStrategy strategy, int iStart, double[] state, SimulationResults results, int j,
+      DrawdownStats drawdown)
+  {
+    final int nMonths = getNumMonths();
+    final double[] incomeBuffer = results.getIncomeBuffer();
+    final double[] balanceBuffer = results.getBalanceBuffer();
+    final int offset = results.offset(j);
+    final int growthBase = iStart * rowStride;
+    final double target = percentStock / 100.0;
+
+    strategy.init(state, iStart, nMonths, nestEgg);
+    double balance = nestEgg;
+    double stock = balance * target; // only used if the allocation can drift
+    double bonds = balance - stock;
+    double yearIncome = 0.0;
+    double totalIncome = 0.0;
+    double minIncome = Double.POSITIVE_INFINITY;
+    int failureMonth = -1;
+    if (drawdown != null) drawdown.add(balance);
+    for (int month = 0; month < nMonths; ++month) {
+      double withdrawal = strategy.withdraw(state, iStart, month, balance);
+      assert withdrawal >= 0.0;
+      if (balanceBuffer != null) {
+        balanceBuffer[offset + month] = balance;
+      }
+      if (withdrawal >= balance) {
+        // Withdrawing exactly the full balance is ok (e.g. VPW in the final year) but asking for more is a failure.
+        if (withdrawal > balance * (1.0 + 1e-12)) failureMonth = month;
+        withdrawal = balance; // take what's left
+      }
+      if (incomeBuffer != null) {
+        incomeBuffer[offset + month] = withdrawal;
+      }
+      balance -= withdrawal; // withdrawal at beginning of month
+      yearIncome += withdrawal;
+      if (failureMonth >= 0) {
+        if (drawdown != null) drawdown.add(0.0);
+        break;
+      }
+
+      if (stockGrowth == null) {
+        balance *= realGrowth[growthBase + month]; // market affects remaining balance
+      } else {
+        if (rebalance.shouldRebalance(month, stock, bonds, target)) {
+          stock = balance * target;
+          bonds = balance - stock;
+        } else if (stock + bonds > 0.0) {
+          final double k = balance / (stock + bonds); // withdraw proportionally from stocks and bonds
+          stock *= k;
+          bonds *= k;
+        }
+        stock *= stockGrowth[iStart + month];
+        bonds *= bondsGrowth[iStart + month];
+        balance = stock + bonds;
+      }
+      if (drawdown != null) drawdown.add(balance);
+      if (month % 12 == 11) {
+        if (yearIncome < minIncome) minIncome = yearIncome;
+        totalIncome += yearIncome;
+        yearIncome = 0.0;
+      }
+    }
+    totalIncome += yearIncome; // partial year (or failure year)
+
+    if (failureMonth >= 0) {
+      results.finalBalance[j] = 0.0;
+      results.minIncome[j] = 0.0;
+    } else {
+      results.finalBalance[j] = balance;
+      results.minIncome[j] = (minIncome == Double.POSITIVE_INFINITY ? yearIncome : minIncome);
+    }
+    results.failureMonth[j] = failureMonth;
+    results.meanIncome[j] = totalIncome / (nMonths / 12.0);
+  }
+}
@@ -0,0 +1,127 @@
+package org.minnen.dmswr.strategy;
+
+/**
+ * Results of running a withdrawal strategy for a range of retirement start months.
+ *
+ * Entry `j` holds the results for the retirement that starts at SwrLib index `iFirst + j`. All values are in start-date
+ * dollars and income is annual (sum of the withdrawals for each year of retirement).
+ */
+public class SimulationResults
+{
+  public final String   name;
+  public final int      iFirst;
+  public final int      nMonths;
+  public final double   nestEgg;
+
+  /** Balance at the end of retirement (zero if the retirement failed). */
+  public final double[] finalBalance;
+
+  /** Month of retirement that failed (0 = first month) or -1 if the retirement succeeded. */
+  public final int[]    failureMonth;
+
+  /** Smallest annual income (zero if the retirement failed). */
+  public final double[] minIncome;
+
+  /** Average annual income. */
+  public final double[] meanIncome;
+
+  /** Monthly withdrawals for each retirement (null if trajectories were not captured). */
+  private final double[] income;
+
+  /** Balance at the beginning of each month for each retirement (null if trajectories were not captured). */
+  private final double[] balance;
+
+  /** Strategy state at the end of each retirement (e.g. counters kept by the strategy). */
+  private final double[] finalState;
+  private final int      stateSize;
+
+  public SimulationResults(String name, int iFirst, int nRetirements, int nMonths, double nestEgg, int stateSize,
+      boolean captureTrajectories)
+  {
+    this.name = name;
+    this.iFirst = iFirst;
+    this.nMonths = nMonths;
+    this.nestEgg = nestEgg;
+    this.stateSize = stateSize;
+    finalBalance = new double[nRetirements];
+    failureMonth = new int[nRetirements];
+    minIncome = new double[nRetirements];
+    meanIncome = new double[nRetirements];
+    finalState = new double[nRetirements * stateSize];
+    if (captureTrajectories) {
+      income = new double[nRetirements * nMonths];
+      balance = new double[nRetirements * nMonths];
+    } else {
+      income = null;
+      balance = null;
+    }
+  }
+
+  /** @return number of retirements. */
+  public int size()
+  {
+    return finalBalance.length;
+  }
+
+  public boolean hasTrajectories()
+  {
+    return income != null;
+  }
+
+  /** @return number of retirements that failed. */
+  public int getNumFailures()
+  {
+    int n = 0;
+    for (int month : failureMonth) {
+      if (month >= 0) ++n;
+    }
+    return n;
+  }
+
+  /** @return fraction of retirements that failed (0.1 = 10%). */
+  public double getFailureRate()
+  {
+    return size() == 0 ? 0.0 : (double) getNumFailures() / size();
+  }
+
+  /** @return withdrawal for the given retirement (index into results) and month. */
+  public double getIncome(int j, int month)
+  {
+    return income[j * nMonths + month];
+  }
+
+  /** @return balance (before the withdrawal) for the given retirement (index into results) and month. */
+  public double getBalance(int j, int month)
+  {
+    return balance[j * nMonths + month];
+  }
+
+  /** @return element `k` of the strategy state at the end of retirement `j` (index into results). */
+  public double getFinalState(int j, int k)
+  {
+    assert k >= 0 && k < stateSize;
+    return finalState[j * stateSize + k];
+  }
+
+  /** Store the strategy state at the end of retirement `j`. */
+  void setFinalState(int j, double[] state)
+  {
+    System.arraycopy(state, 0, finalState, j * stateSize, stateSize);
+  }
+
+  /** @return offset into the trajectory buffers for retirement `j`. */
+  int offset(int j)
+  {
+    return j * nMonths;
+  }
+
+  double[] getIncomeBuffer()
+  {
+    return income;
+  }
+
+  double[] getBalanceBuffer()
+  {
+    return balance;
+  }
+}
@@ -0,0 +1,54 @@
+package org.minnen.dmswr.strategy;
+
+import org.minnen.dmswr.data.VpwTable;
+
+/**
+ * Variable Percentage Withdrawal: withdraw a percentage of the current balance at the beginning of each year.
+ *
+ * @see org.minnen.dmswr.VpwMethod
+ */
+public class VpwStrategy implements WithdrawalStrategy
+{
+  private final int[] rates;
+
+  /**
+   * Create a VPW strategy with the given rates.
+   *
+   * @param rates withdrawal rate for each year of retirement in basis points (530 = 5.3%)
+   */
+  public VpwStrategy(int[] rates)
+  {
+    this.rates = rates;
+  }
+
+  /** Create a VPW strategy using rates from the VPW table. */
+  public VpwStrategy(int percentStock, int retirementYears)
+  {
+    this(VpwTable.get(percentStock, retirementYears));
+  }
+
+  @Override
+  public String getName()
+  {
+    return String.format("VPW (%d years)", rates.length);
+  }
+
+  @Override
+  public int stateSize()
+  {
+    return 0;
+  }
+
+  @Override
+  public void init(double[] state, int iStart, int nMonths, double nestEgg)
+  {
+    assert nMonths <= rates.length * 12;
+  }
+
+  @Override
+  public double withdraw(double[] state, int iStart, int month, double balance)
+  {
+    if (month % 12 != 0) return 0.0;
+    return balance * rates[month / 12] / 10000.0;
+  }
+}
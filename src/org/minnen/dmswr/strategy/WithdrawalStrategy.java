@@ -0,0 +1,41 @@
+package org.minnen.dmswr.strategy;
+
+/**
+ * Decides how much to withdraw each month of a retirement.
+ *
+ * Strategies are run by SimulationDriver, which handles market growth, inflation, failure detection, and parallelism.
+ * All values passed to and returned from a strategy are in start-date dollars (i.e. real dollars as of the retirement
+ * date), regardless of whether SwrLib holds real or nominal data.
+ *
+ * Per-retirement state lives in a `double[]` owned by the driver so that strategies can be shared across threads and
+ * the inner loop doesn't allocate. Strategies should not hold mutable fields.
+ */
+public interface WithdrawalStrategy
+{
+  /** @return short name used in reports and charts. */
+  String getName();
+
+  /** @return number of doubles needed to hold the state of one retirement. */
+  int stateSize();
+
+  /**
+   * Initialize the state for a new retirement.
+   *
+   * @param state array to initialize (length >= `stateSize()`, contents undefined)
+   * @param iStart index of retirement month (first withdrawal)
+   * @param nMonths number of months of retirement
+   * @param nestEgg portfolio balance at start of retirement
+   */
+  void init(double[] state, int iStart, int nMonths, double nestEgg);
+
+  /**
+   * Decide the withdrawal for one month. Withdrawals happen at the beginning of the month.
+   *
+   * @param state state for this retirement
+   * @param iStart index of retirement month
+   * @param month months since retirement (0 = first month)
+   * @param balance current balance (before the withdrawal)
+   * @return amount to withdraw this month (a value larger than `balance` means that the retirement failed)
+   */
+  double withdraw(double[] state, int iStart, int month, double balance);
+}
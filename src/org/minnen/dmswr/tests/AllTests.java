@@ -11,12 +11,30 @@ import org.minnen.dmswr.utils.TimeLib;
 
 @RunWith(Suite.class)
 @SuiteClasses({ //
+    TestAssetMatrix.class, //
+    TestBengenMethod.class, //
+    TestBengenTable.class, //
     TestBond.class, //
+    TestCsvWriter.class, //
+    TestDmswrCache.class, //
+    TestEvents.class, //
+    TestFastFormat.class, //
     TestFinLib.class, //
+    TestGlidePath.class, //
     TestLibrary.class, //
+    TestLookbackSweep.class, //
+    TestMarwoodMethod.class, //
+    TestMetrics.class, //
+    TestNestEggCalculator.class, //
+    TestRebalance.class, //
     TestSequence.class, //
+    TestStrategy.class, //
     TestSwrLib.class, //
+    TestTableCheckpoint.class, //
+    TestTableShards.class, //
     TestTimeLib.class, //
+    TestVpwMethod.class, //
+    TestVpwTable.class, //
 })
 
 public class AllTests
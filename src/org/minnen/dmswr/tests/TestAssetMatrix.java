@@ -0,0 +1,41 @@
+package org.minnen.dmswr.tests;
+
+import org.junit.Test;
+import org.minnen.dmswr.BengenMethod;
+import org.minnen.dmswr.Portfolio;
+import org.minnen.dmswr.data.MonthlyInfo;
+import org.minnen.dmswr.utils.AssetMatrix;
+import org.minnen.dmswr.utils.SwrLib;
+
+import junit.framework.TestCase;
+
+public class TestAssetMatrix extends TestCase
+{
+  @Override
+  protected void setUp() throws Exception
+  {
+    SwrLib.setupWithDefaultFiles();
+  }
+
+  @Test
+  public void testAssetMatrix()
+  {
+    AssetMatrix matrix = SwrLib.getAssetMatrix(SwrLib.ASSET_STOCK, SwrLib.ASSET_BONDS);
+    assertEquals(0, matrix.iFirst);
+    assertEquals(SwrLib.length(), matrix.iEnd);
+    for (int i = 0; i < SwrLib.length(); i += 17) {
+      assertEquals(SwrLib.growth(i, 100), matrix.get(i, 0), 1e-12);
+      assertEquals(SwrLib.growth(i, 0), matrix.get(i, 1), 1e-12);
+    }
+
+    // Two-asset portfolio matches the stock/bond simulation.
+    Portfolio portfolio = Portfolio.of(new String[] { SwrLib.ASSET_STOCK, SwrLib.ASSET_BONDS },
+        new double[] { 0.6, 0.4 });
+    for (int i = 0; i <= SwrLib.lastIndex(30); i += 41) {
+      MonthlyInfo expected = BengenMethod.runForDuration(i, 30, 4.5, 60, 1e6, null);
+      MonthlyInfo info = BengenMethod.run(i, i + 360, 4.5, portfolio, 1e6, null);
+      assertEquals(expected.retirementMonth, info.retirementMonth);
+      assertEquals(1.0, info.finalBalance / expected.finalBalance, 1e-12);
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package org.minnen.dmswr.tests;
+
+import org.junit.Test;
+import org.minnen.dmswr.BengenMethod;
+import org.minnen.dmswr.data.BengenEntry;
+import org.minnen.dmswr.data.BengenTable;
+import org.minnen.dmswr.utils.SwrLib;
+
+import junit.framework.TestCase;
+
+public class TestBengenMethod extends TestCase
+{
+  @Override
+  protected void setUp() throws Exception
+  {
+    SwrLib.setupWithDefaultFiles();
+  }
+
+  @Test
+  public void testBengenSearchBound()
+  {
+    // A bound from the shorter retirement that equals the SWR must not change the result.
+    final int retirementYears = 30;
+    final int percentStock = 60;
+    BengenTable.clear();
+    for (int i : new int[] { 0, 500, 900, 1200 }) {
+      final int iEnd = i + retirementYears * 12;
+      final int swr = BengenMethod.findSwrForWindow(i, iEnd, percentStock, 1);
+      BengenEntry bound = new BengenEntry(SwrLib.time(i), retirementYears - 1, percentStock, swr);
+      BengenTable.bengenMap.put(bound, bound);
+      assertEquals(swr, BengenMethod.findSwrForWindow(i, iEnd, percentStock, 1));
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package org.minnen.dmswr.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Test;
+import org.minnen.dmswr.Rebalance;
+import org.minnen.dmswr.data.BengenEntry;
+import org.minnen.dmswr.data.BengenTable;
+import org.minnen.dmswr.utils.FeatureVec;
+import org.minnen.dmswr.utils.Sequence;
+import org.minnen.dmswr.utils.SwrLib;
+
+import junit.framework.TestCase;
+
+public class TestBengenTable extends TestCase
+{
+  @Override
+  protected void setUp() throws Exception
+  {
+    SwrLib.setupWithDefaultFiles();
+  }
+
+  @Test
+  public void testTableSequencesStayCompact()
+  {
+    Sequence seq = BengenTable.getAcrossTime(30, 75);
+    for (FeatureVec v : seq) {
+      assertTrue(v.get(0) > 0.0);
+    }
+    assertFalse(seq.isCompact());
+    assertTrue(BengenTable.bengenSequences.get(new BengenEntry(30, 75)).isCompact());
+  }
+
+  @Test
+  public void testBengenShardsMatchTable() throws IOException
+  {
+    final int nYears = 3;
+    final int[] percentStocks = new int[] { 0, 60 };
+    final int nShards = 3; // no shard holds both a cell and the cell for one year less
+    File table = File.createTempFile("bengen", ".csv");
+    File sharded = File.createTempFile("bengen-sharded", ".csv");
+    try {
+      BengenTable.generateTable(table, Rebalance.monthly, nYears, percentStocks, false);
+      for (int shard = 0; shard < nShards; ++shard) {
+        BengenTable.generateShard(sharded, Rebalance.monthly, nYears, percentStocks, shard, nShards);
+      }
+      BengenTable.mergeShards(sharded, Rebalance.monthly, nYears, percentStocks, nShards);
+      assertEquals(Files.readAllLines(table.toPath()), Files.readAllLines(sharded.toPath()));
+    } finally {
+      table.delete();
+      sharded.delete();
+    }
+  }
+}
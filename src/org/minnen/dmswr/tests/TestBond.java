@@ -2,9 +2,16 @@ package org.minnen.dmswr.tests;
 
 import static org.junit.Assert.*;
 
+import java.time.LocalDate;
+
 import org.junit.Test;
 import org.minnen.dmswr.utils.Bond;
+import org.minnen.dmswr.utils.Bond.DivOrPow;
+import org.minnen.dmswr.utils.BondFactory;
+import org.minnen.dmswr.utils.BondReturns;
 import org.minnen.dmswr.utils.FinLib;
+import org.minnen.dmswr.utils.Sequence;
+import org.minnen.dmswr.utils.TimeLib;
 
 public class TestBond
 {
@@ -91,4 +98,50 @@ public class TestBond
     p = Bond.calcPriceZeroCoupon(5, 100, 9.5);
     assertEquals(FinLib.getPresentValue(100, 5, 9.5), p, 1e-6);
   }
+
+  /** @return synthetic GS10-style yields that rise and fall (including a month with zero yield). */
+  private static Sequence getTestYields(int n)
+  {
+    Sequence seq = new Sequence("Yields");
+    LocalDate date = LocalDate.of(1950, 1, 1);
+    for (int i = 0; i < n; ++i) {
+      final double y = (i == 17 ? 0.0 : 4.0 + 3.0 * Math.sin(i / 25.0) + 0.5 * Math.cos(i / 3.0));
+      seq.addData(y, TimeLib.toMs(date));
+      date = date.plusMonths(1);
+    }
+    return seq;
+  }
+
+  private static void assertSameReturns(Sequence expected, Sequence actual)
+  {
+    assertEquals(expected.length(), actual.length());
+    for (int i = 0; i < expected.length(); ++i) {
+      assertEquals(expected.getTimeMS(i), actual.getTimeMS(i));
+      assertEquals(expected.get(i, 0), actual.get(i, 0), 1e-12 * expected.get(i, 0));
+    }
+  }
+
+  @Test
+  public void testBondReturns()
+  {
+    Sequence yields = getTestYields(400);
+    BondReturns.clearCache();
+
+    assertSameReturns(Bond.calcReturnsYTM(yields), BondReturns.calcReturns(BondReturns.Model.YTM, yields));
+    assertSameReturns(Bond.calcReturnsRebuy(BondFactory.note10Year, yields, 0, -1),
+        BondReturns.calcReturns(BondReturns.Model.Rebuy, yields));
+    assertSameReturns(Bond.calcReturnsHold(BondFactory.note10Year, yields, 0, -1),
+        BondReturns.calcReturns(BondReturns.Model.Hold, yields));
+    assertSameReturns(Bond.calcReturnsNaiveInterest(BondFactory.note10Year, yields, 0, -1, DivOrPow.DivideBy12),
+        BondReturns.calcReturns(BondReturns.Model.NaiveDiv12, yields));
+    assertSameReturns(Bond.calcReturnsNaiveInterest(BondFactory.note10Year, yields, 0, -1, DivOrPow.TwelfthRoot),
+        BondReturns.calcReturns(BondReturns.Model.NaivePow12, yields));
+
+    // Cached results are returned in a new sequence so callers can modify it.
+    Sequence a = BondReturns.calcReturns(BondReturns.Model.Hold, yields);
+    Sequence b = BondReturns.calcReturns(BondReturns.Model.Hold, yields);
+    assertNotSame(a, b);
+    a._div(2.0);
+    assertEquals(a.get(100, 0) * 2.0, b.get(100, 0), 1e-12);
+  }
 }
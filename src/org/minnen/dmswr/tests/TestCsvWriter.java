@@ -0,0 +1,58 @@
+package org.minnen.dmswr.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Month;
+
+import org.junit.Test;
+import org.minnen.dmswr.data.BengenEntry;
+import org.minnen.dmswr.data.MarwoodEntry;
+import org.minnen.dmswr.utils.CsvWriter;
+import org.minnen.dmswr.utils.TimeLib;
+
+public class TestCsvWriter
+{
+  private static String readAll(File file) throws IOException
+  {
+    return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testFields() throws IOException
+  {
+    File file = File.createTempFile("test", ".csv");
+    file.deleteOnExit();
+    final long ms = TimeLib.toMs(1929, Month.SEPTEMBER, 1);
+    try (CsvWriter writer = new CsvWriter(file)) {
+      writer.writeln("# comment");
+      writer.add(42).add(-7).add(0).add(Long.MAX_VALUE).endRow();
+      writer.addYM(ms).addYMD(ms).addYear(ms).addYM(ms).endRow();
+      writer.addFixed(3.14159, 2).addFixed(-0.5, 3).addFixed(2.0, 8, 2).addEmpty().add("x").endRow();
+      writer.addDouble(500.0).addDouble(0.1).addDouble(-1.25).endRow();
+    }
+    String expected = "# comment\n" + "42,-7,0,9223372036854775807\n" + "1929-09,1929-09-01,1929,1929-09\n"
+        + "3.14,-0.500,2.00,,x\n" + "500,0.1,-1.25\n";
+    assertEquals(expected, readAll(file));
+  }
+
+  @Test
+  public void testEntriesMatchToCSV() throws IOException
+  {
+    File file = File.createTempFile("test", ".csv");
+    file.deleteOnExit();
+    final long retireTime = TimeLib.toMs(1965, Month.JANUARY, 1);
+    final long currentTime = TimeLib.toMs(1970, Month.JUNE, 1);
+    BengenEntry bengen = new BengenEntry(retireTime, 30, 75, 412);
+    MarwoodEntry marwood = new MarwoodEntry(retireTime, currentTime, 30, 20, 75, 523, 17, 123456.785, 40000.0,
+        52300.125, 61000.999);
+    try (CsvWriter writer = new CsvWriter(file)) {
+      bengen.writeCSV(writer);
+      marwood.writeCSV(writer);
+    }
+    assertEquals(bengen.toCSV() + "\n" + marwood.toCSV() + "\n", readAll(file));
+  }
+}
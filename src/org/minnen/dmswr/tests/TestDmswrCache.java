@@ -0,0 +1,55 @@
+package org.minnen.dmswr.tests;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.minnen.dmswr.NestEggCalculator;
+import org.minnen.dmswr.data.DmswrCache;
+import org.minnen.dmswr.data.MonthlyInfo;
+import org.minnen.dmswr.utils.SwrLib;
+
+import junit.framework.TestCase;
+
+public class TestDmswrCache extends TestCase
+{
+  @Override
+  protected void setUp() throws Exception
+  {
+    SwrLib.setupWithDefaultFiles();
+    DmswrCache.clearMemory();
+  }
+
+  @Test
+  public void testHitsAreCopies() throws Exception
+  {
+    DmswrCache.useDisk = false;
+    try {
+      final int lookbackYears = 2;
+      final int iStartSim = lookbackYears * 12;
+      NestEggCalculator nestEggCalculator = NestEggCalculator.constant(1e6);
+      List<MonthlyInfo> first = DmswrCache.findDMSWR(iStartSim, iStartSim + 11, 10, lookbackYears, 75,
+          nestEggCalculator);
+      assertEquals(12, first.size());
+      final double finalBalance = first.get(0).finalBalance;
+
+      // Changing a returned entry must not change later hits.
+      first.get(0).finalBalance = -1.0;
+      List<MonthlyInfo> second = DmswrCache.findDMSWR(iStartSim, iStartSim + 11, 10, lookbackYears, 75,
+          nestEggCalculator);
+      assertNotSame(first.get(0), second.get(0));
+      assertEquals(finalBalance, second.get(0).finalBalance);
+      assertEquals(first.get(0).swr, second.get(0).swr);
+      assertTrue(DmswrCache.getStats().contains("memory=1"));
+
+      try {
+        second.remove(0);
+        fail("cached results should be unmodifiable");
+      } catch (UnsupportedOperationException e) {
+        // expected
+      }
+    } finally {
+      DmswrCache.useDisk = true;
+      DmswrCache.clearMemory();
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package org.minnen.dmswr.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+import org.minnen.dmswr.data.BengenTable;
+import org.minnen.dmswr.utils.SwrLib;
+import org.minnen.dmswr.utils.FinLib.Inflation;
+
+import junit.framework.TestCase;
+
+public class TestEvents extends TestCase
+{
+  @Override
+  protected void setUp() throws Exception
+  {
+    SwrLib.setupWithDefaultFiles();
+  }
+
+  @Test
+  public void testEvents() throws Exception
+  {
+    final File bengenFile = SwrLib.getDefaultBengenFile();
+    final File missing = new File("/does/not/exist/bengen-table.csv");
+    Path path = Files.createTempFile("dmswr-test", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("org.minnen.dmswr.Setup");
+      recording.enable("org.minnen.dmswr.TableLoad");
+      recording.start();
+      SwrLib.setup(bengenFile, null, Inflation.Real);
+      try {
+        BengenTable.loadTable(missing);
+        fail("loading a missing table should fail");
+      } catch (IOException e) {
+        // expected
+      }
+      recording.stop();
+      recording.dump(path);
+
+      RecordedEvent setup = null;
+      RecordedEvent load = null;
+      RecordedEvent failed = null;
+      for (RecordedEvent event : RecordingFile.readAllEvents(path)) {
+        final String name = event.getEventType().getName();
+        if (name.equals("org.minnen.dmswr.Setup")) {
+          setup = event;
+        } else if (name.equals("org.minnen.dmswr.TableLoad")) {
+          if (bengenFile.getPath().equals(event.getString("file"))) load = event;
+          if (missing.getPath().equals(event.getString("file"))) failed = event;
+        }
+      }
+
+      assertNotNull(setup);
+      assertTrue(setup.getBoolean("completed"));
+      assertEquals("Real", setup.getString("inflation"));
+      assertEquals(bengenFile.getPath(), setup.getString("bengenFile"));
+      assertNull(setup.getString("dmswrFile"));
+      assertEquals(SwrLib.length(), setup.getInt("months"));
+
+      assertNotNull(load);
+      assertTrue(load.getBoolean("completed"));
+      assertEquals("bengen", load.getString("table"));
+      assertTrue(load.getInt("rows") > 0);
+      assertTrue(load.getInt("sequences") > 0);
+      assertTrue(setup.getDuration().compareTo(load.getDuration()) >= 0);
+
+      // Failed phases are still recorded.
+      assertNotNull(failed);
+      assertFalse(failed.getBoolean("completed"));
+      assertEquals(0, failed.getInt("rows"));
+    } finally {
+      Files.deleteIfExists(path);
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package org.minnen.dmswr.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.minnen.dmswr.utils.FastFormat;
+import org.minnen.dmswr.viz.Downsample;
+
+public class TestFastFormat
+{
+  @Test
+  public void testMatchesStringFormat()
+  {
+    double[] values = new double[] { 0.0, -0.0, 1.0, -1.0, 0.15, 1.005, 2.5, -0.001, 123456.789, 1e20, Double.NaN,
+        Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+    for (double x : values) {
+      for (int digits = 0; digits <= 8; ++digits) {
+        assertEquals(String.format("%." + digits + "f", x), FastFormat.formatFixed(x, digits));
+      }
+    }
+
+    Random rng = new Random(1234);
+    for (int i = 0; i < 10000; ++i) {
+      double x = (rng.nextDouble() - 0.5) * Math.pow(10, rng.nextInt(14) - 6);
+      int digits = rng.nextInt(9);
+      assertEquals(String.format("%." + digits + "f", x), FastFormat.formatFixed(x, digits));
+    }
+  }
+
+  @Test
+  public void testTrimZeros()
+  {
+    assertEquals("1.25", FastFormat.appendFixed(new StringBuilder(), 1.25, 6, true).toString());
+    assertEquals("3", FastFormat.appendFixed(new StringBuilder(), 3.0, 6, true).toString());
+    assertEquals("-0.5", FastFormat.appendFixed(new StringBuilder(), -0.5, 2, true).toString());
+    assertEquals("3.00", FastFormat.appendFixed(new StringBuilder(), 3.0, 8, 2).toString());
+    assertEquals("3.14159265", FastFormat.appendFixed(new StringBuilder(), Math.PI, 8, 2).toString());
+    assertEquals("x,2.5", FastFormat.appendFixed(new StringBuilder("x,"), 2.5, 4, true).toString());
+  }
+
+  @Test
+  public void testDownsample()
+  {
+    final int n = 1000;
+    double[] x = new double[n];
+    double[] y = new double[n];
+    for (int i = 0; i < n; ++i) {
+      x[i] = i;
+      y[i] = Math.sin(i / 50.0);
+    }
+    y[500] = 10.0; // spike must survive downsampling
+
+    int[] keep = Downsample.lttb(x, y, 100);
+    assertEquals(100, keep.length);
+    assertEquals(0, keep[0]);
+    assertEquals(n - 1, keep[keep.length - 1]);
+    boolean hasSpike = false;
+    for (int i = 0; i < keep.length; ++i) {
+      if (i > 0) assertTrue(keep[i] > keep[i - 1]);
+      if (keep[i] == 500) hasSpike = true;
+    }
+    assertTrue(hasSpike);
+
+    // No downsampling needed.
+    assertEquals(n, Downsample.lttb(x, y, n).length);
+    assertEquals(n, Downsample.lttb(x, y, 2 * n).length);
+  }
+}
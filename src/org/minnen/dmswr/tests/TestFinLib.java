@@ -4,11 +4,17 @@ import static org.junit.Assert.*;
 
 import java.time.LocalDate;
 import java.time.Month;
+import java.util.Arrays;
 
 import org.junit.Test;
+import org.minnen.dmswr.utils.DrawdownStats;
 import org.minnen.dmswr.utils.FeatureVec;
 import org.minnen.dmswr.utils.Sequence;
 import org.minnen.dmswr.utils.FinLib;
+import org.minnen.dmswr.utils.Histogram;
+import org.minnen.dmswr.utils.Library;
+import org.minnen.dmswr.utils.Random;
+import org.minnen.dmswr.utils.RollingStats;
 import org.minnen.dmswr.utils.TimeLib;
 
 public class TestFinLib
@@ -369,4 +375,147 @@ public class TestFinLib
     double fv = FinLib.getFutureValue(pv, interestRate, nPeriods);
     assertEquals(value, fv, 1e-6);
   }
+
+  @Test
+  public void testRollingStats()
+  {
+    Random rng = new Random(42);
+    final int n = 5000;
+    double[] x = new double[n];
+    double[] y = new double[n];
+    for (int i = 0; i < n; ++i) {
+      x[i] = 1000.0 + rng.nextGaussian(); // large offset stresses numerical stability
+      y[i] = 0.5 * x[i] + 0.1 * rng.nextGaussian() + (i % 500 == 0 ? 50.0 : 0.0);
+    }
+
+    for (int window : new int[] { 2, 7, 60, 361 }) {
+      RollingStats stats = new RollingStats(x, y, window);
+      assertEquals(n - window + 1, stats.size());
+      double[] a = new double[window];
+      double[] b = new double[window];
+      for (int k = 0; k < stats.size(); k += (window < 10 ? 1 : 13)) {
+        System.arraycopy(x, k, a, 0, window);
+        System.arraycopy(y, k, b, 0, window);
+        assertEquals(Library.mean(a), stats.meanX[k], 1e-9);
+        assertEquals(Library.mean(b), stats.meanY[k], 1e-9);
+        assertEquals(Library.variance(a), stats.varX[k], 1e-8);
+        assertEquals(Library.variance(b), stats.varY[k], 1e-8);
+        assertEquals(Library.covariance(a, b), stats.cov[k], 1e-8);
+        assertEquals(Library.correlation(a, b), stats.correlation(k), 1e-8);
+      }
+    }
+
+    // Constant series have zero variance and correlation.
+    double[] c = new double[100];
+    Arrays.fill(c, 3.0);
+    RollingStats stats = new RollingStats(c, Arrays.copyOf(x, c.length), 10);
+    for (int k = 0; k < stats.size(); ++k) {
+      assertEquals(0.0, stats.varX[k], 1e-12);
+      assertEquals(0.0, stats.correlation(k), 1e-12);
+    }
+  }
+
+  @Test
+  public void testRollingCorrelationAndSharpe()
+  {
+    Random rng = new Random(7);
+    Sequence prices1 = new Sequence("a");
+    Sequence prices2 = new Sequence("b");
+    Sequence returns = new Sequence("returns");
+    double p1 = 100.0, p2 = 50.0;
+    for (int i = 0; i < 600; ++i) {
+      final double r = 0.5 + 4.0 * rng.nextGaussian();
+      p1 *= FinLib.ret2mul(r);
+      p2 *= FinLib.ret2mul(0.3 * r + 2.0 * rng.nextGaussian());
+      prices1.addData(p1, 1000L * i);
+      prices2.addData(p2, 1000L * i);
+      returns.addData(r, 1000L * i);
+    }
+
+    final int window = 36;
+    Sequence corr = FinLib.calcCorrelation(prices1, prices2, window);
+    assertEquals(prices1.length() - 1 - window, corr.length());
+    for (int i = window; i < prices1.length() - 1; ++i) {
+      double[] a = new double[window];
+      double[] b = new double[window];
+      for (int j = 0; j < window; ++j) {
+        final int k = i - window + j;
+        a[j] = prices1.get(k + 1, 0) / prices1.get(k, 0);
+        b[j] = prices2.get(k + 1, 0) / prices2.get(k, 0);
+      }
+      assertEquals(Library.correlation(a, b), corr.get(i - window, 0), 1e-9);
+      assertEquals(prices1.getTimeMS(i - window / 2), corr.getTimeMS(i - window));
+    }
+
+    Sequence sharpe = FinLib.calcRollingSharpe(returns, null, window, 12);
+    Sequence vol = FinLib.calcRollingVolatility(returns, window, 1);
+    assertEquals(returns.length() - window + 1, sharpe.length());
+    for (int k = 0; k < sharpe.length(); k += 11) {
+      Sequence sub = returns.subseq(k, window);
+      assertEquals(FinLib.sharpeMonthly(sub, null), sharpe.get(k, 0), 1e-9);
+      assertEquals(Library.stdev(sub.extractDim(0)), vol.get(k, 0), 1e-9);
+      assertEquals(returns.getTimeMS(k + window - 1), sharpe.getTimeMS(k));
+    }
+  }
+
+  @Test
+  public void testDrawdownStats()
+  {
+    Sequence prices = new Sequence(new double[] { 100, 120, 90, 60, 80, 120, 130, 117, 104, 110 });
+    DrawdownStats stats = FinLib.calcDrawdownStats(prices);
+    assertEquals(-50.0, stats.maxDrawdown(), 1e-9); // 120 -> 60
+    assertEquals(6, stats.underwaterMonths());
+    assertEquals(3, stats.longestUnderwater()); // 90, 60, 80
+    assertEquals(2, stats.recoveryMonths()); // 60 -> 120
+    assertTrue(stats.isUnderwater());
+
+    // Compare with the drawdown sequence on a random walk.
+    Random rng = new Random(11);
+    Sequence walk = new Sequence("walk");
+    double x = 1.0;
+    for (int i = 0; i < 2000; ++i) {
+      walk.addData(x, 1000L * i);
+      x *= FinLib.ret2mul(0.5 + 5.0 * rng.nextGaussian());
+    }
+    double[] drawdown = FinLib.calcDrawdown(walk).extractDim(0);
+    stats = FinLib.calcDrawdownStats(walk);
+    double sumSquares = 0.0;
+    int nUnderwater = 0;
+    for (double dd : drawdown) {
+      sumSquares += dd * dd;
+      if (dd < 0.0) ++nUnderwater;
+    }
+    assertEquals(Library.min(drawdown), stats.maxDrawdown(), 1e-9);
+    assertEquals(Math.sqrt(sumSquares / drawdown.length), stats.ulcerIndex(), 1e-9);
+    assertEquals(nUnderwater, stats.underwaterMonths());
+    assertEquals(drawdown.length, stats.size());
+
+    // Reset allows reuse.
+    stats.reset().add(prices.extractDim(0), 0, 4);
+    assertEquals(-50.0, stats.maxDrawdown(), 1e-9);
+    assertEquals(-1, stats.recoveryMonths());
+  }
+
+  @Test
+  public void testHistogram()
+  {
+    Histogram h = new Histogram(0.0, 10.0, 10);
+    for (int i = 0; i < 100; ++i) {
+      h.add(i / 10.0);
+    }
+    h.add(-5.0); // clamped into the first bin
+    assertEquals(101, h.count());
+    assertEquals(11, h.count(0));
+    assertEquals(10, h.count(9));
+    assertEquals(-5.0, h.min(), 1e-12);
+    assertEquals(9.9, h.max(), 1e-12);
+    assertEquals(5.0, h.percentile(50), 0.1);
+    assertEquals(9.9, h.percentile(100), 1e-12);
+
+    Histogram h2 = h.emptyCopy();
+    h2.add(3.5);
+    h2.add(h);
+    assertEquals(102, h2.count());
+    assertEquals(11, h2.count(3));
+  }
 }
@@ -0,0 +1,60 @@
+package org.minnen.dmswr.tests;
+
+import org.junit.Test;
+import org.minnen.dmswr.BengenMethod;
+import org.minnen.dmswr.GlidePath;
+import org.minnen.dmswr.data.GlidePathTable;
+import org.minnen.dmswr.data.MonthlyInfo;
+import org.minnen.dmswr.utils.SwrLib;
+
+import junit.framework.TestCase;
+
+public class TestGlidePath extends TestCase
+{
+  @Override
+  protected void setUp() throws Exception
+  {
+    SwrLib.setupWithDefaultFiles();
+  }
+
+  @Test
+  public void testGlidePathConstantMatchesStatic()
+  {
+    final int retirementYears = 10;
+    final int percentStock = 60;
+    GlidePath glidePath = GlidePath.constant(percentStock);
+    for (int i = 0; i <= SwrLib.lastIndex(retirementYears); i += 37) {
+      final int iEnd = i + retirementYears * 12;
+      MonthlyInfo expected = BengenMethod.run(i, iEnd, 5.0, percentStock, 1e6, null);
+      MonthlyInfo info = BengenMethod.run(i, iEnd, 5.0, glidePath, 1e6, null);
+      assertEquals(expected.retirementMonth, info.retirementMonth);
+      assertEquals(expected.finalBalance, info.finalBalance, 0.0);
+    }
+    assertEquals(BengenMethod.findSWR(retirementYears, percentStock, 1),
+        GlidePathTable.getSWR(glidePath, retirementYears * 12));
+  }
+
+  @Test
+  public void testGlidePathDelay()
+  {
+    GlidePath glidePath = GlidePath.linear(40, 80, 5);
+    assertEquals(40, glidePath.percentStock(0));
+    assertEquals(50, glidePath.percentStock(12));
+    assertEquals(80, glidePath.percentStock(59));
+    assertEquals(80, glidePath.percentStock(600));
+
+    // Delayed path holds the initial allocation and then follows the schedule.
+    GlidePath delayed = glidePath.delay(7);
+    assertEquals(40, delayed.percentStock(18));
+    assertEquals(50, delayed.percentStock(19));
+    final int i = 100;
+    final int iEnd = i + 10 * 12;
+    MonthlyInfo info = BengenMethod.run(i, iEnd, 4.0, delayed, 1e6, null);
+    double balance = 1e6;
+    final double monthly = 1e6 * 4.0 / 1200.0;
+    for (int month = 0; month < iEnd - i; ++month) {
+      balance = (balance - monthly) * SwrLib.growth(i + month, delayed.percentStock(month));
+    }
+    assertEquals(1.0, info.finalBalance / balance, 1e-12);
+  }
+}
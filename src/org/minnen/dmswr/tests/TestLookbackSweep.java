@@ -0,0 +1,43 @@
+package org.minnen.dmswr.tests;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.minnen.dmswr.LookbackSweep;
+import org.minnen.dmswr.MarwoodMethod;
+import org.minnen.dmswr.NestEggCalculator;
+import org.minnen.dmswr.data.MonthlyInfo;
+import org.minnen.dmswr.utils.SwrLib;
+
+import junit.framework.TestCase;
+
+public class TestLookbackSweep extends TestCase
+{
+  @Override
+  protected void setUp() throws Exception
+  {
+    SwrLib.setupWithDefaultFiles();
+  }
+
+  @Test
+  public void testLookbackSweep() throws Exception
+  {
+    final int retirementYears = 30;
+    final int percentStock = 75;
+    LookbackSweep sweep = new LookbackSweep(retirementYears, 10, percentStock);
+    final int iStartSim = 120;
+    final int iEndSim = iStartSim + 60;
+    for (int lookbackYears : new int[] { 0, 3, 10 }) {
+      List<MonthlyInfo> infos = MarwoodMethod.findDMSWR(iStartSim, iEndSim, retirementYears, lookbackYears,
+          percentStock, NestEggCalculator.constant(1e6));
+      for (int i = 0; i < infos.size(); ++i) {
+        assertEquals(infos.get(i).swr, sweep.get(lookbackYears, iStartSim + i));
+        assertEquals(infos.get(i).virtualRetirementMonths, sweep.getVirtualMonths(lookbackYears, iStartSim + i));
+      }
+    }
+    assertEquals(SwrLib.length() - 36, sweep.getAcrossTime(3).length());
+    for (int i = sweep.firstIndex(10); i < SwrLib.length(); ++i) {
+      assertTrue(sweep.get(10, i) >= sweep.get(3, i)); // longer lookbacks can only find a better virtual retiree
+    }
+  }
+}
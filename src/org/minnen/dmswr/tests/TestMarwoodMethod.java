@@ -0,0 +1,90 @@
+package org.minnen.dmswr.tests;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+import org.minnen.dmswr.GlidePath;
+import org.minnen.dmswr.MarwoodMethod;
+import org.minnen.dmswr.NestEggCalculator;
+import org.minnen.dmswr.data.GlidePathTable;
+import org.minnen.dmswr.data.MonthlyInfo;
+import org.minnen.dmswr.utils.SwrLib;
+
+import junit.framework.TestCase;
+
+public class TestMarwoodMethod extends TestCase
+{
+  @Override
+  protected void setUp() throws Exception
+  {
+    SwrLib.setupWithDefaultFiles();
+  }
+
+  @Test
+  public void testSearchEvents() throws Exception
+  {
+    final int retirementYears = 10;
+    final int lookbackYears = 2;
+    final int iStartSim = lookbackYears * 12;
+    final NestEggCalculator nestEggCalculator = NestEggCalculator.constant(1e6);
+    Path path = Files.createTempFile("dmswr-test", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("org.minnen.dmswr.DmswrSearch");
+      recording.start();
+      List<MonthlyInfo> fixed = MarwoodMethod.findDMSWR(iStartSim, iStartSim + 11, retirementYears, lookbackYears,
+          75, nestEggCalculator);
+      List<MonthlyInfo> glide = MarwoodMethod.findDMSWR(iStartSim, iStartSim + 23, retirementYears, lookbackYears,
+          GlidePath.linear(40, 80, retirementYears), nestEggCalculator);
+      recording.stop();
+      recording.dump(path);
+      assertEquals(12, fixed.size());
+      assertEquals(24, glide.size());
+
+      // Both allocations go through the same search so both emit an event.
+      List<RecordedEvent> events = new ArrayList<>();
+      for (RecordedEvent event : RecordingFile.readAllEvents(path)) {
+        if (event.getEventType().getName().equals("org.minnen.dmswr.DmswrSearch")) events.add(event);
+      }
+      assertEquals(2, events.size());
+      events.sort((a, b) -> a.getStartTime().compareTo(b.getStartTime()));
+      for (RecordedEvent event : events) {
+        assertEquals("find", event.getString("method"));
+        assertEquals(retirementYears, event.getInt("years"));
+        assertEquals(lookbackYears, event.getInt("lookback"));
+        assertTrue(event.getBoolean("completed"));
+      }
+      assertEquals(75, events.get(0).getInt("stock"));
+      assertEquals(12, events.get(0).getInt("rows"));
+      assertEquals(40, events.get(1).getInt("stock"));
+      assertEquals(24, events.get(1).getInt("rows"));
+    } finally {
+      Files.deleteIfExists(path);
+    }
+  }
+
+  @Test
+  public void testGlidePathDmswr() throws Exception
+  {
+    final int retirementYears = 10;
+    final int lookbackYears = 2;
+    GlidePath glidePath = GlidePath.linear(40, 80, retirementYears);
+    final int iStartSim = lookbackYears * 12;
+    final int iEndSim = iStartSim + 120;
+    List<MonthlyInfo> infos = MarwoodMethod.findDMSWR(iStartSim, iEndSim, retirementYears, lookbackYears, glidePath,
+        NestEggCalculator.constant(1e6));
+    assertEquals(iEndSim - iStartSim + 1, infos.size());
+    final int minSWR = GlidePathTable.getSWR(glidePath, retirementYears * 12);
+    for (MonthlyInfo info : infos) {
+      assertTrue(info.swr >= minSWR);
+      assertTrue(info.finalBalance >= 0.0);
+      assertEquals(info.bengenSalary, 1e6 * minSWR / 10000.0, 1e-6);
+    }
+  }
+}
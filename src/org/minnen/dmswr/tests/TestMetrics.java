@@ -0,0 +1,87 @@
+package org.minnen.dmswr.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import org.junit.Test;
+import org.minnen.dmswr.BengenMethod;
+import org.minnen.dmswr.Rebalance;
+import org.minnen.dmswr.data.BengenTable;
+import org.minnen.dmswr.data.MonthlyInfo;
+import org.minnen.dmswr.utils.Metrics;
+import org.minnen.dmswr.utils.SwrLib;
+
+import junit.framework.TestCase;
+
+public class TestMetrics extends TestCase
+{
+  @Override
+  protected void setUp() throws Exception
+  {
+    SwrLib.setupWithDefaultFiles();
+  }
+
+  @Test
+  public void testMetrics()
+  {
+    // Metrics are global so only check deltas.
+    final long nSims = Metrics.simulations.get();
+    final long nMonths = Metrics.simulatedMonths.get();
+    final long nSteps = Metrics.searchSteps.get();
+    MonthlyInfo info = BengenMethod.run(0, 120, 4.0, 75, 1e6, null);
+    assertTrue(info.ok());
+    assertEquals(nSims + 1, Metrics.simulations.get());
+    assertEquals(nMonths + 120, Metrics.simulatedMonths.get());
+
+    final int swr = BengenMethod.findSwrForWindow(0, 120, 75, Rebalance.monthly, 1);
+    assertTrue(swr > 0);
+    final long steps = Metrics.searchSteps.get() - nSteps;
+    assertTrue(steps > 0 && steps <= 14); // binary search over [0, 10001]
+    assertEquals(nSims + 1 + steps, Metrics.simulations.get());
+
+    final long nHits = Metrics.cacheHits.get();
+    SwrLib.getMonthlyGrowth(75);
+    assertEquals(nHits + 1, Metrics.cacheHits.get());
+
+    Metrics.Timer timer = Metrics.timer("test.timer");
+    timer.record(1000);
+    timer.record(3000);
+    assertEquals(2, timer.count());
+    assertEquals(0.002, timer.meanMs(), 1e-12);
+    assertEquals(0.003, timer.maxMs(), 1e-12);
+    assertEquals(0.001024, timer.percentileMs(50), 1e-12); // bucket upper bound
+    assertEquals(0.003, timer.percentileMs(100), 1e-12);
+    assertTrue(Metrics.dump().contains("test.timer"));
+  }
+
+  @Test
+  public void testMetricsFailures() throws Exception
+  {
+    // Failed phases are still timed.
+    final long nLoads = Metrics.loadTimer.count();
+    try {
+      BengenTable.loadTable(new File("/does/not/exist/bengen-table.csv"));
+      fail("loading a missing table should fail");
+    } catch (IOException e) {
+      // expected
+    }
+    assertEquals(nLoads + 1, Metrics.loadTimer.count());
+
+    // Unknown MBean operations are reported the way JMX clients expect.
+    Metrics.registerMBean();
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(Metrics.mbeanName);
+    assertTrue(server.invoke(name, "dump", null, null).toString().startsWith("Metrics"));
+    try {
+      server.invoke(name, "noSuchOperation", null, null);
+      fail("unknown operation should fail");
+    } catch (ReflectionException e) {
+      assertTrue(e.getCause() instanceof NoSuchMethodException);
+    }
+  }
+}
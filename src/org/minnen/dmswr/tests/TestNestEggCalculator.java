@@ -0,0 +1,33 @@
+package org.minnen.dmswr.tests;
+
+import org.junit.Test;
+import org.minnen.dmswr.NestEggCalculator;
+import org.minnen.dmswr.utils.SwrLib;
+
+import junit.framework.TestCase;
+
+public class TestNestEggCalculator extends TestCase
+{
+  @Override
+  protected void setUp() throws Exception
+  {
+    SwrLib.setupWithDefaultFiles();
+  }
+
+  @Test
+  public void testNestEggMonthlySavings()
+  {
+    final int iStartSim = 240;
+    final double value = 1e5;
+    final double savings = 1000.0;
+    NestEggCalculator calc = NestEggCalculator.monthlySavings(value, savings, false, false, false);
+    for (int percentStock : new int[] { 0, 33, 75, 100 }) {
+      double expected = value;
+      for (int i = iStartSim; i < SwrLib.length(); ++i) {
+        assertEquals(1.0, calc.getNestEgg(i, iStartSim, 20, percentStock) / expected, 1e-9);
+        expected += savings;
+        expected *= SwrLib.growth(i, percentStock);
+      }
+    }
+  }
+}
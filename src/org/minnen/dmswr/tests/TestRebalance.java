@@ -0,0 +1,50 @@
+package org.minnen.dmswr.tests;
+
+import org.junit.Test;
+import org.minnen.dmswr.BengenMethod;
+import org.minnen.dmswr.Rebalance;
+import org.minnen.dmswr.data.MonthlyInfo;
+import org.minnen.dmswr.utils.SwrLib;
+
+import junit.framework.TestCase;
+
+public class TestRebalance extends TestCase
+{
+  @Override
+  protected void setUp() throws Exception
+  {
+    SwrLib.setupWithDefaultFiles();
+  }
+
+  @Test
+  public void testRebalanceDrift()
+  {
+    final int i = 50;
+    final int iEnd = i + 20 * 12;
+    final int percentStock = 60;
+
+    // Never rebalancing is the same as a buy-and-hold split (with proportional withdrawals).
+    MonthlyInfo info = BengenMethod.run(i, iEnd, 4.0, percentStock, Rebalance.never, 1e6, null);
+    double stock = 0.6e6;
+    double bonds = 0.4e6;
+    final double monthly = 1e6 * 4.0 / 1200.0;
+    for (int j = i; j < iEnd; ++j) {
+      final double k = 1.0 - monthly / (stock + bonds);
+      stock *= k * SwrLib.growth(j, 100);
+      bonds *= k * SwrLib.growth(j, 0);
+    }
+    assertEquals(1.0, info.finalBalance / (stock + bonds), 1e-9);
+
+    // A single asset doesn't drift so every policy matches monthly rebalancing.
+    MonthlyInfo expected = BengenMethod.run(i, iEnd, 4.0, 100, 1e6, null);
+    for (Rebalance rebalance : new Rebalance[] { Rebalance.annual, Rebalance.never, Rebalance.band(0.05) }) {
+      info = BengenMethod.run(i, iEnd, 4.0, 100, rebalance, 1e6, null);
+      assertEquals(1.0, info.finalBalance / expected.finalBalance, 1e-9);
+    }
+
+    // A huge band never triggers.
+    MonthlyInfo never = BengenMethod.run(i, iEnd, 4.0, percentStock, Rebalance.never, 1e6, null);
+    info = BengenMethod.run(i, iEnd, 4.0, percentStock, Rebalance.band(0.99), 1e6, null);
+    assertEquals(never.finalBalance, info.finalBalance, 1e-6);
+  }
+}
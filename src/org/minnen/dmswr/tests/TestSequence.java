@@ -3,7 +3,11 @@ package org.minnen.dmswr.tests;
 import static org.junit.Assert.*;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.util.Random;
+
 import org.junit.Test;
+import org.minnen.dmswr.utils.FeatureVec;
+import org.minnen.dmswr.utils.FinLib;
 import org.minnen.dmswr.utils.Sequence;
 
 public class TestSequence
@@ -250,4 +254,194 @@ public class TestSequence
       integral.integralAverage(3, 2);
     });
   }
+
+  @Test
+  public void testAverageMatchesLoop()
+  {
+    Random rng = new Random(42);
+    Sequence seq = new Sequence("random");
+    for (int i = 0; i < 500; ++i) {
+      seq.addData(new FeatureVec(2, rng.nextGaussian() * 100.0, rng.nextDouble()));
+    }
+
+    for (int trial = 0; trial < 200; ++trial) {
+      int a = rng.nextInt(seq.length());
+      int b = a + rng.nextInt(seq.length() - a);
+      for (int d = 0; d < 2; ++d) {
+        double sum = 0.0;
+        for (int i = a; i <= b; ++i) {
+          sum += seq.get(i, d);
+        }
+        assertEquals(sum / (b - a + 1), seq.average(a, b, d), eps);
+        assertEquals(sum / (b - a + 1), seq.average(a, b).get(d), eps);
+      }
+    }
+
+    // Indices are relative to the locked range.
+    final long key = 1234;
+    seq.lock(100, 199, key);
+    assertEquals(seq.get(0, 0), seq.average(0, 0, 0), eps);
+    assertEquals(seq.get(99, 1), seq.average(-1, -1, 1), eps);
+    seq.unlock(key);
+  }
+
+  @Test
+  public void testAverageAfterModification()
+  {
+    Sequence seq = new Sequence(new double[] { 1.0, 2.0, 3.0, 4.0 });
+    assertEquals(2.5, seq.average(0, 3, 0), eps);
+
+    seq._mul(2.0);
+    assertEquals(5.0, seq.average(0, 3, 0), eps);
+
+    seq.set(0, 0, 10.0);
+    assertEquals(7.0, seq.average(0, 1, 0), eps);
+
+    seq.addData(12.0);
+    assertEquals(10.0, seq.average(3, 4, 0), eps);
+
+    seq.get(4).set(0, 0.0);
+    seq.invalidate();
+    assertEquals(4.0, seq.average(3, 4, 0), eps);
+  }
+
+  @Test
+  public void testAverageWithNaN()
+  {
+    Sequence seq = new Sequence(new double[] { 1.0, Double.NaN, 3.0, 4.0 });
+    assertEquals(3.5, seq.average(2, 3, 0), eps);
+    assertTrue(Double.isNaN(seq.average(0, 2, 0)));
+
+    // Ranges before or after non-finite values still use the prefix sums.
+    seq = new Sequence(new double[] { 1.0, 2.0, Double.POSITIVE_INFINITY, 3.0, 4.0, 5.0, Double.NaN, Double.NaN });
+    assertEquals(1.5, seq.average(0, 1, 0), eps);
+    assertEquals(4.0, seq.average(3, 5, 0), eps);
+    assertEquals(Double.POSITIVE_INFINITY, seq.average(1, 3, 0), 0.0);
+    assertTrue(Double.isNaN(seq.average(5, 6, 0)));
+    assertTrue(Double.isNaN(seq.average(0, 7, 0)));
+  }
+
+  @Test
+  public void testSMA()
+  {
+    Sequence seq = new Sequence(new double[] { 1.0, 2.0, 3.0, 4.0, 5.0 });
+    Sequence sma = seq.calcSMA(2);
+    assertEquals(1.0, sma.get(0, 0), eps);
+    assertEquals(1.5, sma.get(1, 0), eps);
+    assertEquals(2.0, sma.get(2, 0), eps);
+    assertEquals(3.0, sma.get(3, 0), eps);
+    assertEquals(4.0, sma.get(4, 0), eps);
+    assertTrue(sma.isCompact());
+
+    sma = FinLib.sma(seq, 2, 1, 0);
+    assertEquals(1.0, sma.get(0, 0), eps);
+    assertEquals(1.0, sma.get(1, 0), eps);
+    assertEquals(1.5, sma.get(2, 0), eps);
+    assertEquals(2.5, sma.get(3, 0), eps);
+    assertEquals(3.5, sma.get(4, 0), eps);
+  }
+
+  @Test
+  public void testFusedOps()
+  {
+    Sequence seq = new Sequence(new double[] { 1.0, 2.0, 4.0, 8.0 });
+    Sequence other = new Sequence(new double[] { 2.0, 2.0, 1.0, 4.0 });
+    for (int i = 0; i < seq.length(); ++i) {
+      seq.setTime(i, 1000L * i);
+      other.setTime(i, 1000L * i);
+    }
+
+    Sequence scaled = seq.scaleInto(new double[] { 1.0, 0.5, 0.25, 0.125 }, null);
+    assertArrayEquals(new double[] { 1.0, 1.0, 1.0, 1.0 }, scaled.extractDim(0), eps);
+    assertTrue(scaled.sameTimestamps(seq));
+
+    Sequence ratio = seq.ratioInto(other, 0, null);
+    assertArrayEquals(new double[] { 0.5, 1.0, 4.0, 2.0 }, ratio.extractDim(0), eps);
+
+    Sequence growth = seq.derivativeMul();
+    assertArrayEquals(new double[] { 2.0, 2.0, 2.0 }, growth.extractDim(0), eps);
+    assertEquals(2000L, growth.getTimeMS(2));
+
+    Sequence cumulative = seq.cumprodInto(growth.extractDim(0), 1.0, null);
+    assertArrayEquals(seq.extractDim(0), cumulative.extractDim(0), eps);
+    assertTrue(cumulative.sameTimestamps(seq));
+
+    Sequence sum = seq.axpy(-2.0, other, null);
+    assertArrayEquals(new double[] { -3.0, -2.0, 2.0, 0.0 }, sum.extractDim(0), eps);
+    assertArrayEquals(sum.extractDim(0), seq.sub(other).add(other.mul(other.div(other))._mul(-1.0)).extractDim(0),
+        eps);
+
+    // Reuse an existing destination without allocating new points.
+    FeatureVec first = ratio.get(0);
+    assertSame(ratio, seq.ratioInto(seq, 0, ratio));
+    assertSame(first, ratio.get(0));
+    assertArrayEquals(new double[] { 1.0, 1.0, 1.0, 1.0 }, ratio.extractDim(0), eps);
+
+    // In-place update invalidates cached averages.
+    assertEquals(3.75, seq.average(0, 3, 0), eps);
+    seq.axpy(1.0, seq, seq);
+    assertEquals(7.5, seq.average(0, 3, 0), eps);
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      seq.scaleInto(new double[] { 1.0, 1.0, 1.0, 1.0 }, growth);
+    });
+  }
+
+  @Test
+  public void testCompactStorage()
+  {
+    Sequence seq = new Sequence("compact");
+    for (int i = 0; i < 100; ++i) {
+      seq.addData(i, 1000L * i);
+    }
+    assertTrue(seq.isCompact());
+    assertEquals(1, seq.getNumDims());
+    assertEquals(100, seq.length());
+    assertEquals(42.0, seq.get(42, 0), eps);
+    assertEquals(99.0, seq.getLast(0), eps);
+    assertEquals(99000L, seq.getEndMS());
+    assertEquals(37, seq.getClosestIndex(37400L));
+    assertEquals(49.5, seq.average(0, 99, 0), eps);
+    assertEquals(0.0, seq.getMin().get(0), eps);
+
+    // Scalar updates keep the compact form.
+    seq._mul(2.0);
+    seq.set(0, 0, -1.0);
+    assertTrue(seq.isCompact());
+    assertEquals(84.0, seq.get(42, 0), eps);
+    assertEquals(-1.0, seq.getMin().get(0), eps);
+    assertTrue(seq.dup().isCompact());
+
+    // Asking for feature vectors expands the sequence and later changes are visible through them.
+    FeatureVec v = seq.get(42);
+    assertFalse(seq.isCompact());
+    assertEquals(84.0, v.get(0), eps);
+    assertEquals(42000L, v.getTime());
+    seq.set(42, 0, 1.0);
+    assertEquals(1.0, v.get(0), eps);
+
+    assertTrue(seq.compact().isCompact());
+    assertEquals(1.0, seq.get(42, 0), eps);
+    assertEquals(42000L, seq.getTimeMS(42));
+
+    // Negative indices count from the end in both forms.
+    final int n = seq.length();
+    seq.set(-1, 0, 7.0);
+    seq.setTime(-1, 99000L);
+    assertTrue(seq.isCompact());
+    assertEquals(7.0, seq.get(n - 1, 0), eps);
+    assertEquals(99000L, seq.getTimeMS(n - 1));
+    Sequence expanded = seq.dup();
+    expanded.get(0);
+    assertFalse(expanded.isCompact());
+    expanded.set(-2, 0, 8.0);
+    expanded.setTime(-2, 98000L);
+    assertEquals(8.0, expanded.get(n - 2, 0), eps);
+    assertEquals(98000L, expanded.getTimeMS(n - 2));
+
+    // Multi-dimensional and named points stay as feature vectors.
+    Sequence named = new Sequence("named");
+    named.addData(new FeatureVec("a", 1, 1.0));
+    assertFalse(named.compact().isCompact());
+  }
 }
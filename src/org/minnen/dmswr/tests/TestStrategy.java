@@ -0,0 +1,378 @@
+package org.minnen.dmswr.tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.minnen.dmswr.BengenMethod;
+import org.minnen.dmswr.BucketMethod;
+import org.minnen.dmswr.DrawdownAnalysis;
+import org.minnen.dmswr.GlidePath;
+import org.minnen.dmswr.LadderMethod;
+import org.minnen.dmswr.Rebalance;
+import org.minnen.dmswr.VpwMethod;
+import org.minnen.dmswr.data.MonthlyInfo;
+import org.minnen.dmswr.strategy.BengenStrategy;
+import org.minnen.dmswr.strategy.GuardrailStrategy;
+import org.minnen.dmswr.strategy.GuardrailSweep;
+import org.minnen.dmswr.strategy.SimulationDriver;
+import org.minnen.dmswr.strategy.SimulationResults;
+import org.minnen.dmswr.strategy.VpwStrategy;
+import org.minnen.dmswr.utils.DrawdownStats;
+import org.minnen.dmswr.utils.FinLib.Inflation;
+import org.minnen.dmswr.utils.Sequence;
+import org.minnen.dmswr.utils.SwrLib;
+
+import junit.framework.TestCase;
+
+public class TestStrategy extends TestCase
+{
+  @Override
+  protected void setUp() throws Exception
+  {
+    SwrLib.setupWithDefaultFiles();
+  }
+
+  @Test
+  public void testBengenMatchesBengenMethod()
+  {
+    final int retirementYears = 30;
+    final int percentStock = 60;
+    for (double withdrawalRate : new double[] { 3.5, 5.0, 7.0 }) {
+      SimulationDriver driver = new SimulationDriver(percentStock, retirementYears, 1e6);
+      SimulationResults results = driver.run(new BengenStrategy(withdrawalRate));
+      assertEquals(SwrLib.lastIndex(retirementYears) + 1, results.size());
+      for (int i = 0; i < results.size(); ++i) {
+        MonthlyInfo info = BengenMethod.runForDuration(i, retirementYears, withdrawalRate, percentStock, 1e6, null);
+        if (info.failed()) {
+          assertEquals(info.retirementMonth - 1, results.failureMonth[i]);
+        } else {
+          assertEquals(-1, results.failureMonth[i]);
+          assertEquals(1.0, results.finalBalance[i] / info.finalBalance, 1e-9);
+          assertEquals(info.bengenSalary, results.minIncome[i], 1e-6);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testVpwMatchesVpwMethod()
+  {
+    final int retirementYears = 35;
+    final int percentStock = 75;
+    SimulationDriver driver = new SimulationDriver(percentStock, retirementYears, 1e6);
+    final int iLast = SwrLib.lastIndex(retirementYears);
+    SimulationResults results = driver.run(new VpwStrategy(percentStock, retirementYears), 0, iLast, true);
+    VpwMethod.Results expected = VpwMethod.evaluate(percentStock, retirementYears, 1e6);
+    assertEquals(expected.size(), results.size());
+    assertEquals(0, results.getNumFailures());
+    for (int i = 0; i < results.size(); ++i) {
+      assertEquals(1.0, results.minIncome[i] / expected.minIncome[i], 1e-9);
+      assertEquals(1.0, results.meanIncome[i] / expected.meanIncome[i], 1e-9);
+      assertEquals(expected.finalBalance[i], results.finalBalance[i], 1e-6);
+      assertEquals(0.0, results.getIncome(i, 1), 0.0); // VPW only withdraws at the start of each year
+    }
+  }
+
+  @Test
+  public void testGuardrailsWithoutAdjustmentsMatchBengen()
+  {
+    final int retirementYears = 30;
+    final int percentStock = 75;
+    SimulationDriver driver = new SimulationDriver(percentStock, retirementYears, 1e6);
+    SimulationResults bengen = driver.run(new BengenStrategy(5.0));
+    SimulationResults guardrails = driver.run(new GuardrailStrategy(5.0, 0.2, 0.0, 15));
+    assertEquals(bengen.size(), guardrails.size());
+    for (int i = 0; i < bengen.size(); ++i) {
+      assertEquals(bengen.failureMonth[i], guardrails.failureMonth[i]);
+      assertEquals(bengen.finalBalance[i], guardrails.finalBalance[i], 1e-6);
+    }
+  }
+
+  @Test
+  public void testGuardrailSweep()
+  {
+    final int retirementYears = 30;
+    final double[] rates = new double[] { 4.0, 6.0 };
+    final double[] bands = new double[] { 0.1, 0.3 };
+    SimulationDriver driver = new SimulationDriver(75, retirementYears, 1e6);
+    GuardrailSweep.Results results = GuardrailSweep.run(driver, rates, bands, 0.1, 15);
+    assertEquals(SwrLib.lastIndex(retirementYears) + 1, results.nRetirements);
+    for (int iRate = 0; iRate < rates.length; ++iRate) {
+      for (int iBand = 0; iBand < bands.length; ++iBand) {
+        final int i = results.index(iRate, iBand);
+        SimulationResults sim = driver.run(new GuardrailStrategy(rates[iRate], bands[iBand], 0.1, 15));
+        assertEquals(sim.getFailureRate(), results.failureRate[i], 1e-12);
+        int nCuts = 0;
+        int nWithCut = 0;
+        for (int j = 0; j < sim.size(); ++j) {
+          final int cuts = (int) sim.getFinalState(j, GuardrailStrategy.STATE_CUTS);
+          nCuts += cuts;
+          if (cuts > 0) ++nWithCut;
+        }
+        assertEquals((double) nCuts / sim.size(), results.cutsPerRetirement[i], 1e-12);
+        assertEquals((double) nWithCut / sim.size(), results.cutFrequency[i], 1e-12);
+        assertTrue(results.cutsPerRetirement[i] >= results.cutFrequency[i]);
+        assertTrue(results.worstIncome[i] <= results.medianMinIncome[i]);
+      }
+    }
+  }
+
+  @Test
+  public void testGuardrailAdjustments()
+  {
+    // Replay the guardrail rules on captured trajectories and check every income change and the number of cuts.
+    final int retirementYears = 30;
+    final double adjustment = 0.1;
+    final int noCutYears = 15;
+    SimulationDriver driver = new SimulationDriver(75, retirementYears, 1e6);
+    for (double band : new double[] { 0.1, 0.3 }) {
+      GuardrailStrategy strategy = new GuardrailStrategy(5.5, band, adjustment, noCutYears);
+      SimulationResults sim = driver.run(strategy, 0, 240, true);
+      int nTotalCuts = 0;
+      for (int j = 0; j < sim.size(); ++j) {
+        final int nMonths = (sim.failureMonth[j] < 0 ? driver.getNumMonths() : sim.failureMonth[j]);
+        int nCuts = 0;
+        for (int month = 1; month < nMonths; ++month) {
+          final double prevIncome = sim.getIncome(j, month - 1);
+          double expected = prevIncome;
+          if (month % 12 == 0) {
+            final double rate = prevIncome * 1200.0 / sim.getBalance(j, month);
+            if (rate > 5.5 * (1.0 + band)) {
+              if ((driver.getNumMonths() - month) / 12 > noCutYears) {
+                expected *= 1.0 - adjustment;
+                ++nCuts;
+              }
+            } else if (rate < 5.5 * (1.0 - band)) {
+              expected *= 1.0 + adjustment;
+            }
+          }
+          assertEquals(1.0, sim.getIncome(j, month) / expected, 1e-9);
+        }
+        assertEquals(nCuts, (int) sim.getFinalState(j, GuardrailStrategy.STATE_CUTS));
+        nTotalCuts += nCuts;
+      }
+      assertTrue(nTotalCuts > 0); // make sure the window exercises the capital preservation rule
+    }
+  }
+
+  @Test
+  public void testGlidePathDriverMatchesBengenMethod()
+  {
+    final int retirementYears = 30;
+    GlidePath glidePath = GlidePath.linear(30, 90, retirementYears);
+    SimulationDriver driver = new SimulationDriver(glidePath, retirementYears, 1e6);
+    SimulationResults results = driver.run(new BengenStrategy(4.5));
+    for (int i = 0; i < results.size(); ++i) {
+      MonthlyInfo info = BengenMethod.run(i, i + retirementYears * 12, 4.5, glidePath, 1e6, null);
+      if (info.failed()) {
+        assertEquals(info.retirementMonth - 1, results.failureMonth[i]);
+      } else {
+        assertEquals(-1, results.failureMonth[i]);
+        assertEquals(1.0, results.finalBalance[i] / info.finalBalance, 1e-9);
+      }
+    }
+  }
+
+  @Test
+  public void testRebalanceDriverMatchesBengenMethod()
+  {
+    final int retirementYears = 30;
+    final int percentStock = 60;
+    for (Rebalance rebalance : new Rebalance[] { Rebalance.annual, Rebalance.band(0.1) }) {
+      SimulationDriver driver = new SimulationDriver(percentStock, rebalance, retirementYears, 1e6);
+      SimulationResults results = driver.run(new BengenStrategy(5.0));
+      for (int i = 0; i < results.size(); ++i) {
+        MonthlyInfo info = BengenMethod.run(i, i + retirementYears * 12, 5.0, percentStock, rebalance, 1e6, null);
+        if (info.failed()) {
+          assertEquals(info.retirementMonth - 1, results.failureMonth[i]);
+        } else {
+          assertEquals(-1, results.failureMonth[i]);
+          assertEquals(1.0, results.finalBalance[i] / info.finalBalance, 1e-9);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testLadderRateMatchesSimulation()
+  {
+    final int retirementYears = 30;
+    final int retirementMonths = retirementYears * 12;
+    final int[] rates = LadderMethod.calcLadderRateAcrossTime(retirementYears);
+    assertEquals(SwrLib.lastIndex(retirementYears) + 1, rates.length);
+    for (int i = 0; i < rates.length; i += 7) {
+      assertEquals(rates[i], LadderMethod.findLadderRate(i, i + retirementMonths));
+      assertTrue(rates[i] > 0);
+
+      // The ladder rate must be sustainable and one more basis point must fail.
+      List<MonthlyInfo> trajectory = new ArrayList<>();
+      MonthlyInfo info = LadderMethod.run(i, i + retirementMonths, rates[i] / 100.0, LadderMethod.Kind.TIPS, 1e6,
+          trajectory);
+      assertTrue(info.ok());
+      assertEquals(retirementMonths, trajectory.size());
+      for (MonthlyInfo x : trajectory) {
+        assertEquals(1e6 * rates[i] / 120000.0, x.monthlyIncome, 1e-6);
+      }
+      info = LadderMethod.run(i, i + retirementMonths, (rates[i] + 1) / 100.0, LadderMethod.Kind.TIPS, 1e6, null);
+      assertTrue(info.failed());
+    }
+  }
+
+  /** Add T-bills that earn a constant real return (covers all months); callers remove them when done. */
+  private static void addConstantTBills()
+  {
+    Sequence bills = new Sequence("T-Bills");
+    double x = 1.0;
+    for (int i = 0; i <= SwrLib.length(); ++i) {
+      bills.addData(x, SwrLib.stock.getTimeMS(i));
+      x *= 1.001;
+    }
+    SwrLib.addAsset(SwrLib.ASSET_TBILLS, bills, Inflation.Real);
+  }
+
+  @Test
+  public void testBucketWithoutCashMatchesBengen()
+  {
+    addConstantTBills();
+    try {
+      final int percentStock = 60;
+      final int maxYears = 40;
+      final int[][] swrs = BucketMethod.calcSwrAcrossTime(maxYears, percentStock, 0,
+          BucketMethod.defaultRefillDrawdown);
+      final int iFirst = BucketMethod.getFirstIndex();
+      for (int years = 5; years <= maxYears; years += 7) {
+        for (int i = iFirst; i <= SwrLib.lastIndex(years); i += 23) {
+          final int expected = BengenMethod.findSwrForWindow(i, i + years * 12, percentStock, 1);
+          assertEquals(expected, swrs[years - 1][i - iFirst]);
+        }
+      }
+    } finally {
+      SwrLib.removeAsset(SwrLib.ASSET_TBILLS);
+    }
+  }
+
+  @Test
+  public void testBucketSwrIsTight()
+  {
+    addConstantTBills();
+    try {
+      final int percentStock = 75;
+      final int bucketYears = 3;
+      final int maxYears = 30;
+      final int[][] swrs = BucketMethod.calcSwrAcrossTime(maxYears, percentStock, bucketYears, 15.0);
+      final int iFirst = BucketMethod.getFirstIndex();
+      for (int years = 10; years <= maxYears; years += 10) {
+        int minSWR = Integer.MAX_VALUE;
+        for (int i = iFirst; i <= SwrLib.lastIndex(years); i += 31) {
+          final int swr = swrs[years - 1][i - iFirst];
+          final int iEnd = i + years * 12;
+          assertTrue(BucketMethod.run(i, iEnd, swr / 100.0, percentStock, bucketYears, 15.0, 1e6, null).ok());
+          assertTrue(BucketMethod.run(i, iEnd, (swr + 1) / 100.0, percentStock, bucketYears, 15.0, 1e6, null).failed());
+          assertTrue(swr <= swrs[years - 2][i - iFirst]); // longer retirements can't support a higher SWR
+          minSWR = Math.min(minSWR, swr);
+        }
+        assertTrue(minSWR > 0);
+      }
+    } finally {
+      SwrLib.removeAsset(SwrLib.ASSET_TBILLS);
+    }
+  }
+
+  @Test
+  public void testBucketSweepMatchesSingleBucket()
+  {
+    addConstantTBills();
+    try {
+      final int percentStock = 75;
+      final int maxYears = 20;
+      final int[] bucketYearsList = new int[] { 0, 2, 5 };
+      final int[][][] swrs = BucketMethod.calcSwrAcrossTime(maxYears, percentStock, bucketYearsList, 10.0);
+      for (int iBucket = 0; iBucket < bucketYearsList.length; ++iBucket) {
+        final int[][] expected = BucketMethod.calcSwrAcrossTime(maxYears, percentStock, bucketYearsList[iBucket], 10.0);
+        for (int y = 0; y < maxYears; ++y) {
+          assertTrue(Arrays.equals(expected[y], swrs[iBucket][y]));
+        }
+      }
+    } finally {
+      SwrLib.removeAsset(SwrLib.ASSET_TBILLS);
+    }
+  }
+
+  @Test
+  public void testDrawdownAnalysisMatchesTrajectory()
+  {
+    final int retirementYears = 30;
+    final int percentStock = 75;
+    final double wr = 6.0; // high enough that some retirements fail
+    final double[] growth = SwrLib.getMonthlyGrowth(percentStock);
+    List<MonthlyInfo> trajectory = new ArrayList<>();
+    DrawdownStats expected = new DrawdownStats();
+    DrawdownStats stats = new DrawdownStats();
+    for (int i = 0; i <= SwrLib.lastIndex(retirementYears); i += 13) {
+      final int iEnd = i + retirementYears * 12;
+      BengenMethod.run(i, iEnd, wr, percentStock, 1e6, trajectory);
+      DrawdownAnalysis.analyze(trajectory, expected);
+      DrawdownAnalysis.analyzeBengen(i, iEnd, wr, growth, stats);
+      assertEquals(expected.size(), stats.size());
+      assertEquals(expected.maxDrawdown(), stats.maxDrawdown(), 1e-9);
+      assertEquals(expected.ulcerIndex(), stats.ulcerIndex(), 1e-9);
+      assertEquals(expected.longestUnderwater(), stats.longestUnderwater());
+      assertEquals(expected.recoveryMonths(), stats.recoveryMonths());
+    }
+
+    DrawdownAnalysis.Summary summary = DrawdownAnalysis.summarizeBengen(retirementYears, wr, percentStock);
+    assertEquals(SwrLib.lastIndex(retirementYears) + 1, summary.size());
+    assertEquals(summary.size(), summary.recoveryMonths.count() + summary.nUnrecovered);
+    assertTrue(summary.maxDrawdown.min() <= -99.0); // failed retirements lose everything
+  }
+
+  @Test
+  public void testDrawdownKernelsMatchTrajectories()
+  {
+    addConstantTBills();
+    try {
+      final int retirementYears = 30;
+      final int percentStock = 75;
+      final double wr = 5.0;
+      List<MonthlyInfo> trajectory = new ArrayList<>();
+      DrawdownStats expected = new DrawdownStats();
+      DrawdownStats stats = new DrawdownStats();
+      for (int i = BucketMethod.getFirstIndex(); i <= SwrLib.lastIndex(retirementYears); i += 17) {
+        final int iEnd = i + retirementYears * 12;
+        BucketMethod.run(i, iEnd, wr, percentStock, 3, BucketMethod.defaultRefillDrawdown, 1e6, trajectory);
+        DrawdownAnalysis.analyze(trajectory, expected);
+        BucketMethod.drawdown(i, iEnd, wr, percentStock, 3, BucketMethod.defaultRefillDrawdown, 1e6, stats);
+        assertEquals(expected.size(), stats.size());
+        assertEquals(expected.maxDrawdown(), stats.maxDrawdown(), 1e-9);
+        assertEquals(expected.ulcerIndex(), stats.ulcerIndex(), 1e-9);
+        assertEquals(expected.recoveryMonths(), stats.recoveryMonths());
+
+        LadderMethod.run(i, iEnd, wr, LadderMethod.Kind.TIPS, 1e6, trajectory);
+        DrawdownAnalysis.analyze(trajectory, expected);
+        LadderMethod.drawdown(i, iEnd, wr, LadderMethod.Kind.TIPS, 1e6, stats);
+        assertEquals(expected.size(), stats.size());
+        assertEquals(expected.maxDrawdown(), stats.maxDrawdown(), 1e-9);
+        assertEquals(expected.ulcerIndex(), stats.ulcerIndex(), 1e-9);
+        assertEquals(expected.recoveryMonths(), stats.recoveryMonths());
+      }
+
+      // The driver feeds the same balances as the Bengen kernel.
+      final double[] growth = SwrLib.getMonthlyGrowth(percentStock);
+      final int iLast = SwrLib.lastIndex(retirementYears);
+      SimulationDriver driver = new SimulationDriver(percentStock, retirementYears, 1e6);
+      DrawdownAnalysis.Summary summary = DrawdownAnalysis.summarize("Bengen", driver, new BengenStrategy(wr), 0, iLast);
+      DrawdownAnalysis.Summary kernel = DrawdownAnalysis.summarize("Bengen", retirementYears, 0, iLast,
+          (iStart, iEnd, s) -> DrawdownAnalysis.analyzeBengen(iStart, iEnd, wr, growth, s));
+      assertEquals(iLast + 1, summary.size());
+      assertEquals(kernel.size(), summary.size());
+      assertEquals(kernel.nUnrecovered, summary.nUnrecovered);
+      assertEquals(kernel.maxDrawdown.mean(), summary.maxDrawdown.mean(), 1e-9);
+      assertEquals(kernel.ulcerIndex.mean(), summary.ulcerIndex.mean(), 1e-9);
+      assertEquals(kernel.longestUnderwater.mean(), summary.longestUnderwater.mean(), 1e-9);
+    } finally {
+      SwrLib.removeAsset(SwrLib.ASSET_TBILLS);
+    }
+  }
+}
@@ -1,7 +1,13 @@
 package org.minnen.dmswr.tests;
 
 import org.junit.Test;
+import org.minnen.dmswr.BengenMethod;
+import org.minnen.dmswr.Portfolio;
+import org.minnen.dmswr.data.MonthlyInfo;
+import org.minnen.dmswr.utils.AssetMatrix;
+import org.minnen.dmswr.utils.Sequence;
 import org.minnen.dmswr.utils.SwrLib;
+import org.minnen.dmswr.utils.FinLib.Inflation;
 
 import junit.framework.TestCase;
 
@@ -34,4 +40,33 @@ public class TestSwrLib extends TestCase
     }
     assertEquals(a, x, 1e-6);
   }
+
+  @Test
+  public void testAddAsset()
+  {
+    // Cash with no real growth that only exists after the first ten years of data.
+    final int iFirst = 120;
+    Sequence cash = new Sequence("cash");
+    for (int i = iFirst; i < SwrLib.stock.length(); ++i) {
+      cash.addData(1.0, SwrLib.stock.getTimeMS(i));
+    }
+    SwrLib.addAsset("cash", cash, Inflation.Real);
+    try {
+      AssetMatrix matrix = SwrLib.getAssetMatrix("cash", SwrLib.ASSET_STOCK);
+      assertEquals(iFirst, matrix.iFirst);
+      assertEquals(SwrLib.length(), matrix.iEnd);
+      assertTrue(Double.isNaN(matrix.get(iFirst - 1, 0)));
+      assertEquals(1.0, matrix.get(iFirst, 0), 1e-12);
+
+      Portfolio portfolio = new Portfolio("cash", matrix, 1.0, 0.0);
+      MonthlyInfo info = BengenMethod.run(iFirst, iFirst + 240, 4.0, portfolio, 1e6, null);
+      assertTrue(info.ok());
+      assertEquals(200000.0, info.finalBalance, 1e-6);
+      final int swr = BengenMethod.findSWR(20, portfolio, 1);
+      assertTrue(swr >= 499 && swr <= 500); // 5% exactly depletes the portfolio
+    } finally {
+      SwrLib.removeAsset("cash"); // SwrLib is global so don't leak the asset into other tests
+    }
+    assertFalse(SwrLib.getAssetNames().contains("cash"));
+  }
 }
@@ -0,0 +1,95 @@
+package org.minnen.dmswr.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+import org.minnen.dmswr.data.TableCheckpoint;
+
+public class TestTableCheckpoint
+{
+  private static String readAll(File file) throws IOException
+  {
+    return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testCommitResumeMerge() throws IOException
+  {
+    File table = File.createTempFile("table", ".csv");
+    table.deleteOnExit();
+    TableCheckpoint checkpoint = new TableCheckpoint(table, "params=1", false);
+    checkpoint.commit("cell-a", writer -> writer.add(1).add(2).endRow());
+    checkpoint.commit("cell-b", writer -> writer.add(3).endRow().add(4).endRow());
+    assertTrue(checkpoint.isDone("cell-a"));
+    assertFalse(checkpoint.isDone("cell-c"));
+
+    // Resume with the same parameters keeps both cells.
+    checkpoint = new TableCheckpoint(table, "params=1", true);
+    assertEquals(2, checkpoint.numDone());
+    assertEquals(Arrays.asList("3", "4"), checkpoint.readCell("cell-b"));
+
+    // A corrupted segment is recalculated.
+    Files.write(checkpoint.getSegmentFile("cell-b").toPath(), "3\n5\n".getBytes(StandardCharsets.UTF_8));
+    checkpoint = new TableCheckpoint(table, "params=1", true);
+    assertTrue(checkpoint.isDone("cell-a"));
+    assertFalse(checkpoint.isDone("cell-b"));
+    try {
+      checkpoint.merge(Arrays.asList("cell-a", "cell-b"), writer -> writer.writeln("# header"));
+      fail("merge should fail with a missing cell");
+    } catch (IOException e) {
+      // expected
+    }
+    checkpoint.commit("cell-b", writer -> writer.add(3).endRow().add(4).endRow());
+
+    // Segments are merged in the given order (not commit order) and the checkpoint is removed.
+    checkpoint.merge(Arrays.asList("cell-b", "cell-a"), writer -> writer.writeln("# header"));
+    assertEquals("# header\n3\n4\n1,2\n", readAll(table));
+    assertFalse(checkpoint.dir.exists());
+
+    // Different parameters discard an existing checkpoint.
+    checkpoint = new TableCheckpoint(table, "params=1", false);
+    checkpoint.commit("cell-a", writer -> writer.add(1).endRow());
+    checkpoint = new TableCheckpoint(table, "params=2", true);
+    assertEquals(0, checkpoint.numDone());
+    checkpoint.delete();
+  }
+
+  @Test
+  public void testParallelCommits() throws IOException
+  {
+    File table = File.createTempFile("table", ".csv");
+    table.deleteOnExit();
+    final int nCells = 64;
+    final TableCheckpoint checkpoint = new TableCheckpoint(table, "params=1", false);
+    List<String> cells = new ArrayList<>();
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < nCells; ++i) {
+      cells.add("cell" + i);
+      expected.append(i).append(',').append(i * i).append('\n');
+    }
+    IntStream.range(0, nCells).parallel().forEach(i -> {
+      try {
+        checkpoint.commit(cells.get(i), writer -> writer.add(i).add(i * i).endRow());
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+    assertEquals(nCells, checkpoint.numDone());
+
+    // The manifest written by the last commit lists every cell.
+    TableCheckpoint resumed = new TableCheckpoint(table, "params=1", true);
+    assertEquals(nCells, resumed.numDone());
+    resumed.merge(cells, writer -> {});
+    assertEquals(expected.toString(), readAll(table));
+  }
+}
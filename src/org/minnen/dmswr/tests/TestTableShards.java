@@ -0,0 +1,99 @@
+package org.minnen.dmswr.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.minnen.dmswr.data.BengenEntry;
+import org.minnen.dmswr.data.TableShards;
+import org.minnen.dmswr.utils.TimeLib;
+
+public class TestTableShards
+{
+  private static String readAll(File file) throws IOException
+  {
+    return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+  }
+
+  /** Write shard `shard` of a table with `nCells` cells where cell `i` holds `i + 1` Bengen entries. */
+  private static void writeShard(File table, String params, int shard, int nShards, int nCells) throws IOException
+  {
+    try (TableShards.ShardWriter writer = new TableShards.ShardWriter(table, "test", params, shard, nShards)) {
+      for (int i = 0; i < nCells; ++i) {
+        if (!TableShards.isAssigned(i, shard, nShards)) continue;
+        DataOutputStream out = writer.beginCell("cell" + i, i + 1);
+        for (int j = 0; j <= i; ++j) {
+          new BengenEntry(TimeLib.toMs(1950 + j, Month.JANUARY, 1), i + 1, 75, 400 + j).writeBinary(out);
+        }
+      }
+      writer.finish();
+    }
+  }
+
+  @Test
+  public void testMergeAndVerify() throws IOException
+  {
+    File table = File.createTempFile("table", ".csv");
+    table.deleteOnExit();
+    final int nCells = 5;
+    final int nShards = 3;
+    List<String> cells = new ArrayList<>();
+    StringBuilder expected = new StringBuilder("# header\n");
+    for (int i = 0; i < nCells; ++i) {
+      cells.add("cell" + i);
+      for (int j = 0; j <= i; ++j) {
+        expected.append(new BengenEntry(TimeLib.toMs(1950 + j, Month.JANUARY, 1), i + 1, 75, 400 + j).toCSV());
+        expected.append('\n');
+      }
+    }
+    for (int shard = nShards - 1; shard >= 0; --shard) {
+      writeShard(table, "p", shard, nShards, nCells);
+    }
+    TableShards.EntryCopier copier = (in, writer) -> BengenEntry.readBinary(in).writeCSV(writer);
+    final long n = TableShards.merge(table, "test", "p", nShards, cells, writer -> writer.writeln("# header"), copier);
+    assertEquals(15, n);
+    assertEquals(expected.toString(), readAll(table));
+
+    // Shards from a run with different parameters are rejected.
+    try {
+      TableShards.merge(table, "test", "q", nShards, cells, writer -> writer.writeln("# header"), copier);
+      fail("merge should fail with different parameters");
+    } catch (IOException e) {
+      // expected
+    }
+
+    // A corrupted shard fails the checksum.
+    File shardFile = TableShards.getShardFile(table, 1, nShards);
+    try (RandomAccessFile raf = new RandomAccessFile(shardFile, "rw")) {
+      raf.seek(40);
+      final int b = raf.read();
+      raf.seek(40);
+      raf.write(b ^ 1);
+    }
+    try {
+      TableShards.verify(shardFile);
+      fail("verify should detect corruption");
+    } catch (IOException e) {
+      // expected
+    }
+    assertEquals(expected.toString(), readAll(table)); // failed merges don't touch the table
+
+    // A missing shard is an error.
+    TableShards.deleteShards(table, nShards);
+    try {
+      TableShards.merge(table, "test", "p", nShards, cells, writer -> writer.writeln("# header"), copier);
+      fail("merge should fail with a missing shard");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package org.minnen.dmswr.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.minnen.dmswr.VpwMethod;
+import org.minnen.dmswr.data.MonthlyInfo;
+import org.minnen.dmswr.data.VpwTable;
+import org.minnen.dmswr.utils.SwrLib;
+
+import junit.framework.TestCase;
+
+public class TestVpwMethod extends TestCase
+{
+  @Override
+  protected void setUp() throws Exception
+  {
+    SwrLib.setupWithDefaultFiles();
+  }
+
+  @Test
+  public void testVpwAcrossHistory()
+  {
+    final int percentStock = 75;
+    final int[] rates = VpwTable.get(percentStock, 30);
+    VpwMethod.Results results = VpwMethod.evaluate(percentStock, rates, 1e6);
+    assertEquals(SwrLib.lastIndex(30) + 1, results.size());
+
+    List<MonthlyInfo> trajectory = new ArrayList<>();
+    for (int iStart = 0; iStart < results.size(); iStart += 37) {
+      final double finalBalance = VpwMethod.run(iStart, percentStock, rates, 1e6, trajectory);
+      assertEquals(rates.length, trajectory.size());
+      double minIncome = Double.POSITIVE_INFINITY;
+      double sumIncome = 0.0;
+      for (MonthlyInfo info : trajectory) {
+        minIncome = Math.min(minIncome, info.bengenSalary);
+        sumIncome += info.bengenSalary;
+      }
+      assertEquals(1.0, results.minIncome[iStart] / minIncome, 1e-9);
+      assertEquals(1.0, results.meanIncome[iStart] / (sumIncome / rates.length), 1e-9);
+      assertEquals(finalBalance, results.finalBalance[iStart], 1e-6);
+      assertTrue(results.incomeVolatility[iStart] >= 0.0);
+    }
+  }
+}
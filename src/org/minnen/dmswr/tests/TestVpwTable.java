@@ -0,0 +1,23 @@
+package org.minnen.dmswr.tests;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.minnen.dmswr.data.VpwTable;
+
+import junit.framework.TestCase;
+
+public class TestVpwTable extends TestCase
+{
+  @Test
+  public void testVpwRates()
+  {
+    assertTrue(Arrays.equals(VpwTable.vpw_wr_stock75_age65, VpwTable.calcRates(75, 35)));
+    int[] rates = VpwTable.get(60, 30);
+    assertEquals(30, rates.length);
+    assertEquals(10000, rates[rates.length - 1]);
+    for (int i = 1; i < rates.length; ++i) {
+      assertTrue(rates[i] >= rates[i - 1]);
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package org.minnen.dmswr.utils;
+
+import java.util.Arrays;
+
+/**
+ * Monthly growth multipliers for N assets stored in a single contiguous array.
+ *
+ * The multiplier for asset `a` in month `i` is `mul[i * nAssets + a]` so the values needed to compute the growth of a
+ * portfolio in one month are adjacent in memory. Months where any asset is missing data are outside of [iFirst, iEnd)
+ * and hold NaN.
+ */
+public class AssetMatrix
+{
+  public final String[] names;
+  public final int      nAssets;
+  public final int      nMonths;
+
+  /** First month (SwrLib index) with data for all assets. */
+  public final int      iFirst;
+
+  /** One past the last month (SwrLib index) with data for all assets. */
+  public final int      iEnd;
+
+  /** Growth multipliers with layout `mul[i * nAssets + a]`. */
+  private final double[] mul;
+
+  /**
+   * Create an asset matrix.
+   *
+   * @param names name of each asset
+   * @param mul growth multipliers with layout `mul[i * nAssets + a]` (not copied)
+   * @param iFirst first month with data for all assets
+   * @param iEnd one past the last month with data for all assets
+   */
+  public AssetMatrix(String[] names, double[] mul, int iFirst, int iEnd)
+  {
+    if (names.length == 0 || mul.length % names.length != 0) {
+      throw new IllegalArgumentException(String.format("Matrix size (%d) doesn't match assets (%d)", mul.length,
+          names.length));
+    }
+    this.names = names;
+    this.nAssets = names.length;
+    this.nMonths = mul.length / nAssets;
+    this.mul = mul;
+    this.iFirst = iFirst;
+    this.iEnd = iEnd;
+    assert iFirst >= 0 && iFirst <= iEnd && iEnd <= nMonths;
+  }
+
+  /** @return index of the asset with the given name or -1 if it's not in this matrix. */
+  public int indexOf(String name)
+  {
+    for (int a = 0; a < nAssets; ++a) {
+      if (names[a].equals(name)) return a;
+    }
+    return -1;
+  }
+
+  /** @return growth multiplier for asset `a` in month `i`. */
+  public double get(int i, int a)
+  {
+    return mul[i * nAssets + a];
+  }
+
+  /** @return growth of a portfolio with the given weights (rebalanced monthly) in month `i`. */
+  public double growth(int i, double[] weights)
+  {
+    assert weights.length == nAssets;
+    final int base = i * nAssets;
+    double x = 0.0;
+    for (int a = 0; a < nAssets; ++a) {
+      x += weights[a] * mul[base + a];
+    }
+    return x;
+  }
+
+  /**
+   * Calculate the monthly growth of a portfolio (rebalanced monthly) for every month.
+   *
+   * This is the fused kernel: a single pass over the matrix computes the weighted sum for each month so the cost is
+   * linear in the number of assets.
+   *
+   * @param weights weight of each asset (should sum to 1.0)
+   * @return growth multiplier for each month (NaN outside of [iFirst, iEnd))
+   */
+  public double[] growth(double[] weights)
+  {
+    if (weights.length != nAssets) {
+      throw new IllegalArgumentException(String.format("Expected %d weights, not %d", nAssets, weights.length));
+    }
+    double[] growth = new double[nMonths];
+    Arrays.fill(growth, Double.NaN);
+    for (int i = iFirst, base = iFirst * nAssets; i < iEnd; ++i, base += nAssets) {
+      double x = 0.0;
+      for (int a = 0; a < nAssets; ++a) {
+        x += weights[a] * mul[base + a];
+      }
+      growth[i] = x;
+    }
+    return growth;
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format("[AssetMatrix: %s, months=[%d, %d)]", Arrays.toString(names), iFirst, iEnd);
+  }
+}
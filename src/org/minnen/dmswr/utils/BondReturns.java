@@ -0,0 +1,261 @@
+package org.minnen.dmswr.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.minnen.dmswr.utils.Bond.DivOrPow;
+
+/**
+ * Array-based bond return models for 10-year treasury notes.
+ *
+ * These produce the same results as the simulations in Bond (`calcReturnsYTM()`, `calcReturnsRebuy()`,
+ * `calcReturnsHold()`, and `calcReturnsNaiveInterest()` with `BondFactory.note10Year`) without creating Bond objects.
+ * Bonds are priced in closed form (annuity for the coupons plus present value of par) and the discount factors for
+ * each month are computed once and shared by every bond priced that month.
+ *
+ * Results are cached per (model, yield data) so switching between models is free after the first calculation.
+ */
+public class BondReturns
+{
+  public enum Model {
+    YTM, Rebuy, Hold, NaiveDiv12, NaivePow12
+  }
+
+  /** Number of months until a 10-year note matures. */
+  private static final int                   maturityMonths  = 120;
+
+  /** Number of months between coupon payments (semi-annual). */
+  private static final int                   couponMonths    = 6;
+
+  /** Coupon payments per year. */
+  private static final double                paymentsPerYear = 2.0;
+
+  /** Start with $1M to minimize effect of bond quantum (same as Bond). */
+  private static final double                principal       = 1e6;
+
+  /** Cumulative returns keyed by model and yield data hash. */
+  private static final Map<String, double[]> cache           = new ConcurrentHashMap<>();
+
+  /**
+   * Calculate cumulative returns for a bond model (cached).
+   *
+   * @param model bond model to simulate
+   * @param bondData interest rates for 10-year treasury notes (e.g. GS10)
+   * @return new sequence with cumulative returns (first value is 1.0) at the same times as `bondData`
+   */
+  public static Sequence calcReturns(Model model, Sequence bondData)
+  {
+    Fingerprint fp = new Fingerprint().add(model.name()).add(bondData.length());
+    for (int i = 0; i < bondData.length(); ++i) {
+      fp.add(bondData.getTimeMS(i)).add(bondData.get(i, 0));
+    }
+    final double[] yields = bondData.extractDim(0);
+    double[] returns = Metrics.cached(cache, fp.toHex(), key -> calcReturns(model, yields));
+
+    Sequence seq = new Sequence(String.format("10-Year Note (%s)", model));
+    for (int i = 0; i < returns.length; ++i) {
+      seq.addData(returns[i], bondData.getTimeMS(i));
+    }
+    return seq;
+  }
+
+  /** @return cumulative returns for a bond model (not cached). */
+  public static double[] calcReturns(Model model, double[] yields)
+  {
+    if (model == Model.YTM) {
+      return calcYTM(yields);
+    } else if (model == Model.Rebuy) {
+      return calcRebuy(yields);
+    } else if (model == Model.Hold) {
+      return calcHold(yields);
+    } else if (model == Model.NaiveDiv12) {
+      return calcNaiveInterest(yields, DivOrPow.DivideBy12);
+    } else {
+      assert model == Model.NaivePow12;
+      return calcNaiveInterest(yields, DivOrPow.TwelfthRoot);
+    }
+  }
+
+  public static void clearCache()
+  {
+    cache.clear();
+  }
+
+  /** Same as `Bond.calcReturnsYTM()`. */
+  public static double[] calcYTM(double[] yields)
+  {
+    final int n = yields.length;
+    double[] returns = new double[n];
+    returns[0] = 1.0;
+    final double par = 100.0; // exact value doesn't matter since it divides out
+    for (int i = 1; i < n; ++i) {
+      final double purchase = FinLib.getPresentValue(par, yields[i - 1], 10);
+      final double sell = FinLib.getPresentValue(par, yields[i], 10 - 1.0 / 12.0);
+      returns[i] = returns[i - 1] * (sell / purchase);
+    }
+    return returns;
+  }
+
+  /** Same as `Bond.calcReturnsRebuy()` with `BondFactory.note10Year`. */
+  public static double[] calcRebuy(double[] yields)
+  {
+    final int n = yields.length;
+    final double quantum = BondFactory.note10Year.getQuantum();
+    final double frac = 1.0 - (couponMonths - 1.0) / couponMonths; // one month into the first coupon period
+    final int nPayments = (int) Math.ceil((maturityMonths - 1.0) / couponMonths);
+    double[] discount = new double[nPayments + 1];
+
+    double[] returns = new double[n];
+    double cash = principal;
+    returns[0] = cash;
+    for (int i = 0; i < n - 1; ++i) {
+      // Buy bond at start of this month.
+      final double par = quantum * Math.floor(cash / quantum);
+      final double coupon = par * yields[i] / 100.0;
+      cash -= par;
+
+      // Sell bond at end of the month (we use start of next month).
+      final double rate = yields[i + 1];
+      fillDiscount(discount, rate, nPayments - 1, nPayments);
+      cash += price(coupon, rate, par, discount, nPayments, frac);
+      returns[i + 1] = cash;
+    }
+    for (int i = 0; i < n; ++i) {
+      returns[i] /= principal;
+    }
+    return returns;
+  }
+
+  /** Same as `Bond.calcReturnsHold()` with `BondFactory.note10Year`. */
+  public static double[] calcHold(double[] yields)
+  {
+    final int n = yields.length;
+    final double quantum = BondFactory.note10Year.getQuantum();
+    final int maxPayments = maturityMonths / couponMonths;
+
+    // Bonds are bought once per month so active bonds are a contiguous range of purchase months.
+    final double[] pars = new double[n];
+    final double[] coupons = new double[n];
+    final boolean[] bought = new boolean[n];
+    final double[] discount = new double[maxPayments + 1];
+
+    double[] returns = new double[n];
+    double cash = principal;
+    returns[0] = cash;
+    int iOldest = 0;
+    for (int i = 0; i < n - 1; ++i) {
+      // Collect from existing bonds.
+      for (int j = iOldest; j < i; ++j) {
+        if (!bought[j]) continue;
+        final int age = i - j;
+        if (age % couponMonths == 0) {
+          cash += coupons[j] / paymentsPerYear;
+        }
+        if (age == maturityMonths) {
+          cash += pars[j];
+          bought[j] = false;
+        }
+      }
+      while (iOldest < i && i - iOldest >= maturityMonths) {
+        ++iOldest;
+      }
+
+      // Buy new bond.
+      final double spend = quantum * Math.floor(cash / quantum);
+      if (spend > 0.0) {
+        pars[i] = spend;
+        coupons[i] = spend * yields[i] / 100.0;
+        bought[i] = true;
+        cash -= spend;
+      }
+
+      // Value all active bonds with this month's yield.
+      final double rate = yields[i];
+      fillDiscount(discount, rate, 0, maxPayments);
+      double value = cash;
+      for (int j = iOldest; j <= i; ++j) {
+        if (!bought[j]) continue;
+        final int age = i - j;
+        final int monthsToPayment = (age % couponMonths == 0 ? (age == 0 ? couponMonths : 0)
+            : couponMonths - age % couponMonths);
+        final double frac = (monthsToPayment > 0 ? 1.0 - (double) monthsToPayment / couponMonths : 0.0);
+        final int nPayments = (int) Math.ceil((double) (maturityMonths - age) / couponMonths);
+        value += price(coupons[j], rate, pars[j], discount, nPayments, frac);
+      }
+      returns[i + 1] = value;
+    }
+    for (int i = 0; i < n; ++i) {
+      returns[i] /= principal;
+    }
+    return returns;
+  }
+
+  /** Same as `Bond.calcReturnsNaiveInterest()`. */
+  public static double[] calcNaiveInterest(double[] yields, DivOrPow divOrPow)
+  {
+    final int n = yields.length;
+    double[] returns = new double[n];
+    double balance = principal;
+    returns[0] = balance;
+    for (int i = 0; i < n - 1; ++i) {
+      double growth;
+      if (divOrPow == DivOrPow.DivideBy12) {
+        growth = yields[i] / 12.0;
+      } else {
+        double r = FinLib.ret2mul(yields[i]);
+        r = Math.pow(r, 1.0 / 12.0); // r^(1/12) is more accurate to hit annual rate
+        growth = FinLib.mul2ret(r);
+      }
+      balance *= FinLib.ret2mul(growth);
+      returns[i + 1] = balance;
+    }
+    for (int i = 0; i < n; ++i) {
+      returns[i] /= principal;
+    }
+    return returns;
+  }
+
+  /** Fill discount[k] = (1 + r)^-k for k in [from, to] where r is the interest rate per coupon period. */
+  private static void fillDiscount(double[] discount, double annualRate, int from, int to)
+  {
+    final double base = 1.0 + (annualRate / 100.0) / paymentsPerYear;
+    for (int k = from; k <= to; ++k) {
+      discount[k] = Math.pow(base, -k);
+    }
+  }
+
+  /**
+   * Dirty price of a semi-annual bond; same as `Bond.calcPrice()` with the discounted fractional coupon method.
+   *
+   * @param annualCoupon total interest payments for each year
+   * @param annualRate current interest rate
+   * @param par amount paid at maturity
+   * @param discount discount factors for this interest rate (must include `nPayments` and `nPayments - 1`)
+   * @param nPayments number of coupon payments left
+   * @param frac fraction of coupon payment period already passed [0..1)
+   */
+  private static double price(double annualCoupon, double annualRate, double par, double[] discount, int nPayments,
+      double frac)
+  {
+    final double cleanPrice = cleanPrice(annualCoupon, annualRate, par, discount[nPayments]);
+    if (frac <= 0) return cleanPrice;
+
+    final double couponPayment = annualCoupon / paymentsPerYear;
+    final double futurePrice = cleanPrice(annualCoupon, annualRate, par, discount[nPayments - 1]) + couponPayment;
+    final double priceRatio = futurePrice / cleanPrice;
+    final double accruedInterest = cleanPrice * (Math.pow(priceRatio, frac) - 1.0);
+    return cleanPrice + accruedInterest;
+  }
+
+  private static double cleanPrice(double annualCoupon, double annualRate, double par, double valueFactor)
+  {
+    final double couponPayment = annualCoupon / paymentsPerYear;
+    final double effIR = (annualRate / 100.0) / paymentsPerYear;
+    final double maturityPrice = par * valueFactor;
+    double couponPrice = 0.0;
+    if (couponPayment > 0 && annualRate > 0) { // check interest rate to avoid zero div zero.
+      couponPrice = couponPayment * (1.0 - valueFactor) / effIR;
+    }
+    return couponPrice + maturityPrice;
+  }
+}
@@ -0,0 +1,230 @@
+package org.minnen.dmswr.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fast writer for large numeric CSV files (SWR tables, sequence dumps).
+ *
+ * Each field is encoded directly into a direct byte buffer that is written to a FileChannel, which avoids the
+ * String.format() and String allocations of a Writer-based approach. Integers are encoded digit by digit, fixed-point
+ * values use FastFormat, and formatted dates are cached since CSV files typically repeat the same months many times.
+ *
+ * Usage: call the `add*()` methods for each field in a row and then `endRow()`. Commas are inserted automatically.
+ */
+public class CsvWriter implements Closeable
+{
+  private static final int             BUFFER_SIZE = 1 << 16;
+
+  private final FileChannel            channel;
+  private final ByteBuffer             buffer;
+  private final StringBuilder          sb          = new StringBuilder(32);
+  private final byte[]                 digits      = new byte[20];
+  private final Map<Long, byte[]>      ymCache     = new HashMap<>();
+  private final Map<Long, byte[]>      ymdCache    = new HashMap<>();
+  private final Map<Long, byte[]>      yearCache   = new HashMap<>();
+  private int                          nFields;
+
+  public CsvWriter(File file) throws IOException
+  {
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+    buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  }
+
+  /** Write a full line of text (e.g. a comment) followed by a newline. */
+  public CsvWriter writeln(String line) throws IOException
+  {
+    assert nFields == 0;
+    putBytes(line.getBytes(StandardCharsets.UTF_8));
+    putByte((byte) '\n');
+    return this;
+  }
+
+  /** Add a text field. */
+  public CsvWriter add(String s) throws IOException
+  {
+    separate();
+    putBytes(s.getBytes(StandardCharsets.UTF_8));
+    return this;
+  }
+
+  /** Add an empty field. */
+  public CsvWriter addEmpty() throws IOException
+  {
+    separate();
+    return this;
+  }
+
+  /** Add an integer field. */
+  public CsvWriter add(long x) throws IOException
+  {
+    separate();
+    putLong(x);
+    return this;
+  }
+
+  /** Add a field with a fixed number of fractional digits (same as "%.Nf"). */
+  public CsvWriter addFixed(double x, int digits) throws IOException
+  {
+    separate();
+    sb.setLength(0);
+    FastFormat.appendFixed(sb, x, digits);
+    putAscii(sb);
+    return this;
+  }
+
+  /** Add a field with a fixed number of digits but without trailing zeros (keeping at least `minDigits`). */
+  public CsvWriter addFixed(double x, int digits, int minDigits) throws IOException
+  {
+    separate();
+    sb.setLength(0);
+    FastFormat.appendFixed(sb, x, digits, minDigits);
+    putAscii(sb);
+    return this;
+  }
+
+  /**
+   * Add a field holding `x` with enough digits to recover the exact value when parsed.
+   *
+   * Integral values (e.g. 500.0) are written as integers.
+   */
+  public CsvWriter addDouble(double x) throws IOException
+  {
+    separate();
+    if (x == Math.rint(x) && Math.abs(x) < 1e15) {
+      putLong((long) x);
+    } else {
+      putBytes(Double.toString(x).getBytes(StandardCharsets.US_ASCII));
+    }
+    return this;
+  }
+
+  /** Add a date field formatted as yyyy-mm (same as TimeLib.formatYM()). */
+  public CsvWriter addYM(long ms) throws IOException
+  {
+    return addDate(ms, TimeLib.dtfYM, ymCache);
+  }
+
+  /** Add a date field formatted as yyyy-mm-dd (same as TimeLib.formatYMD()). */
+  public CsvWriter addYMD(long ms) throws IOException
+  {
+    return addDate(ms, TimeLib.dtfYMD, ymdCache);
+  }
+
+  /** Add a date field holding the year. */
+  public CsvWriter addYear(long ms) throws IOException
+  {
+    return addDate(ms, TimeLib.dtfY, yearCache);
+  }
+
+  /** End the current row. */
+  public CsvWriter endRow() throws IOException
+  {
+    putByte((byte) '\n');
+    nFields = 0;
+    return this;
+  }
+
+  /** Write all buffered data to the file. */
+  public void flush() throws IOException
+  {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    try {
+      flush();
+    } finally {
+      channel.close();
+    }
+  }
+
+  private CsvWriter addDate(long ms, DateTimeFormatter dtf, Map<Long, byte[]> cache) throws IOException
+  {
+    separate();
+    byte[] bytes = cache.get(ms);
+    if (bytes == null) {
+      bytes = TimeLib.ms2date(ms).format(dtf).getBytes(StandardCharsets.US_ASCII);
+      cache.put(ms, bytes);
+    }
+    putBytes(bytes);
+    return this;
+  }
+
+  private void separate() throws IOException
+  {
+    if (nFields > 0) putByte((byte) ',');
+    ++nFields;
+  }
+
+  private void ensureSpace(int n) throws IOException
+  {
+    if (buffer.remaining() < n) flush();
+  }
+
+  private void putByte(byte b) throws IOException
+  {
+    ensureSpace(1);
+    buffer.put(b);
+  }
+
+  private void putBytes(byte[] bytes) throws IOException
+  {
+    if (bytes.length > buffer.capacity()) {
+      flush();
+      ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+      while (wrapped.hasRemaining()) {
+        channel.write(wrapped);
+      }
+    } else {
+      ensureSpace(bytes.length);
+      buffer.put(bytes);
+    }
+  }
+
+  /** Write characters that are known to be ASCII (e.g. formatted numbers). */
+  private void putAscii(CharSequence s) throws IOException
+  {
+    final int n = s.length();
+    ensureSpace(n);
+    for (int i = 0; i < n; ++i) {
+      buffer.put((byte) s.charAt(i));
+    }
+  }
+
+  private void putLong(long x) throws IOException
+  {
+    if (x == Long.MIN_VALUE) {
+      putBytes(Long.toString(x).getBytes(StandardCharsets.US_ASCII));
+      return;
+    }
+    ensureSpace(digits.length + 1);
+    if (x < 0) {
+      buffer.put((byte) '-');
+      x = -x;
+    }
+    int n = 0;
+    do {
+      digits[n++] = (byte) ('0' + (x % 10));
+      x /= 10;
+    } while (x > 0);
+    while (n > 0) {
+      buffer.put(digits[--n]);
+    }
+  }
+}
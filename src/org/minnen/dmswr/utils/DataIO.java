@@ -1,12 +1,10 @@
 package org.minnen.dmswr.utils;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
@@ -145,9 +143,9 @@ public class DataIO
 
   public static void saveDateValueCSV(File file, Sequence seq, int iDim) throws IOException
   {
-    try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+    try (CsvWriter writer = new CsvWriter(file)) {
       for (FeatureVec x : seq) {
-        writer.write(String.format("%s,%f\n", TimeLib.formatYMD(x.getTime()), x.get(iDim)));
+        writer.addYMD(x.getTime()).addFixed(x.get(iDim), 6).endRow();
       }
     }
   }
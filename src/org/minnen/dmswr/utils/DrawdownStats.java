@@ -0,0 +1,136 @@
+package org.minnen.dmswr.utils;
+
+/**
+ * Streaming drawdown statistics for a series of values (e.g. portfolio balances).
+ *
+ * Values are added one at a time and every statistic is updated in O(1) without allocating, so the same object can be
+ * `reset()` and reused for millions of trajectories. Drawdowns use the same convention as `FinLib.calcDrawdown()`:
+ * non-positive percentages relative to the running peak (-50.0 = 50% drawdown).
+ */
+public class DrawdownStats
+{
+  /** Number of values seen. */
+  private int    n;
+
+  /** Running peak value. */
+  private double peak;
+
+  /** Largest drawdown so far (most negative). */
+  private double maxDrawdown;
+
+  /** Sum of squared drawdowns (for the ulcer index). */
+  private double sumSquares;
+
+  /** Number of values below the running peak. */
+  private int    underwaterMonths;
+
+  /** Longest run of consecutive values below the running peak. */
+  private int    longestUnderwater;
+
+  /** Index of first value in the current underwater run (-1 if at a peak). */
+  private int    iUnderwaterStart;
+
+  /** Index of the trough of the max drawdown and the start of its underwater run. */
+  private int    iMaxTrough, iMaxStart;
+
+  /** Months from the trough of the max drawdown to the recovery of the prior peak (-1 if not recovered). */
+  private int    recoveryMonths;
+
+  public DrawdownStats()
+  {
+    reset();
+  }
+
+  /** Clear all statistics so this object can be reused. */
+  public DrawdownStats reset()
+  {
+    n = 0;
+    peak = 0.0;
+    maxDrawdown = 0.0;
+    sumSquares = 0.0;
+    underwaterMonths = 0;
+    longestUnderwater = 0;
+    iUnderwaterStart = -1;
+    iMaxTrough = -1;
+    iMaxStart = -1;
+    recoveryMonths = -1;
+    return this;
+  }
+
+  /** Add the next value (must be positive for the first value). */
+  public void add(double value)
+  {
+    double drawdown = 0.0;
+    if (n == 0 || value >= peak) {
+      if (iUnderwaterStart >= 0 && iMaxStart == iUnderwaterStart) {
+        recoveryMonths = n - iMaxTrough; // the max drawdown episode just recovered
+      }
+      iUnderwaterStart = -1;
+      peak = value;
+    } else {
+      drawdown = -100.0 * (peak - value) / peak;
+      if (iUnderwaterStart < 0) iUnderwaterStart = n;
+      ++underwaterMonths;
+      longestUnderwater = Math.max(longestUnderwater, n - iUnderwaterStart + 1);
+      if (drawdown < maxDrawdown) {
+        maxDrawdown = drawdown;
+        iMaxTrough = n;
+        iMaxStart = iUnderwaterStart;
+        recoveryMonths = -1;
+      }
+    }
+    sumSquares += drawdown * drawdown;
+    ++n;
+  }
+
+  /** Add values in [iStart, iEnd). */
+  public DrawdownStats add(double[] values, int iStart, int iEnd)
+  {
+    for (int i = iStart; i < iEnd; ++i) {
+      add(values[i]);
+    }
+    return this;
+  }
+
+  /** @return number of values seen. */
+  public int size()
+  {
+    return n;
+  }
+
+  /** @return largest drawdown as a non-positive percentage (-50.0 = 50% drawdown). */
+  public double maxDrawdown()
+  {
+    return maxDrawdown;
+  }
+
+  /** @return total number of values below the running peak. */
+  public int underwaterMonths()
+  {
+    return underwaterMonths;
+  }
+
+  /** @return longest run of consecutive values below the running peak (includes an unrecovered run at the end). */
+  public int longestUnderwater()
+  {
+    return longestUnderwater;
+  }
+
+  /** @return months from the trough of the max drawdown back to the prior peak (-1 if it never recovered). */
+  public int recoveryMonths()
+  {
+    return recoveryMonths;
+  }
+
+  /** @return true if the series ended below its peak. */
+  public boolean isUnderwater()
+  {
+    return iUnderwaterStart >= 0;
+  }
+
+  /** @return ulcer index, i.e. root mean square of the drawdowns (in percent). */
+  public double ulcerIndex()
+  {
+    return n == 0 ? 0.0 : Math.sqrt(sumSquares / n);
+  }
+}
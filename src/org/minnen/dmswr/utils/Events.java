@@ -0,0 +1,182 @@
+package org.minnen.dmswr.utils;
+
+import java.io.File;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder events for timed phases (setup, data loading, table generation, chart writing, etc.).
+ *
+ * Each phase is a `jdk.jfr.Event` subclass so it lines up with CPU, GC, and allocation data in a continuous recording,
+ * e.g. `-XX:StartFlightRecording=filename=dmswr.jfr` (OpenJDK 8u262+ or 11+). Events are disabled unless a recording
+ * is running, and fields are only filled in when `shouldCommit()` is true so instrumented code doesn't format anything
+ * in normal runs. Callers end and commit events in a `finally` block so failed phases are recorded too (with
+ * `completed` set to false).
+ *
+ * <pre>
+ * Events.TableLoad event = new Events.TableLoad();
+ * event.begin();
+ * try {
+ *   ... load table ...
+ *   event.completed = true;
+ * } finally {
+ *   event.end();
+ *   if (event.shouldCommit()) {
+ *     event.table = "bengen";
+ *     event.commit();
+ *   }
+ * }
+ * </pre>
+ */
+public class Events
+{
+  @Name("org.minnen.dmswr.Setup")
+  @Label("SwrLib Setup")
+  @Category("DMSWR")
+  @Description("Load market data and precomputed tables")
+  public static class Setup extends Event
+  {
+    @Label("Inflation")
+    public String  inflation;
+
+    @Label("Bengen File")
+    public String  bengenFile;
+
+    @Label("DMSWR File")
+    public String  dmswrFile;
+
+    @Label("Months")
+    public int     months;
+
+    @Label("Completed")
+    public boolean completed;
+  }
+
+  @Name("org.minnen.dmswr.DataLoad")
+  @Label("Market Data Load")
+  @Category("DMSWR")
+  @Description("Load Shiller data from a CSV file or binary snapshot")
+  public static class DataLoad extends Event
+  {
+    @Label("Format")
+    public String  format;
+
+    @Label("File")
+    public String  file;
+
+    @Label("Rows")
+    public int     rows;
+
+    @Label("Completed")
+    public boolean completed;
+  }
+
+  @Name("org.minnen.dmswr.TableLoad")
+  @Label("Table Load")
+  @Category("DMSWR")
+  @Description("Load a precomputed Bengen or DMSWR table")
+  public static class TableLoad extends Event
+  {
+    @Label("Table")
+    public String  table;
+
+    @Label("File")
+    public String  file;
+
+    @Label("Rows")
+    public int     rows;
+
+    @Label("Sequences")
+    public int     sequences;
+
+    @Label("Completed")
+    public boolean completed;
+  }
+
+  @Name("org.minnen.dmswr.TableGenerate")
+  @Label("Table Generate")
+  @Category("DMSWR")
+  @Description("Generate a Bengen or DMSWR table (or one shard of it)")
+  public static class TableGenerate extends Event
+  {
+    @Label("Table")
+    public String  table;
+
+    @Label("File")
+    public String  file;
+
+    @Label("Parameters")
+    public String  params;
+
+    @Label("Shard")
+    @Description("Index of the shard (-1 for a full table)")
+    public int     shard = -1;
+
+    @Label("Shards")
+    public int     shards;
+
+    @Label("Rows")
+    public int     rows;
+
+    @Label("Completed")
+    public boolean completed;
+  }
+
+  @Name("org.minnen.dmswr.DmswrSearch")
+  @Label("DMSWR Search")
+  @Category("DMSWR")
+  @Description("Find the DMSWR for every retirement month")
+  public static class DmswrSearch extends Event
+  {
+    @Label("Method")
+    @Description("\"find\" for one lookback or \"sweep\" for all lookbacks up to the given one")
+    public String  method;
+
+    @Label("Retirement Years")
+    public int     years;
+
+    @Label("Lookback Years")
+    public int     lookback;
+
+    @Label("Percent Stock")
+    public int     stock;
+
+    @Label("Rows")
+    public int     rows;
+
+    @Label("Completed")
+    public boolean completed;
+  }
+
+  @Name("org.minnen.dmswr.ChartSave")
+  @Label("Chart Save")
+  @Category("DMSWR")
+  @Description("Write an HTML chart")
+  public static class ChartSave extends Event
+  {
+    @Label("Type")
+    public String  type;
+
+    @Label("File")
+    public String  file;
+
+    @Label("Series")
+    public int     series;
+
+    @Label("Points")
+    public long    points;
+
+    @Label("Completed")
+    public boolean completed;
+  }
+
+  /** @return path of the file or null (for event fields). */
+  public static String path(File file)
+  {
+    return file == null ? null : file.getPath();
+  }
+}
@@ -0,0 +1,136 @@
+package org.minnen.dmswr.utils;
+
+/**
+ * Allocation-light number formatting for large text outputs (charts, CSV files).
+ *
+ * String.format() is convenient but slow when called for every data point. The methods here append directly to a
+ * StringBuilder and produce the same text as "%.Nf" (e.g. "%.6f" => 6 digits). Values near a rounding boundary fall
+ * back to String.format() so that the output always matches.
+ */
+public class FastFormat
+{
+  /** Largest number of fractional digits supported by the fast path. */
+  public static final int       MAX_DIGITS = 9;
+
+  private static final long[]   POW10_LONG;
+  private static final double[] POW10;
+
+  /** Scaled values larger than this don't have enough precision to round safely. */
+  private static final double   MAX_SCALED = 1L << 40;
+
+  /** Distance from a rounding tie (in scaled units) below which we fall back to String.format(). */
+  private static final double   TIE_EPS    = 1e-3;
+
+  static {
+    POW10_LONG = new long[MAX_DIGITS + 1];
+    POW10 = new double[MAX_DIGITS + 1];
+    long x = 1;
+    for (int i = 0; i <= MAX_DIGITS; ++i) {
+      POW10_LONG[i] = x;
+      POW10[i] = x;
+      x *= 10;
+    }
+  }
+
+  /**
+   * Append `x` with a fixed number of fractional digits.
+   *
+   * @param sb append text here
+   * @param x value to format
+   * @param digits number of digits after the decimal point
+   * @return `sb` to allow chaining
+   */
+  public static StringBuilder appendFixed(StringBuilder sb, double x, int digits)
+  {
+    return appendFixed(sb, x, digits, false);
+  }
+
+  /**
+   * Append `x` with a fixed number of fractional digits.
+   *
+   * @param sb append text here
+   * @param x value to format
+   * @param digits number of digits after the decimal point
+   * @param trimZeros if true, trailing zeros (and a trailing decimal point) are removed (1.2500 => 1.25, 3.000 => 3)
+   * @return `sb` to allow chaining
+   */
+  public static StringBuilder appendFixed(StringBuilder sb, double x, int digits, boolean trimZeros)
+  {
+    assert digits >= 0;
+    final int start = sb.length();
+    if (!appendFixedFast(sb, x, digits)) {
+      sb.append(String.format("%." + digits + "f", x));
+    }
+    if (trimZeros) {
+      trimZeros(sb, start);
+    }
+    return sb;
+  }
+
+  /**
+   * Append `x` with a fixed number of fractional digits, then trim trailing zeros while keeping at least `minDigits`
+   * fractional digits (1.25000000 => 1.25, 3.00000000 => 3.00 for minDigits = 2).
+   */
+  public static StringBuilder appendFixed(StringBuilder sb, double x, int digits, int minDigits)
+  {
+    assert minDigits >= 0 && minDigits <= digits;
+    final int start = sb.length();
+    appendFixed(sb, x, digits, false);
+    final int iDot = sb.indexOf(".", start);
+    if (iDot >= 0) {
+      int keep = sb.length();
+      while (keep > iDot + 1 + minDigits && sb.charAt(keep - 1) == '0') {
+        --keep;
+      }
+      if (keep == iDot + 1) --keep; // drop the decimal point if there are no digits after it
+      sb.setLength(keep);
+    }
+    return sb;
+  }
+
+  /** @return `x` formatted with a fixed number of fractional digits (same as String.format("%.Nf", x)). */
+  public static String formatFixed(double x, int digits)
+  {
+    return appendFixed(new StringBuilder(24), x, digits).toString();
+  }
+
+  /** @return true if `x` was appended, false if the caller must use a slower (exact) method. */
+  private static boolean appendFixedFast(StringBuilder sb, double x, int digits)
+  {
+    if (digits > MAX_DIGITS || Double.isNaN(x) || Double.isInfinite(x)) return false;
+
+    final boolean negative = (Double.doubleToRawLongBits(x) < 0);
+    if (negative) x = -x;
+    final double scaled = x * POW10[digits];
+    if (scaled >= MAX_SCALED) return false;
+    final double floor = Math.floor(scaled);
+    if (Math.abs(scaled - floor - 0.5) < TIE_EPS) return false; // too close to call
+    final long q = (long) Math.floor(scaled + 0.5);
+
+    if (negative) sb.append('-');
+    final long pow = POW10_LONG[digits];
+    sb.append(q / pow);
+    if (digits > 0) {
+      sb.append('.');
+      final long frac = q % pow;
+      for (long p = pow / 10; p > frac && p > 1; p /= 10) {
+        sb.append('0');
+      }
+      sb.append(frac);
+    }
+    return true;
+  }
+
+  /** Remove trailing zeros (and a trailing decimal point) from the number that starts at `start`. */
+  private static void trimZeros(StringBuilder sb, int start)
+  {
+    final int iDot = sb.indexOf(".", start);
+    if (iDot < 0) return;
+    int n = sb.length();
+    while (n > iDot + 1 && sb.charAt(n - 1) == '0') {
+      --n;
+    }
+    if (n == iDot + 1) --n;
+    sb.setLength(n);
+  }
+}
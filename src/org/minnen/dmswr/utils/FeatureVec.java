@@ -5,14 +5,25 @@ import java.util.*;
 import org.minnen.dmswr.utils.Library;
 import org.minnen.dmswr.utils.TimeLib;
 
-/** represents a vector in R^n */
-public class FeatureVec extends MetaStore
+/**
+ * represents a vector in R^n
+ * 
+ * There can be millions of feature vectors so the layout is kept small: metadata belongs to the Sequence, and the
+ * rarely used name and weight live in a separate object that is only created when set.
+ */
+public class FeatureVec
 {
+  /** Optional per-point attributes. */
+  private static final class Extras
+  {
+    String name;
+    double weight = 1.0;
+  }
+
   /** actual data */
   private double[] vec;
-  private double   weight    = 1.0;
   private long     timestamp = TimeLib.TIME_ERROR;
-  private String   name;
+  private Extras   extras;
 
   /**
    * Create a feature vec from the double array
@@ -47,7 +58,7 @@ public class FeatureVec extends MetaStore
   public FeatureVec(String name, int nDims, double... x)
   {
     this(nDims, x);
-    this.name = name;
+    setName(name);
   }
 
   /**
@@ -66,12 +77,16 @@ public class FeatureVec extends MetaStore
 
   public String getName()
   {
-    return name;
+    return extras == null ? null : extras.name;
   }
 
   public FeatureVec setName(String name)
   {
-    this.name = name;
+    if (extras == null) {
+      if (name == null) return this;
+      extras = new Extras();
+    }
+    extras.name = name;
     return this;
   }
 
@@ -123,13 +138,17 @@ public class FeatureVec extends MetaStore
 
   public FeatureVec setWeight(double weight)
   {
-    this.weight = weight;
+    if (extras == null) {
+      if (weight == 1.0) return this;
+      extras = new Extras();
+    }
+    extras.weight = weight;
     return this;
   }
 
   public double getWeight()
   {
-    return weight;
+    return extras == null ? 1.0 : extras.weight;
   }
 
   /** @return true if the timestamp for this point is valid */
@@ -206,7 +225,7 @@ public class FeatureVec extends MetaStore
   public void copyFrom(FeatureVec fv)
   {
     int n = fv.getNumDims();
-    name = fv.name;
+    setName(fv.getName());
     if (vec == null || getNumDims() != n) vec = new double[n];
     for (int i = 0; i < n; i++)
       vec[i] = fv.get(i);
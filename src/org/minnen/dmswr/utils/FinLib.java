@@ -583,28 +583,110 @@ public final class FinLib
     return seq;
   }
 
+  /**
+   * Calculate the rolling correlation of monthly returns.
+   * 
+   * @param returns1 cumulative returns for the first asset
+   * @param returns2 cumulative returns for the second asset
+   * @param window number of months in each window
+   * @return correlation for each window, timestamped at the middle of the window
+   */
   public static Sequence calcCorrelation(Sequence returns1, Sequence returns2, int window)
   {
-    final int n = returns1.length() - 1;
-    double[] r1 = new double[n];
-    double[] r2 = new double[n];
-    for (int i = 1; i <= n; ++i) {
-      r1[i - 1] = returns1.get(i, 0) / returns1.get(i - 1, 0);
-      r2[i - 1] = returns2.get(i, 0) / returns2.get(i - 1, 0);
+    return calcCorrelations(returns1, returns2, window).get(0);
+  }
+
+  /**
+   * Calculate the rolling correlation of monthly returns for several window sizes.
+   * 
+   * Returns are extracted once and each window size is a single O(N) pass (see `RollingStats`).
+   * 
+   * @param returns1 cumulative returns for the first asset
+   * @param returns2 cumulative returns for the second asset
+   * @param windows number of months in each window
+   * @return one correlation sequence for each window size
+   */
+  public static List<Sequence> calcCorrelations(Sequence returns1, Sequence returns2, int... windows)
+  {
+    final double[] r1 = getGrowth(returns1);
+    final double[] r2 = getGrowth(returns2);
+
+    List<Sequence> results = new ArrayList<>();
+    for (int window : windows) {
+      Sequence corr = new Sequence(String.format("Correlation (%s): %s vs. %s", TimeLib.formatDurationMonths(window),
+          returns1.getName(), returns2.getName()));
+      if (window < r1.length) {
+        RollingStats stats = new RollingStats(r1, r2, window);
+        // The last window is skipped for consistency with earlier results.
+        for (int i = window; i < r1.length; ++i) {
+          corr.addData(stats.correlation(i - window), returns1.getTimeMS(i - window / 2));
+        }
+      }
+      results.add(corr);
     }
+    return results;
+  }
 
-    Sequence corr = new Sequence(String.format("Correlation (%s): %s vs. %s", TimeLib.formatDurationMonths(window),
-        returns1.getName(), returns2.getName()));
-    double[] a = new double[window];
-    double[] b = new double[window];
-    for (int i = window; i < r1.length; ++i) {
-      // Library.copy(r1, a, i - window, 0, window);
-      System.arraycopy(r1, i - window, a, 0, window);
-      // Library.copy(r2, b, i - window, 0, window);
-      System.arraycopy(r2, i - window, b, 0, window);
-      corr.addData(Library.correlation(a, b), returns1.getTimeMS(i - window / 2));
+  /** @return growth multipliers between consecutive values of a cumulative return sequence. */
+  private static double[] getGrowth(Sequence cumulativeReturns)
+  {
+    final double[] values = cumulativeReturns.extractDim(0);
+    final int n = values.length - 1;
+    double[] growth = new double[Math.max(n, 0)];
+    for (int i = 0; i < n; ++i) {
+      growth[i] = values[i + 1] / values[i];
     }
-    return corr;
+    return growth;
+  }
+
+  /**
+   * Calculate the rolling volatility (standard deviation) of returns.
+   * 
+   * @param returns per-period returns (1.2 = 1.2% growth)
+   * @param window number of periods in each window
+   * @param periodsPerYear annualize by multiplying by sqrt(periodsPerYear) (12 for monthly, 1 for none)
+   * @return volatility for each window, timestamped at the end of the window
+   */
+  public static Sequence calcRollingVolatility(Sequence returns, int window, int periodsPerYear)
+  {
+    Sequence seq = new Sequence(String.format("Volatility (%d): %s", window, returns.getName()));
+    if (returns.length() < window) return seq;
+    final double scale = Math.sqrt(periodsPerYear);
+    RollingStats stats = new RollingStats(returns.extractDim(0), window);
+    for (int k = 0; k < stats.size(); ++k) {
+      seq.addData(stats.stdevX(k) * scale, returns.getTimeMS(k + window - 1));
+    }
+    return seq;
+  }
+
+  /**
+   * Calculate the rolling Sharpe ratio; the rolling version of `sharpe()`.
+   * 
+   * @param returns per-period returns (1.2 = 1.2% growth)
+   * @param benchmark benchmark returns (same length as `returns`), which can be null
+   * @param window number of periods in each window
+   * @param periodsPerYear annualize by multiplying by sqrt(periodsPerYear) (12 for monthly, 1 for none)
+   * @return sharpe ratio for each window, timestamped at the end of the window
+   */
+  public static Sequence calcRollingSharpe(Sequence returns, Sequence benchmark, int window, int periodsPerYear)
+  {
+    Sequence seq = new Sequence(String.format("Sharpe (%d): %s", window, returns.getName()));
+    if (returns.length() < window) return seq;
+    assert benchmark == null || benchmark.length() == returns.length();
+
+    double[] excess = returns.extractDim(0);
+    if (benchmark != null) {
+      final double[] b = benchmark.extractDim(0);
+      for (int i = 0; i < excess.length; ++i) {
+        excess[i] -= b[i];
+      }
+    }
+    final double scale = Math.sqrt(periodsPerYear);
+    RollingStats stats = new RollingStats(excess, window);
+    for (int k = 0; k < stats.size(); ++k) {
+      seq.addData(stats.sharpe(k) * scale, returns.getTimeMS(k + window - 1));
+    }
+    return seq;
   }
 
   public static double calcCorrelation(Sequence prices1, Sequence prices2, int iStart, int iEnd, int iDim)
@@ -805,6 +887,21 @@ public final class FinLib
     return seq;
   }
 
+  /**
+   * Calculate drawdown statistics (max drawdown, time underwater, recovery, ulcer index) in a single pass.
+   * 
+   * @param cumulativeReturns Sequence of cumulative returns (first dimension holds the values).
+   * @return drawdown statistics for the full sequence
+   */
+  public static DrawdownStats calcDrawdownStats(Sequence cumulativeReturns)
+  {
+    DrawdownStats stats = new DrawdownStats();
+    for (int i = 0; i < cumulativeReturns.length(); ++i) {
+      stats.add(cumulativeReturns.get(i, 0));
+    }
+    return stats;
+  }
+
   /** @return Sequence of monthly values inferred from daily data. */
   public static Sequence dailyToMonthly(Sequence daily)
   {
@@ -907,6 +1004,7 @@ public final class FinLib
           ++iNext;
         }
       }
+      monthly.invalidate(); // feature vectors were modified directly
     }
 
     return monthly;
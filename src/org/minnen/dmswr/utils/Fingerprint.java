@@ -0,0 +1,92 @@
+package org.minnen.dmswr.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content hashes (SHA-256) for data and parameters.
+ *
+ * A fingerprint identifies the exact inputs to a computation so that cached results can be reused safely: if any input
+ * changes, the fingerprint changes.
+ */
+public class Fingerprint
+{
+  private final MessageDigest digest;
+
+  public Fingerprint()
+  {
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  public Fingerprint add(String s)
+  {
+    if (s == null) s = "<null>";
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    add(bytes.length);
+    digest.update(bytes);
+    return this;
+  }
+
+  public Fingerprint add(long x)
+  {
+    for (int i = 56; i >= 0; i -= 8) {
+      digest.update((byte) (x >>> i));
+    }
+    return this;
+  }
+
+  public Fingerprint add(double x)
+  {
+    return add(Double.doubleToLongBits(x));
+  }
+
+  public Fingerprint add(byte[] bytes, int offset, int len)
+  {
+    digest.update(bytes, offset, len);
+    return this;
+  }
+
+  /** Add the name, timestamps, and values of the given sequence. */
+  public Fingerprint add(Sequence seq)
+  {
+    add(seq.getName());
+    add(seq.length());
+    add(seq.getNumDims());
+    for (int i = 0; i < seq.length(); ++i) {
+      add(seq.getTimeMS(i));
+      for (int d = 0; d < seq.getNumDims(); ++d) {
+        add(seq.get(i, d));
+      }
+    }
+    return this;
+  }
+
+  /** @return hex string for the hash of everything added so far (resets this fingerprint). */
+  public String toHex()
+  {
+    return toHex(digest.digest());
+  }
+
+  /** @return lower-case hex string for the given bytes. */
+  public static String toHex(byte[] bytes)
+  {
+    final char[] hexDigits = "0123456789abcdef".toCharArray();
+    char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; ++i) {
+      chars[2 * i] = hexDigits[(bytes[i] >> 4) & 0xf];
+      chars[2 * i + 1] = hexDigits[bytes[i] & 0xf];
+    }
+    return new String(chars);
+  }
+
+  /** @return hex SHA-256 hash of the given string. */
+  public static String of(String s)
+  {
+    return new Fingerprint().add(s).toHex();
+  }
+}
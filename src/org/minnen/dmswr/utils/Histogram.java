@@ -0,0 +1,136 @@
+package org.minnen.dmswr.utils;
+
+/**
+ * Fixed-width histogram backed by primitive counts.
+ *
+ * Values below the range are counted in the first bin and values above the range in the last bin, so every value is
+ * counted. The exact minimum, maximum, and mean are tracked separately from the bins.
+ */
+public class Histogram
+{
+  public final double  lo, hi;
+  public final double  binWidth;
+
+  private final long[] counts;
+  private long         n;
+  private double       sum;
+  private double       minValue = Double.POSITIVE_INFINITY;
+  private double       maxValue = Double.NEGATIVE_INFINITY;
+
+  /**
+   * Create an empty histogram.
+   *
+   * @param lo start of the first bin
+   * @param hi end of the last bin
+   * @param nBins number of bins
+   */
+  public Histogram(double lo, double hi, int nBins)
+  {
+    if (nBins < 1 || !(hi > lo)) {
+      throw new IllegalArgumentException(String.format("Invalid histogram: [%f, %f] with %d bins", lo, hi, nBins));
+    }
+    this.lo = lo;
+    this.hi = hi;
+    this.binWidth = (hi - lo) / nBins;
+    this.counts = new long[nBins];
+  }
+
+  /** @return a new, empty histogram with the same bins. */
+  public Histogram emptyCopy()
+  {
+    return new Histogram(lo, hi, counts.length);
+  }
+
+  public int numBins()
+  {
+    return counts.length;
+  }
+
+  /** @return bin index for the given value (clamped to the valid range). */
+  public int bin(double x)
+  {
+    final int i = (int) Math.floor((x - lo) / binWidth);
+    return Math.max(0, Math.min(counts.length - 1, i));
+  }
+
+  /** @return start of the given bin. */
+  public double binStart(int i)
+  {
+    return lo + i * binWidth;
+  }
+
+  public void add(double x)
+  {
+    assert !Double.isNaN(x);
+    ++counts[bin(x)];
+    ++n;
+    sum += x;
+    minValue = Math.min(minValue, x);
+    maxValue = Math.max(maxValue, x);
+  }
+
+  /** Add all counts from another histogram with the same bins. */
+  public void add(Histogram other)
+  {
+    if (other.lo != lo || other.hi != hi || other.counts.length != counts.length) {
+      throw new IllegalArgumentException("Histogram bins don't match");
+    }
+    for (int i = 0; i < counts.length; ++i) {
+      counts[i] += other.counts[i];
+    }
+    n += other.n;
+    sum += other.sum;
+    minValue = Math.min(minValue, other.minValue);
+    maxValue = Math.max(maxValue, other.maxValue);
+  }
+
+  /** @return number of values in the given bin. */
+  public long count(int i)
+  {
+    return counts[i];
+  }
+
+  /** @return total number of values. */
+  public long count()
+  {
+    return n;
+  }
+
+  public double mean()
+  {
+    return n == 0 ? Double.NaN : sum / n;
+  }
+
+  public double min()
+  {
+    return n == 0 ? Double.NaN : minValue;
+  }
+
+  public double max()
+  {
+    return n == 0 ? Double.NaN : maxValue;
+  }
+
+  /**
+   * Estimate a percentile by interpolating within the bin that holds it.
+   *
+   * @param percent percentile in [0, 100]
+   * @return estimated value (exact to within one bin width and always within [min(), max()])
+   */
+  public double percentile(double percent)
+  {
+    assert percent >= 0.0 && percent <= 100.0;
+    if (n == 0) return Double.NaN;
+    final double rank = percent / 100.0 * n;
+    long below = 0;
+    for (int i = 0; i < counts.length; ++i) {
+      if (counts[i] > 0 && below + counts[i] >= rank) {
+        final double frac = (rank - below) / counts[i];
+        final double x = binStart(i) + frac * binWidth;
+        return Math.max(minValue, Math.min(maxValue, x));
+      }
+      below += counts[i];
+    }
+    return maxValue;
+  }
+}
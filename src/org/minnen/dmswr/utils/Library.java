@@ -376,6 +376,37 @@ public final class Library
     return Math.sqrt(variance(a));
   }
 
+  /**
+   * Calculate percentiles with linear interpolation between the closest ranks.
+   *
+   * @param a values (not modified, NaNs are ignored)
+   * @param percents percentiles to calculate (50 = median)
+   * @return value for each requested percentile (NaN if there are no valid values)
+   */
+  public static double[] percentiles(double[] a, double... percents)
+  {
+    double[] sorted = new double[a.length];
+    int n = 0;
+    for (double x : a) {
+      if (!Double.isNaN(x)) sorted[n++] = x;
+    }
+    Arrays.sort(sorted, 0, n);
+
+    double[] result = new double[percents.length];
+    for (int i = 0; i < percents.length; ++i) {
+      assert percents[i] >= 0.0 && percents[i] <= 100.0;
+      if (n == 0) {
+        result[i] = Double.NaN;
+        continue;
+      }
+      final double rank = percents[i] / 100.0 * (n - 1);
+      final int lo = (int) Math.floor(rank);
+      final int hi = Math.min(lo + 1, n - 1);
+      result[i] = sorted[lo] + (rank - lo) * (sorted[hi] - sorted[lo]);
+    }
+    return result;
+  }
+
   public static double[][] correlation(double[][] r)
   {
     final int n = r.length;
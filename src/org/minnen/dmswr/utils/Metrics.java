@@ -0,0 +1,392 @@
+package org.minnen.dmswr.utils;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Lightweight metrics registry for simulations and table operations.
+ *
+ * Counters are backed by `LongAdder` so updates from parallel streams don't contend, and timers record latencies in
+ * power-of-two buckets without allocating. Hot paths should update the predefined metrics (e.g. `simulations`) or hold
+ * their own reference instead of looking metrics up by name.
+ *
+ * Metrics are always collected. They can be read with `dump()`, printed periodically with `startReporter()`, or
+ * browsed with JConsole / VisualVM after `registerMBean()`.
+ */
+public class Metrics
+{
+  /** Monotonic counter. */
+  public static class Counter
+  {
+    public final String     name;
+    private final LongAdder adder = new LongAdder();
+
+    Counter(String name)
+    {
+      this.name = name;
+    }
+
+    public void inc()
+    {
+      adder.increment();
+    }
+
+    public void add(long x)
+    {
+      adder.add(x);
+    }
+
+    public long get()
+    {
+      return adder.sum();
+    }
+
+    void reset()
+    {
+      adder.reset();
+    }
+  }
+
+  /** Latency histogram with power-of-two nanosecond buckets. */
+  public static class Timer
+  {
+    public final String           name;
+    private final LongAdder       count      = new LongAdder();
+    private final LongAdder       totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos   = new LongAccumulator(Math::max, 0L);
+
+    /** buckets[k] counts latencies in [2^(k-1), 2^k) ns (bucket 0 holds zero). */
+    private final AtomicLongArray buckets    = new AtomicLongArray(64);
+
+    Timer(String name)
+    {
+      this.name = name;
+    }
+
+    /** @return start time to pass to `stop()`. */
+    public long start()
+    {
+      return System.nanoTime();
+    }
+
+    /** Record the time since `start()`. */
+    public void stop(long startNanos)
+    {
+      record(System.nanoTime() - startNanos);
+    }
+
+    public void record(long nanos)
+    {
+      nanos = Math.max(nanos, 0L);
+      count.increment();
+      totalNanos.add(nanos);
+      maxNanos.accumulate(nanos);
+      buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    public long count()
+    {
+      return count.sum();
+    }
+
+    public double totalMs()
+    {
+      return totalNanos.sum() / 1e6;
+    }
+
+    public double meanMs()
+    {
+      final long n = count();
+      return n == 0 ? 0.0 : totalMs() / n;
+    }
+
+    public double maxMs()
+    {
+      return maxNanos.get() / 1e6;
+    }
+
+    /** @return upper bound of the bucket holding the given percentile (in ms, accurate to a factor of two). */
+    public double percentileMs(double percent)
+    {
+      final long n = count();
+      if (n == 0) return 0.0;
+      final double rank = percent / 100.0 * n;
+      long below = 0;
+      for (int k = 0; k < 64; ++k) {
+        below += buckets.get(k);
+        if (below >= rank) return Math.min((k == 0 ? 0.0 : Math.pow(2.0, k)) / 1e6, maxMs());
+      }
+      return maxMs();
+    }
+
+    void reset()
+    {
+      count.reset();
+      totalNanos.reset();
+      maxNanos.reset();
+      for (int k = 0; k < 64; ++k) {
+        buckets.set(k, 0L);
+      }
+    }
+  }
+
+  private static final Map<String, Counter>      counters        = new ConcurrentSkipListMap<>();
+  private static final Map<String, Timer>        timers          = new ConcurrentSkipListMap<>();
+
+  /** Time when metrics were last reset (for rates). */
+  private static volatile long                   startNanos      = System.nanoTime();
+
+  private static ScheduledExecutorService        reporter;
+
+  public static final String                     mbeanName       = "org.minnen.dmswr:type=Metrics";
+
+  /** Number of simulated retirements. */
+  public static final Counter                    simulations     = counter("sim.runs");
+
+  /** Number of simulated months across all retirements. */
+  public static final Counter                    simulatedMonths = counter("sim.months");
+
+  /** Number of iterations in SWR searches (each runs one simulation). */
+  public static final Counter                    searchSteps     = counter("search.steps");
+
+  /** Lookups in precomputed tables and the number that weren't found. */
+  public static final Counter                    tableLookups    = counter("table.lookups");
+  public static final Counter                    tableMisses     = counter("table.misses");
+
+  /** Lookups in derived-data caches (see `cached()`). */
+  public static final Counter                    cacheHits       = counter("cache.hits");
+  public static final Counter                    cacheMisses     = counter("cache.misses");
+
+  /** Phase timers. */
+  public static final Timer                      setupTimer      = timer("phase.setup");
+  public static final Timer                      loadTimer       = timer("phase.table.load");
+  public static final Timer                      generateTimer   = timer("phase.table.generate");
+
+  /** @return counter with the given name (created if needed). */
+  public static Counter counter(String name)
+  {
+    return counters.computeIfAbsent(name, Counter::new);
+  }
+
+  /** @return timer with the given name (created if needed). */
+  public static Timer timer(String name)
+  {
+    return timers.computeIfAbsent(name, Timer::new);
+  }
+
+  /** Record one simulation covering `nMonths` months. */
+  public static void simulated(int nMonths)
+  {
+    simulations.inc();
+    simulatedMonths.add(nMonths);
+  }
+
+  /** Record a table lookup. */
+  public static <T> T lookup(T result)
+  {
+    tableLookups.inc();
+    if (result == null) tableMisses.inc();
+    return result;
+  }
+
+  /**
+   * Same as `cache.computeIfAbsent(key, compute)` but counts cache hits and misses.
+   */
+  public static <K, V> V cached(Map<K, V> cache, K key, Function<? super K, ? extends V> compute)
+  {
+    V value = cache.get(key);
+    if (value != null) {
+      cacheHits.inc();
+      return value;
+    }
+    cacheMisses.inc();
+    return cache.computeIfAbsent(key, compute);
+  }
+
+  /** Reset all metrics to zero. */
+  public static void reset()
+  {
+    for (Counter counter : counters.values()) {
+      counter.reset();
+    }
+    for (Timer timer : timers.values()) {
+      timer.reset();
+    }
+    startNanos = System.nanoTime();
+  }
+
+  /** @return seconds since metrics were last reset. */
+  public static double getElapsedSeconds()
+  {
+    return (System.nanoTime() - startNanos) / 1e9;
+  }
+
+  /** @return text report with all metrics. */
+  public static String dump()
+  {
+    final double seconds = Math.max(getElapsedSeconds(), 1e-9);
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("Metrics (%s)\n", TimeLib.formatDuration(Math.round(seconds * 1000))));
+    for (Counter counter : counters.values()) {
+      final long n = counter.get();
+      if (n == 0) continue;
+      sb.append(String.format("  %-22s %,16d  %,14.1f/s\n", counter.name, n, n / seconds));
+    }
+    final long nLookups = cacheHits.get() + cacheMisses.get();
+    if (nLookups > 0) {
+      sb.append(String.format("  %-22s %15.2f%%\n", "cache.hit.rate", 100.0 * cacheHits.get() / nLookups));
+    }
+    for (Timer timer : timers.values()) {
+      if (timer.count() == 0) continue;
+      sb.append(String.format("  %-22s n=%-8d total=%.1fms  mean=%.3fms  p50<=%.3fms  p99<=%.3fms  max=%.3fms\n",
+          timer.name, timer.count(), timer.totalMs(), timer.meanMs(), timer.percentileMs(50), timer.percentileMs(99),
+          timer.maxMs()));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Print `dump()` periodically from a daemon thread (replaces an existing reporter).
+   *
+   * @param periodMs time between reports
+   * @param out stream for the reports
+   */
+  public static synchronized void startReporter(long periodMs, PrintStream out)
+  {
+    stopReporter();
+    reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "metrics-reporter");
+      thread.setDaemon(true);
+      return thread;
+    });
+    reporter.scheduleAtFixedRate(() -> out.print(dump()), periodMs, periodMs, TimeUnit.MILLISECONDS);
+  }
+
+  public static synchronized void stopReporter()
+  {
+    if (reporter != null) {
+      reporter.shutdownNow();
+      reporter = null;
+    }
+  }
+
+  /** Register an MBean (see `mbeanName`) that exposes all metrics as read-only attributes. */
+  public static synchronized void registerMBean()
+  {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(mbeanName);
+      if (!server.isRegistered(name)) {
+        server.registerMBean(new MetricsMBean(), name);
+      }
+    } catch (JMException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** Exposes counters and timer summaries; attributes are listed when requested so new metrics appear too. */
+  private static class MetricsMBean implements DynamicMBean
+  {
+    private static final String[] timerFields = { "count", "totalMs", "meanMs", "p99Ms", "maxMs" };
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException
+    {
+      Counter counter = counters.get(attribute);
+      if (counter != null) return counter.get();
+
+      final int i = attribute.lastIndexOf('.');
+      Timer timer = (i > 0 ? timers.get(attribute.substring(0, i)) : null);
+      if (timer != null) {
+        final String field = attribute.substring(i + 1);
+        if (field.equals("count")) return timer.count();
+        if (field.equals("totalMs")) return timer.totalMs();
+        if (field.equals("meanMs")) return timer.meanMs();
+        if (field.equals("p99Ms")) return timer.percentileMs(99);
+        if (field.equals("maxMs")) return timer.maxMs();
+      }
+      throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes)
+    {
+      AttributeList list = new AttributeList();
+      for (String attribute : attributes) {
+        try {
+          list.add(new Attribute(attribute, getAttribute(attribute)));
+        } catch (AttributeNotFoundException e) {
+          // Skip unknown attributes, as required by the DynamicMBean contract.
+        }
+      }
+      return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException
+    {
+      throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes)
+    {
+      return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException
+    {
+      if (actionName.equals("reset")) {
+        reset();
+        return null;
+      } else if (actionName.equals("dump")) {
+        return dump();
+      }
+      throw new ReflectionException(new NoSuchMethodException(actionName), "Unknown operation: " + actionName);
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo()
+    {
+      List<MBeanAttributeInfo> attributes = new ArrayList<>();
+      for (String name : counters.keySet()) {
+        attributes.add(new MBeanAttributeInfo(name, "long", "Counter", true, false, false));
+      }
+      for (String name : timers.keySet()) {
+        for (String field : timerFields) {
+          final String type = field.equals("count") ? "long" : "double";
+          attributes.add(new MBeanAttributeInfo(name + "." + field, type, "Timer", true, false, false));
+        }
+      }
+      MBeanOperationInfo[] operations = new MBeanOperationInfo[] {
+          new MBeanOperationInfo("reset", "Reset all metrics", null, "void", MBeanOperationInfo.ACTION),
+          new MBeanOperationInfo("dump", "Text report", null, "java.lang.String", MBeanOperationInfo.INFO) };
+      return new MBeanInfo(Metrics.class.getName(), "DMSWR metrics",
+          attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, operations, null);
+    }
+  }
+}
@@ -0,0 +1,152 @@
+package org.minnen.dmswr.utils;
+
+/**
+ * Rolling mean, variance, covariance, and correlation for every window of a fixed size.
+ *
+ * All windows are computed in a single O(N) pass. The moments are updated with Welford-style add/remove steps that
+ * work on deviations from the running mean, which avoids the cancellation of naive running sums of squares. To bound
+ * drift on long series (e.g. daily data), the accumulators are recomputed from scratch once per window length, which
+ * keeps the total cost linear. Small windows are always computed directly since that's just as fast.
+ *
+ * Window `k` covers values [k, k + window) so there are `N - window + 1` windows. Variance and covariance use the
+ * sample (N-1) normalization to match `Library.variance()` and `Library.covariance()`.
+ */
+public class RollingStats
+{
+  /** Windows up to this size are computed directly; incremental updates lose relative precision for tiny windows. */
+  private static final int smallWindow = 16;
+
+  public final int      window;
+
+  /** Mean of each window for the first (x) and second (y) series. */
+  public final double[] meanX, meanY;
+
+  /** Sample variance of each window. */
+  public final double[] varX, varY;
+
+  /** Sample covariance of each window (null if there's no second series). */
+  public final double[] cov;
+
+  /**
+   * Calculate rolling statistics for one series.
+   *
+   * @param x series values
+   * @param window number of values in each window
+   */
+  public RollingStats(double[] x, int window)
+  {
+    this(x, null, window);
+  }
+
+  /**
+   * Calculate rolling statistics for two aligned series.
+   *
+   * @param x first series
+   * @param y second series (same length as `x`) or null
+   * @param window number of values in each window
+   */
+  public RollingStats(double[] x, double[] y, int window)
+  {
+    if (window < 2) {
+      throw new IllegalArgumentException("Window must include at least two values: " + window);
+    }
+    if (y != null && y.length != x.length) {
+      throw new IllegalArgumentException(String.format("Length mismatch: %d vs. %d", x.length, y.length));
+    }
+    final boolean hasY = (y != null);
+    final int nWindows = Math.max(x.length - window + 1, 0);
+    this.window = window;
+    this.meanX = new double[nWindows];
+    this.varX = new double[nWindows];
+    this.meanY = hasY ? new double[nWindows] : null;
+    this.varY = hasY ? new double[nWindows] : null;
+    this.cov = hasY ? new double[nWindows] : null;
+
+    final double n = window;
+    double mx = 0.0, my = 0.0; // running means
+    double sxx = 0.0, syy = 0.0, sxy = 0.0; // sums of (co)deviations from the running means
+    for (int k = 0; k < nWindows; ++k) {
+      if (k % window == 0 || window <= smallWindow) {
+        // Recompute from scratch to avoid accumulating rounding error.
+        mx = my = sxx = syy = sxy = 0.0;
+        for (int i = k; i < k + window; ++i) {
+          mx += x[i];
+          if (hasY) my += y[i];
+        }
+        mx /= n;
+        my /= n;
+        for (int i = k; i < k + window; ++i) {
+          final double dx = x[i] - mx;
+          sxx += dx * dx;
+          if (hasY) {
+            final double dy = y[i] - my;
+            syy += dy * dy;
+            sxy += dx * dy;
+          }
+        }
+      } else {
+        // Slide the window: remove x[k-1] and add x[k+window-1].
+        final double xOut = x[k - 1];
+        final double xIn = x[k + window - 1];
+        final double mxRemoved = mx + (mx - xOut) / (n - 1);
+        sxx -= (xOut - mx) * (xOut - mxRemoved);
+        final double mxNew = mxRemoved + (xIn - mxRemoved) / n;
+        sxx += (xIn - mxRemoved) * (xIn - mxNew);
+        if (hasY) {
+          final double yOut = y[k - 1];
+          final double yIn = y[k + window - 1];
+          final double myRemoved = my + (my - yOut) / (n - 1);
+          syy -= (yOut - my) * (yOut - myRemoved);
+          sxy -= (xOut - mx) * (yOut - myRemoved);
+          final double myNew = myRemoved + (yIn - myRemoved) / n;
+          syy += (yIn - myRemoved) * (yIn - myNew);
+          sxy += (xIn - mxRemoved) * (yIn - myNew);
+          my = myNew;
+        }
+        mx = mxNew;
+      }
+
+      meanX[k] = mx;
+      varX[k] = Math.max(sxx, 0.0) / (n - 1);
+      if (hasY) {
+        meanY[k] = my;
+        varY[k] = Math.max(syy, 0.0) / (n - 1);
+        cov[k] = sxy / (n - 1);
+      }
+    }
+  }
+
+  /** @return number of windows. */
+  public int size()
+  {
+    return meanX.length;
+  }
+
+  /** @return sample standard deviation of the first series in window `k`. */
+  public double stdevX(int k)
+  {
+    return Math.sqrt(varX[k]);
+  }
+
+  /** @return sample standard deviation of the second series in window `k`. */
+  public double stdevY(int k)
+  {
+    return Math.sqrt(varY[k]);
+  }
+
+  /** @return correlation in window `k` (0.0 if either series is constant, same as `Library.correlation()`). */
+  public double correlation(int k)
+  {
+    final double sx = stdevX(k);
+    final double sy = stdevY(k);
+    if (sx < 1e-8 || sy < 1e-8) return 0.0;
+    return cov[k] / (sx * sy);
+  }
+
+  /** @return mean / stdev of the first series in window `k` (0.0 for a constant series, same as `FinLib.sharpe()`). */
+  public double sharpe(int k)
+  {
+    final double sx = stdevX(k);
+    return sx < 1e-8 ? 0.0 : meanX[k] / sx;
+  }
+}
@@ -4,6 +4,7 @@ import java.time.LocalDate;
 import java.time.Month;
 import java.time.temporal.TemporalAdjusters;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -62,18 +63,80 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
     BUSINESS_DAY, ANY_DAY
   }
 
-  /** Data stored in this data set. */
+  /** Data stored in this data set (empty while the data is stored in `columns`). */
   private final List<FeatureVec> data  = new ArrayList<>();
 
+  /** Columnar storage for 1D sequences; null once the data is stored as feature vectors (see `rows()`). */
+  private volatile Columns       columns;
+
   /** Name of this sequence. */
   private String                 name;
 
   /** Locks applied to this sequence. */
   private final Stack<Lock>      locks = new Stack<>();
 
+  /** Lazily built prefix sums for each dimension (see `getPrefixSums()`); reset when the data changes. */
+  private volatile PrefixSums[]  prefixSums;
+
   public List<String>            dimNames;
   public Map<String, Integer>    name2dim;
 
+  /**
+   * Compact storage for 1D sequences.
+   * 
+   * Most sequences hold a single value per month, where a FeatureVec (object header, time, array header, name) costs
+   * several times the 16 bytes of actual data. Values and times are instead stored in parallel arrays and feature
+   * vectors are only created if a caller asks for them.
+   */
+  private static final class Columns
+  {
+    double[] values = new double[16];
+    long[]   times  = new long[16];
+    int      size;
+
+    void add(double x, long ms)
+    {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+        times = Arrays.copyOf(times, size * 2);
+      }
+      values[size] = x;
+      times[size] = ms;
+      ++size;
+    }
+
+    Columns copy()
+    {
+      Columns c = new Columns();
+      c.values = Arrays.copyOf(values, size);
+      c.times = Arrays.copyOf(times, size);
+      c.size = size;
+      return c;
+    }
+  }
+
+  /** Prefix sums for one dimension (see `getPrefixSums()`). */
+  private static final class PrefixSums
+  {
+    /** Sum of the finite values in [0, i) in element `i`. */
+    final double[] sums;
+
+    /** Number of non-finite values in [0, i) in element `i`; null if there are none. */
+    final int[]    nonFinite;
+
+    PrefixSums(double[] sums, int[] nonFinite)
+    {
+      this.sums = sums;
+      this.nonFinite = nonFinite;
+    }
+
+    /** @return true if all values in [iStart, iEnd] are finite. */
+    boolean isFinite(int iStart, int iEnd)
+    {
+      return nonFinite == null || nonFinite[iEnd + 1] == nonFinite[iStart];
+    }
+  }
+
   /**
    * Defines behavior when searching for an index matching a given time.
    * 
@@ -115,7 +178,7 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
   {
     this(name);
     for (int i = 0; i < data.length; i++)
-      addData(new FeatureVec(1, data[i]));
+      addData(data[i]);
   }
 
   /**
@@ -162,6 +225,7 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
    */
   public int getNumDims()
   {
+    if (columns != null) return 1;
     if (data.isEmpty()) return 0;
     return get(0).getNumDims();
   }
@@ -213,7 +277,7 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
   private Sequence lockReal(int iStartReal, int iEndReal, int iPrevEnd, long key)
   {
     assert iStartReal >= 0;
-    assert iEndReal < data.size();
+    assert iEndReal < numPoints();
     if (isLocked()) {
       Lock lock = locks.peek();
       assert iStartReal >= lock.iStart;
@@ -312,9 +376,87 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
 
   public List<FeatureVec> getData()
   {
+    return rows();
+  }
+
+  /** @return number of points ignoring locks. */
+  private int numPoints()
+  {
+    Columns c = columns;
+    return c != null ? c.size : data.size();
+  }
+
+  /** @return feature vectors for all points; a compact sequence is converted to feature vectors first. */
+  private List<FeatureVec> rows()
+  {
+    if (columns != null) expand();
     return data;
   }
 
+  /** Convert columnar storage to feature vectors. */
+  private synchronized void expand()
+  {
+    Columns c = columns;
+    if (c == null) return;
+    for (int i = 0; i < c.size; ++i) {
+      data.add(new FeatureVec(new double[] { c.values[i] }).setTime(c.times[i]));
+    }
+    columns = null; // publish after `data` is complete so readers never see a partial list
+  }
+
+  /**
+   * Store this sequence in compact (columnar) form if possible.
+   * 
+   * Only 1D sequences with unnamed points qualify. Sequences built with `addData(double)` are compact by default; this
+   * method trims their spare capacity and converts sequences that were expanded by a call that needed feature vectors
+   * (e.g. `get(i)` or iteration). Feature vectors obtained earlier are no longer backed by this sequence.
+   * 
+   * @return this sequence
+   */
+  public synchronized Sequence compact()
+  {
+    Columns c = columns;
+    if (c != null) {
+      if (c.size < c.values.length) columns = c.copy(); // trim unused capacity
+      return this;
+    }
+    if (data.isEmpty() || getNumDims() != 1) return this;
+    for (FeatureVec v : data) {
+      if (v.getNumDims() != 1 || v.getName() != null) return this;
+    }
+    c = new Columns();
+    for (FeatureVec v : data) {
+      c.add(v.get(0), v.getTime());
+    }
+    data.clear();
+    columns = c;
+    return this;
+  }
+
+  /** @return true if this sequence uses columnar storage (see `compact()`). */
+  public boolean isCompact()
+  {
+    return columns != null;
+  }
+
+  /** @return value at a real index (ignoring locks). */
+  private double realValue(int i, int d)
+  {
+    Columns c = columns;
+    if (c != null) {
+      assert d == 0;
+      return c.values[i];
+    }
+    return data.get(i).get(d);
+  }
+
+  /** @return time at a real index (ignoring locks). */
+  private long realTime(int i)
+  {
+    Columns c = columns;
+    return c != null ? c.times[i] : data.get(i).getTime();
+  }
+
   /** @return First real (internal) index that respects lock. */
   private int getFirstIndex()
   {
@@ -329,7 +471,7 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
   private int getLastIndex()
   {
     if (locks.isEmpty()) {
-      return data.size() - 1;
+      return numPoints() - 1;
     } else {
       return locks.peek().iEnd;
     }
@@ -369,26 +511,46 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
       i += length();
     }
     i = adjustIndex(i);
-    return data.get(i);
+    return rows().get(i);
   }
 
   /** @return value of the d^th dimension in the i^th feature vector */
   public double get(int i, int d)
   {
-    return get(i).get(d);
+    if (i < 0) {
+      i += length();
+    }
+    return realValue(adjustIndex(i), d);
   }
 
   /** set the i^th feature vector */
   public void set(int i, FeatureVec fv)
   {
     i = adjustIndex(i);
-    data.set(i, fv);
+    rows().set(i, fv);
+    invalidate();
   }
 
   /** set the d^th dimension in the i^th feature vector */
   public void set(int i, int d, double x)
   {
-    get(i).set(d, x);
+    put(i, d, x);
+    invalidate();
+  }
+
+  /** Set a value without discarding prefix sums (callers must call `invalidate()`). */
+  private void put(int i, int d, double x)
+  {
+    if (i < 0) {
+      i += length();
+    }
+    Columns c = columns;
+    if (c != null) {
+      assert d == 0;
+      c.values[adjustIndex(i)] = x;
+    } else {
+      get(i).set(d, x);
+    }
   }
 
   /** @return first feature vector in this sequence. */
@@ -400,7 +562,7 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
   /** @return value of given dimension of first feature vector in this sequence. */
   public double getFirst(int d)
   {
-    return getFirst().get(d);
+    return get(0, d);
   }
 
   /** @return last feature vector in this sequence. */
@@ -412,7 +574,7 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
   /** @return value of given dimension of last feature vector in this sequence. */
   public double getLast(int d)
   {
-    return getLast().get(d);
+    return get(length() - 1, d);
   }
 
   /** @return FeatureVec with minimum value for each dimension. */
@@ -421,10 +583,14 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
     if (isEmpty()) {
       return null;
     }
-    FeatureVec v = new FeatureVec(getNumDims());
-    v.copyFrom(get(0));
-    for (int i = 1; i < length(); ++i) {
-      v._min(get(i));
+    final int nDims = getNumDims();
+    FeatureVec v = new FeatureVec(nDims);
+    for (int d = 0; d < nDims; ++d) {
+      double x = get(0, d);
+      for (int i = 1; i < length(); ++i) {
+        x = Math.min(x, get(i, d));
+      }
+      v.set(d, x);
     }
     return v;
   }
@@ -453,10 +619,14 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
     if (isEmpty()) {
       return null;
     }
-    FeatureVec v = new FeatureVec(getNumDims());
-    v.copyFrom(get(0));
-    for (int i = 1; i < length(); ++i) {
-      v._max(get(i));
+    final int nDims = getNumDims();
+    FeatureVec v = new FeatureVec(nDims);
+    for (int d = 0; d < nDims; ++d) {
+      double x = get(0, d);
+      for (int i = 1; i < length(); ++i) {
+        x = Math.max(x, get(i, d));
+      }
+      v.set(d, x);
     }
     return v;
   }
@@ -467,7 +637,7 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
     if (isEmpty()) {
       return TimeLib.TIME_ERROR;
     } else {
-      return getFirst().getTime();
+      return getTimeMS(0);
     }
   }
 
@@ -477,7 +647,7 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
     if (isEmpty()) {
       return TimeLib.TIME_ERROR;
     } else {
-      return getLast().getTime();
+      return getTimeMS(length() - 1);
     }
   }
 
@@ -503,18 +673,29 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
   /** @return time in ms of the given data frame */
   public long getTimeMS(int i)
   {
-    return get(i).getTime();
+    if (i < 0) {
+      i += length();
+    }
+    return realTime(adjustIndex(i));
   }
 
   public void setTime(int i, long ms)
   {
-    get(i).setTime(ms);
+    if (i < 0) {
+      i += length();
+    }
+    Columns c = columns;
+    if (c != null) {
+      c.times[adjustIndex(i)] = ms;
+    } else {
+      get(i).setTime(ms);
+    }
   }
 
   /** @return true if this data set has no data */
   public boolean isEmpty()
   {
-    return data.isEmpty();
+    return numPoints() == 0;
   }
 
   /**
@@ -530,13 +711,15 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
     for (int i = 0; i < length(); ++i) {
       get(i)._appendDims(seq.get(i));
     }
+    invalidate();
     return this;
   }
 
   public int addData(FeatureVec value)
   {
     assert (value != null);
-    data.add(value);
+    rows().add(value);
+    invalidate();
     return data.size() - 1;
   }
 
@@ -562,17 +745,21 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
    */
   public int addData(double value)
   {
-    assert isEmpty() || getNumDims() == 1;
-    data.add(new FeatureVec(1, value));
-    return data.size() - 1;
+    return addData(value, TimeLib.TIME_ERROR);
   }
 
   /** add a time stamped feature vector to the end of this sequence */
   public int addData(double x, long ms)
   {
-    int ix = addData(x);
-    setTime(ix, ms);
-    return ix;
+    assert isEmpty() || getNumDims() == 1;
+    invalidate();
+    if (data.isEmpty()) {
+      if (columns == null) columns = new Columns();
+      columns.add(x, ms);
+      return columns.size - 1;
+    }
+    data.add(new FeatureVec(new double[] { x }).setTime(ms));
+    return data.size() - 1;
   }
 
   /** add a time stamped feature vector to the end of this sequence */
@@ -589,8 +776,14 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
    */
   public Sequence _add(double x)
   {
+    Columns c = columns;
+    if (c != null) {
+      for (int i = 0; i < c.size; ++i)
+        c.values[i] += x;
+    }
     for (FeatureVec fv : data)
       fv._add(x);
+    invalidate();
     return this;
   }
 
@@ -602,8 +795,14 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
    */
   public Sequence _sub(double x)
   {
+    Columns c = columns;
+    if (c != null) {
+      for (int i = 0; i < c.size; ++i)
+        c.values[i] -= x;
+    }
     for (FeatureVec fv : data)
       fv._sub(x);
+    invalidate();
     return this;
   }
 
@@ -615,8 +814,14 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
    */
   public Sequence _mul(double x)
   {
+    Columns c = columns;
+    if (c != null) {
+      for (int i = 0; i < c.size; ++i)
+        c.values[i] *= x;
+    }
     for (FeatureVec fv : data)
       fv._mul(x);
+    invalidate();
     return this;
   }
 
@@ -628,8 +833,9 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
    */
   public Sequence _mul(FeatureVec v)
   {
-    for (FeatureVec fv : data)
+    for (FeatureVec fv : rows())
       fv._mul(v);
+    invalidate();
     return this;
   }
 
@@ -641,8 +847,14 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
    */
   public Sequence _div(double x)
   {
+    Columns c = columns;
+    if (c != null) {
+      for (int i = 0; i < c.size; ++i)
+        c.values[i] /= x;
+    }
     for (FeatureVec fv : data)
       fv._div(x);
+    invalidate();
     return this;
   }
 
@@ -654,9 +866,10 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
   /** In-place natural logarithm. */
   public Sequence _log()
   {
-    for (FeatureVec fv : data) {
+    for (FeatureVec fv : rows()) {
       fv._log();
     }
+    invalidate();
     return this;
   }
 
@@ -666,24 +879,24 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
   private int getClosestRealIndex(long ms)
   {
 
-    int n = data.size();
+    int n = numPoints();
     if (n == 0) return -1;
     int a = 0;
-    long ta = data.get(a).getTime();
+    long ta = realTime(a);
     int b = n - 1;
-    long tb = data.get(b).getTime();
+    long tb = realTime(b);
     if (ms <= ta) return a;
     if (ms >= tb) return b;
     while (a + 1 < b) {
       int m = (a + b) / 2;
-      long tm = data.get(m).getTime();
+      long tm = realTime(m);
       if (tm == ms) return m;
       if (ms < tm) b = m;
       else a = m;
     }
 
-    long da = Math.abs(ms - data.get(a).getTime());
-    long dap1 = (a + 1 < n ? Math.abs(ms - data.get(a + 1).getTime()) : Long.MAX_VALUE);
+    long da = Math.abs(ms - realTime(a));
+    long dap1 = (a + 1 < n ? Math.abs(ms - realTime(a + 1)) : Long.MAX_VALUE);
     if (da <= dap1) return a;
     else return a + 1;
   }
@@ -719,9 +932,10 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
     if (isLocked()) {
       int iPrevLockEnd = locks.peek().iPrevEnd;
       if (iPrevLockEnd >= 0) {
-        long t1 = data.get(iPrevLockEnd).getTime();
-        long t2 = iPrevLockEnd + 1 < data.size() ? data.get(iPrevLockEnd + 1).getTime() : TimeLib.TIME_END;
-        long t3 = iPrevLockEnd + 2 < data.size() ? data.get(iPrevLockEnd + 2).getTime() : TimeLib.TIME_END;
+        final int n = numPoints();
+        long t1 = realTime(iPrevLockEnd);
+        long t2 = iPrevLockEnd + 1 < n ? realTime(iPrevLockEnd + 1) : TimeLib.TIME_END;
+        long t3 = iPrevLockEnd + 2 < n ? realTime(iPrevLockEnd + 2) : TimeLib.TIME_END;
         if (ms >= t1 && ms <= t3) {
           if (ms == t3) {
             return iPrevLockEnd + 2;
@@ -738,7 +952,7 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
     // If the heuristic failed, search for the correct index.
     if (i < 0) {
       i = getClosestIndex(ms);
-      if (i >= 0 && get(i).getTime() > ms) {
+      if (i >= 0 && getTimeMS(i) > ms) {
         --i;
       }
     }
@@ -780,28 +994,31 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
   /** Add all data from the given list to the end of this sequence. */
   public Sequence append(List<FeatureVec> a)
   {
-    data.addAll(a);
+    rows().addAll(a);
+    invalidate();
     return this;
   }
 
   /** Add all data from the given sequence to the end of this sequence. */
   public Sequence append(Sequence seq)
   {
-    data.addAll(seq.data);
+    rows().addAll(seq.rows());
+    invalidate();
     return this;
   }
 
   /** Add all data from the given sequence to the beginning of this sequence. */
   public Sequence prepend(Sequence seq)
   {
-    data.addAll(0, seq.data);
+    rows().addAll(0, seq.rows());
+    invalidate();
     return this;
   }
 
   @Override
   public Iterator<FeatureVec> iterator()
   {
-    return data.iterator();
+    return rows().iterator();
   }
 
   /**
@@ -964,37 +1181,27 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
   public Sequence add(Sequence seq)
   {
     assert length() == seq.length();
-    Sequence ret = new Sequence(getName() + " + " + seq.getName());
-    for (int i = 0; i < length(); ++i) {
-      FeatureVec x = get(i);
-      FeatureVec y = seq.get(i);
-      ret.addData(x.add(y), getTimeMS(i));
-    }
-    return ret;
+    return axpy(1.0, seq, null).setName(getName() + " + " + seq.getName());
   }
 
   /** @return new sequence equal to given sequence subtracted from this sequence. */
   public Sequence sub(Sequence seq)
   {
     assert length() == seq.length() : String.format("%d vs. %d", length(), seq.length());
-    Sequence ret = new Sequence(getName() + " - " + seq.getName());
-    for (int i = 0; i < length(); ++i) {
-      FeatureVec x = get(i);
-      FeatureVec y = seq.get(i);
-      ret.addData(x.sub(y), getTimeMS(i));
-    }
-    return ret;
+    return axpy(-1.0, seq, null).setName(getName() + " - " + seq.getName());
   }
 
   /** @return new sequence equal to given sequence multiplied with this sequence (component-wise). */
   public Sequence mul(Sequence seq)
   {
     assert length() == seq.length();
-    Sequence ret = new Sequence(getName() + " - " + seq.getName());
-    for (int i = 0; i < length(); ++i) {
-      FeatureVec x = get(i);
-      FeatureVec y = seq.get(i);
-      ret.addData(x.mul(y), getTimeMS(i));
+    final int n = length();
+    final int nDims = getNumDims();
+    Sequence ret = prepareDest(null, getName() + " - " + seq.getName(), n, nDims);
+    for (int i = 0; i < n; ++i) {
+      for (int d = 0; d < nDims; ++d) {
+        ret.put(i, d, get(i, d) * seq.get(i, d));
+      }
     }
     return ret;
   }
@@ -1003,13 +1210,136 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
   public Sequence div(Sequence divisor)
   {
     assert length() == divisor.length();
-    Sequence seq = new Sequence(getName() + " / " + divisor.getName());
-    for (int i = 0; i < length(); ++i) {
-      FeatureVec x = get(i);
-      FeatureVec y = divisor.get(i);
-      seq.addData(x.div(y), getTimeMS(i));
+    return ratioInto(divisor, 0, null).setName(getName() + " / " + divisor.getName());
+  }
+
+  /**
+   * Fused multiply: dest[i] = this[i] * scales[i] for every dimension.
+   * 
+   * @param scales one scale factor per element of this sequence
+   * @param dest destination (may be this sequence for an in-place update) or null to create a new sequence
+   * @return destination sequence with timestamps from this sequence
+   */
+  public Sequence scaleInto(double[] scales, Sequence dest)
+  {
+    final int n = length();
+    assert scales.length == n : String.format("%d vs. %d", scales.length, n);
+    final int nDims = getNumDims();
+    dest = prepareDest(dest, getName(), n, nDims);
+    for (int i = 0; i < n; ++i) {
+      for (int d = 0; d < nDims; ++d) {
+        dest.put(i, d, get(i, d) * scales[i]);
+      }
     }
-    return seq;
+    dest.invalidate();
+    return dest;
+  }
+
+  /**
+   * Fused (lagged) ratio: dest[i] = this[i + lag] / divisor[i] for i in [0, length() - lag).
+   * 
+   * A lag of zero is component-wise division and `ratioInto(this, 1, dest)` is the multiplicative derivative.
+   * 
+   * @param divisor sequence holding denominators
+   * @param lag offset of numerators relative to denominators (>= 0)
+   * @param dest destination or null to create a new sequence; may be this sequence only if `lag` is zero
+   * @return destination sequence with the first `length() - lag` timestamps from this sequence
+   */
+  public Sequence ratioInto(Sequence divisor, int lag, Sequence dest)
+  {
+    assert lag >= 0;
+    assert lag == 0 || dest != this;
+    final int n = Math.max(length() - lag, 0);
+    assert divisor.length() >= n;
+    final int nDims = getNumDims();
+    dest = prepareDest(dest, getName(), n, nDims);
+    for (int i = 0; i < n; ++i) {
+      for (int d = 0; d < nDims; ++d) {
+        dest.put(i, d, get(i + lag, d) / divisor.get(i, d));
+      }
+    }
+    dest.invalidate();
+    return dest;
+  }
+
+  /**
+   * Fused cumulative product of growth multipliers: dest[0] = initial and dest[i + 1] = dest[i] * growth[i].
+   * 
+   * This is the inverse of `derivativeMul()` and turns monthly growth into a cumulative value series. Only the first
+   * dimension of the destination is written.
+   * 
+   * @param growth growth multiplier for each step (length() - 1 values)
+   * @param initial value of the first element
+   * @param dest destination or null to create a new one-dimensional sequence
+   * @return destination sequence with timestamps from this sequence
+   */
+  public Sequence cumprodInto(double[] growth, double initial, Sequence dest)
+  {
+    final int n = length();
+    assert growth.length == n - 1 : String.format("%d vs. %d", growth.length, n - 1);
+    dest = prepareDest(dest, getName(), n, dest == null ? 1 : dest.getNumDims());
+    double x = initial;
+    for (int i = 0; i < n; ++i) {
+      dest.put(i, 0, x);
+      if (i < growth.length) x *= growth[i];
+    }
+    dest.invalidate();
+    return dest;
+  }
+
+  /**
+   * Fused scale and add: dest[i] = this[i] + a * x[i] (the BLAS "axpy" operation).
+   * 
+   * @param a scale applied to `x`
+   * @param x sequence to add (same length and dimensionality as this sequence)
+   * @param dest destination (may be this sequence for an in-place update) or null to create a new sequence
+   * @return destination sequence with timestamps from this sequence
+   */
+  public Sequence axpy(double a, Sequence x, Sequence dest)
+  {
+    final int n = length();
+    assert x.length() == n : String.format("%d vs. %d", x.length(), n);
+    final int nDims = getNumDims();
+    dest = prepareDest(dest, getName(), n, nDims);
+    for (int i = 0; i < n; ++i) {
+      for (int d = 0; d < nDims; ++d) {
+        dest.put(i, d, get(i, d) + a * x.get(i, d));
+      }
+    }
+    dest.invalidate();
+    return dest;
+  }
+
+  /**
+   * Prepare a destination for a bulk operation.
+   * 
+   * A null destination is replaced by a new sequence. An existing destination is reused (no allocation) and must have
+   * the right shape. Either way, timestamps for the first `n` elements are copied from this sequence.
+   */
+  private Sequence prepareDest(Sequence dest, String name, int n, int nDims)
+  {
+    if (dest == null) {
+      dest = new Sequence(name);
+      for (int i = 0; i < n; ++i) {
+        if (nDims == 1) {
+          dest.addData(0.0, getTimeMS(i));
+        } else {
+          dest.addData(new FeatureVec(nDims).setTime(getTimeMS(i)));
+        }
+      }
+      return dest;
+    }
+
+    if (dest.length() != n || (n > 0 && dest.getNumDims() != nDims)) {
+      throw new IllegalArgumentException(String.format("Destination has wrong shape: %dx%d vs. %dx%d", dest.length(),
+          dest.getNumDims(), n, nDims));
+    }
+    if (dest != this) {
+      for (int i = 0; i < n; ++i) {
+        dest.setTime(i, getTimeMS(i));
+      }
+    }
+    return dest;
   }
 
   /** @return this sequence after replacing all values with max between this and other sequence (component-wise). */
@@ -1046,11 +1376,12 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
     final int N = iEnd - iStart + 1;
     assert N > 0;
 
-    FeatureVec average = new FeatureVec(getNumDims());
-    for (int j = iStart; j <= iEnd; ++j) {
-      average._add(get(j));
+    final int nDims = getNumDims();
+    FeatureVec average = new FeatureVec(nDims);
+    for (int d = 0; d < nDims; ++d) {
+      average.set(d, averageReal(adjustIndex(iStart), adjustIndex(iEnd), d));
     }
-    return average._div(N);
+    return average;
   }
 
   /**
@@ -1076,13 +1407,81 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
     final int N = iEnd - iStart + 1;
     assert N > 0;
 
+    return averageReal(adjustIndex(iStart), adjustIndex(iEnd), iDim);
+  }
+
+  /** @return average over real indices [iStart, iEnd]; O(1) via prefix sums unless the range has non-finite values. */
+  private double averageReal(int iStart, int iEnd, int iDim)
+  {
+    final int N = iEnd - iStart + 1;
+    final PrefixSums prefix = getPrefixSums(iDim);
+    if (prefix.isFinite(iStart, iEnd)) {
+      return (prefix.sums[iEnd + 1] - prefix.sums[iStart]) / N;
+    }
+
     double sum = 0.0;
     for (int i = iStart; i <= iEnd; ++i) {
-      sum += get(i, iDim);
+      sum += realValue(i, iDim);
     }
     return sum / N;
   }
 
+  /**
+   * Return prefix sums for a dimension, building them if needed.
+   * 
+   * The sums cover all data (ignoring locks) and hold the sum over [0, i) in element `i` so the sum over any range is a
+   * single subtraction. Non-finite values (e.g. trailing NaNs in Shiller's dividend data) are left out of the sums and
+   * counted instead, so only ranges that include one need a direct sum. Sums are accumulated with Kahan summation.
+   * Methods that modify this sequence discard the prefix sums; code that modifies feature vectors directly (e.g.
+   * `get(i).set(d, x)`) must call `invalidate()`.
+   * 
+   * @param iDim index of dimension
+   * @return prefix sums for the given dimension
+   */
+  private PrefixSums getPrefixSums(int iDim)
+  {
+    final int n = numPoints();
+    PrefixSums[] cached = prefixSums;
+    if (cached != null && iDim < cached.length && cached[iDim] != null && cached[iDim].sums.length == n + 1) {
+      return cached[iDim];
+    }
+
+    double[] sums = new double[n + 1];
+    int[] nonFinite = null;
+    double sum = 0.0, c = 0.0;
+    for (int i = 0; i < n; ++i) {
+      final double x = realValue(i, iDim);
+      if (Double.isFinite(x)) {
+        final double y = x - c;
+        final double t = sum + y;
+        c = (t - sum) - y;
+        sum = t;
+        if (nonFinite != null) nonFinite[i + 1] = nonFinite[i];
+      } else {
+        if (nonFinite == null) nonFinite = new int[n + 1]; // all zeros since this is the first one
+        nonFinite[i + 1] = nonFinite[i] + 1;
+      }
+      sums[i + 1] = sum;
+    }
+    PrefixSums prefix = new PrefixSums(sums, nonFinite);
+
+    // Publish a new array so that concurrent readers never see a partially built column.
+    final int nDims = Math.max(getNumDims(), iDim + 1);
+    PrefixSums[] updated = new PrefixSums[nDims];
+    if (cached != null) {
+      System.arraycopy(cached, 0, updated, 0, Math.min(cached.length, nDims));
+    }
+    updated[iDim] = prefix;
+    prefixSums = updated;
+    return prefix;
+  }
+
+  /** Discard cached prefix sums; only needed after modifying feature vectors directly. */
+  public void invalidate()
+  {
+    prefixSums = null;
+  }
+
   /** Reverse elements of this sequence (in-place). */
   public void reverse()
   {
@@ -1092,10 +1491,11 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
       if (i >= j) {
         break;
       }
-      FeatureVec tmp = data.get(i);
+      FeatureVec tmp = rows().get(i);
       data.set(i, data.get(j));
       data.set(j, tmp);
     }
+    invalidate();
   }
 
   /**
@@ -1106,8 +1506,13 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
   public Sequence dup()
   {
     Sequence seq = new Sequence(getName());
-    for (FeatureVec v : data) {
-      seq.addData(new FeatureVec(v));
+    Columns c = columns;
+    if (c != null) {
+      seq.columns = c.copy();
+    } else {
+      for (FeatureVec v : data) {
+        seq.addData(new FeatureVec(v));
+      }
     }
     seq.locks.addAll(locks);
     return seq;
@@ -1150,21 +1555,13 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
   /** @return Sequence holding ratio between neighboring elements of this sequences ("multiplicative derivative"). */
   public Sequence derivativeMul()
   {
-    Sequence deriv = new Sequence(getName() + "- Multiplicative-Derivative");
-    FeatureVec prev = get(0);
-    for (int i = 1; i < length(); ++i) {
-      FeatureVec cur = get(i);
-      FeatureVec growth = cur.div(prev);
-      deriv.addData(growth, prev.getTime());
-      prev = cur;
-    }
-    return deriv;
+    return ratioInto(this, 1, null).setName(getName() + "- Multiplicative-Derivative");
   }
 
   /** In-place adjustment of date to end of month (either calendar or last business day). */
   public Sequence adjustDatesToEndOfMonth(LastDay lastDay)
   {
-    for (FeatureVec v : data) {
+    for (FeatureVec v : rows()) {
       LocalDate date = TimeLib.ms2date(v.getTime());
       if (lastDay == LastDay.BUSINESS_DAY) {
         date = TimeLib.toLastBusinessDayOfMonth(date);
@@ -1186,7 +1583,7 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
   public void adjustDatesToEndOfQuarter(LastDay lastDay)
   {
     // Adjust dates forward two months (from first to last month of quarter).
-    for (FeatureVec v : data) {
+    for (FeatureVec v : rows()) {
       LocalDate date = TimeLib.ms2date(v.getTime());
       assert date.getDayOfMonth() == 1;
       final Month month = date.getMonth();
@@ -1208,10 +1605,18 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
   {
     Sequence seq = new Sequence(name + "-integral");
     if (length() > 0) {
-      FeatureVec sum = new FeatureVec(getNumDims());
-      for (FeatureVec v : data) {
-        sum = sum.add(v);
-        seq.addData(sum, v.getTime());
+      final int nDims = getNumDims();
+      final int n = numPoints();
+      double[] sum = new double[nDims];
+      for (int i = 0; i < n; ++i) {
+        for (int d = 0; d < nDims; ++d) {
+          sum[d] += realValue(i, d);
+        }
+        if (nDims == 1) {
+          seq.addData(sum[0], realTime(i));
+        } else {
+          seq.data.add(new FeatureVec(sum).setTime(realTime(i)));
+        }
       }
     }
     assert seq.matches(this);
@@ -1285,9 +1690,19 @@ public class Sequence extends MetaStore implements Iterable<FeatureVec>
   public Sequence calcSMA(int nBack)
   {
     Sequence seq = new Sequence(String.format("%s [SMA:%d]", getName(), nBack));
+    final int nDims = getNumDims();
     for (int i = 0; i < length(); ++i) {
-      int j = Math.max(0, i - nBack);
-      seq.addData(average(j, i), getTimeMS(i));
+      final int iStart = adjustIndex(Math.max(0, i - nBack));
+      final int iEnd = adjustIndex(i);
+      if (nDims == 1) {
+        seq.addData(averageReal(iStart, iEnd, 0), getTimeMS(i)); // compact storage, no feature vectors
+      } else {
+        FeatureVec average = new FeatureVec(nDims);
+        for (int d = 0; d < nDims; ++d) {
+          average.set(d, averageReal(iStart, iEnd, d));
+        }
+        seq.addData(average, getTimeMS(i));
+      }
     }
     return seq;
   }
@@ -1,21 +1,18 @@
 package org.minnen.dmswr.utils;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.FormulaEvaluator;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
 import org.minnen.dmswr.utils.FinLib;
 import org.minnen.dmswr.utils.FinLib.DividendMethod;
 import org.minnen.dmswr.utils.Library;
@@ -27,6 +24,8 @@ import org.minnen.dmswr.utils.TimeLib;
  * Unofficial info on interpreting the data: https://www.bogleheads.org/forum/viewtopic.php?t=137706
  * 
  * The APIs in the class work with a CSV file, which must be saved from the excel spreadsheet that Shiller provides.
+ * The spreadsheet can be converted with `convertExcel()`, which can also write a binary snapshot that loads faster than
+ * the CSV file.
  */
 public class Shiller
 {
@@ -39,6 +38,9 @@ public class Shiller
 
   public static final String               dataUrlString = "http://www.econ.yale.edu/~shiller/data/ie_data.xls";
 
+  private static final int                SNAPSHOT_MAGIC   = 0x53484c52; // "SHLR"
+  private static final int                SNAPSHOT_VERSION = 1;
+
   private static final Map<File, Sequence> cache         = new HashMap<File, Sequence>();
 
   public static File getPathCSV()
@@ -51,6 +53,32 @@ public class Shiller
     return new File(DataIO.getFinancePath(), "shiller.xls");
   }
 
+  public static File getPathSnapshot()
+  {
+    return new File(DataIO.getFinancePath(), "shiller.bin");
+  }
+
+  /**
+   * Load Shiller data from the default location.
+   * 
+   * The binary snapshot is used if it exists and is at least as new as the CSV file.
+   * 
+   * @param allowMissingData if True, missing dividend data will be set to NaN, else the last data point will correspond
+   *          to the last month with complete data.
+   * @return Sequence holding Shiller data
+   * @throws IOException if there is a problem reading the file.
+   */
+  public static Sequence load(boolean allowMissingData) throws IOException
+  {
+    File csvFile = getPathCSV();
+    File snapshotFile = getPathSnapshot();
+    if (snapshotFile.canRead() && snapshotFile.lastModified() >= csvFile.lastModified()) {
+      return loadSnapshot(snapshotFile, allowMissingData);
+    } else {
+      return loadAll(csvFile, allowMissingData);
+    }
+  }
+
   /**
    * Load data from CSV export of Shiller's SNP/CPI excel spreadsheet.
    * 
@@ -81,57 +109,145 @@ public class Shiller
       throw new IOException(String.format("Can't read Shiller file (%s)", file.getPath()));
     }
     System.out.printf("Loading Shiller data: [%s]\n", file.getPath());
+    Events.DataLoad event = new Events.DataLoad();
+    event.begin();
     seq = new Sequence("Shiller Financial Data");
     try (BufferedReader in = new BufferedReader(new FileReader(file))) {
       String line;
       while ((line = in.readLine()) != null) {
-        try {
-          String[] toks = line.trim().split(",");
-          if (toks == null || toks.length < 5) {
-            continue; // want at least: date, p, d, e, cpi
-          }
+        if (!parseLine(line, allowMissingData, seq)) break;
+      }
 
-          // date - odd parsing because 2017.1 = October 2017.
-          double date = Double.parseDouble(toks[0]);
-          int year = (int) Math.floor(date);
-          int month = (int) Math.round((date - year) * 100);
+      cache.put(file, seq);
+      event.completed = true;
+      return seq;
+    } finally {
+      commitLoadEvent(event, "csv", file, seq);
+    }
+  }
+
+  private static void commitLoadEvent(Events.DataLoad event, String format, File file, Sequence seq)
+  {
+    event.end();
+    if (event.shouldCommit()) {
+      event.format = format;
+      event.file = file.getPath();
+      event.rows = seq.length();
+      event.commit();
+    }
+  }
+
+  /**
+   * Parse one line of the CSV file and add the data to `seq`.
+   * 
+   * @return false if this line marks the end of the data
+   */
+  static boolean parseLine(String line, boolean allowMissingData, Sequence seq)
+  {
+    try {
+      String[] toks = line.trim().split(",");
+      if (toks == null || toks.length < 5) {
+        return true; // want at least: date, p, d, e, cpi
+      }
+
+      // date - odd parsing because 2017.1 = October 2017.
+      double date = Double.parseDouble(toks[0]);
+      int year = (int) Math.floor(date);
+      int month = (int) Math.round((date - year) * 100);
 
-          // snp price -- average of closing prices for the month
-          double price = Double.parseDouble(toks[1]);
+      // snp price -- average of closing prices for the month
+      double price = Double.parseDouble(toks[1]);
 
-          // snp dividend -- data is annual dollar value, we want monthly
-          // note: dividend data is quarterly and linearly interpolated to get monthly data
-          double div = Library.tryParse(toks[2], Double.NaN) / 12.0;
-          if (!allowMissingData && Double.isNaN((div))) break;
+      // snp dividend -- data is annual dollar value, we want monthly
+      // note: dividend data is quarterly and linearly interpolated to get monthly data
+      double div = Library.tryParse(toks[2], Double.NaN) / 12.0;
+      if (!allowMissingData && Double.isNaN((div))) return false;
 
-          // cpi
-          double cpi = Double.parseDouble(toks[4]);
+      // cpi
+      double cpi = Double.parseDouble(toks[4]);
 
-          // GS10 rate
-          double gs10 = Double.parseDouble(toks[6]);
+      // GS10 rate
+      double gs10 = Double.parseDouble(toks[6]);
 
-          // real total return price
-          double rtrp = Double.parseDouble(toks[9]);
+      // real total return price
+      double rtrp = Double.parseDouble(toks[9]);
 
-          // CAPE
-          double cape = Library.tryParse(toks[12], 0.0);
+      // CAPE
+      double cape = Library.tryParse(toks[12], 0.0);
+
+      long timeMS = TimeLib.toMs(year, month, 1);
+      seq.addData(new FeatureVec(6, price, div, cpi, gs10, rtrp, cape), timeMS);
+
+      // System.out.printf("%d/%d: $%.2f $%.2f $%.2f\n", year, month, price, div, cpi);
+      return true;
+    } catch (NumberFormatException nfe) {
+      // System.err.println("Bad Line: " + line);
+      return seq.isEmpty();
+    }
+  }
 
-          long timeMS = TimeLib.toMs(year, month, 1);
-          seq.addData(new FeatureVec(6, price, div, cpi, gs10, rtrp, cape), timeMS);
+  /**
+   * Load data from a binary snapshot written by `saveSnapshot()`.
+   * 
+   * @param file file to load
+   * @param allowMissingData if True, missing dividend data will be set to NaN, else the last data point will correspond
+   *          to the last month with complete data.
+   * @return Sequence holding Shiller data
+   * @throws IOException if there is a problem reading the file.
+   */
+  public static Sequence loadSnapshot(File file, boolean allowMissingData) throws IOException
+  {
+    Sequence seq = cache.get(file);
+    if (seq != null) return seq;
 
-          // System.out.printf("%d/%d: $%.2f $%.2f $%.2f\n", year, month, price, div, cpi);
-        } catch (NumberFormatException nfe) {
-          // System.err.println("Bad Line: " + line);
-          if (seq.isEmpty()) continue;
-          else break;
+    if (!file.canRead()) {
+      throw new IOException(String.format("Can't read Shiller snapshot (%s)", file.getPath()));
+    }
+    System.out.printf("Loading Shiller snapshot: [%s]\n", file.getPath());
+    Events.DataLoad event = new Events.DataLoad();
+    event.begin();
+    seq = new Sequence("Shiller Financial Data");
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+      if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+        throw new IOException(String.format("Invalid Shiller snapshot (%s)", file.getPath()));
+      }
+      final int n = in.readInt();
+      final int nDims = in.readInt();
+      for (int i = 0; i < n; ++i) {
+        long timeMS = in.readLong();
+        FeatureVec v = new FeatureVec(nDims);
+        for (int d = 0; d < nDims; ++d) {
+          v.set(d, in.readDouble());
         }
+        if (!allowMissingData && Double.isNaN(v.get(DIV))) break;
+        seq.addData(v, timeMS);
       }
-
       cache.put(file, seq);
+      event.completed = true;
       return seq;
+    } finally {
+      commitLoadEvent(event, "snapshot", file, seq);
     }
   }
 
+  /** Save Shiller data (as returned by `loadAll()`) to a binary snapshot. */
+  public static void saveSnapshot(Sequence seq, File file) throws IOException
+  {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+      out.writeInt(SNAPSHOT_MAGIC);
+      out.writeInt(SNAPSHOT_VERSION);
+      out.writeInt(seq.length());
+      out.writeInt(seq.getNumDims());
+      for (int i = 0; i < seq.length(); ++i) {
+        out.writeLong(seq.getTimeMS(i));
+        for (int d = 0; d < seq.getNumDims(); ++d) {
+          out.writeDouble(seq.get(i, d));
+        }
+      }
+    }
+    cache.remove(file);
+  }
+
   /**
    * Load S&P 500 price data based on Shiller's monthly data.
    * 
@@ -146,7 +262,7 @@ public class Shiller
     return FinLib.calcSnpReturns(snp, 0, -1, divMethod);
   }
 
-  /** Download Shiller data in .xls format and convert to .csv. */
+  /** Download Shiller data in .xls format and convert to .csv (and a binary snapshot). */
   public static boolean downloadData() throws IOException
   {
     File shillerExcel = getPathExcel();
@@ -156,62 +272,39 @@ public class Shiller
       }
     }
 
-    FileInputStream file = new FileInputStream(shillerExcel);
-    StringBuilder sb = new StringBuilder();
-    try (Workbook workbook = new HSSFWorkbook(file)) {
-      FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
-      Sheet sheet = workbook.getSheet("Data");
-      String[] values = null;
-      for (Row row : sheet) {
-        int nColumns = row.getLastCellNum();
-        if (values == null || values.length != nColumns) {
-          values = new String[nColumns];
-        }
-        int n = 0;
-        for (Cell cell : row) {
-          cell = evaluator.evaluateInCell(cell);
-          int cellIndex = cell.getColumnIndex();
-          switch (cell.getCellTypeEnum()) {
-          case NUMERIC:
-            String s = String.format("%.8f", cell.getNumericCellValue());
-            // Remove trailing zeros up to the hundredths digit.
-            final int iDot = s.lastIndexOf('.');
-            if (iDot > 0) {
-              int iLastNonZero = s.length() - 1;
-              while (s.charAt(iLastNonZero) == '0' && iLastNonZero > iDot + 2) {
-                --iLastNonZero;
-              }
-              s = s.substring(0, iLastNonZero + 1);
-            }
-            values[cellIndex] = s;
-            ++n;
-            break;
-          case STRING:
-            values[cellIndex] = cell.getStringCellValue();
-            break;
-          default:
-            values[cellIndex] = "";
-            break;
-          }
-        }
-        if (n > 2) {
-          String line = String.join(",", values);
-          sb.append(line);
-          sb.append('\n');
-        }
-      }
-    }
+    convertExcel(shillerExcel, getPathCSV(), getPathSnapshot());
+    return true;
+  }
 
-    try (FileWriter writer = new FileWriter(getPathCSV())) {
-      writer.write(sb.toString());
+  /**
+   * Convert Shiller's excel spreadsheet to CSV.
+   * 
+   * The spreadsheet is streamed (see ShillerConverter) so memory use doesn't depend on its size.
+   * 
+   * @param xlsFile excel file (.xls) to convert
+   * @param csvFile CSV file to write
+   * @param snapshotFile if not null, also write a binary snapshot of the data here
+   * @throws IOException if there is a problem reading or writing
+   */
+  public static void convertExcel(File xlsFile, File csvFile, File snapshotFile) throws IOException
+  {
+    final long startMS = System.currentTimeMillis();
+    Sequence seq = (snapshotFile == null ? null : new Sequence("Shiller Financial Data"));
+    int nRows = ShillerConverter.convert(xlsFile, csvFile, seq);
+    cache.remove(csvFile);
+    if (snapshotFile != null) {
+      saveSnapshot(seq, snapshotFile);
     }
-
-    return true;
+    System.out.printf("Converted Shiller data: %d rows (%d ms)\n", nRows, System.currentTimeMillis() - startMS);
   }
 
   public static void main(String[] args) throws IOException
   {
-    downloadData();
+    if (args.length > 0) {
+      convertExcel(new File(args[0]), getPathCSV(), getPathSnapshot()); // offline: use local .xls file
+    } else {
+      downloadData();
+    }
 
     Sequence snpNoDivs = Shiller.loadSNP(getPathCSV(), DividendMethod.NO_REINVEST_MONTHLY);
     Sequence snpWithDivs = Shiller.loadSNP(getPathCSV(), DividendMethod.MONTHLY);
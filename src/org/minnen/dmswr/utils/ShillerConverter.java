@@ -0,0 +1,251 @@
+package org.minnen.dmswr.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MulBlankRecord;
+import org.apache.poi.hssf.record.MulRKRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.RKRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+
+/**
+ * Convert Shiller's excel spreadsheet to CSV using POI's event API.
+ *
+ * Records are processed as they are read so the workbook is never loaded into memory. Formula cells use the result
+ * cached in the file instead of being re-evaluated. Each row of the "Data" sheet with more than two numeric cells is
+ * written to the CSV file (and optionally parsed into a binary snapshot) as soon as the row ends.
+ */
+class ShillerConverter implements HSSFListener
+{
+  /** Name of the sheet that holds the data. */
+  public static final String  sheetName     = "Data";
+
+  private static final byte   EMPTY         = 0;
+  private static final byte   NUMBER        = 1;
+  private static final byte   TEXT          = 2;
+
+  /** Result type of a formula with a cached number (`CellType.NUMERIC`, whose `getCode()` is deprecated). */
+  private static final int    CACHED_NUMBER = 0;
+
+  private final CsvWriter     csv;
+  private final Sequence      snapshot;
+  private final List<String>  sheetNames    = new ArrayList<>();
+  private final StringBuilder sb            = new StringBuilder(256);
+  private SSTRecord           sst;
+  private int                 iSheet        = -1;
+  private boolean             inDataSheet;
+  private boolean             snapshotDone;
+
+  // Buffers for the current row (grow to the widest row).
+  private int                 iRow          = -1;
+  private int                 nColumns;
+  private byte[]              types         = new byte[32];
+  private double[]            numbers       = new double[32];
+  private String[]            text          = new String[32];
+
+  // Column of a formula whose (string) result is in the next StringRecord.
+  private int                 pendingColumn = -1;
+
+  private int                 nRowsWritten;
+
+  private ShillerConverter(CsvWriter csv, Sequence snapshot)
+  {
+    this.csv = csv;
+    this.snapshot = snapshot;
+  }
+
+  /**
+   * Convert the "Data" sheet of Shiller's excel file to CSV.
+   *
+   * @param xlsFile excel file (.xls) to convert
+   * @param csvFile CSV file to write
+   * @param snapshot if not null, rows are also parsed (same as `Shiller.loadAll(csvFile, true)`) and added here
+   * @return number of rows written to the CSV file
+   * @throws IOException if there is a problem reading or writing
+   */
+  public static int convert(File xlsFile, File csvFile, Sequence snapshot) throws IOException
+  {
+    if (!xlsFile.canRead()) {
+      throw new IOException(String.format("Can't read Shiller excel file (%s)", xlsFile.getPath()));
+    }
+    try (POIFSFileSystem fs = new POIFSFileSystem(xlsFile, true); CsvWriter csv = new CsvWriter(csvFile)) {
+      ShillerConverter converter = new ShillerConverter(csv, snapshot);
+      HSSFRequest request = new HSSFRequest();
+      request.addListenerForAllRecords(converter);
+      new HSSFEventFactory().processWorkbookEvents(request, fs);
+      converter.endRow(); // in case the sheet is missing its EOF record
+      if (!converter.sheetNames.contains(sheetName)) {
+        throw new IOException(String.format("Shiller excel file has no \"%s\" sheet (%s)", sheetName,
+            xlsFile.getPath()));
+      }
+      return converter.nRowsWritten;
+    } catch (RuntimeException e) {
+      if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+      throw new IOException(String.format("Failed to convert Shiller excel file (%s)", xlsFile.getPath()), e);
+    }
+  }
+
+  @Override
+  public void processRecord(Record record)
+  {
+    try {
+      if (record instanceof BoundSheetRecord) {
+        sheetNames.add(((BoundSheetRecord) record).getSheetname());
+      } else if (record instanceof SSTRecord) {
+        sst = (SSTRecord) record;
+      } else if (record instanceof BOFRecord) {
+        if (((BOFRecord) record).getType() == BOFRecord.TYPE_WORKSHEET) {
+          ++iSheet;
+          inDataSheet = (iSheet < sheetNames.size() && sheetNames.get(iSheet).equals(sheetName));
+        }
+      } else if (record instanceof EOFRecord) {
+        endRow();
+        inDataSheet = false;
+      } else if (inDataSheet) {
+        processCell(record);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void processCell(Record record) throws IOException
+  {
+    if (record instanceof StringRecord) {
+      if (pendingColumn >= 0) {
+        setText(pendingColumn, ((StringRecord) record).getString());
+        pendingColumn = -1;
+      }
+      return;
+    }
+    pendingColumn = -1;
+
+    if (record instanceof MulRKRecord) {
+      MulRKRecord mulrk = (MulRKRecord) record;
+      startRow(mulrk.getRow());
+      for (int i = 0; i < mulrk.getNumColumns(); ++i) {
+        setNumber(mulrk.getFirstColumn() + i, mulrk.getRKNumberAt(i));
+      }
+    } else if (record instanceof MulBlankRecord) {
+      MulBlankRecord mulblank = (MulBlankRecord) record;
+      startRow(mulblank.getRow());
+      for (int col = mulblank.getFirstColumn(); col <= mulblank.getLastColumn(); ++col) {
+        setEmpty(col);
+      }
+    } else if (record instanceof CellValueRecordInterface) {
+      CellValueRecordInterface cell = (CellValueRecordInterface) record;
+      startRow(cell.getRow());
+      final int col = cell.getColumn();
+      if (record instanceof NumberRecord) {
+        setNumber(col, ((NumberRecord) record).getValue());
+      } else if (record instanceof RKRecord) {
+        setNumber(col, ((RKRecord) record).getRKNumber());
+      } else if (record instanceof FormulaRecord) {
+        FormulaRecord formula = (FormulaRecord) record;
+        if (formula.hasCachedResultString()) {
+          setEmpty(col);
+          pendingColumn = col; // result is stored in the next StringRecord
+        } else if (formula.getCachedResultType() == CACHED_NUMBER) {
+          setNumber(col, formula.getValue());
+        } else {
+          setEmpty(col); // boolean or error
+        }
+      } else if (record instanceof LabelSSTRecord) {
+        setText(col, sst.getString(((LabelSSTRecord) record).getSSTIndex()).getString());
+      } else if (record instanceof LabelRecord) {
+        setText(col, ((LabelRecord) record).getValue());
+      } else {
+        setEmpty(col); // blank, boolean, or error
+      }
+    }
+  }
+
+  /** Flush the current row if `row` starts a new one. */
+  private void startRow(int row) throws IOException
+  {
+    if (row == iRow) return;
+    endRow();
+    iRow = row;
+  }
+
+  /** Write the current row (if it holds data) and reset the row buffers. */
+  private void endRow() throws IOException
+  {
+    if (iRow < 0) return;
+    int nNumbers = 0;
+    for (int col = 0; col < nColumns; ++col) {
+      if (types[col] == NUMBER) ++nNumbers;
+    }
+    if (nNumbers > 2) {
+      sb.setLength(0);
+      for (int col = 0; col < nColumns; ++col) {
+        if (col > 0) sb.append(',');
+        if (types[col] == NUMBER) {
+          // Same as "%.8f" with trailing zeros removed up to the hundredths digit.
+          FastFormat.appendFixed(sb, numbers[col], 8, 2);
+        } else if (types[col] == TEXT) {
+          sb.append(text[col]);
+        }
+      }
+      final String line = sb.toString();
+      csv.writeln(line);
+      ++nRowsWritten;
+      if (snapshot != null && !snapshotDone) {
+        snapshotDone = !Shiller.parseLine(line, true, snapshot);
+      }
+    }
+
+    Arrays.fill(types, 0, nColumns, EMPTY);
+    Arrays.fill(text, 0, nColumns, null);
+    nColumns = 0;
+    iRow = -1;
+  }
+
+  private void setNumber(int col, double x)
+  {
+    ensureColumn(col);
+    types[col] = NUMBER;
+    numbers[col] = x;
+  }
+
+  private void setText(int col, String s)
+  {
+    ensureColumn(col);
+    types[col] = TEXT;
+    text[col] = s;
+  }
+
+  private void setEmpty(int col)
+  {
+    ensureColumn(col);
+    types[col] = EMPTY;
+  }
+
+  private void ensureColumn(int col)
+  {
+    if (col >= types.length) {
+      final int n = Math.max(col + 1, types.length * 2);
+      types = Arrays.copyOf(types, n);
+      numbers = Arrays.copyOf(numbers, n);
+      text = Arrays.copyOf(text, n);
+    }
+    nColumns = Math.max(nColumns, col + 1);
+  }
+}
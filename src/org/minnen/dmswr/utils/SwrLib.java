@@ -2,10 +2,15 @@ package org.minnen.dmswr.utils;
 
 import java.io.File;
 import java.io.IOException;
+import java.time.LocalDate;
 import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.minnen.dmswr.BengenMethod;
 import org.minnen.dmswr.data.BengenTable;
@@ -18,21 +23,59 @@ import org.minnen.dmswr.viz.ChartConfig.ChartTiming;
 public class SwrLib
 {
   /** Stock, bonds, and CPI (inflation data). */
-  public static Sequence                stock, bonds;
-  private static Sequence               cpi;
+  public static Sequence                  stock, bonds;
+  private static Sequence                 cpi;
 
   /** Each "Mul" sequence holds the multiplier representing growth for each month (1.01 = 1% growth). */
-  private static Sequence               stockMul, bondsMul, cpiMul;
+  private static Sequence                 stockMul, bondsMul, cpiMul;
 
-  private static Sequence               shiller;
+  /** CPI values as a primitive array so that inflation lookups in inner loops are simple array reads. */
+  private static double[]                 cpiValues;
+
+  /** Nominal 10-year treasury yields (GS10) as a percent (4.2 = 4.2%) aligned with `cpiValues`. */
+  private static double[]                 bondYields;
+
+  private static Sequence                 shiller;
 
   /** Mixed stock/bond cumulative returns keyed by stock percent (70 = 70% stocks / 30% bonds). */
-  private static Map<Integer, Sequence> mixedMap;
+  private static Map<Integer, Sequence>   mixedMap;
+
+  /**
+   * Cumulative growth (index 0 => 1.0) for a monthly-rebalanced portfolio keyed by stock percent. Built lazily so that
+   * any allocation (not just multiples of 5) can be used in O(1) growth and nest egg calculations.
+   */
+  private static Map<Integer, double[]>   cumulativeGrowthMap    = new ConcurrentHashMap<>();
+
+  /** Prefix sums of 1 / cumulative growth keyed by stock percent; see `getInverseGrowthPrefix()`. */
+  private static Map<Integer, double[]>   inverseGrowthPrefixMap = new ConcurrentHashMap<>();
+
+  /** Monthly growth multipliers keyed by stock percent; see `getMonthlyGrowth()`. */
+  private static Map<Integer, double[]>   monthlyGrowthMap       = new ConcurrentHashMap<>();
+
+  /** Asset names for `getAssetMatrix()`; stock and bonds are always available, T-bills after `addTBills()`. */
+  public static final String              ASSET_STOCK            = "stock";
+  public static final String              ASSET_BONDS            = "bonds";
+  public static final String              ASSET_TBILLS           = "tbills";
+
+  /** Cumulative value of each asset aligned with `stock` (NaN where missing) keyed by name; see `addAsset()`. */
+  private static Map<String, double[]>    assetMap               = new LinkedHashMap<>();
+
+  /** Asset matrices keyed by the asset version and list of asset names; see `getAssetMatrix()`. */
+  private static Map<String, AssetMatrix> assetMatrixMap         = new ConcurrentHashMap<>();
+
+  /** Incremented (while holding the assetMap monitor) whenever the assets change. */
+  private static int                      assetVersion           = 0;
 
   /** Was the data adjusted for inflation (Real) or not (Nominal)? */
-  private static Inflation              inflationAdjustment;
+  private static Inflation                inflationAdjustment;
+
+  /** Model used to convert bond yields into returns; see `setBondModel()`. */
+  private static BondReturns.Model        bondModel              = BondReturns.Model.YTM;
 
-  public static final int[]             percentStockList;
+  /** Hash of the market data (stock, bonds, CPI, inflation mode); computed on demand. */
+  private static String                   dataFingerprint;
+
+  public static final int[]               percentStockList;
 
   static {
     percentStockList = new int[] { 0, 10, 20, 25, 30, 40, 50, 60, 70, 75, 80, 90, 100 };
@@ -45,6 +88,36 @@ public class SwrLib
     return inflationAdjustment;
   }
 
+  /**
+   * Set the model used to calculate bond returns; takes effect on the next call to `setup()`.
+   *
+   * Bond returns are cached per model so switching back and forth for sensitivity studies only pays for the first
+   * simulation of each model.
+   */
+  public static void setBondModel(BondReturns.Model model)
+  {
+    bondModel = model;
+  }
+
+  public static BondReturns.Model getBondModel()
+  {
+    return bondModel;
+  }
+
+  /**
+   * Return a content hash of the market data.
+   * 
+   * The hash covers the stock and bond returns (and thus the bond model), the CPI data, and the inflation mode so it
+   * can be used as part of a key for caching simulation results.
+   */
+  public static synchronized String getDataFingerprint()
+  {
+    if (dataFingerprint == null) {
+      dataFingerprint = new Fingerprint().add(inflationAdjustment.name()).add(stock).add(bonds).add(cpi).toHex();
+    }
+    return dataFingerprint;
+  }
+
   /** @return timestamp (in ms) for the i'th data point. */
   public static long time(int i)
   {
@@ -86,8 +159,82 @@ public class SwrLib
   {
     if (from == to) return 1.0;
     assert percentStock >= 0 && percentStock <= 100;
-    Sequence mixed = mixedMap.get(percentStock);
-    return mixed.get(to, 0) / mixed.get(from, 0);
+    final double[] cumulative = getCumulativeGrowth(percentStock);
+    if (from < 0) from += cumulative.length;
+    if (to < 0) to += cumulative.length;
+    return cumulative[to] / cumulative[from];
+  }
+
+  /**
+   * Return the cumulative growth of a monthly-rebalanced portfolio.
+   * 
+   * The returned array has `length() + 1` entries and the i'th value is the growth over [0..i] so that growth over
+   * [from..to] is `cumulative[to] / cumulative[from]`. The array is shared and must not be modified.
+   * 
+   * @param percentStock percent invested in stock vs. bonds (70 => 70%)
+   * @return cumulative growth for each month (first value is 1.0)
+   */
+  public static double[] getCumulativeGrowth(int percentStock)
+  {
+    assert percentStock >= 0 && percentStock <= 100;
+    return Metrics.cached(cumulativeGrowthMap, percentStock, pct -> {
+      final int n = length();
+      double[] cumulative = new double[n + 1];
+      double x = 1.0;
+      for (int i = 0;; ++i) {
+        cumulative[i] = x;
+        if (i >= n) break;
+        x *= growth(i, pct);
+      }
+      return cumulative;
+    });
+  }
+
+  /**
+   * Return the growth multiplier for each month of a monthly-rebalanced portfolio.
+   * 
+   * The i'th value equals `growth(i, percentStock)`. The array is shared and must not be modified. A new array is
+   * created after `setup()` so callers can detect stale derived data by comparing references.
+   * 
+   * @param percentStock percent invested in stock vs. bonds (70 => 70%)
+   * @return growth multiplier for each month
+   */
+  public static double[] getMonthlyGrowth(int percentStock)
+  {
+    assert percentStock >= 0 && percentStock <= 100;
+    return Metrics.cached(monthlyGrowthMap, percentStock, pct -> {
+      final int n = length();
+      double[] monthly = new double[n];
+      for (int i = 0; i < n; ++i) {
+        monthly[i] = growth(i, pct);
+      }
+      return monthly;
+    });
+  }
+
+  /**
+   * Return prefix sums of the reciprocal of the cumulative growth.
+   * 
+   * The i'th value is the sum of `1 / cumulative[j]` for j in [0..i). This supports O(1) calculation of a savings
+   * stream: a deposit of `x` at the start of every month in [from..to) grows to `x * cumulative[to] * (prefix[to] -
+   * prefix[from])`. The array is shared and must not be modified.
+   * 
+   * @param percentStock percent invested in stock vs. bonds (70 => 70%)
+   * @return prefix sums of inverse cumulative growth (first value is 0.0)
+   */
+  public static double[] getInverseGrowthPrefix(int percentStock)
+  {
+    assert percentStock >= 0 && percentStock <= 100;
+    return Metrics.cached(inverseGrowthPrefixMap, percentStock, pct -> {
+      final double[] cumulative = getCumulativeGrowth(pct);
+      double[] prefix = new double[cumulative.length];
+      double sum = 0.0;
+      for (int i = 1; i < prefix.length; ++i) {
+        sum += 1.0 / cumulative[i - 1];
+        prefix[i] = sum;
+      }
+      return prefix;
+    });
   }
 
   /**
@@ -114,14 +261,24 @@ public class SwrLib
   /** @return inflation (as a multiplier) at `index` (i.e. from [index..index+1]). */
   public static double inflation(int index)
   {
-    return cpi.get(index + 1, 0) / cpi.get(index, 0);
+    if (index < 0) index += cpiValues.length;
+    return cpiValues[index + 1] / cpiValues[index];
   }
 
   /** @return inflation (as a multiplier) over [from..to]. */
   public static double inflation(int from, int to)
   {
     if (from == to) return 1.0;
-    return cpi.get(to, 0) / cpi.get(from, 0);
+    if (from < 0) from += cpiValues.length;
+    if (to < 0) to += cpiValues.length;
+    return cpiValues[to] / cpiValues[from];
+  }
+
+  /** @return nominal 10-year treasury yield (GS10) at `index` as a percent (4.2 = 4.2%). */
+  public static double bondYield(int index)
+  {
+    if (index < 0) index += bondYields.length;
+    return bondYields[index];
   }
 
   /** Verify that we're matching the "Real Total Return Price" from Shiller's spreadsheet. */
@@ -152,11 +309,11 @@ public class SwrLib
   {
     assert seq.matches(cpi);
     final double finalCPI = cpi.getLast(0);
-    Sequence seqAdjusted = new Sequence(seq.getName() + "(real)");
-    for (int i = 0; i < seq.size(); ++i) {
-      final double inflation = finalCPI / cpi.get(i, 0);
-      seqAdjusted.addData(seq.get(i).mul(inflation));
+    double[] inflation = new double[seq.size()];
+    for (int i = 0; i < inflation.length; ++i) {
+      inflation[i] = finalCPI / cpi.get(i, 0);
     }
+    Sequence seqAdjusted = seq.scaleInto(inflation, null).setName(seq.getName() + "(real)");
     assert seqAdjusted.matches(seq);
     return seqAdjusted;
   }
@@ -189,66 +346,228 @@ public class SwrLib
     // TODO If we download new data, Bengen and Marwood tables must be regenerated.
     // TODO last row in shiller data may be for a partial month and should be discarded.
     // Shiller.downloadData();
-    shiller = Shiller.loadAll(Shiller.getPathCSV(), true);
-
-    Sequence bondData = shiller.extractDimAsSeq(Shiller.GS10).setName("GS10");
-    bonds = Bond.calcReturnsYTM(bondData);
-    // bonds = Bond.calcReturnsRebuy(BondFactory.note10Year, bondData, 0, -1);
-    // bonds = Bond.calcReturnsNaiveInterest(BondFactory.note10Year, bondData, 0, -1, DivOrPow.DivideBy12);
-    // bonds = Bond.calcReturnsHold(BondFactory.note10Year, bondData, 0, -1);
-
-    cpi = shiller.extractDimAsSeq(Shiller.CPI).setName("CPI");
-    SwrLib.inflationAdjustment = inflation;
-    if (inflation == Inflation.Real) {
-      stock = shiller.extractDimAsSeq(Shiller.RTRP).setName("Stock (real)");
-      bonds = adjustForInflation(bonds, cpi).setName("Bonds (real)");
-    } else {
-      stock = calcSnpReturns(Inflation.Nominal).setName("Stock (nominal)");
-      bonds.setName("Bonds (nominal)");
+    final long tStart = Metrics.setupTimer.start();
+    Events.Setup event = new Events.Setup();
+    event.begin();
+    try {
+      shiller = Shiller.load(true);
+
+      Sequence bondData = shiller.extractDimAsSeq(Shiller.GS10).setName("GS10");
+      bondYields = bondData.extractDim(0);
+      bonds = BondReturns.calcReturns(bondModel, bondData); // same as Bond.calcReturns*() with BondFactory.note10Year
+
+      cpi = shiller.extractDimAsSeq(Shiller.CPI).setName("CPI");
+      SwrLib.inflationAdjustment = inflation;
+      if (inflation == Inflation.Real) {
+        stock = shiller.extractDimAsSeq(Shiller.RTRP).setName("Stock (real)");
+        bonds = adjustForInflation(bonds, cpi).setName("Bonds (real)");
+      } else {
+        stock = calcSnpReturns(Inflation.Nominal).setName("Stock (nominal)");
+        bonds.setName("Bonds (nominal)");
+      }
+
+      System.out.println(stock);
+      assert bonds.matches(stock);
+      assert cpi.matches(stock);
+
+      cpi._div(cpi.getFirst(0));
+      stock._div(stock.getFirst(0));
+      bonds._div(bonds.getFirst(0));
+      cpiValues = cpi.extractDim(0);
+
+      stockMul = stock.derivativeMul();
+      bondsMul = bonds.derivativeMul();
+      cpiMul = cpi.derivativeMul();
+      assert bondsMul.matches(stockMul);
+      assert cpiMul.matches(stockMul);
+
+      // Derived growth arrays depend on the data so they must be rebuilt.
+      cumulativeGrowthMap.clear();
+      inverseGrowthPrefixMap.clear();
+      monthlyGrowthMap.clear();
+      dataFingerprint = null;
+
+      synchronized (assetMap) {
+        assetMap.clear();
+        assetMap.put(ASSET_STOCK, stock.extractDim(0));
+        assetMap.put(ASSET_BONDS, bonds.extractDim(0));
+        ++assetVersion;
+      }
+      assetMatrixMap.clear(); // outside of the assetMap monitor (see `getAssetMatrix()`)
+
+      mixedMap = new HashMap<>();
+      for (int percentStock = 0; percentStock <= 100; percentStock += 5) {
+        // Note that stock*alpha + bonds*(1-alpha) models an initial split *without* rebalancing. We want to include
+        // rebalancing (monthly, for simplicity) so the cumulative returns must be calculated month-by-month.
+        Sequence mixed = stock.cumprodInto(getMonthlyGrowth(percentStock), 1.0, null)
+            .setName(String.format("Mixed (%d / %d)", percentStock, 100 - percentStock));
+        mixedMap.put(percentStock, mixed);
+        assert mixed.matches(stock);
+      }
+
+      // Load pre-computed bengen results.
+      if (bengenFile != null) {
+        System.out.printf("Load Bengen Data: [%s]\n", bengenFile);
+        BengenTable.loadTable(bengenFile);
+      }
+
+      // Load pre-computed DMSWR results.
+      if (dmswrFile != null) {
+        System.out.printf("Load DMSWR Data: [%s]\n", dmswrFile);
+        MarwoodTable.loadTable(dmswrFile);
+      }
+      event.completed = true;
+    } finally {
+      Metrics.setupTimer.stop(tStart);
+      event.end();
+      if (event.shouldCommit()) {
+        event.inflation = inflation.toString();
+        event.bengenFile = Events.path(bengenFile);
+        event.dmswrFile = Events.path(dmswrFile);
+        event.months = (stockMul == null ? 0 : length());
+        event.commit();
+      }
     }
+  }
 
-    System.out.println(stock);
-    assert bonds.matches(stock);
-    assert cpi.matches(stock);
-
-    cpi._div(cpi.getFirst(0));
-    stock._div(stock.getFirst(0));
-    bonds._div(bonds.getFirst(0));
-
-    stockMul = stock.derivativeMul();
-    bondsMul = bonds.derivativeMul();
-    cpiMul = cpi.derivativeMul();
-    assert bondsMul.matches(stockMul);
-    assert cpiMul.matches(stockMul);
-
-    mixedMap = new HashMap<>();
-    for (int percentStock = 0; percentStock <= 100; percentStock += 5) {
-      // Note that stock*alpha + bonds*(1-alpha) models an initial split *without* rebalancing. We want to include
-      // rebalancing (monthly, for simplicity) so the cumulative returns must be calculated month-by-month.
-      Sequence mixed = new Sequence(String.format("Mixed (%d / %d)", percentStock, 100 - percentStock));
-      double x = 1.0;
-      for (int i = 0;; ++i) {
-        mixed.addData(x, stock.getTimeMS(i));
-        if (i >= length()) break; // can't compute growth because there's no more data
-        x *= growth(i, percentStock);
+  /**
+   * Add an asset that can be used in N-asset portfolios (see `getAssetMatrix()`).
+   * 
+   * The asset is aligned with the existing data by month. Months without data are allowed at the beginning or end
+   * (e.g. T-bill data starts in 1934) but the asset can then only be used for simulations over the months it covers.
+   * Values are converted to match the inflation adjustment of the data in SwrLib.
+   * 
+   * @param name name of the asset (replaces any existing asset with this name)
+   * @param cumulativeReturns value of the asset over time (e.g. price with reinvested dividends)
+   * @param inflation inflation adjustment of `cumulativeReturns`
+   */
+  public static void addAsset(String name, Sequence cumulativeReturns, Inflation inflation)
+  {
+    Map<Integer, Double> monthToValue = new HashMap<>();
+    for (int i = 0; i < cumulativeReturns.length(); ++i) {
+      LocalDate date = TimeLib.ms2date(cumulativeReturns.getTimeMS(i));
+      monthToValue.put(date.getYear() * 12 + date.getMonthValue() - 1, cumulativeReturns.get(i, 0));
+    }
+
+    final int n = stock.length();
+    double[] values = new double[n];
+    int nFound = 0;
+    for (int i = 0; i < n; ++i) {
+      LocalDate date = TimeLib.ms2date(stock.getTimeMS(i));
+      Double value = monthToValue.get(date.getYear() * 12 + date.getMonthValue() - 1);
+      if (value == null) {
+        values[i] = Double.NaN;
+        continue;
+      }
+      ++nFound;
+      values[i] = value;
+      if (inflation == Inflation.Nominal && inflationAdjustment == Inflation.Real) {
+        values[i] /= cpiValues[i];
+      } else if (inflation == Inflation.Real && inflationAdjustment == Inflation.Nominal) {
+        values[i] *= cpiValues[i];
       }
-      mixedMap.put(percentStock, mixed);
-      assert mixed.matches(stock);
     }
+    if (nFound < 2) {
+      throw new IllegalArgumentException(String.format("Asset \"%s\" doesn't overlap with the market data", name));
+    }
+
+    synchronized (assetMap) {
+      assetMap.put(name, values);
+      ++assetVersion;
+    }
+    assetMatrixMap.clear(); // outside of the assetMap monitor (see `getAssetMatrix()`)
+  }
 
-    // Load pre-computed bengen results.
-    if (bengenFile != null) {
-      System.out.printf("Load Bengen Data: [%s]\n", bengenFile);
-      BengenTable.loadTable(bengenFile);
+  /**
+   * Remove an asset added with `addAsset()`.
+   * 
+   * @param name name of the asset (stock and bonds can't be removed)
+   */
+  public static void removeAsset(String name)
+  {
+    if (name.equals(ASSET_STOCK) || name.equals(ASSET_BONDS)) {
+      throw new IllegalArgumentException("Can't remove built-in asset: " + name);
+    }
+    synchronized (assetMap) {
+      if (assetMap.remove(name) == null) return;
+      ++assetVersion;
     }
+    assetMatrixMap.clear();
+  }
 
-    // Load pre-computed DMSWR results.
-    if (dmswrFile != null) {
-      System.out.printf("Load DMSWR Data: [%s]\n", dmswrFile);
-      MarwoodTable.loadTable(dmswrFile);
+  /**
+   * Add 3-month treasury bills as an asset (`ASSET_TBILLS`).
+   * 
+   * @param rateFile CSV file with monthly T-bill rates in percent (e.g. TB3MS from FRED)
+   */
+  public static void addTBills(File rateFile) throws IOException
+  {
+    Sequence rates = DataIO.loadDateValueCSV(rateFile);
+    Sequence bills = Bond.calcReturnsRebuy(BondFactory.bill3Month, rates, 0, -1);
+    addAsset(ASSET_TBILLS, bills, Inflation.Nominal);
+  }
+
+  /** @return names of all available assets. */
+  public static List<String> getAssetNames()
+  {
+    synchronized (assetMap) {
+      return new ArrayList<>(assetMap.keySet());
     }
   }
 
+  /**
+   * Return growth multipliers for the given assets.
+   * 
+   * Month `i` of the matrix holds the growth from index `i` to `i + 1` (same as `growth(i, percentStock)`). The matrix
+   * is cached and shared until new data or assets are added.
+   * 
+   * @param names assets to include (in order)
+   * @return matrix of monthly growth multipliers
+   */
+  public static AssetMatrix getAssetMatrix(String... names)
+  {
+    // Snapshot the asset values before touching the cache: `computeIfAbsent()` holds a bin lock while building the
+    // matrix, and `setup()` / `addAsset()` clear the cache, so taking the assetMap monitor inside could deadlock.
+    final int nAssets = names.length;
+    final double[][] values = new double[nAssets][];
+    final String key;
+    synchronized (assetMap) {
+      for (int a = 0; a < nAssets; ++a) {
+        values[a] = assetMap.get(names[a]);
+        if (values[a] == null) {
+          throw new IllegalArgumentException(String.format("Unknown asset: \"%s\"", names[a]));
+        }
+      }
+      key = assetVersion + ":" + String.join("|", names); // a stale matrix can't be found after assets change
+    }
+
+    return Metrics.cached(assetMatrixMap, key, k -> {
+      final int n = length();
+
+      // Find the longest run of months with data for all assets.
+      double[] mul = new double[n * nAssets];
+      int iFirst = 0, iEnd = 0;
+      int runStart = 0;
+      for (int i = 0; i <= n; ++i) {
+        boolean valid = (i < n);
+        for (int a = 0; valid && a < nAssets; ++a) {
+          final double x = values[a][i + 1] / values[a][i];
+          mul[i * nAssets + a] = x;
+          valid = !Double.isNaN(x);
+        }
+        if (!valid) {
+          if (i - runStart > iEnd - iFirst) {
+            iFirst = runStart;
+            iEnd = i;
+          }
+          runStart = i + 1;
+          if (i < n) Arrays.fill(mul, i * nAssets, (i + 1) * nAssets, Double.NaN);
+        }
+      }
+      return new AssetMatrix(names.clone(), mul, iFirst, iEnd);
+    });
+  }
+
   /** Save an interactive chart with stock and bond data as a local HTML file. */
   public static void saveGraph() throws IOException
   {
@@ -306,17 +625,18 @@ public class SwrLib
       }
     }
 
-    try (Writer writer = new Writer(file)) {
+    try (CsvWriter writer = new CsvWriter(file)) {
       for (int i = 0; i < length; ++i) {
         long ms = longest.getTimeMS(i);
-        writer.writef("%s,%s", TimeLib.formatYM(ms), TimeLib.ms2date(ms).format(TimeLib.dtfY));
+        writer.addYM(ms).addYear(ms);
         for (Sequence seq : seqs) {
-          writer.write(",");
           if (i < seq.length()) {
-            writer.writef("%f", seq.get(i, 0));
+            writer.addFixed(seq.get(i, 0), 6);
+          } else {
+            writer.addEmpty();
           }
         }
-        writer.writeln();
+        writer.endRow();
       }
     }
   }
@@ -1,11 +1,17 @@
 package org.minnen.dmswr.viz;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.lang3.NotImplementedException;
+import org.minnen.dmswr.utils.Events;
+import org.minnen.dmswr.utils.FastFormat;
 import org.minnen.dmswr.utils.FeatureVec;
 import org.minnen.dmswr.utils.Sequence;
 import org.minnen.dmswr.utils.FinLib;
@@ -85,7 +91,120 @@ public class Chart
     writer.write("   ],\n");
   }
 
+  /**
+   * Append the data for one series as a JavaScript (or JSON) array.
+   * 
+   * Values are written as `y` values if the series lines up with the x-axis categories, otherwise `[x, y]` pairs are
+   * written. If the series has more than `config.maxPoints` points, it's downsampled with LTTB and always written as
+   * `[x, y]` pairs so that the selected points stay at the correct position.
+   * 
+   * @param sb append text here
+   * @param seq series to write
+   * @param base sequence that defines the x-axis
+   * @param config chart configuration (dimension, precision, point budget)
+   * @param json if true, non-finite values are written as `null` so that the output is valid JSON
+   * @return `sb` to allow chaining
+   */
+  private static StringBuilder appendSeriesData(StringBuilder sb, Sequence seq, Sequence base, ChartConfig config,
+      boolean json)
+  {
+    final int n = seq.length();
+    final boolean onlyY = (n == base.length() || config.labels != null);
+    final double[] x = new double[n];
+    final double[] y = new double[n];
+    for (int t = 0; t < n; ++t) {
+      int index = t;
+      if (!onlyY && config.timing != ChartTiming.INDEX) {
+        index = base.getClosestIndex(seq.getTimeMS(t));
+      }
+      x[t] = index;
+      y[t] = seq.get(t, config.iDim);
+    }
+
+    int[] keep = null;
+    if (config.maxPoints > 0 && n > config.maxPoints) {
+      keep = Downsample.lttb(x, y, config.maxPoints);
+    }
+
+    final String sep = config.compactData ? "," : ", ";
+    final int m = (keep == null ? n : keep.length);
+    sb.ensureCapacity(sb.length() + m * (keep == null && onlyY ? 12 : 20));
+    sb.append('[');
+    for (int k = 0; k < m; ++k) {
+      final int t = (keep == null ? k : keep[k]);
+      if (k > 0) sb.append(sep);
+      if (keep == null && onlyY) {
+        appendValue(sb, y[t], config, json);
+      } else {
+        sb.append('[').append((int) x[t]).append(sep);
+        appendValue(sb, y[t], config, json);
+        sb.append(']');
+      }
+    }
+    sb.append(']');
+    return sb;
+  }
+
+  private static void appendValue(StringBuilder sb, double y, ChartConfig config, boolean json)
+  {
+    if (json && (Double.isNaN(y) || Double.isInfinite(y))) {
+      sb.append("null");
+    } else {
+      FastFormat.appendFixed(sb, y, config.dataPrecision, config.compactData);
+    }
+  }
+
+  /**
+   * Save series data as gzipped JSON next to the chart's HTML file.
+   * 
+   * @return file holding the data
+   */
+  private static File saveGzipData(ChartConfig config) throws IOException
+  {
+    File file = new File(config.file.getParentFile(), config.file.getName() + ".json.gz");
+    StringBuilder sb = new StringBuilder();
+    sb.append('[');
+    for (int i = 0; i < config.data.length; ++i) {
+      if (i > 0) sb.append(',');
+      appendSeriesData(sb, config.data[i], config.data[0], config, true);
+    }
+    sb.append(']');
+    try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file), 1 << 16)) {
+      out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    return file;
+  }
+
   public static void saveChart(ChartConfig config) throws IOException
+  {
+    Events.ChartSave event = new Events.ChartSave();
+    event.begin();
+    try {
+      writeChart(config);
+      event.completed = true;
+    } finally {
+      commitSaveEvent(event, config);
+    }
+  }
+
+  /** Commit the event for saving a chart with its type, file, and size (see `Events`). */
+  private static void commitSaveEvent(Events.ChartSave event, ChartConfig config)
+  {
+    event.end();
+    if (event.shouldCommit()) {
+      long nPoints = 0;
+      for (Sequence seq : config.data) {
+        nPoints += seq.length();
+      }
+      event.type = config.type.toString();
+      event.file = Events.path(config.file);
+      event.series = config.data.length;
+      event.points = nPoints;
+      event.commit();
+    }
+  }
+
+  private static void writeChart(ChartConfig config) throws IOException
   {
     Sequence[] seqs = config.data;
 
@@ -289,25 +408,13 @@ public class Chart
         if (config.dataLabelConfig != null) {
           writer.writeln(config.dataLabelConfig);
         }
-        writer.write("    data: [");
-        if (seq.length() == seqs[0].length() || config.labels != null) {
-          // Only write `y` values.
-          for (int t = 0; t < seq.length(); ++t) {
-            double y = seq.get(t, config.iDim);
-            writer.writef("%.6f%s", y, t == seq.size() - 1 ? "" : ", ");
-          }
+        if (config.gzipData) {
+          writer.write("    data: [],"); // loaded from the gzipped sidecar file
         } else {
-          // Write `(x, y)` values.
-          for (int t = 0; t < seq.length(); ++t) {
-            int index = t;
-            if (config.timing != ChartTiming.INDEX) {
-              index = seqs[0].getClosestIndex(seq.getTimeMS(t));
-            }
-            double y = seq.get(t, config.iDim);
-            writer.writef("[%d, %.6f]%s", index, y, t == seq.size() - 1 ? "" : ", ");
-          }
+          writer.write("    data: ");
+          writer.write(appendSeriesData(new StringBuilder(), seq, seqs[0], config, false).toString());
+          writer.write(",");
         }
-        writer.write("],");
         int lineWidth = (Integer) seq.getMeta("lineWidth", 0);
         if (lineWidth > 0) {
           writer.writef(" lineWidth: %d,\n", lineWidth);
@@ -316,6 +423,17 @@ public class Chart
       }
       writer.write("  ]\n");
       writer.write(" });\n");
+      if (config.gzipData) {
+        File dataFile = saveGzipData(config);
+        writer.writef(" var chart = $('#%s').highcharts();\n", config.containerName);
+        writer.writef(" fetch('%s').then(function (response) {\n", dataFile.getName());
+        writer.write("  var stream = response.body.pipeThrough(new DecompressionStream('gzip'));\n");
+        writer.write("  return new Response(stream).json();\n");
+        writer.write(" }).then(function (data) {\n");
+        writer.write("  data.forEach(function (d, i) { chart.series[i].setData(d, false); });\n");
+        writer.write("  chart.redraw();\n");
+        writer.write(" });\n");
+      }
       writer.write("});\n");
 
       writer.write("</script></head><body>\n");
@@ -442,6 +560,18 @@ public class Chart
   }
 
   public static void saveScatterPlot(ChartConfig config) throws IOException
+  {
+    Events.ChartSave event = new Events.ChartSave();
+    event.begin();
+    try {
+      writeScatterPlot(config);
+      event.completed = true;
+    } finally {
+      commitSaveEvent(event, config);
+    }
+  }
+
+  private static void writeScatterPlot(ChartConfig config) throws IOException
   {
     boolean hasNames = false;
     for (Sequence scatter : config.data) {
@@ -66,6 +66,12 @@ public class ChartConfig
   public boolean        endOnTick          = true;
   public boolean        shadow             = false;
 
+  // Control the size of the data written for each series.
+  public int            maxPoints          = 0;    // 0 => no downsampling
+  public int            dataPrecision      = 6;
+  public boolean        compactData        = false;
+  public boolean        gzipData           = false;
+
   // Specific to scatter plots.
   public double         radius             = 3;
 
@@ -501,4 +507,41 @@ public class ChartConfig
     this.shadow = shadow;
     return this;
   }
+
+  /**
+   * Set the maximum number of points written for each series.
+   * 
+   * Longer series are downsampled with the LTTB algorithm so that the chart keeps its visual shape. Use zero (the
+   * default) to write all points.
+   */
+  public ChartConfig setMaxPoints(int maxPoints)
+  {
+    this.maxPoints = maxPoints;
+    return this;
+  }
+
+  /** Set the number of digits after the decimal point for data values. */
+  public ChartConfig setDataPrecision(int digits)
+  {
+    this.dataPrecision = digits;
+    return this;
+  }
+
+  /** If true, data values are written without trailing zeros or extra whitespace. */
+  public ChartConfig setCompactData(boolean compact)
+  {
+    this.compactData = compact;
+    return this;
+  }
+
+  /**
+   * If true, series data is written to a gzipped JSON file next to the HTML file and loaded when the page opens.
+   * 
+   * The page must be served over http(s) and the browser must support DecompressionStream.
+   */
+  public ChartConfig setGzipData(boolean gzip)
+  {
+    this.gzipData = gzip;
+    return this;
+  }
 }
@@ -0,0 +1,86 @@
+package org.minnen.dmswr.viz;
+
+/**
+ * Reduce the number of points in a line chart while preserving its visual shape.
+ *
+ * Charts with tens of thousands of points per series produce huge HTML files and render slowly, but a chart can't
+ * show more points than it has pixels. Downsampling to a point budget keeps the important features (peaks, troughs,
+ * crashes) while dropping redundant points.
+ */
+public class Downsample
+{
+  /**
+   * Select points using the Largest-Triangle-Three-Buckets (LTTB) algorithm.
+   *
+   * The first and last points are always kept. The remaining points are split into `threshold - 2` buckets and the
+   * point in each bucket that forms the largest triangle with the previously selected point and the average of the
+   * next bucket is kept.
+   *
+   * Reference: Sveinn Steinarsson, "Downsampling Time Series for Visual Representation", 2013.
+   *
+   * @param x x-coordinates (must be non-decreasing)
+   * @param y y-coordinates
+   * @param threshold maximum number of points to keep
+   * @return indices of selected points in increasing order
+   */
+  public static int[] lttb(double[] x, double[] y, int threshold)
+  {
+    assert x.length == y.length;
+    final int n = x.length;
+    if (threshold >= n || threshold <= 0) {
+      int[] all = new int[n];
+      for (int i = 0; i < n; ++i) {
+        all[i] = i;
+      }
+      return all;
+    }
+    if (threshold < 3) {
+      return threshold == 1 ? new int[] { 0 } : new int[] { 0, n - 1 };
+    }
+
+    int[] selected = new int[threshold];
+    int nSelected = 0;
+    selected[nSelected++] = 0;
+
+    final double bucketSize = (double) (n - 2) / (threshold - 2);
+    int a = 0; // index of previously selected point
+    for (int iBucket = 0; iBucket < threshold - 2; ++iBucket) {
+      // Average of the next bucket (last point for the final bucket).
+      final int nextStart = (int) Math.floor((iBucket + 1) * bucketSize) + 1;
+      final int nextEnd = Math.min((int) Math.floor((iBucket + 2) * bucketSize) + 1, n);
+      double avgX = 0.0, avgY = 0.0;
+      for (int i = nextStart; i < nextEnd; ++i) {
+        avgX += x[i];
+        avgY += y[i];
+      }
+      final int nNext = nextEnd - nextStart;
+      if (nNext > 0) {
+        avgX /= nNext;
+        avgY /= nNext;
+      } else {
+        avgX = x[n - 1];
+        avgY = y[n - 1];
+      }
+
+      // Find the point in this bucket that forms the largest triangle.
+      final int start = (int) Math.floor(iBucket * bucketSize) + 1;
+      final int end = Math.min((int) Math.floor((iBucket + 1) * bucketSize) + 1, n - 1);
+      final double ax = x[a];
+      final double ay = y[a];
+      double maxArea = -1.0;
+      int best = start;
+      for (int i = start; i < end; ++i) {
+        final double area = Math.abs((ax - avgX) * (y[i] - ay) - (ax - x[i]) * (avgY - ay));
+        if (area > maxArea) {
+          maxArea = area;
+          best = i;
+        }
+      }
+      selected[nSelected++] = best;
+      a = best;
+    }
+    selected[nSelected++] = n - 1;
+    assert nSelected == threshold;
+    return selected;
+  }
+}